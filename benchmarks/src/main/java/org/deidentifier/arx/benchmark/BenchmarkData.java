@@ -0,0 +1,202 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.deidentifier.arx.ARFF2ARX;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.HierarchyBuilder;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.metric.Metric;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Generates synthetic data sets and hierarchy files for the benchmarks.
+ * Every quasi-identifier is a numeric attribute with {@code 4^(depth - 1)}
+ * distinct values, its hierarchy merges four values per level.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public final class BenchmarkData {
+
+    /**
+     * Name of the generated relation.
+     */
+    public static final String RELATION = "benchmark";
+
+    /**
+     * Name of the sensitive attribute.
+     */
+    public static final String SENSITIVE = "diagnosis";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param qi Index of the quasi-identifier.
+     * @return Name of the quasi-identifier.
+     */
+    public static String qiName(int qi) {
+        return "qi" + qi;
+    }
+
+    /**
+     * @param qis Amount of quasi-identifiers.
+     * @return Names of the quasi-identifiers.
+     */
+    public static String[] qiNames(int qis) {
+        String[] names = new String[qis];
+        for (int i = 0; i < qis; i++) {
+            names[i] = qiName(i);
+        }
+        return names;
+    }
+
+    /**
+     * @param depth Depth of the hierarchies.
+     * @return Amount of distinct values of every quasi-identifier.
+     */
+    public static int domain(int depth) {
+        return 1 << (2 * (depth - 1));
+    }
+
+    /**
+     * Creates a data set with the given amount of quasi-identifiers, one
+     * nominal sensitive attribute and one insensitive numeric attribute.
+     *
+     * @param rows  Amount of rows.
+     * @param qis   Amount of quasi-identifiers.
+     * @param depth Depth of the hierarchies.
+     * @return The data set.
+     */
+    public static Instances createInstances(int rows, int qis, int depth) {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        for (int i = 0; i < qis; i++) {
+            attributes.add(new Attribute(qiName(i)));
+        }
+        List<String> diagnoses = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            diagnoses.add("d" + i);
+        }
+        attributes.add(new Attribute(SENSITIVE, diagnoses));
+        attributes.add(new Attribute("weight"));
+
+        Instances instances = new Instances(RELATION, attributes, rows);
+        Random random = new Random(rows * 31L + qis * 7L + depth);
+        int domain = domain(depth);
+        for (int r = 0; r < rows; r++) {
+            double[] values = new double[attributes.size()];
+            for (int i = 0; i < qis; i++) {
+                values[i] = random.nextInt(domain);
+            }
+            values[qis] = random.nextInt(diagnoses.size());
+            values[qis + 1] = 50 + random.nextGaussian() * 10;
+            instances.add(new DenseInstance(1.0d, values));
+        }
+        return instances;
+    }
+
+    /**
+     * Writes the hierarchy files of all quasi-identifiers into a new
+     * temporary folder.
+     *
+     * @param qis   Amount of quasi-identifiers.
+     * @param depth Depth of the hierarchies.
+     * @return The folder containing the hierarchies.
+     * @throws IOException if it was not possible to write the files.
+     */
+    public static File writeHierarchies(int qis, int depth) throws IOException {
+        File folder = File.createTempFile("flash-benchmark", "");
+        if (!folder.delete() || !folder.mkdir()) {
+            throw new IOException("Unable to create " + folder.getAbsolutePath());
+        }
+        int domain = domain(depth);
+        for (int i = 0; i < qis; i++) {
+            File file = new File(folder, RELATION + "_hierarchy_" + qiName(i) + ".csv");
+            Writer writer = new FileWriter(file);
+            try {
+                for (int value = 0; value < domain; value++) {
+                    StringBuilder line = new StringBuilder().append(value);
+                    for (int level = 1; level < depth - 1; level++) {
+                        int width = 1 << (2 * level);
+                        int lower = value / width * width;
+                        line.append(';').append(lower).append('-').append(lower + width - 1);
+                    }
+                    line.append(";*\n");
+                    writer.write(line.toString());
+                }
+            } finally {
+                writer.close();
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * Deletes a folder created by {@link #writeHierarchies(int, int)}.
+     *
+     * @param folder The folder.
+     */
+    public static void delete(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    /**
+     * Creates and initializes a converter like {@code Flash.process} does.
+     *
+     * @param instances The data set.
+     * @param folder    The folder containing the hierarchies.
+     * @param qis       Amount of quasi-identifiers.
+     * @param columnar  Whether to use the columnar conversion mode.
+     * @return The initialized converter.
+     * @throws IOException if it was not possible to read a hierarchy.
+     */
+    public static ARFF2ARX convert(Instances instances, File folder, int qis, boolean columnar) throws IOException {
+        return new ARFF2ARX(instances).setQi(qiNames(qis)).setColumnar(columnar)
+                .init(new HierarchyBuilder(folder, RELATION));
+    }
+
+    /**
+     * @return The configuration used by all search benchmarks.
+     */
+    public static ARXConfiguration createConfiguration() {
+        ARXConfiguration config = ARXConfiguration.create();
+        config.addCriterion(new KAnonymity(5));
+        config.setMaxOutliers(0.0d);
+        config.setMetric(Metric.createHeightMetric());
+        return config;
+    }
+}
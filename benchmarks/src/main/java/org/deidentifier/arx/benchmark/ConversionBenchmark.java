@@ -0,0 +1,89 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.ARFF2ARX;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks {@link ARFF2ARX#init} in the row based and the columnar mode.
+ * Hierarchies are served by the cache, so the conversion dominates.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"2", "4"})
+    public int qis;
+
+    @Param({"3", "6"})
+    public int depth;
+
+    private Instances instances;
+
+    private File folder;
+
+    @Setup
+    public void setUp() throws IOException {
+        instances = BenchmarkData.createInstances(rows, qis, depth);
+        folder = BenchmarkData.writeHierarchies(qis, depth);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Benchmark
+    public ARFF2ARX rowBased() throws IOException {
+        return BenchmarkData.convert(instances, folder, qis, false);
+    }
+
+    @Benchmark
+    public ARFF2ARX columnar() throws IOException {
+        return BenchmarkData.convert(instances, folder, qis, true);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.HierarchyBuilder;
+import org.deidentifier.arx.HierarchyCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks {@link HierarchyBuilder#getHierarchy} for hierarchy files with
+ * and without the process-wide cache, and for generated hierarchies of
+ * numeric attributes.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HierarchyBuilderBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"2", "4"})
+    public int qis;
+
+    @Param({"3", "6"})
+    public int depth;
+
+    private Instances instances;
+
+    private File folder;
+
+    @Setup
+    public void setUp() throws IOException {
+        instances = BenchmarkData.createInstances(rows, qis, depth);
+        folder = BenchmarkData.writeHierarchies(qis, depth);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(folder);
+        HierarchyCache.getInstance().clear();
+    }
+
+    @Benchmark
+    public Hierarchy[] fileUncached() throws IOException {
+        HierarchyBuilder builder = new HierarchyBuilder(folder, BenchmarkData.RELATION);
+        builder.setCache(null);
+        return build(builder);
+    }
+
+    @Benchmark
+    public Hierarchy[] fileCached() throws IOException {
+        return build(new HierarchyBuilder(folder, BenchmarkData.RELATION));
+    }
+
+    @Benchmark
+    public Hierarchy[] generated() throws IOException {
+        HierarchyBuilder builder = new HierarchyBuilder(folder, "generated");
+        builder.setIntervalDepth(depth);
+        return build(builder);
+    }
+
+    private Hierarchy[] build(HierarchyBuilder builder) throws IOException {
+        Hierarchy[] hierarchies = new Hierarchy[qis];
+        for (int i = 0; i < qis; i++) {
+            hierarchies[i] = builder.getHierarchy(instances.attribute(BenchmarkData.qiName(i)), instances);
+        }
+        return hierarchies;
+    }
+}
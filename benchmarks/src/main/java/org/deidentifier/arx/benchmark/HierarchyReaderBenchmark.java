@@ -0,0 +1,132 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.HierarchyReader;
+import org.deidentifier.arx.io.CSVDataInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares loading a hierarchy file with {@link HierarchyReader} and with
+ * {@link CSVDataInput}, which was used before. Run with {@code -prof gc} to
+ * compare the allocated bytes, the main method prints the heap retained by
+ * the loaded lines.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HierarchyReaderBenchmark {
+
+    @Param({"6", "10"})
+    public int depth;
+
+    private File folder;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = BenchmarkData.writeHierarchies(1, depth);
+        file = new File(folder, BenchmarkData.RELATION + "_hierarchy_" + BenchmarkData.qiName(0) + ".csv");
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Benchmark
+    public List<String[]> mapped() throws IOException {
+        return new HierarchyReader(';').read(file);
+    }
+
+    @Benchmark
+    public List<String[]> csvDataInput() throws IOException {
+        return readCsv(file);
+    }
+
+    private static List<String[]> readCsv(File file) throws IOException {
+        List<String[]> lines = new ArrayList<String[]>();
+        Iterator<String[]> iterator = new CSVDataInput(file, ';').iterator();
+        while (iterator.hasNext()) {
+            lines.add(iterator.next());
+        }
+        return lines;
+    }
+
+    /**
+     * Prints the heap retained by a hierarchy loaded by either reader.
+     *
+     * @param args Depth of the hierarchy, 10 by default.
+     * @throws IOException if it was not possible to write or read the file.
+     */
+    public static void main(String[] args) throws IOException {
+        HierarchyReaderBenchmark benchmark = new HierarchyReaderBenchmark();
+        benchmark.depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        benchmark.setUp();
+        try {
+            long before = retained();
+            List<String[]> mapped = benchmark.mapped();
+            long mappedSize = retained() - before;
+            List<String[]> csv = benchmark.csvDataInput();
+            long csvSize = retained() - before - mappedSize;
+            System.out.println(mapped.size() + " lines of depth " + benchmark.depth + ": HierarchyReader retains "
+                    + mappedSize / 1024 + " KB, CSVDataInput retains " + csvSize / 1024 + " KB");
+            if (mapped.size() != csv.size()) {
+                throw new IllegalStateException("The readers read different amounts of lines");
+            }
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private static long retained() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
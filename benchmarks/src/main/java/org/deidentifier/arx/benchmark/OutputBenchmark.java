@@ -0,0 +1,104 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.ARFF2ARX;
+import org.deidentifier.arx.ARX2ARFF;
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks the output rebuild of {@code Flash.process}, i.e. the
+ * conversion of the optimal transformation back to an ARFF instance.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"2", "4"})
+    public int qis;
+
+    @Param({"3", "6"})
+    public int depth;
+
+    private File folder;
+
+    private ARFF2ARX converter;
+
+    private Map<String, Integer> levels;
+
+    private boolean[] outliers;
+
+    @Setup
+    public void setUp() throws IOException {
+        Instances instances = BenchmarkData.createInstances(rows, qis, depth);
+        folder = BenchmarkData.writeHierarchies(qis, depth);
+        converter = BenchmarkData.convert(instances, folder, qis, true);
+
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setSuppressionString("*");
+        anonymizer.setRemoveOutliers(true);
+        ARXResult result = anonymizer.anonymize(converter.getData(), BenchmarkData.createConfiguration());
+        levels = new HashMap<String, Integer>();
+        for (String qi : converter.getQi()) {
+            levels.put(qi, result.getGlobalOptimum().getGeneralization(qi));
+        }
+        outliers = ARX2ARFF.getOutliers(result.getOutput());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Benchmark
+    public Instances rebuild() {
+        return new ARX2ARFF(converter).convert(levels, outliers);
+    }
+}
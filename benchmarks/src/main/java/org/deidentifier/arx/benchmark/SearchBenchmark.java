@@ -0,0 +1,120 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.ARFF2ARX;
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.LatticeSearch;
+import org.deidentifier.arx.PrivacyCriteria;
+import org.deidentifier.arx.TransformationChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks the lattice search of {@link ARXAnonymizer#anonymize} with the
+ * settings used by the Flash filter, and the {@link LatticeSearch} of the
+ * {@code -threads} option on the same converted data and criteria. The
+ * input is converted before every invocation, because ARX binds the data to
+ * the result of a search.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"2", "4"})
+    public int qis;
+
+    @Param({"3", "6"})
+    public int depth;
+
+    private Instances instances;
+
+    private File folder;
+
+    private ARFF2ARX converter;
+
+    private ARXConfiguration config;
+
+    @Setup
+    public void setUp() throws IOException {
+        instances = BenchmarkData.createInstances(rows, qis, depth);
+        folder = BenchmarkData.writeHierarchies(qis, depth);
+    }
+
+    @Setup(Level.Invocation)
+    public void convert() throws IOException {
+        converter = BenchmarkData.convert(instances, folder, qis, true);
+        config = BenchmarkData.createConfiguration();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.delete(folder);
+    }
+
+    @Benchmark
+    public ARXResult anonymize() throws IOException {
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setSuppressionString("*");
+        anonymizer.setMaximumSnapshotSizeDataset(0.2d);
+        anonymizer.setMaximumSnapshotSizeSnapshot(0.2d);
+        anonymizer.setHistorySize(200);
+        anonymizer.setRemoveOutliers(true);
+        return anonymizer.anonymize(converter.getData(), config);
+    }
+
+    @Benchmark
+    public TransformationChecker.Result latticeSearch() throws InterruptedException {
+        // the criteria of BenchmarkData.createConfiguration()
+        PrivacyCriteria criteria = new PrivacyCriteria(5, 0, PrivacyCriteria.LVariant.DISTINCT, 0,
+                new String[0], 0.0d);
+        TransformationChecker checker = new TransformationChecker(converter.getColumns(), converter.getQi(),
+                converter.getHierarchies(), criteria);
+        return new LatticeSearch(checker, 1).search();
+    }
+}
@@ -26,6 +26,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.deidentifier.arx.AttributeType.Hierarchy;
 
@@ -33,6 +39,8 @@ import cern.colt.Arrays;
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.converters.ArffLoader;
 
 /**
  * Class to convert an ARFF instance to input for ARX anonymizer.
@@ -53,8 +61,49 @@ public class ARFF2ARX {
 
     protected Map<String, Hierarchy> hierarchyMap;
 
+    /**
+     * Generator settings of the hierarchies which are generated from the data.
+     */
+    protected Map<String, String> generators = new HashMap<String, String>();
+
     protected Data data;
 
+    protected boolean columnar = false;
+
+    protected ColumnarData columns;
+
+    /**
+     * Loader of the rows, if they are read incrementally.
+     */
+    protected ArffLoader loader;
+
+    /**
+     * Label of the default value 0 of every attribute, the initial row of
+     * sparse instances.
+     */
+    protected String[] defaults;
+
+    /**
+     * Storage of the codes in columnar mode.
+     */
+    protected ColumnarData.Storage storage = ColumnarData.Storage.HEAP;
+
+    /**
+     * Maximum amount of threads loading hierarchies, 0 to load them in the
+     * calling thread before the data is converted.
+     */
+    protected int hierarchyThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Time to load the hierarchies in milliseconds.
+     */
+    protected long hierarchyTime;
+
+    /**
+     * Time to convert the data in milliseconds.
+     */
+    protected long conversionTime;
+
     /**
      * This constructor exists only for JUNIT tests
      * Don't invoke it, if you want to work productively with
@@ -77,6 +126,24 @@ public class ARFF2ARX {
         }
     }
 
+    /**
+     * Constructor of a converter which reads the rows incrementally from
+     * the loader straight into the encoded columns (see
+     * {@link ColumnarData#read}), so the rows never exist as Weka instances.
+     * Until {@link #init} only the attributes are known, afterwards
+     * {@link #getInstances()} returns the attributes without rows and
+     * {@link ARX2ARFF} decodes the rows from the columns. Implies the
+     * columnar mode.
+     *
+     * @param loader The loader of the ARFF file.
+     * @throws IOException if the attributes can not be read.
+     */
+    public ARFF2ARX(ArffLoader loader) throws IOException {
+        this(loader.getStructure());
+        this.loader = loader;
+        this.columnar = true;
+    }
+
     public ARFF2ARX setQi(String qi) {
         this.qi = splitToArray(qi);
         return this;
@@ -97,6 +164,51 @@ public class ARFF2ARX {
         return this;
     }
 
+    /**
+     * Enables or disables the columnar conversion mode. In this mode the
+     * instances are dictionary encoded column by column (see {@link ColumnarData})
+     * and passed to ARX without creating a string per cell. Only the
+     * quasi-identifiers and sensitive attributes are encoded, the other
+     * attributes are shared with the instances and copied to the output
+     * from there.
+     *
+     * @param columnar The state of activation.
+     * @return This converter.
+     */
+    public ARFF2ARX setColumnar(boolean columnar) {
+        this.columnar = columnar;
+        return this;
+    }
+
+    /**
+     * Sets the storage of the codes in columnar mode. Off the heap the codes
+     * are kept in direct buffers or memory-mapped temporary files, which the
+     * lattice search of {@link TransformationChecker} reads directly.
+     *
+     * @param storage The storage.
+     * @return This converter.
+     */
+    public ARFF2ARX setStorage(ColumnarData.Storage storage) {
+        this.storage = storage;
+        return this;
+    }
+
+    /**
+     * Sets the maximum amount of threads loading the hierarchies. The
+     * hierarchies of the quasi-identifiers are loaded concurrently while
+     * the calling thread converts the data.
+     *
+     * @param hierarchyThreads Amount of threads, 0 to load the hierarchies sequentially.
+     * @return This converter.
+     */
+    public ARFF2ARX setHierarchyThreads(int hierarchyThreads) {
+        if (hierarchyThreads < 0) {
+            throw new IllegalArgumentException("The amount of threads must not be negative");
+        }
+        this.hierarchyThreads = hierarchyThreads;
+        return this;
+    }
+
     /**
      * @param dir
      * @param relation
@@ -104,34 +216,90 @@ public class ARFF2ARX {
      * @throws IOException
      */
     public ARFF2ARX init(File dir, String relation) throws IOException {
-        if (this.qi == null) {
-            throw new IllegalStateException("please set quasi identifying attributes first!");
-        }
-
         if (relation == null) {
             relation = "";
         }
         relation = relation.trim();
 
+        return init(new HierarchyBuilder(dir, relation));
+    }
+
+    /**
+     * Converts the instances, using the given builder to retrieve the hierarchies.
+     * The hierarchies are loaded by a bounded pool of threads, one task per
+     * quasi-identifier, while the calling thread converts the data. The
+     * hierarchy time is the time until the last hierarchy has been loaded,
+     * so it overlaps with the conversion time. Hierarchies generated from
+     * rows which are read incrementally are created after the conversion.
+     *
+     * @param hBuilder The configured hierarchy builder.
+     * @return This converter.
+     * @throws IOException if it was not possible to read a hierarchy.
+     */
+    public ARFF2ARX init(HierarchyBuilder hBuilder) throws IOException {
+        if (this.qi == null) {
+            throw new IllegalStateException("please set quasi identifying attributes first!");
+        }
+
+        long start = System.currentTimeMillis();
         hierarchyMap = new HashMap<String, Hierarchy>();
-        HierarchyBuilder hBuilder = new HierarchyBuilder(dir, relation);
+        generators = new HashMap<String, String>();
         for (String q : qi) {
-            hierarchyMap.put(q, hBuilder.getHierarchy(instances.attribute(q), instances));
+            String generator = hBuilder.getGenerator(instances.attribute(q));
+            if (generator != null) {
+                generators.put(q, generator);
+            }
+        }
+        int threads = Math.min(hierarchyThreads, qi.length);
+        if (threads == 0) {
+            for (String q : qi) {
+                if (!isDeferred(hBuilder, q)) {
+                    hierarchyMap.put(q, hBuilder.getHierarchy(instances.attribute(q), instances));
+                }
+            }
+            hierarchyTime = System.currentTimeMillis() - start;
+            convert();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            hierarchyTime = 0;
+            try {
+                List<Future<Hierarchy>> futures = new ArrayList<Future<Hierarchy>>(qi.length);
+                for (String q : qi) {
+                    futures.add(isDeferred(hBuilder, q) ? null
+                            : executor.submit(loadHierarchy(hBuilder, instances.attribute(q), instances, start)));
+                }
+                convert();
+                for (int i = 0; i < qi.length; i++) {
+                    if (futures.get(i) != null) {
+                        hierarchyMap.put(qi[i], futures.get(i).get());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Loading the hierarchies has been interrupted", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
         }
 
-        List<String[]> rawData = new ArrayList<String[]>(instances.numInstances() + 1);
-        rawData.add(header);
-
-        for (int i = 0; i < instances.numInstances(); i++) {
-            String[] row = convertRow(instances.instance(i));
-            if (row != null) {
-                rawData.add(row);
+        long generated = System.currentTimeMillis();
+        for (String q : qi) {
+            if (!hierarchyMap.containsKey(q)) {
+                hierarchyMap.put(q, hBuilder.getHierarchy(instances.attribute(q), columns));
             }
         }
+        hierarchyTime += System.currentTimeMillis() - generated;
 
-        data = Data.create(rawData);
         DataDefinition definition = data.getDefinition();
-        for (String attr : header) {
+        for (String attr : columns != null ? columns.getHeader() : header) {
             if (isQiAttribute(attr)) {
                 definition.setAttributeType(attr, hierarchyMap.get(attr));
             } else if (isSensitive(attr)) {
@@ -144,21 +312,128 @@ public class ARFF2ARX {
     }
 
     /**
-     * @param instance
-     * @return
+     * Creates the task which loads the hierarchy of an attribute and
+     * records when the loading has finished.
+     */
+    private Callable<Hierarchy> loadHierarchy(final HierarchyBuilder hBuilder, final Attribute attribute,
+                                              final Instances instances, final long start) {
+        return new Callable<Hierarchy>() {
+            @Override
+            public Hierarchy call() throws IOException {
+                Hierarchy hierarchy = hBuilder.getHierarchy(attribute, instances);
+                synchronized (ARFF2ARX.this) {
+                    hierarchyTime = Math.max(hierarchyTime, System.currentTimeMillis() - start);
+                }
+                return hierarchy;
+            }
+        };
+    }
+
+    /**
+     * Waits until the threads loading the hierarchies have stopped, so that
+     * none of them outlives {@link #init}, also if it fails.
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Determines whether the hierarchy of a quasi-identifier has to be
+     * generated from rows which are not read yet.
+     */
+    private boolean isDeferred(HierarchyBuilder hBuilder, String q) {
+        return loader != null && hBuilder.isGenerated(instances.attribute(q));
+    }
+
+    /**
+     * Converts the instances to the input data of ARX.
+     *
+     * @throws IOException if the columnar storage can not be created.
+     */
+    protected void convert() throws IOException {
+        long start = System.currentTimeMillis();
+        if (loader != null) {
+            columns = ColumnarData.read(loader, storage);
+            instances = columns.getStructure();
+            data = Data.create(columns.iterator());
+        } else if (columnar) {
+            String[] encoded = new String[qi.length + sensitive.length];
+            System.arraycopy(qi, 0, encoded, 0, qi.length);
+            System.arraycopy(sensitive, 0, encoded, qi.length, sensitive.length);
+            columns = ColumnarData.create(instances, storage, encoded);
+            data = Data.create(columns.iterator());
+        } else {
+            List<String[]> rawData = new ArrayList<String[]>(instances.numInstances() + 1);
+            rawData.add(header);
+
+            for (int i = 0; i < instances.numInstances(); i++) {
+                String[] row = convertRow(instances.instance(i));
+                if (row != null) {
+                    rawData.add(row);
+                }
+            }
+
+            data = Data.create(rawData);
+        }
+        conversionTime = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Converts an instance to a row of labels. Of sparse instances only the
+     * stored values are converted, the other cells get the label of the
+     * default value, which is determined once per attribute.
+     *
+     * @param instance The instance.
+     * @return The labels of the row.
      */
     protected String[] convertRow(Instance instance) {
-        String[] row = new String[instance.numAttributes()];
-        for (int i = 0; i < instance.numAttributes(); i++) {
-            if (instance.attribute(i).type() == Attribute.NOMINAL || instance.attribute(i).type() == Attribute.STRING) {
-                row[i] = instance.stringValue(i);
-            } else {
-                row[i] = String.valueOf((int) instance.value(i));
+        String[] row;
+        if (instance instanceof SparseInstance) {
+            if (defaults == null) {
+                defaults = new String[instances.numAttributes()];
+                for (int i = 0; i < defaults.length; i++) {
+                    Attribute attribute = instances.attribute(i);
+                    defaults[i] = attribute.type() != Attribute.NOMINAL && attribute.type() != Attribute.STRING ? "0"
+                            : attribute.numValues() > 0 ? attribute.value(0) : ColumnarData.MISSING;
+                }
+            }
+            row = defaults.clone();
+            for (int p = 0; p < instance.numValues(); p++) {
+                row[instance.index(p)] = convertValue(instance, instance.index(p));
+            }
+        } else {
+            row = new String[instance.numAttributes()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = convertValue(instance, i);
             }
         }
         return row;
     }
 
+    /**
+     * Converts a value of an instance to its label.
+     */
+    private String convertValue(Instance instance, int i) {
+        if (instance.attribute(i).type() == Attribute.NOMINAL || instance.attribute(i).type() == Attribute.STRING) {
+            return instance.stringValue(i);
+        } else if (instance.isMissing(i)) {
+            return ColumnarData.MISSING;
+        }
+        return String.valueOf((int) instance.value(i));
+    }
+
     /**
      * Determines if a attribute is a sensitive attribute.
      *
@@ -186,6 +461,21 @@ public class ARFF2ARX {
         return instances;
     }
 
+    /**
+     * @return Amount of rows, known only after {@link #init} if the rows are read incrementally.
+     */
+    public int getNumRows() {
+        return columns != null ? columns.getNumRows() : instances.numInstances();
+    }
+
+    /**
+     * @return Returns true if the rows are read incrementally and only the
+     * encoded columns hold them.
+     */
+    public boolean isIncremental() {
+        return loader != null;
+    }
+
     /**
      * @return Header as string array.
      */
@@ -200,6 +490,39 @@ public class ARFF2ARX {
         return qi;
     }
 
+    /**
+     * @return Amount of nodes of the generalization lattice, i.e. the product
+     * of the heights of all hierarchies.
+     */
+    public long getLatticeSize() {
+        long size = 1;
+        for (String q : qi) {
+            String[][] hierarchy = hierarchyMap.get(q).getHierarchy();
+            int height = hierarchy.length == 0 ? 1 : hierarchy[0].length;
+            size = size > Long.MAX_VALUE / height ? Long.MAX_VALUE : size * height;
+        }
+        return size;
+    }
+
+    /**
+     * @return Hierarchy of every quasi-identifier as array of rows.
+     */
+    public Map<String, String[][]> getHierarchies() {
+        Map<String, String[][]> hierarchies = new HashMap<String, String[][]>();
+        for (Map.Entry<String, Hierarchy> entry : hierarchyMap.entrySet()) {
+            hierarchies.put(entry.getKey(), entry.getValue().getHierarchy());
+        }
+        return hierarchies;
+    }
+
+    /**
+     * @return Generator settings of the hierarchies which are generated from
+     * the data, see {@link HierarchyBuilder#getGenerator(Attribute)}.
+     */
+    public Map<String, String> getGenerators() {
+        return generators;
+    }
+
     public Map<String, Hierarchy> getHierarchyMap() {
         return hierarchyMap;
     }
@@ -208,6 +531,41 @@ public class ARFF2ARX {
         return data;
     }
 
+    /**
+     * @return Time to load the hierarchies in milliseconds.
+     */
+    public long getHierarchyTime() {
+        return hierarchyTime;
+    }
+
+    /**
+     * @return Time to convert the data in milliseconds.
+     */
+    public long getConversionTime() {
+        return conversionTime;
+    }
+
+    /**
+     * @return Encoded columns, only available in columnar mode.
+     */
+    public ColumnarData getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return Returns true if the columnar conversion mode is enabled.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * @return The storage of the codes in columnar mode.
+     */
+    public ColumnarData.Storage getStorage() {
+        return storage;
+    }
+
     /**
      * @return Sensitive attributes as string array.
      */
@@ -249,7 +607,7 @@ public class ARFF2ARX {
         if (instances == null) {
             builder.append("null, ");
         } else {
-            builder.append("{rows: ").append(instances.numInstances());
+            builder.append("{rows: ").append(getNumRows());
             builder.append(", columns: ").append(instances.numAttributes()).append("}, ");
         }
         builder.append("qi: ");
@@ -0,0 +1,254 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Class to convert the result of the ARX anonymizer back to an ARFF instance.
+ * Every generalized quasi-identifier is read once from the encoded columns
+ * of the converter. Its codes are mapped to the indices of the new nominal
+ * attribute through an array computed from the hierarchy, and the values
+ * are written directly into the value arrays of the output rows. The other
+ * attributes are taken from the rows of the input, which are shared with
+ * the output if no attribute is generalized. Rows
+ * which have been read incrementally are decoded from the columns, so the
+ * output is the only copy of the data set as Weka instances. Sparse rows
+ * stay sparse, only their stored values and the generalized attributes
+ * are written.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ARX2ARFF {
+
+    /**
+     * Label of suppressed values.
+     */
+    public static final String SUPPRESSED = "*";
+
+    protected final Instances instances;
+
+    protected final ColumnarData columns;
+
+    protected final Map<String, String[][]> hierarchies;
+
+    /**
+     * Constructor of the converter.
+     *
+     * @param converter An initialized ARFF to ARX converter.
+     */
+    public ARX2ARFF(ARFF2ARX converter) {
+        this.instances = converter.getInstances();
+        this.columns = converter.getColumns() != null
+                ? converter.getColumns() : ColumnarData.create(instances, converter.getQi());
+        this.hierarchies = converter.getHierarchies();
+    }
+
+    /**
+     * Determines the suppressed rows of an ARX output.
+     *
+     * @param handle The output of the anonymizer.
+     * @return Array indicating for every row whether it is suppressed.
+     */
+    public static boolean[] getOutliers(DataHandle handle) {
+        boolean[] outliers = new boolean[handle.getNumRows()];
+        for (int r = 0; r < outliers.length; r++) {
+            outliers[r] = handle.isOutlier(r);
+        }
+        return outliers;
+    }
+
+    /**
+     * Creates the anonymized ARFF instance. Quasi-identifiers with a level
+     * above 0 are replaced by nominal attributes with the observed
+     * generalizations, all other attributes are copied.
+     *
+     * @param levels     Level of generalization for every quasi-identifier.
+     * @param suppressed Array indicating for every row whether it is suppressed.
+     * @return The anonymized ARFF instance.
+     */
+    public Instances convert(Map<String, Integer> levels, boolean[] suppressed) {
+        boolean decode = columns.isDecodable();
+        int rows = columns.getNumRows();
+        Instances output = new Instances(instances, rows);
+
+        List<Integer> generalized = new ArrayList<Integer>();
+        List<int[]> generalizedCodes = new ArrayList<int[]>();
+        List<double[]> mappings = new ArrayList<double[]>();
+        List<Double> suppressions = new ArrayList<Double>();
+        // in the order of the attributes, as sparse rows store their values
+        for (int index = 0; index < instances.numAttributes(); index++) {
+            String name = instances.attribute(index).name();
+            Integer level = levels.get(name);
+            if (level != null && level > 0) {
+                int column = columns.getColumnIndexOf(name);
+                String[] labels = generalize(column, hierarchies.get(name), level);
+                double[] mapping = new double[labels.length];
+                Attribute attribute = createAttribute(name, column, labels, suppressed, mapping);
+                output.replaceAttributeAt(attribute, index);
+                generalized.add(index);
+                generalizedCodes.add(columns.getColumn(column));
+                mappings.add(mapping);
+                suppressions.add((double) attribute.indexOfValue(SUPPRESSED));
+            }
+        }
+
+        int[] indices = new int[generalized.size()];
+        int[][] codes = new int[indices.length][];
+        double[] suppression = new double[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = generalized.get(i);
+            codes[i] = generalizedCodes.get(i);
+            suppression[i] = suppressions.get(i);
+        }
+
+        double[] generalizedValues = new double[indices.length];
+        for (int r = 0; r < rows; r++) {
+            Instance instance = decode ? null : instances.instance(r);
+            if (instance != null && indices.length == 0) {
+                // the output shares the values of the unchanged row
+                output.add(instance);
+                continue;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                generalizedValues[i] = suppressed[r] ? suppression[i] : mappings.get(i)[codes[i][r]];
+            }
+            if (instance instanceof SparseInstance) {
+                output.add(createSparse(instance, indices, generalizedValues));
+                continue;
+            }
+            double[] values = decode ? columns.getValues(r) : instance.toDoubleArray();
+            for (int i = 0; i < indices.length; i++) {
+                values[indices[i]] = generalizedValues[i];
+            }
+            double weight = decode ? columns.getWeight(r) : instance.weight();
+            output.add(decode && columns.isSparse() ? new SparseInstance(weight, values) : new DenseInstance(weight, values));
+        }
+        return output;
+    }
+
+    /**
+     * Creates the output row of a sparse row by merging its stored values
+     * with the generalized values.
+     *
+     * @param instance    The sparse row.
+     * @param indices     Ascending indices of the generalized attributes.
+     * @param generalized Generalized value of every generalized attribute.
+     * @return The sparse output row.
+     */
+    protected static Instance createSparse(Instance instance, int[] indices, double[] generalized) {
+        int stored = instance.numValues();
+        int[] positions = new int[stored + indices.length];
+        double[] values = new double[positions.length];
+        int size = 0;
+        int g = 0;
+        for (int p = 0; p <= stored; p++) {
+            int index = p < stored ? instance.index(p) : Integer.MAX_VALUE;
+            for (; g < indices.length && indices[g] <= index; g++) {
+                positions[size] = indices[g];
+                values[size++] = generalized[g];
+            }
+            if (p < stored && (g == 0 || indices[g - 1] != index)) {
+                positions[size] = index;
+                values[size++] = instance.valueSparse(p);
+            }
+        }
+        return new SparseInstance(instance.weight(), Arrays.copyOf(values, size), Arrays.copyOf(positions, size),
+                instance.numAttributes());
+    }
+
+    /**
+     * Looks up the generalization of every code of a column.
+     *
+     * @param index     Index of the column.
+     * @param hierarchy Hierarchy of the column.
+     * @param level     Level of generalization.
+     * @return Generalized label of every code.
+     */
+    protected String[] generalize(int index, String[][] hierarchy, int level) {
+        Map<String, String[]> rows = new HashMap<String, String[]>(hierarchy.length * 2);
+        for (String[] row : hierarchy) {
+            rows.put(row[0], row);
+        }
+        String[] dictionary = columns.getDictionary(index);
+        String[] labels = new String[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            String[] row = rows.get(dictionary[code]);
+            labels[code] = row == null ? SUPPRESSED : row[level];
+        }
+        return labels;
+    }
+
+    /**
+     * Creates the nominal attribute of a generalized column with the
+     * observed generalizations in sorted order and fills the mapping from
+     * codes to nominal indices.
+     *
+     * @param name       Name of the attribute.
+     * @param index      Index of the column.
+     * @param labels     Generalized label of every code.
+     * @param suppressed Array indicating for every row whether it is suppressed.
+     * @param mapping    Array which receives the nominal index of every code.
+     * @return The nominal attribute.
+     */
+    protected Attribute createAttribute(String name, int index, String[] labels, boolean[] suppressed, double[] mapping) {
+        int[] column = columns.getColumn(index);
+        boolean[] used = new boolean[labels.length];
+        boolean anySuppressed = false;
+        for (int r = 0; r < column.length; r++) {
+            if (suppressed[r]) {
+                anySuppressed = true;
+            } else {
+                used[column[r]] = true;
+            }
+        }
+
+        Map<String, Integer> values = new HashMap<String, Integer>();
+        if (anySuppressed) {
+            values.put(SUPPRESSED, 0);
+        }
+        for (int code = 0; code < labels.length; code++) {
+            if (used[code]) {
+                values.put(labels[code], 0);
+            }
+        }
+        List<String> nominalValues = new ArrayList<String>(values.keySet());
+        Collections.sort(nominalValues);
+        for (int i = 0; i < nominalValues.size(); i++) {
+            values.put(nominalValues.get(i), i);
+        }
+        for (int code = 0; code < labels.length; code++) {
+            Integer value = values.get(labels[code]);
+            mapping[code] = value == null ? -1 : value;
+        }
+        return new Attribute(name, nominalValues);
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Metrics of one anonymization: the time of every stage, the amount of
+ * checked and predicted lattice nodes, the suppressed rows and the peak heap
+ * usage. The metrics are published as structured log line and as one MBean,
+ * which is replaced by the metrics of the next anonymization.
+ * <p>
+ * The peak heap usage is the highest used heap a daemon thread sampled
+ * between construction and {@link #finish()}, every
+ * {@value #SAMPLE_INTERVAL} milliseconds. Concurrent anonymizations share
+ * the heap, so each of them sees the usage of the others as well. Short
+ * peaks between two samples are missed.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class AnonymizationMetrics implements AnonymizationMetricsMBean {
+
+    /**
+     * Domain of the published MBeans.
+     */
+    public static final String DOMAIN = "org.deidentifier.arx";
+
+    /**
+     * Interval of sampling the used heap in milliseconds.
+     */
+    public static final long SAMPLE_INTERVAL = 10;
+
+    /**
+     * Metrics whose heap usage is sampled, guarded by the class.
+     */
+    private static final Set<AnonymizationMetrics> sampled = new HashSet<AnonymizationMetrics>();
+
+    /**
+     * Thread sampling the heap, null if no metrics are sampled.
+     */
+    private static Thread sampler;
+
+    protected final String relation;
+
+    protected int rows;
+
+    protected long hierarchyLoadTime;
+
+    protected long conversionTime;
+
+    protected long searchTime;
+
+    protected long outputTime;
+
+    protected int nodesChecked;
+
+    protected int nodesTagged;
+
+    protected int suppressedRows;
+
+    protected volatile long peakHeap;
+
+    protected boolean optimal = true;
+
+    /**
+     * Constructor of the metrics. Starts sampling the heap.
+     *
+     * @param relation Name of the relation of the data set.
+     * @param rows     Amount of rows of the data set.
+     */
+    public AnonymizationMetrics(String relation, int rows) {
+        this.relation = relation == null ? "" : relation;
+        this.rows = rows;
+        this.peakHeap = usedHeap();
+        synchronized (AnonymizationMetrics.class) {
+            sampled.add(this);
+            if (sampler == null) {
+                sampler = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        sample();
+                    }
+                }, "arx-heap-sampler");
+                sampler.setDaemon(true);
+                sampler.start();
+            }
+        }
+    }
+
+    /**
+     * Samples the heap for all running anonymizations until none is left.
+     */
+    private static void sample() {
+        try {
+            while (true) {
+                long used = usedHeap();
+                synchronized (AnonymizationMetrics.class) {
+                    if (sampled.isEmpty()) {
+                        sampler = null;
+                        return;
+                    }
+                    for (AnonymizationMetrics metrics : sampled) {
+                        metrics.record(used);
+                    }
+                }
+                Thread.sleep(SAMPLE_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            synchronized (AnonymizationMetrics.class) {
+                sampler = null;
+            }
+        }
+    }
+
+    /**
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private void record(long used) {
+        if (used > peakHeap) {
+            peakHeap = used;
+        }
+    }
+
+    /**
+     * Stops sampling the heap. Further calls have no effect.
+     */
+    public void finish() {
+        synchronized (AnonymizationMetrics.class) {
+            if (sampled.remove(this)) {
+                record(usedHeap());
+            }
+        }
+    }
+
+    /**
+     * Publishes the metrics as MBean, replacing the metrics of the previous
+     * anonymization.
+     */
+    public void publish() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = getObjectName();
+            synchronized (AnonymizationMetrics.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to publish the metrics of " + relation, e);
+        }
+    }
+
+    /**
+     * Removes the published metrics, if any.
+     */
+    public static void unpublish() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            synchronized (AnonymizationMetrics.class) {
+                if (server.isRegistered(getObjectName())) {
+                    server.unregisterMBean(getObjectName());
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to remove the published metrics", e);
+        }
+    }
+
+    /**
+     * @return Name of the MBean, the same for every anonymization.
+     * @throws JMException if the name is malformed.
+     */
+    public static ObjectName getObjectName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=AnonymizationMetrics");
+    }
+
+    @Override
+    public String getLogLine() {
+        return String.format(Locale.ENGLISH, "arx-metrics relation=%s rows=%d hierarchyLoadMs=%d conversionMs=%d "
+                        + "searchMs=%d outputMs=%d nodesChecked=%d nodesTagged=%d suppressedRows=%d peakHeapBytes=%d "
+                        + "optimal=%b",
+                ObjectName.quote(relation), rows, hierarchyLoadTime, conversionTime, searchTime, outputTime,
+                nodesChecked, nodesTagged, suppressedRows, peakHeap, optimal);
+    }
+
+    @Override
+    public String getRelation() {
+        return relation;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    @Override
+    public long getHierarchyLoadTime() {
+        return hierarchyLoadTime;
+    }
+
+    public void setHierarchyLoadTime(long hierarchyLoadTime) {
+        this.hierarchyLoadTime = hierarchyLoadTime;
+    }
+
+    @Override
+    public long getConversionTime() {
+        return conversionTime;
+    }
+
+    public void setConversionTime(long conversionTime) {
+        this.conversionTime = conversionTime;
+    }
+
+    @Override
+    public long getSearchTime() {
+        return searchTime;
+    }
+
+    public void setSearchTime(long searchTime) {
+        this.searchTime = searchTime;
+    }
+
+    @Override
+    public long getOutputTime() {
+        return outputTime;
+    }
+
+    public void setOutputTime(long outputTime) {
+        this.outputTime = outputTime;
+    }
+
+    @Override
+    public int getNodesChecked() {
+        return nodesChecked;
+    }
+
+    public void setNodesChecked(int nodesChecked) {
+        this.nodesChecked = nodesChecked;
+    }
+
+    @Override
+    public int getNodesTagged() {
+        return nodesTagged;
+    }
+
+    public void setNodesTagged(int nodesTagged) {
+        this.nodesTagged = nodesTagged;
+    }
+
+    @Override
+    public int getSuppressedRows() {
+        return suppressedRows;
+    }
+
+    public void setSuppressedRows(int suppressedRows) {
+        this.suppressedRows = suppressedRows;
+    }
+
+    /**
+     * Counts the suppressed rows.
+     *
+     * @param suppressed Array indicating for every row whether it is suppressed.
+     */
+    public void setSuppressedRows(boolean[] suppressed) {
+        int count = 0;
+        for (boolean value : suppressed) {
+            if (value) {
+                count++;
+            }
+        }
+        this.suppressedRows = count;
+    }
+
+    @Override
+    public long getPeakHeap() {
+        return peakHeap;
+    }
+
+    @Override
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    public void setOptimal(boolean optimal) {
+        this.optimal = optimal;
+    }
+
+    /**
+     * Counts the checked and the predicted nodes of an ARX search.
+     *
+     * @param lattice The lattice of the result.
+     */
+    public void countNodes(ARXLattice lattice) {
+        int checked = 0;
+        int tagged = 0;
+        for (ARXLattice.ARXNode[] level : lattice.getLevels()) {
+            for (ARXLattice.ARXNode node : level) {
+                if (node.isChecked()) {
+                    checked++;
+                } else if (node.isAnonymous() == ARXLattice.Anonymity.ANONYMOUS
+                        || node.isAnonymous() == ARXLattice.Anonymity.NOT_ANONYMOUS) {
+                    tagged++;
+                }
+            }
+        }
+        this.nodesChecked = checked;
+        this.nodesTagged = tagged;
+    }
+
+    @Override
+    public String toString() {
+        return getLogLine();
+    }
+}
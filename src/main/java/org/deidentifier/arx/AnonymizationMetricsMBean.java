@@ -0,0 +1,88 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+/**
+ * Management interface of the metrics of an anonymization.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public interface AnonymizationMetricsMBean {
+
+    /**
+     * @return Name of the relation of the data set.
+     */
+    String getRelation();
+
+    /**
+     * @return Amount of rows of the data set.
+     */
+    int getRows();
+
+    /**
+     * @return Time to load the hierarchies in milliseconds.
+     */
+    long getHierarchyLoadTime();
+
+    /**
+     * @return Time to convert the data set in milliseconds.
+     */
+    long getConversionTime();
+
+    /**
+     * @return Time of the lattice search in milliseconds.
+     */
+    long getSearchTime();
+
+    /**
+     * @return Time to rebuild the output in milliseconds.
+     */
+    long getOutputTime();
+
+    /**
+     * @return Amount of lattice nodes which have been checked.
+     */
+    int getNodesChecked();
+
+    /**
+     * @return Amount of lattice nodes whose anonymity has been predicted.
+     */
+    int getNodesTagged();
+
+    /**
+     * @return Amount of suppressed rows.
+     */
+    int getSuppressedRows();
+
+    /**
+     * @return Highest used heap sampled during the anonymization in bytes.
+     */
+    long getPeakHeap();
+
+    /**
+     * @return Returns false if the search stopped at its time budget before proving optimality.
+     */
+    boolean isOptimal();
+
+    /**
+     * @return The metrics as structured log line.
+     */
+    String getLogLine();
+}
@@ -0,0 +1,179 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled form of a hierarchy file. The file contains the distinct labels
+ * once and the hierarchy as matrix of label indices, followed by a CRC-32
+ * checksum of all preceding bytes:
+ * <pre>
+ * int magic, int version, int rows, int levels, int labels,
+ * labels x (int length, UTF-8 bytes), rows x levels x int index, long checksum
+ * </pre>
+ * Reading is one bulk read of the file, the matrix is copied with a single
+ * buffer operation and equal labels share one string.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class BinaryHierarchy {
+
+    /**
+     * File extension of compiled hierarchies.
+     */
+    public static final String EXTENSION = ".arxh";
+
+    protected static final int MAGIC = 0x41525848; // "ARXH"
+
+    protected static final int VERSION = 1;
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BinaryHierarchy() {
+    }
+
+    /**
+     * Reads a compiled hierarchy.
+     *
+     * @param file The compiled file.
+     * @return The hierarchy as array of rows.
+     * @throws IOException if the file can not be read, is no compiled hierarchy or is corrupt.
+     */
+    public static String[][] read(File file) throws IOException {
+        long length = file.length();
+        if (length < 28 || length > Integer.MAX_VALUE) {
+            throw new IOException("\"" + file + "\" is no compiled hierarchy");
+        }
+        byte[] bytes = new byte[(int) length];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        if (buffer.getLong(bytes.length - 8) != crc.getValue()) {
+            throw new IOException("The checksum of \"" + file + "\" does not match, please compile it again");
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("\"" + file + "\" is no compiled hierarchy of version " + VERSION);
+        }
+        int rows = buffer.getInt();
+        int levels = buffer.getInt();
+        String[] labels = new String[buffer.getInt()];
+        for (int i = 0; i < labels.length; i++) {
+            int size = buffer.getInt();
+            labels[i] = new String(bytes, buffer.position(), size, UTF8);
+            buffer.position(buffer.position() + size);
+        }
+
+        int[] indices = new int[rows * levels];
+        IntBuffer matrix = buffer.asIntBuffer();
+        if (matrix.remaining() != indices.length + 2) {
+            throw new IOException("The size of \"" + file + "\" does not match its header");
+        }
+        matrix.get(indices);
+        String[][] hierarchy = new String[rows][levels];
+        for (int r = 0, i = 0; r < rows; r++) {
+            for (int l = 0; l < levels; l++) {
+                hierarchy[r][l] = labels[indices[i++]];
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Writes a compiled hierarchy.
+     *
+     * @param hierarchy The hierarchy as list of rows of equal length.
+     * @param file      The compiled file.
+     * @throws IOException if the file can not be written.
+     */
+    public static void write(List<String[]> hierarchy, File file) throws IOException {
+        int levels = hierarchy.isEmpty() ? 0 : hierarchy.get(0).length;
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        ByteArrayOutputStream labels = new ByteArrayOutputStream();
+        DataOutputStream labelsOut = new DataOutputStream(labels);
+        ByteBuffer matrix = ByteBuffer.allocate(4 * hierarchy.size() * levels);
+        for (String[] row : hierarchy) {
+            for (String label : row) {
+                Integer id = ids.get(label);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(label, id);
+                    byte[] bytes = label.getBytes(UTF8);
+                    labelsOut.writeInt(bytes.length);
+                    labelsOut.write(bytes);
+                }
+                matrix.putInt(id);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(labels.size() + matrix.capacity() + 28);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(hierarchy.size());
+        out.writeInt(levels);
+        out.writeInt(ids.size());
+        labels.writeTo(out);
+        out.write(matrix.array());
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            bytes.writeTo(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Determines the compiled file of a hierarchy file.
+     *
+     * @param csv The hierarchy file.
+     * @return The compiled file next to it.
+     */
+    public static File getCompiledFile(File csv) {
+        String name = csv.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(csv.getParentFile(), (dot < 0 ? name : name.substring(0, dot)) + EXTENSION);
+    }
+}
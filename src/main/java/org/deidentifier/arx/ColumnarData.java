@@ -0,0 +1,759 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Dictionary encoded, column oriented copy of an ARFF instance.
+ * Every attribute is stored as an int array of codes which point into one
+ * dictionary per attribute. Nominal and string attributes reuse the value
+ * indices of Weka, numeric attributes are encoded by their sorted distinct
+ * values. Missing values are encoded as {@link #MISSING}.
+ * <p>
+ * The codes can be kept on the heap or off the heap, in direct buffers or
+ * in memory-mapped temporary files, see {@link Storage}. Off the heap the
+ * codes do not add to the heap pressure and garbage collection of large
+ * jobs, only the dictionaries stay on the heap.
+ * <p>
+ * Data read incrementally from an ARFF file (see {@link #read}) can be
+ * decoded into Weka values again, so the rows never exist as Weka
+ * instances before the output is created.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ColumnarData {
+
+    /**
+     * Label of missing values.
+     */
+    public static final String MISSING = "?";
+
+    /**
+     * Storage of the codes.
+     */
+    public enum Storage {
+        HEAP,   // int arrays on the heap
+        DIRECT, // direct byte buffers
+        MAPPED  // memory-mapped temporary files
+    }
+
+    /**
+     * Names of the attributes.
+     */
+    protected final String[] header;
+
+    /**
+     * Distinct labels of every attribute, indexed by code.
+     */
+    protected final String[][] dictionaries;
+
+    /**
+     * Codes of every attribute, indexed by row.
+     */
+    protected final IntBuffer[] columns;
+
+    /**
+     * Amount of rows.
+     */
+    protected final int rows;
+
+    /**
+     * Attributes of data read incrementally, string attributes with the
+     * labels of their dictionaries, otherwise null.
+     */
+    protected Instances structure;
+
+    /**
+     * Weka value of every code of every column of data read incrementally.
+     */
+    protected double[][] decodings;
+
+    /**
+     * Exact values of the numeric columns of data read incrementally whose
+     * values are not all integers, indexed by row, otherwise null.
+     */
+    protected double[][] exact;
+
+    /**
+     * Weights of the rows of data read incrementally or null if all rows
+     * have the weight 1.
+     */
+    protected double[] weights;
+
+    /**
+     * Whether data read incrementally consists of sparse rows.
+     */
+    protected boolean sparse;
+
+    /**
+     * Constructor of the columnar data.
+     *
+     * @param header       Names of the attributes.
+     * @param dictionaries Distinct labels of every attribute.
+     * @param columns      Codes of every attribute.
+     * @param rows         Amount of rows.
+     */
+    protected ColumnarData(String[] header, String[][] dictionaries, int[][] columns, int rows) {
+        this.header = header;
+        this.dictionaries = dictionaries;
+        this.columns = new IntBuffer[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            this.columns[c] = IntBuffer.wrap(columns[c]);
+        }
+        this.rows = rows;
+    }
+
+    /**
+     * Constructor of the columnar data.
+     *
+     * @param header       Names of the attributes.
+     * @param dictionaries Distinct labels of every attribute.
+     * @param columns      Codes of every attribute.
+     * @param rows         Amount of rows.
+     */
+    protected ColumnarData(String[] header, String[][] dictionaries, IntBuffer[] columns, int rows) {
+        this.header = header;
+        this.dictionaries = dictionaries;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Encodes the given ARFF instance column by column.
+     *
+     * @param instances The ARFF instance.
+     * @return The encoded data.
+     */
+    public static ColumnarData create(Instances instances) {
+        return create(instances, (String[]) null);
+    }
+
+    /**
+     * Encodes the given attributes of an ARFF instance column by column.
+     *
+     * @param instances  The ARFF instance.
+     * @param attributes Names of the attributes to encode, null for all.
+     * @return The encoded data.
+     */
+    public static ColumnarData create(Instances instances, String[] attributes) {
+        try {
+            return create(instances, Storage.HEAP, attributes);
+        } catch (IOException e) {
+            // the heap storage does not use files
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes the given ARFF instance column by column. With a storage off
+     * the heap, every column is moved off the heap right after encoding, so
+     * at most one column of codes is on the heap at any time.
+     *
+     * @param instances The ARFF instance.
+     * @param storage   The storage of the codes.
+     * @return The encoded data.
+     * @throws IOException if a temporary file can not be mapped.
+     */
+    public static ColumnarData create(Instances instances, Storage storage) throws IOException {
+        return create(instances, storage, null);
+    }
+
+    /**
+     * Encodes the given attributes of an ARFF instance column by column, in
+     * the order of the instance. The other attributes are not copied, their
+     * values stay in the rows of the instance only.
+     *
+     * @param instances  The ARFF instance.
+     * @param storage    The storage of the codes.
+     * @param attributes Names of the attributes to encode, null for all.
+     * @return The encoded data.
+     * @throws IOException if a temporary file can not be mapped.
+     */
+    public static ColumnarData create(Instances instances, Storage storage, String[] attributes)
+            throws IOException {
+        List<Attribute> encoded = new ArrayList<Attribute>(instances.numAttributes());
+        for (int i = 0; i < instances.numAttributes(); i++) {
+            Attribute attribute = instances.attribute(i);
+            if (attributes == null || Arrays.asList(attributes).contains(attribute.name())) {
+                encoded.add(attribute);
+            }
+        }
+        int numAttributes = encoded.size();
+        int numRows = instances.numInstances();
+        String[] header = new String[numAttributes];
+        String[][] dictionaries = new String[numAttributes][];
+        IntBuffer[] columns = new IntBuffer[numAttributes];
+
+        for (int c = 0; c < numAttributes; c++) {
+            Attribute attribute = encoded.get(c);
+            header[c] = attribute.name();
+            int[] column = new int[numRows];
+            if (attribute.type() == Attribute.NOMINAL || attribute.type() == Attribute.STRING) {
+                dictionaries[c] = encodeNominal(instances, attribute, column);
+            } else {
+                dictionaries[c] = encodeNumeric(instances, attribute, column);
+            }
+            columns[c] = store(column, header[c], storage);
+        }
+        return new ColumnarData(header, dictionaries, columns, numRows);
+    }
+
+    /**
+     * Encodes an ARFF file row by row with the incremental API of the
+     * loader, so no Weka instance with all rows is created. The codes are
+     * the same as those of {@link #create(Instances, Storage)}, string values
+     * are numbered in the order of their first occurrence. Values which the
+     * codes do not represent exactly, non-integer numbers and weights, are
+     * kept separately for {@link #getValues(int)}. Only the stored values of
+     * sparse rows are visited, the other cells keep the initial code of the
+     * default value 0.
+     *
+     * @param loader  The loader of the ARFF file.
+     * @param storage The storage of the codes.
+     * @return The encoded data.
+     * @throws IOException if the file can not be read or a temporary file can not be mapped.
+     */
+    public static ColumnarData read(ArffLoader loader, Storage storage) throws IOException {
+        Instances structure = loader.getStructure();
+        int numAttributes = structure.numAttributes();
+        int capacity = 1024;
+        int[][] codes = new int[numAttributes][];
+        double[][] numbers = new double[numAttributes][];
+        List<Map<String, Integer>> strings = new ArrayList<Map<String, Integer>>(numAttributes);
+        for (int c = 0; c < numAttributes; c++) {
+            Attribute attribute = structure.attribute(c);
+            if (attribute.type() == Attribute.NOMINAL || attribute.type() == Attribute.STRING) {
+                codes[c] = new int[capacity];
+            } else {
+                numbers[c] = new double[capacity];
+            }
+            strings.add(attribute.type() == Attribute.STRING ? new HashMap<String, Integer>() : null);
+            if (attribute.type() == Attribute.STRING && attribute.numValues() > 0) {
+                // the default value of sparse rows
+                strings.get(c).put(attribute.value(0), 0);
+            }
+        }
+
+        double[] weights = null;
+        boolean sparse = false;
+        int numRows = 0;
+        Instance instance;
+        while ((instance = loader.getNextInstance(structure)) != null) {
+            if (numRows == capacity) {
+                capacity = capacity + (capacity >> 1);
+                for (int c = 0; c < numAttributes; c++) {
+                    if (codes[c] != null) {
+                        codes[c] = Arrays.copyOf(codes[c], capacity);
+                    } else {
+                        numbers[c] = Arrays.copyOf(numbers[c], capacity);
+                    }
+                }
+                if (weights != null) {
+                    weights = Arrays.copyOf(weights, capacity);
+                }
+            }
+            sparse |= instance instanceof SparseInstance;
+            for (int p = 0; p < instance.numValues(); p++) {
+                int c = instance.index(p);
+                if (instance.isMissingSparse(p)) {
+                    if (codes[c] != null) {
+                        codes[c][numRows] = -1;
+                    } else {
+                        numbers[c][numRows] = Double.NaN;
+                    }
+                } else if (strings.get(c) != null) {
+                    // the loader does not retain the string values of earlier rows
+                    String value = instance.stringValue(c);
+                    Integer code = strings.get(c).get(value);
+                    if (code == null) {
+                        code = strings.get(c).size();
+                        strings.get(c).put(value, code);
+                    }
+                    codes[c][numRows] = code;
+                } else if (codes[c] != null) {
+                    codes[c][numRows] = (int) instance.valueSparse(p);
+                } else {
+                    numbers[c][numRows] = instance.valueSparse(p);
+                }
+            }
+            if (instance.weight() != 1 && weights == null) {
+                weights = new double[capacity];
+                Arrays.fill(weights, 0, numRows, 1);
+            }
+            if (weights != null) {
+                weights[numRows] = instance.weight();
+            }
+            numRows++;
+        }
+
+        String[] header = new String[numAttributes];
+        String[][] dictionaries = new String[numAttributes][];
+        IntBuffer[] columns = new IntBuffer[numAttributes];
+        double[][] decodings = new double[numAttributes][];
+        double[][] exact = new double[numAttributes][];
+        Instances output = new Instances(structure, 0);
+        for (int c = 0; c < numAttributes; c++) {
+            Attribute attribute = structure.attribute(c);
+            header[c] = attribute.name();
+            int[] column;
+            if (codes[c] != null) {
+                if (strings.get(c) != null) {
+                    dictionaries[c] = new String[strings.get(c).size() + 1];
+                    for (Map.Entry<String, Integer> entry : strings.get(c).entrySet()) {
+                        dictionaries[c][entry.getValue()] = entry.getKey();
+                    }
+                    Attribute labels = new Attribute(attribute.name(), (List<String>) null);
+                    for (int i = 0; i < dictionaries[c].length - 1; i++) {
+                        labels.addStringValue(dictionaries[c][i]);
+                    }
+                    output.replaceAttributeAt(labels, c);
+                } else {
+                    dictionaries[c] = new String[attribute.numValues() + 1];
+                    for (int i = 0; i < attribute.numValues(); i++) {
+                        dictionaries[c][i] = attribute.value(i);
+                    }
+                }
+                int missing = dictionaries[c].length - 1;
+                dictionaries[c][missing] = MISSING;
+                column = codes[c].length == numRows ? codes[c] : Arrays.copyOf(codes[c], numRows);
+                codes[c] = null;
+                for (int r = 0; r < numRows; r++) {
+                    if (column[r] < 0) {
+                        column[r] = missing;
+                    }
+                }
+                decodings[c] = new double[dictionaries[c].length];
+                for (int code = 0; code < missing; code++) {
+                    decodings[c][code] = code;
+                }
+            } else {
+                column = new int[numRows];
+                dictionaries[c] = encodeValues(numbers[c], column);
+                if (!isIntegral(numbers[c], numRows)) {
+                    exact[c] = numbers[c].length == numRows ? numbers[c] : Arrays.copyOf(numbers[c], numRows);
+                }
+                numbers[c] = null;
+                decodings[c] = new double[dictionaries[c].length];
+                for (int code = 0; code < decodings[c].length - 1; code++) {
+                    decodings[c][code] = Integer.parseInt(dictionaries[c][code]);
+                }
+            }
+            decodings[c][decodings[c].length - 1] = Utils.missingValue();
+            columns[c] = store(column, header[c], storage);
+        }
+
+        ColumnarData data = new ColumnarData(header, dictionaries, columns, numRows);
+        data.structure = output;
+        data.decodings = decodings;
+        data.exact = exact;
+        data.weights = weights == null || weights.length == numRows ? weights : Arrays.copyOf(weights, numRows);
+        data.sparse = sparse;
+        return data;
+    }
+
+    /**
+     * Encodes the numbers of a column read incrementally by their sorted
+     * distinct integer values, like {@link #encodeNumeric}.
+     *
+     * @param numbers The numbers of the rows, NaN if missing. Can be longer than the column.
+     * @param column  Array which receives the codes.
+     * @return The dictionary of the column.
+     */
+    protected static String[] encodeValues(double[] numbers, int[] column) {
+        int[] values = new int[column.length];
+        int present = 0;
+        for (int r = 0; r < column.length; r++) {
+            if (!Double.isNaN(numbers[r])) {
+                values[present++] = (int) numbers[r];
+            }
+        }
+
+        int[] distinct = distinct(values, present);
+        int missing = distinct.length;
+        String[] dictionary = new String[missing + 1];
+        for (int i = 0; i < missing; i++) {
+            dictionary[i] = String.valueOf(distinct[i]);
+        }
+        dictionary[missing] = MISSING;
+
+        for (int r = 0; r < column.length; r++) {
+            column[r] = Double.isNaN(numbers[r]) ? missing : Arrays.binarySearch(distinct, (int) numbers[r]);
+        }
+        return dictionary;
+    }
+
+    /**
+     * @return Returns true if all present numbers are integers.
+     */
+    private static boolean isIntegral(double[] numbers, int length) {
+        for (int r = 0; r < length; r++) {
+            if (!Double.isNaN(numbers[r]) && numbers[r] != (int) numbers[r]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the codes of a column into the given storage.
+     *
+     * @param column  The codes.
+     * @param name    Name of the column.
+     * @param storage The storage.
+     * @return Buffer with the codes.
+     * @throws IOException if a temporary file can not be mapped.
+     */
+    protected static IntBuffer store(int[] column, String name, Storage storage) throws IOException {
+        if (storage == Storage.HEAP) {
+            return IntBuffer.wrap(column);
+        }
+        long size = size(column.length, name, storage);
+        ByteBuffer bytes;
+        if (storage == Storage.DIRECT) {
+            bytes = ByteBuffer.allocateDirect((int) size);
+        } else {
+            File file = File.createTempFile("arx-column", ".bin");
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+                bytes = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } finally {
+                raf.close();
+                // the mapping stays valid after the file has been unlinked
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        IntBuffer buffer = bytes.order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(column);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Determines the bytes of a column off the heap. A direct or mapped
+     * buffer holds at most {@link Integer#MAX_VALUE} bytes.
+     *
+     * @param rows    Amount of rows.
+     * @param name    Name of the column.
+     * @param storage The storage.
+     * @return The size in bytes.
+     * @throws IllegalArgumentException if the column does not fit into one buffer.
+     */
+    protected static long size(long rows, String name, Storage storage) {
+        long size = 4L * rows;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The column \"" + name + "\" with " + rows + " rows needs "
+                    + size + " bytes, more than a buffer of the storage " + storage + " can hold");
+        }
+        return size;
+    }
+
+    /**
+     * Encodes a nominal or string attribute by the value indices of Weka.
+     *
+     * @param instances The ARFF instance.
+     * @param attribute The attribute to encode.
+     * @param column    Array which receives the codes.
+     * @return The dictionary of the attribute.
+     */
+    protected static String[] encodeNominal(Instances instances, Attribute attribute, int[] column) {
+        int index = attribute.index();
+        int missing = attribute.numValues();
+        String[] dictionary = new String[missing + 1];
+        for (int i = 0; i < missing; i++) {
+            dictionary[i] = attribute.value(i);
+        }
+        dictionary[missing] = MISSING;
+
+        for (int r = 0; r < column.length; r++) {
+            Instance instance = instances.instance(r);
+            column[r] = instance.isMissing(index) ? missing : (int) instance.value(index);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Encodes a numeric attribute by its sorted distinct integer values.
+     *
+     * @param instances The ARFF instance.
+     * @param attribute The attribute to encode.
+     * @param column    Array which receives the codes.
+     * @return The dictionary of the attribute.
+     */
+    protected static String[] encodeNumeric(Instances instances, Attribute attribute, int[] column) {
+        int index = attribute.index();
+        int[] values = new int[column.length];
+        int present = 0;
+        for (int r = 0; r < column.length; r++) {
+            Instance instance = instances.instance(r);
+            if (!instance.isMissing(index)) {
+                values[present++] = (int) instance.value(index);
+            }
+        }
+
+        int[] distinct = distinct(values, present);
+        int missing = distinct.length;
+        String[] dictionary = new String[missing + 1];
+        for (int i = 0; i < missing; i++) {
+            dictionary[i] = String.valueOf(distinct[i]);
+        }
+        dictionary[missing] = MISSING;
+
+        for (int r = 0; r < column.length; r++) {
+            Instance instance = instances.instance(r);
+            if (instance.isMissing(index)) {
+                column[r] = missing;
+            } else {
+                column[r] = Arrays.binarySearch(distinct, (int) instance.value(index));
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Sorts the first values of an array and removes duplicates.
+     *
+     * @param values Array with values, will be sorted in place.
+     * @param length Amount of values to consider.
+     * @return Sorted array of distinct values.
+     */
+    protected static int[] distinct(int[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns an iterator over the header and the rows, as expected by
+     * {@link Data#create(Iterator)}. The cells of each row are the shared
+     * labels of the dictionaries, no string is created per cell.
+     *
+     * @return Iterator over header and rows.
+     */
+    public Iterator<String[]> iterator() {
+        return new Iterator<String[]>() {
+
+            private int row = -1;
+
+            @Override
+            public boolean hasNext() {
+                return row < rows;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String[] result;
+                if (row == -1) {
+                    result = header.clone();
+                } else {
+                    result = new String[header.length];
+                    for (int c = 0; c < result.length; c++) {
+                        result[c] = dictionaries[c][columns[c].get(row)];
+                    }
+                }
+                row++;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @return Header as string array.
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * @return Amount of rows.
+     */
+    public int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * @return Amount of columns.
+     */
+    public int getNumColumns() {
+        return header.length;
+    }
+
+    /**
+     * Returns the codes of a column as array. Codes off the heap are copied.
+     *
+     * @param column Index of the column.
+     * @return The codes of the column.
+     */
+    public int[] getColumn(int column) {
+        IntBuffer buffer = columns[column];
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        int[] codes = new int[rows];
+        buffer.duplicate().get(codes);
+        return codes;
+    }
+
+    /**
+     * Returns the codes of a column without copying them. Only absolute
+     * reads are allowed, so the buffer can be shared by threads.
+     *
+     * @param column Index of the column.
+     * @return The codes of the column.
+     */
+    public IntBuffer getColumnBuffer(int column) {
+        return columns[column].duplicate();
+    }
+
+    /**
+     * @return Returns true if the codes are stored off the heap.
+     */
+    public boolean isOffHeap() {
+        return columns.length > 0 && columns[0].isDirect();
+    }
+
+    /**
+     * @return Returns true if the data has been read incrementally and can
+     * be decoded into Weka values.
+     */
+    public boolean isDecodable() {
+        return decodings != null;
+    }
+
+    /**
+     * Returns the attributes of data read incrementally. String attributes
+     * contain the labels of their dictionaries, so the codes are the
+     * indices of the string values.
+     *
+     * @return The attributes without rows.
+     * @throws IllegalStateException if the data has not been read incrementally.
+     */
+    public Instances getStructure() {
+        if (structure == null) {
+            throw new IllegalStateException("Only data read incrementally has a structure");
+        }
+        return structure;
+    }
+
+    /**
+     * Decodes a row of data read incrementally into the values of a Weka
+     * instance with the attributes of {@link #getStructure()}.
+     *
+     * @param row Index of the row.
+     * @return The values of the row.
+     * @throws IllegalStateException if the data has not been read incrementally.
+     */
+    public double[] getValues(int row) {
+        if (decodings == null) {
+            throw new IllegalStateException("Only data read incrementally can be decoded");
+        }
+        double[] values = new double[header.length];
+        for (int c = 0; c < values.length; c++) {
+            // missing exact values are NaN, the missing value of Weka
+            values[c] = exact[c] != null ? exact[c][row] : decodings[c][columns[c].get(row)];
+        }
+        return values;
+    }
+
+    /**
+     * @return Returns true if the data has been read incrementally from
+     * sparse rows, which are written as sparse rows again.
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * @param row Index of the row.
+     * @return The weight of the row, 1 unless the data has been read
+     * incrementally with weights.
+     */
+    public double getWeight(int row) {
+        return weights == null ? 1 : weights[row];
+    }
+
+    /**
+     * @param column Index of the column.
+     * @return The dictionary of the column.
+     */
+    public String[] getDictionary(int column) {
+        return dictionaries[column];
+    }
+
+    /**
+     * @param row    Index of the row.
+     * @param column Index of the column.
+     * @return The label of the given cell.
+     */
+    public String getValue(int row, int column) {
+        return dictionaries[column][columns[column].get(row)];
+    }
+
+    /**
+     * Determines the index of an attribute.
+     *
+     * @param attr Name of the attribute.
+     * @return Index of the attribute or -1 if it does not exist.
+     */
+    public int getColumnIndexOf(String attr) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(attr)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Lattice search whose nodes are checked by {@link SearchWorker} processes.
+ * The coordinator and every worker authenticate each other with the shared
+ * token of the workers, then the coordinator sends the encoded data of its
+ * checker to every worker once. The data is sent unencrypted, so workers on
+ * other machines must be reached over a trusted network or a TLS tunnel.
+ * The search runs one thread per worker, and a thread sends each of its
+ * nodes to an idle worker. The nodes are chosen and pruned as in
+ * {@link LatticeSearch}, so the result is the same as the one of a local
+ * search. The workers reply anonymity, suppressed rows
+ * and information loss, but no class sizes, which are null in the results.
+ * The checker of the coordinator is only needed to determine the suppressed
+ * rows of the result.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class DistributedSearch extends LatticeSearch {
+
+    /**
+     * Timeout for connecting to a worker in milliseconds.
+     */
+    protected static final int CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Connections which are not used by a thread at the moment.
+     */
+    protected final BlockingQueue<Connection> idle;
+
+    protected final List<Connection> connections;
+
+    /**
+     * Constructor of the search. Connects to the workers and sends them the
+     * encoded data of the checker.
+     *
+     * @param checker The checker of the transformations.
+     * @param workers The addresses of the workers, one thread per worker.
+     * @param token   The shared token of the workers.
+     * @throws IOException if a worker can not be reached or does not know the token.
+     */
+    public DistributedSearch(TransformationChecker checker, List<InetSocketAddress> workers, byte[] token)
+            throws IOException {
+        super(checker, Math.max(1, workers.size()));
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.connections = new ArrayList<Connection>(workers.size());
+        this.idle = new ArrayBlockingQueue<Connection>(workers.size());
+        try {
+            for (InetSocketAddress address : workers) {
+                connections.add(new Connection(address, token));
+            }
+            // a worker builds its metric tables while the data is sent to the next one
+            for (Connection connection : connections) {
+                connection.init(checker);
+            }
+            for (Connection connection : connections) {
+                connection.awaitInit();
+                idle.add(connection);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks a node on an idle worker.
+     *
+     * @param node Level of generalization for every quasi-identifier.
+     * @return The result of the check.
+     * @throws IllegalStateException if the worker fails.
+     */
+    @Override
+    protected TransformationChecker.Result check(int[] node) {
+        Connection connection;
+        try {
+            connection = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The search has been interrupted", e);
+        }
+        try {
+            checked.incrementAndGet();
+            return connection.check(node);
+        } catch (IOException e) {
+            throw new IllegalStateException("The worker " + connection.address + " failed: " + e.getMessage(), e);
+        } finally {
+            idle.add(connection);
+        }
+    }
+
+    /**
+     * Ends the sessions and closes the connections to the workers.
+     */
+    public void close() {
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return Amount of workers.
+     */
+    public int getWorkers() {
+        return connections.size();
+    }
+
+    /**
+     * Session with one worker.
+     */
+    protected static final class Connection {
+
+        final InetSocketAddress address;
+        final Socket socket;
+        final DataOutputStream out;
+        final DataInputStream in;
+        boolean initialized;
+
+        Connection(InetSocketAddress address, byte[] token) throws IOException {
+            this.address = address;
+            this.socket = new Socket();
+            try {
+                socket.connect(address, CONNECT_TIMEOUT);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(SearchWorker.HANDSHAKE_TIMEOUT);
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                SearchWorker.authenticate(in, out, token);
+                socket.setSoTimeout(0);
+            } catch (IOException e) {
+                socket.close();
+                throw new IOException("The worker " + address + " failed the handshake: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Sends the encoded data.
+         */
+        void init(TransformationChecker checker) throws IOException {
+            checker.write(out);
+            out.flush();
+        }
+
+        /**
+         * Waits until the worker has decoded the data.
+         */
+        void awaitInit() throws IOException {
+            in.readInt();
+            initialized = true;
+        }
+
+        TransformationChecker.Result check(int[] node) throws IOException {
+            out.writeInt(node.length);
+            for (int level : node) {
+                out.writeInt(level);
+            }
+            out.flush();
+            if (in.readByte() != SearchWorker.OK) {
+                throw new IOException(in.readUTF());
+            }
+            boolean anonymous = in.readBoolean();
+            int suppressed = in.readInt();
+            double loss = in.readDouble();
+            return new TransformationChecker.Result(node.clone(), anonymous, suppressed, null, loss);
+        }
+
+        void close() {
+            try {
+                if (initialized) {
+                    out.writeInt(SearchWorker.END);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the worker has gone already
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+}
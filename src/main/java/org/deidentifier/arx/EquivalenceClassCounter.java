@@ -0,0 +1,351 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.util.Arrays;
+
+/**
+ * Counts the rows of equivalence classes and the values of sensitive
+ * attributes per class while the rows are added one by one. Classes are
+ * identified by long keys, and only one size per class and one count per
+ * pair of class and sensitive value are kept, so the memory depends on the
+ * amount of classes and not on the amount of rows.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class EquivalenceClassCounter {
+
+    /**
+     * Class identifier of every key.
+     */
+    protected final LongIntHashMap classes = new LongIntHashMap(1024);
+
+    /**
+     * Key of every class.
+     */
+    protected long[] classKeys = new long[1024];
+
+    /**
+     * Size of every class.
+     */
+    protected int[] sizes = new int[1024];
+
+    /**
+     * Identifier of every pair of class and value, per sensitive attribute.
+     */
+    protected final LongIntHashMap[] pairs;
+
+    /**
+     * Key of every pair, per sensitive attribute.
+     */
+    protected long[][] pairKeys;
+
+    /**
+     * Count of every pair, per sensitive attribute.
+     */
+    protected int[][] pairCounts;
+
+    /**
+     * Count of every value in all rows, including suppressed rows, per sensitive attribute.
+     */
+    protected int[][] totals;
+
+    /**
+     * Amount of added rows.
+     */
+    protected int rows = 0;
+
+    /**
+     * Amount of rows which are suppressed regardless of their class.
+     */
+    protected int suppressed = 0;
+
+    /**
+     * Constructor of the counter.
+     *
+     * @param sensitive Amount of sensitive attributes.
+     */
+    public EquivalenceClassCounter(int sensitive) {
+        this.pairs = new LongIntHashMap[sensitive];
+        this.pairKeys = new long[sensitive][];
+        this.pairCounts = new int[sensitive][];
+        this.totals = new int[sensitive][];
+        for (int s = 0; s < sensitive; s++) {
+            pairs[s] = new LongIntHashMap(1024);
+            pairKeys[s] = new long[1024];
+            pairCounts[s] = new int[1024];
+            totals[s] = new int[16];
+        }
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param key    Key of the class of the row.
+     * @param values Code of the value of every sensitive attribute.
+     */
+    public void add(long key, int[] values) {
+        int c = indexClass(key);
+        sizes[c]++;
+        rows++;
+        for (int s = 0; s < pairs.length; s++) {
+            addPair(s, c, values[s], 1);
+            addTotal(s, values[s], 1);
+        }
+    }
+
+    /**
+     * Adds the rows counted by another counter. Both counters must use the
+     * same keys and codes.
+     *
+     * @param other The other counter.
+     */
+    public void merge(EquivalenceClassCounter other) {
+        merge(other, other.classKeys);
+    }
+
+    /**
+     * Adds the rows counted by another counter whose classes have other
+     * keys, e.g. keys which are only unique within a chunk of the rows. Both
+     * counters must use the same codes of sensitive values.
+     *
+     * @param other The other counter.
+     * @param keys  Key in this counter of every class of the other counter, by class identifier.
+     */
+    public void merge(EquivalenceClassCounter other, long[] keys) {
+        int[] ids = new int[other.classes.size()];
+        for (int c = 0; c < ids.length; c++) {
+            ids[c] = indexClass(keys[c]);
+            sizes[ids[c]] += other.sizes[c];
+        }
+        rows += other.rows;
+        suppressed += other.suppressed;
+        for (int s = 0; s < pairs.length; s++) {
+            for (int p = 0; p < other.pairs[s].size(); p++) {
+                long pairKey = other.pairKeys[s][p];
+                addPair(s, ids[(int) (pairKey >>> 32)], (int) pairKey, other.pairCounts[s][p]);
+            }
+            // including the values of suppressed rows
+            for (int value = 0; value < other.totals[s].length; value++) {
+                if (other.totals[s][value] > 0) {
+                    addTotal(s, value, other.totals[s][value]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the identifier of a class and creates the class if necessary.
+     */
+    protected int indexClass(long key) {
+        int c = classes.index(key);
+        if (c == sizes.length) {
+            sizes = Arrays.copyOf(sizes, c * 2);
+            classKeys = Arrays.copyOf(classKeys, c * 2);
+        }
+        classKeys[c] = key;
+        return c;
+    }
+
+    /**
+     * Counts a value of a sensitive attribute in a class.
+     */
+    protected void addPair(int s, int c, int value, int count) {
+        long pairKey = ((long) c << 32) | (value & 0xffffffffL);
+        int p = pairs[s].index(pairKey);
+        if (p == pairKeys[s].length) {
+            pairKeys[s] = Arrays.copyOf(pairKeys[s], p * 2);
+            pairCounts[s] = Arrays.copyOf(pairCounts[s], p * 2);
+        }
+        pairKeys[s][p] = pairKey;
+        pairCounts[s][p] += count;
+    }
+
+    /**
+     * Counts a value of a sensitive attribute in all rows.
+     */
+    protected void addTotal(int s, int value, int count) {
+        if (value >= totals[s].length) {
+            totals[s] = Arrays.copyOf(totals[s], Math.max(value + 1, totals[s].length * 2));
+        }
+        totals[s][value] += count;
+    }
+
+    /**
+     * Adds a row which is suppressed regardless of its class. Its sensitive
+     * values still count for the distribution of all rows.
+     *
+     * @param values Code of the value of every sensitive attribute.
+     */
+    public void addSuppressed(int[] values) {
+        rows++;
+        suppressed++;
+        for (int s = 0; s < totals.length; s++) {
+            addTotal(s, values[s], 1);
+        }
+    }
+
+    /**
+     * Returns the identifier of the class of a key.
+     *
+     * @param key The key.
+     * @return The identifier or -1 if no row has the key.
+     */
+    public int getClass(long key) {
+        return classes.get(key);
+    }
+
+    /**
+     * @return Amount of classes.
+     */
+    public int getNumClasses() {
+        return classes.size();
+    }
+
+    /**
+     * @return Amount of added rows.
+     */
+    public int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * @return Amount of rows which are suppressed regardless of their class.
+     */
+    public int getNumSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * @return Size of every class.
+     */
+    public int[] getSizes() {
+        return Arrays.copyOf(sizes, classes.size());
+    }
+
+    /**
+     * Counts the distinct values of a sensitive attribute in every class.
+     *
+     * @param s Index of the sensitive attribute.
+     * @return Amount of distinct values of every class.
+     */
+    public int[] getDistinct(int s) {
+        int[] distinct = new int[classes.size()];
+        for (int p = 0; p < pairs[s].size(); p++) {
+            distinct[(int) (pairKeys[s][p] >>> 32)]++;
+        }
+        return distinct;
+    }
+
+    /**
+     * Computes the entropy of a sensitive attribute in every class.
+     *
+     * @param s Index of the sensitive attribute.
+     * @return Entropy of every class.
+     */
+    public double[] getEntropy(int s) {
+        double[] entropy = new double[classes.size()];
+        for (int p = 0; p < pairs[s].size(); p++) {
+            int c = (int) (pairKeys[s][p] >>> 32);
+            double frequency = pairCounts[s][p] / (double) sizes[c];
+            entropy[c] -= frequency * Math.log(frequency);
+        }
+        return entropy;
+    }
+
+    /**
+     * Computes the equal distance between the distribution of a sensitive
+     * attribute in every class and in all rows, including the suppressed
+     * rows like the lattice search and ARX.
+     *
+     * @param s Index of the sensitive attribute.
+     * @return Distance of every class.
+     */
+    public double[] getDistance(int s) {
+        int total = rows;
+        double[] distance = new double[classes.size()];
+        double[] covered = new double[classes.size()];
+        for (int p = 0; p < pairs[s].size(); p++) {
+            int c = (int) (pairKeys[s][p] >>> 32);
+            int value = (int) pairKeys[s][p];
+            double global = totals[s][value] / (double) total;
+            distance[c] += Math.abs(pairCounts[s][p] / (double) sizes[c] - global);
+            covered[c] += global;
+        }
+        for (int c = 0; c < distance.length; c++) {
+            distance[c] = (distance[c] + (1d - covered[c])) / 2d;
+        }
+        return distance;
+    }
+
+    /**
+     * Determines the classes which violate the privacy criteria.
+     *
+     * @param criteria The privacy criteria.
+     * @return Array indicating for every class whether it is suppressed.
+     */
+    public boolean[] evaluate(PrivacyCriteria criteria) {
+        int numClasses = classes.size();
+        boolean[] failing = new boolean[numClasses];
+        if (criteria.getK() > 0) {
+            for (int c = 0; c < numClasses; c++) {
+                failing[c] = sizes[c] < criteria.getK();
+            }
+        }
+        for (int s = 0; s < pairs.length; s++) {
+            if (criteria.getL() > 0) {
+                if (criteria.getLVariant() == PrivacyCriteria.LVariant.ENTROPY) {
+                    double[] entropy = getEntropy(s);
+                    for (int c = 0; c < numClasses; c++) {
+                        failing[c] |= !criteria.isEntropyDiverse(entropy[c]);
+                    }
+                } else {
+                    int[] distinct = getDistinct(s);
+                    for (int c = 0; c < numClasses; c++) {
+                        failing[c] |= distinct[c] < criteria.getL();
+                    }
+                }
+            }
+            if (criteria.getT() > 0) {
+                double[] distance = getDistance(s);
+                for (int c = 0; c < numClasses; c++) {
+                    failing[c] |= distance[c] > criteria.getT();
+                }
+            }
+        }
+        return failing;
+    }
+
+    /**
+     * Counts the suppressed rows.
+     *
+     * @param failing Array indicating for every class whether it is suppressed.
+     * @return Amount of suppressed rows.
+     */
+    public int getSuppressed(boolean[] failing) {
+        int result = suppressed;
+        for (int c = 0; c < failing.length; c++) {
+            if (failing[c]) {
+                result += sizes[c];
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * A learned transformation which generalizes single instances by hierarchy
+ * lookups. Every quasi-identifier with a level above 0 is replaced by a
+ * nominal attribute containing all generalizations of its level and the
+ * suppression label, so the output format does not depend on the rows
+ * which are generalized. A numeric value which is not part of its hierarchy
+ * is generalized like its neighbours if the next smaller and the next larger
+ * value of the hierarchy share their generalization, e.g. a value within an
+ * interval. Other values which are not part of a hierarchy are suppressed
+ * and counted, see {@link #getUnseen()}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class GeneralizationScheme implements Serializable {
+
+    private static final long serialVersionUID = 2913365042310986129L;
+
+    /**
+     * Level of generalization for every quasi-identifier.
+     */
+    protected final Map<String, Integer> levels;
+
+    /**
+     * The output format.
+     */
+    protected final Instances format;
+
+    /**
+     * Indices of the generalized attributes.
+     */
+    protected final int[] indices;
+
+    /**
+     * Nominal index of the generalization of every label, per generalized attribute.
+     */
+    protected final List<Map<String, Integer>> lookups;
+
+    /**
+     * Nominal index of the suppression label, per generalized attribute.
+     */
+    protected final int[] suppressed;
+
+    /**
+     * Sorted numeric values of the hierarchy, per generalized attribute,
+     * null if the attribute is not numeric.
+     */
+    protected final int[][] numericValues;
+
+    /**
+     * Nominal index of the generalization of every sorted numeric value.
+     */
+    protected final int[][] numericPositions;
+
+    /**
+     * Amount of values which have been suppressed because they are not part
+     * of their hierarchy.
+     */
+    protected transient long unseen;
+
+    /**
+     * Constructor of the scheme.
+     *
+     * @param levels     Level of generalization for every quasi-identifier.
+     * @param format     The output format.
+     * @param indices    Indices of the generalized attributes.
+     * @param lookups    Nominal index of the generalization of every label.
+     * @param suppressed Nominal index of the suppression label.
+     * @param numericValues    Sorted numeric values of the hierarchy, null if not numeric.
+     * @param numericPositions Nominal index of the generalization of every sorted numeric value.
+     */
+    protected GeneralizationScheme(Map<String, Integer> levels, Instances format, int[] indices,
+                                   List<Map<String, Integer>> lookups, int[] suppressed,
+                                   int[][] numericValues, int[][] numericPositions) {
+        this.levels = levels;
+        this.format = format;
+        this.indices = indices;
+        this.lookups = lookups;
+        this.suppressed = suppressed;
+        this.numericValues = numericValues;
+        this.numericPositions = numericPositions;
+    }
+
+    /**
+     * Creates a scheme from the hierarchies and the chosen levels.
+     *
+     * @param inputFormat The input format.
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param levels      Level of generalization for every quasi-identifier.
+     * @return The scheme.
+     */
+    public static GeneralizationScheme create(Instances inputFormat, Map<String, String[][]> hierarchies,
+                                              Map<String, Integer> levels) {
+        Instances format = new Instances(inputFormat, 0);
+        List<Integer> generalized = new ArrayList<Integer>();
+        List<Map<String, Integer>> lookups = new ArrayList<Map<String, Integer>>();
+        List<Integer> suppressions = new ArrayList<Integer>();
+
+        for (Map.Entry<String, Integer> entry : levels.entrySet()) {
+            int level = entry.getValue();
+            if (level <= 0) {
+                continue;
+            }
+            String[][] hierarchy = hierarchies.get(entry.getKey());
+            TreeSet<String> labels = new TreeSet<String>();
+            labels.add(ARX2ARFF.SUPPRESSED);
+            for (String[] row : hierarchy) {
+                labels.add(row[level]);
+            }
+            List<String> nominalValues = new ArrayList<String>(labels);
+            Map<String, Integer> positions = new HashMap<String, Integer>(nominalValues.size() * 2);
+            for (int i = 0; i < nominalValues.size(); i++) {
+                positions.put(nominalValues.get(i), i);
+            }
+            Map<String, Integer> lookup = new HashMap<String, Integer>(hierarchy.length * 2);
+            for (String[] row : hierarchy) {
+                lookup.put(row[0], positions.get(row[level]));
+            }
+
+            int index = inputFormat.attribute(entry.getKey()).index();
+            format.replaceAttributeAt(new Attribute(entry.getKey(), nominalValues), index);
+            generalized.add(index);
+            lookups.add(lookup);
+            suppressions.add(positions.get(ARX2ARFF.SUPPRESSED));
+        }
+
+        int[] indices = new int[generalized.size()];
+        int[] suppressed = new int[indices.length];
+        int[][] numericValues = new int[indices.length][];
+        int[][] numericPositions = new int[indices.length][];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = generalized.get(i);
+            suppressed[i] = suppressions.get(i);
+            if (inputFormat.attribute(indices[i]).isNumeric()) {
+                sortNumeric(lookups.get(i), i, numericValues, numericPositions);
+            }
+        }
+        return new GeneralizationScheme(Collections.unmodifiableMap(new LinkedHashMap<String, Integer>(levels)),
+                format, indices, lookups, suppressed, numericValues, numericPositions);
+    }
+
+    /**
+     * Sorts the numeric labels of a lookup together with their
+     * generalizations, skipping labels which are no numbers.
+     */
+    private static void sortNumeric(Map<String, Integer> lookup, int i, int[][] numericValues,
+                                    int[][] numericPositions) {
+        long[] entries = new long[lookup.size()];
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : lookup.entrySet()) {
+            try {
+                // value in the upper half, so the entries sort by value
+                entries[size] = ((long) Integer.parseInt(entry.getKey()) << 32) | entry.getValue();
+                size++;
+            } catch (NumberFormatException e) {
+                // e.g. the label of missing values
+            }
+        }
+        Arrays.sort(entries, 0, size);
+        numericValues[i] = new int[size];
+        numericPositions[i] = new int[size];
+        for (int e = 0; e < size; e++) {
+            numericValues[i][e] = (int) (entries[e] >> 32);
+            numericPositions[i][e] = (int) entries[e];
+        }
+    }
+
+    /**
+     * Generalizes a single instance. The result still refers to the data
+     * set of the given instance, so string values of attributes which are
+     * not generalized can be resolved.
+     *
+     * @param instance The instance to generalize.
+     * @param suppress Whether all generalized attributes are suppressed.
+     * @return The generalized instance.
+     */
+    public Instance apply(Instance instance, boolean suppress) {
+        double[] values = instance.toDoubleArray();
+        for (int i = 0; i < indices.length; i++) {
+            Integer value = null;
+            if (!suppress) {
+                value = lookups.get(i).get(label(instance, indices[i]));
+                if (value == null) {
+                    value = neighbours(instance, i);
+                }
+                if (value == null) {
+                    unseen++;
+                }
+            }
+            values[indices[i]] = value == null ? suppressed[i] : value;
+        }
+        Instance result = new DenseInstance(instance.weight(), values);
+        result.setDataset(instance.dataset());
+        return result;
+    }
+
+    /**
+     * Generalizes all instances of a data set.
+     *
+     * @param instances  The instances to generalize.
+     * @param suppressed Array indicating for every row whether it is suppressed, may be null.
+     * @return The generalized instances.
+     */
+    public Instances apply(Instances instances, boolean[] suppressed) {
+        // header of the given data set, so string attributes keep their values
+        Instances output = new Instances(instances, instances.numInstances());
+        for (int index : indices) {
+            output.replaceAttributeAt((Attribute) format.attribute(index).copy(), index);
+        }
+        for (int r = 0; r < instances.numInstances(); r++) {
+            Instance instance = apply(instances.instance(r), suppressed != null && suppressed[r]);
+            instance.setDataset(null);
+            output.add(instance);
+        }
+        return output;
+    }
+
+    /**
+     * Generalizes a numeric value which is not part of its hierarchy like
+     * its neighbours, if both share their generalization.
+     *
+     * @param instance The instance.
+     * @param i        Position of the attribute among the generalized ones.
+     * @return Nominal index of the generalization or null.
+     */
+    protected Integer neighbours(Instance instance, int i) {
+        int[] sorted = numericValues[i];
+        if (sorted == null || instance.isMissing(indices[i])) {
+            return null;
+        }
+        int search = Arrays.binarySearch(sorted, (int) instance.value(indices[i]));
+        int next = search < 0 ? -search - 1 : search;
+        if (next == 0 || next == sorted.length
+                || numericPositions[i][next - 1] != numericPositions[i][next]) {
+            return null;
+        }
+        return numericPositions[i][next];
+    }
+
+    /**
+     * @return Amount of values which have been suppressed because they are
+     * not part of their hierarchy.
+     */
+    public long getUnseen() {
+        return unseen;
+    }
+
+    /**
+     * Determines the label of a value like the conversion to ARX does.
+     *
+     * @param instance The instance.
+     * @param index    Index of the attribute.
+     * @return The label of the value.
+     */
+    protected static String label(Instance instance, int index) {
+        if (instance.isMissing(index)) {
+            return ColumnarData.MISSING;
+        }
+        Attribute attribute = instance.attribute(index);
+        if (attribute.type() == Attribute.NOMINAL || attribute.type() == Attribute.STRING) {
+            return instance.stringValue(index);
+        }
+        return String.valueOf((int) instance.value(index));
+    }
+
+    /**
+     * @return Level of generalization for every quasi-identifier.
+     */
+    public Map<String, Integer> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return The output format.
+     */
+    public Instances getOutputFormat() {
+        return new Instances(format, 0);
+    }
+}
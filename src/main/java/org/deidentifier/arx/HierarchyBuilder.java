@@ -19,15 +19,16 @@ package org.deidentifier.arx;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.AttributeType.Hierarchy.DefaultHierarchy;
-import org.deidentifier.arx.io.CSVDataInput;
 
 import weka.core.Attribute;
+import weka.core.Instance;
 import weka.core.Instances;
 
 /**
@@ -49,6 +50,21 @@ public class HierarchyBuilder {
      */
     protected File folder;
 
+    /**
+     * Cache for hierarchies read from files.
+     */
+    protected HierarchyCache cache = HierarchyCache.getInstance();
+
+    /**
+     * Depth of generated hierarchies for numeric attributes without file.
+     */
+    protected int intervalDepth = IntervalHierarchyGenerator.MIN_DEPTH;
+
+    /**
+     * Method to determine the intervals of generated hierarchies.
+     */
+    protected IntervalHierarchyGenerator.Method intervalMethod = IntervalHierarchyGenerator.Method.EQUAL_WIDTH;
+
     /**
      * Constructor of the hierarchy builder.
      *
@@ -61,7 +77,9 @@ public class HierarchyBuilder {
     }
 
     /**
-     * This method creates an hierarchy instance for a given attribute.
+     * This method creates an hierarchy instance for a given attribute. A
+     * compiled hierarchy (see {@link BinaryHierarchy}) is preferred to the
+     * CSV file, unless the CSV file has been modified after compiling.
      *
      * @param att       Attribute for which the hierarchy should be created
      * @param instances
@@ -69,63 +87,254 @@ public class HierarchyBuilder {
      * @throws IOException if it was not possible to locate the hierarchy file.
      */
     public Hierarchy getHierarchy(Attribute att, Instances instances) throws IOException {
-        File f = new File(this.folder, this.relation + "_hierarchy_"
-                + att.name() + ".csv");
-        DefaultHierarchy hierarchy = new DefaultHierarchy();
-        if (f.exists()) {
-            CSVDataInput input = new CSVDataInput(f, ';');
-            Iterator<String[]> iterator = input.iterator();
-            int length = 0;
-            while (iterator.hasNext()) {
-                String[] line = iterator.next();
-                if (length == 0) {
-                    length = line.length;
-                } else if (line.length != length) {
-                    throw new IllegalArgumentException(
-                            "All lines in a hierarchy for attribute"
-                                    + "\"" + att.name() + "\" must have the "
-                                    + "same amount of entries. Until now, all had "
-                                    + length + " entries and now one with "
-                                    + line.length + " entries appeared");
+        return getHierarchy(att, instances, null);
+    }
+
+    /**
+     * Creates the hierarchy of an attribute of encoded data, see
+     * {@link #getHierarchy(Attribute, Instances)}. Generated hierarchies are
+     * computed from the codes, so the data does not need to exist as Weka
+     * instances.
+     *
+     * @param att  Attribute for which the hierarchy should be created
+     * @param data The encoded data.
+     * @return ARX hierarchy instance.
+     * @throws IOException if it was not possible to locate the hierarchy file.
+     */
+    public Hierarchy getHierarchy(Attribute att, ColumnarData data) throws IOException {
+        return getHierarchy(att, null, data);
+    }
+
+    /**
+     * Determines whether the hierarchy of an attribute is generated from
+     * the data because there is no hierarchy file.
+     *
+     * @param att The attribute.
+     * @return Returns true if the hierarchy needs the rows of the data.
+     */
+    public boolean isGenerated(Attribute att) {
+        File f = getFile(att);
+        return !f.exists() && !BinaryHierarchy.getCompiledFile(f).isFile() && att.isNumeric();
+    }
+
+    /**
+     * Describes the settings of the generator of a hierarchy which is
+     * generated from the data. The generated intervals change with the
+     * data, the description only if the hierarchy is generated differently.
+     *
+     * @param att The attribute.
+     * @return The settings or null if the hierarchy is not generated.
+     */
+    public String getGenerator(Attribute att) {
+        if (!isGenerated(att)) {
+            return null;
+        }
+        return "intervals{depth: " + intervalDepth + ", method: " + intervalMethod + "}";
+    }
+
+    private File getFile(Attribute att) {
+        return new File(this.folder, this.relation + "_hierarchy_" + att.name() + ".csv");
+    }
+
+    /**
+     * Determines the file the hierarchy of an attribute is read from, the
+     * compiled file if it is preferred to the CSV file.
+     *
+     * @param att The attribute.
+     * @return The file or null if the hierarchy is created from the attribute or the data.
+     */
+    public File getSource(Attribute att) {
+        File f = getFile(att);
+        File compiled = BinaryHierarchy.getCompiledFile(f);
+        if (compiled.isFile() && (!f.exists() || compiled.lastModified() >= f.lastModified())) {
+            f = compiled;
+        }
+        return f.exists() ? f : null;
+    }
+
+    private Hierarchy getHierarchy(Attribute att, Instances instances, ColumnarData data) throws IOException {
+        File f = getSource(att);
+        if (f != null) {
+            String[][] hierarchy = cache == null ? null : cache.get(f);
+            if (hierarchy == null) {
+                hierarchy = f.getName().endsWith(BinaryHierarchy.EXTENSION)
+                        ? appendMissing(BinaryHierarchy.read(f))
+                        : readHierarchy(f, att);
+                if (cache != null) {
+                    cache.put(f, hierarchy);
                 }
-                hierarchy.add(line);
-            }
-            String[] missingValues = new String[length];
-            for (int i = 0; i < length - 1; i++) {
-                missingValues[i] = "?";
             }
-            missingValues[missingValues.length - 1] = "*";
-            hierarchy.add(missingValues);
-        } else {
-            // check type of attribute
-            if (att.isNominal()) {
-                Enumeration<Object> enumeration = att.enumerateValues();
+            return Hierarchy.create(hierarchy);
+        }
 
-                while (enumeration.hasMoreElements()) {
-                    Object value = enumeration.nextElement();
-                    hierarchy.add(value.toString(), "*");
-                }
-                // add asterisk as highest level of generalization
-                hierarchy.add("?", "*");
-            } else if (att.isNumeric()) {
-                int index = att.index();
-                HashSet<Integer> hashset = new HashSet<Integer>();
-                for (int i = 0; i < instances.numInstances(); i++) {
-                    int value = (int) instances.instance(i).value(index);
-                    if (!hashset.contains(new Integer(value))) {
-                        hierarchy.add(String.valueOf(value), "*");
-                        hashset.add(new Integer(value));
-                    }
+        DefaultHierarchy hierarchy = new DefaultHierarchy();
+        // check type of attribute
+        if (att.isNominal()) {
+            Enumeration<Object> enumeration = att.enumerateValues();
 
-                }
-                // add asterisk as highest level of generalization
-                hierarchy.add("?", "*");
+            while (enumeration.hasMoreElements()) {
+                Object value = enumeration.nextElement();
+                hierarchy.add(value.toString(), "*");
             }
+            // add asterisk as highest level of generalization
+            hierarchy.add("?", "*");
+        } else if (att.isNumeric()) {
+            return Hierarchy.create(data == null ? generateIntervals(att, instances) : generateIntervals(att, data));
         }
 
         return hierarchy;
     }
 
+    /**
+     * Generates an interval hierarchy for a numeric attribute from the data.
+     *
+     * @param att       Numeric attribute for which the hierarchy should be created
+     * @param instances The ARFF instance.
+     * @return The hierarchy as array of rows.
+     */
+    protected String[][] generateIntervals(Attribute att, Instances instances) {
+        int index = att.index();
+        int[] values = new int[instances.numInstances()];
+        int length = 0;
+        for (int i = 0; i < instances.numInstances(); i++) {
+            Instance instance = instances.instance(i);
+            if (!instance.isMissing(index)) {
+                values[length++] = (int) instance.value(index);
+            }
+        }
+        return new IntervalHierarchyGenerator(intervalDepth, intervalMethod).generate(values, length);
+    }
+
+    /**
+     * Generates an interval hierarchy for a numeric attribute from its codes.
+     *
+     * @param att  Numeric attribute for which the hierarchy should be created
+     * @param data The encoded data.
+     * @return The hierarchy as array of rows.
+     */
+    protected String[][] generateIntervals(Attribute att, ColumnarData data) {
+        int index = data.getColumnIndexOf(att.name());
+        String[] dictionary = data.getDictionary(index);
+        int missing = dictionary.length - 1;
+        int[] labels = new int[missing];
+        for (int code = 0; code < missing; code++) {
+            labels[code] = Integer.parseInt(dictionary[code]);
+        }
+        IntBuffer codes = data.getColumnBuffer(index);
+        int[] values = new int[data.getNumRows()];
+        int length = 0;
+        for (int r = 0; r < values.length; r++) {
+            int code = codes.get(r);
+            if (code != missing) {
+                values[length++] = labels[code];
+            }
+        }
+        return new IntervalHierarchyGenerator(intervalDepth, intervalMethod).generate(values, length);
+    }
+
+    /**
+     * Reads a hierarchy file and appends the generalization of missing values.
+     *
+     * @param f   The hierarchy file.
+     * @param att Attribute for which the hierarchy is read
+     * @return The hierarchy as array of rows.
+     * @throws IOException if it was not possible to read the hierarchy file.
+     */
+    protected String[][] readHierarchy(File f, Attribute att) throws IOException {
+        List<String[]> lines = new HierarchyReader(';').read(f);
+        validate(lines, att.name());
+        return appendMissing(lines.toArray(new String[lines.size()][]));
+    }
+
+    /**
+     * Checks that all lines of a hierarchy have the same amount of entries.
+     *
+     * @param lines The lines of the hierarchy.
+     * @param name  Name of the attribute.
+     * @throws IllegalArgumentException if the lengths of the lines differ.
+     */
+    public static void validate(List<String[]> lines, String name) {
+        int length = 0;
+        for (String[] line : lines) {
+            if (length == 0) {
+                length = line.length;
+            } else if (line.length != length) {
+                throw new IllegalArgumentException(
+                        "All lines in a hierarchy for attribute"
+                                + "\"" + name + "\" must have the "
+                                + "same amount of entries. Until now, all had "
+                                + length + " entries and now one with "
+                                + line.length + " entries appeared");
+            }
+        }
+    }
+
+    /**
+     * Appends the generalization of missing values to a hierarchy.
+     *
+     * @param hierarchy The hierarchy as array of rows.
+     * @return The hierarchy with the additional row.
+     */
+    protected static String[][] appendMissing(String[][] hierarchy) {
+        int length = hierarchy.length == 0 ? 0 : hierarchy[0].length;
+        String[] missingValues = new String[length];
+        for (int i = 0; i < length - 1; i++) {
+            missingValues[i] = "?";
+        }
+        missingValues[missingValues.length - 1] = "*";
+        String[][] result = Arrays.copyOf(hierarchy, hierarchy.length + 1);
+        result[hierarchy.length] = missingValues;
+        return result;
+    }
+
+    /**
+     * Sets the depth of generated hierarchies for numeric attributes.
+     *
+     * @param depth Amount of levels including original values and {@code *}.
+     */
+    public void setIntervalDepth(int depth) {
+        this.intervalDepth = depth;
+    }
+
+    /**
+     * @return Depth of generated hierarchies for numeric attributes.
+     */
+    public int getIntervalDepth() {
+        return intervalDepth;
+    }
+
+    /**
+     * Sets the method to determine the intervals of generated hierarchies.
+     *
+     * @param method Method to determine the bounds of the intervals.
+     */
+    public void setIntervalMethod(IntervalHierarchyGenerator.Method method) {
+        this.intervalMethod = method;
+    }
+
+    /**
+     * @return Method to determine the intervals of generated hierarchies.
+     */
+    public IntervalHierarchyGenerator.Method getIntervalMethod() {
+        return intervalMethod;
+    }
+
+    /**
+     * Sets the cache for hierarchies read from files.
+     *
+     * @param cache The cache or null to disable caching.
+     */
+    public void setCache(HierarchyCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return The cache for hierarchies read from files or null.
+     */
+    public HierarchyCache getCache() {
+        return cache;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder("HierarchyFactory{");
@@ -0,0 +1,235 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache for hierarchies read from files. Entries are keyed by
+ * the canonical path, the size and the modification time of the file, so a
+ * changed file is read again. The cache is bounded by the estimated memory
+ * of the cached hierarchies and evicts the least recently used entries first.
+ * All methods are thread-safe.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class HierarchyCache {
+
+    /**
+     * Default capacity in bytes, can be overridden by the system property
+     * {@code arx.hierarchy.cache}.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024L * 1024L;
+
+    private static final HierarchyCache INSTANCE = new HierarchyCache(
+            Long.getLong("arx.hierarchy.cache", DEFAULT_CAPACITY));
+
+    /**
+     * Cached hierarchies in access order.
+     */
+    protected final LinkedHashMap<Key, String[][]> entries = new LinkedHashMap<Key, String[][]>(16, 0.75f, true);
+
+    /**
+     * Estimated memory of every cached hierarchy.
+     */
+    protected final Map<Key, Long> weights = new HashMap<Key, Long>();
+
+    /**
+     * Maximum estimated memory of all cached hierarchies in bytes.
+     */
+    protected long capacity;
+
+    /**
+     * Estimated memory of all cached hierarchies in bytes.
+     */
+    protected long weight = 0;
+
+    /**
+     * Constructor of the cache.
+     *
+     * @param capacity Maximum estimated memory in bytes.
+     */
+    public HierarchyCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The process-wide cache instance.
+     */
+    public static HierarchyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up the hierarchy of a file.
+     *
+     * @param file The hierarchy file.
+     * @return The cached hierarchy or null if the file is not cached or has changed.
+     * @throws IOException if the canonical path cannot be determined.
+     */
+    public String[][] get(File file) throws IOException {
+        Key key = new Key(file);
+        synchronized (this) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+     * Adds the hierarchy of a file to the cache. Older entries of the same
+     * file are removed. Hierarchies larger than the capacity are not cached.
+     *
+     * @param file      The hierarchy file.
+     * @param hierarchy The hierarchy read from the file.
+     * @throws IOException if the canonical path cannot be determined.
+     */
+    public void put(File file, String[][] hierarchy) throws IOException {
+        Key key = new Key(file);
+        long size = weigh(hierarchy);
+        synchronized (this) {
+            Iterator<Key> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                Key other = iterator.next();
+                if (other.path.equals(key.path)) {
+                    iterator.remove();
+                    weight -= weights.remove(other);
+                }
+            }
+            if (size > capacity) {
+                return;
+            }
+            entries.put(key, hierarchy);
+            weights.put(key, size);
+            weight += size;
+            evict();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weights.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return Amount of cached hierarchies.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated memory of all cached hierarchies in bytes.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Maximum estimated memory in bytes.
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum estimated memory and evicts entries if necessary.
+     *
+     * @param capacity Maximum estimated memory in bytes.
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Removes least recently used entries until the capacity is respected.
+     */
+    protected void evict() {
+        Iterator<Map.Entry<Key, String[][]>> iterator = entries.entrySet().iterator();
+        while (weight > capacity && iterator.hasNext()) {
+            Key key = iterator.next().getKey();
+            iterator.remove();
+            weight -= weights.remove(key);
+        }
+    }
+
+    /**
+     * Estimates the memory of a hierarchy. Labels which are shared between
+     * cells are counted once.
+     *
+     * @param hierarchy The hierarchy.
+     * @return Estimated memory in bytes.
+     */
+    protected static long weigh(String[][] hierarchy) {
+        Map<String, Boolean> seen = new IdentityHashMap<String, Boolean>();
+        long size = 16 + 4L * hierarchy.length;
+        for (String[] row : hierarchy) {
+            size += 16 + 4L * row.length;
+            for (String value : row) {
+                if (value != null && seen.put(value, Boolean.TRUE) == null) {
+                    size += 40 + 2L * value.length();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Identifies a version of a hierarchy file.
+     */
+    protected static final class Key {
+
+        final String path;
+        final long length;
+        final long lastModified;
+
+        Key(File file) throws IOException {
+            this.path = file.getCanonicalPath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return path.equals(other.path) && length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
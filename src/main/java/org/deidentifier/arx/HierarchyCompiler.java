@@ -0,0 +1,108 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles the hierarchy files of a folder into {@link BinaryHierarchy}
+ * files next to them, which {@link HierarchyBuilder} prefers to the CSV
+ * files. The hierarchies are validated once while compiling.
+ * <pre>
+ * java org.deidentifier.arx.HierarchyCompiler data/hierarchy
+ * </pre>
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class HierarchyCompiler {
+
+    protected static final String MARKER = "_hierarchy_";
+
+    private HierarchyCompiler() {
+    }
+
+    /**
+     * Compiles all hierarchy files of a folder.
+     *
+     * @param folder The folder containing the files {@code <relation>_hierarchy_<attribute>.csv}.
+     * @return The compiled files.
+     * @throws IOException if a file can not be read or written.
+     */
+    public static List<File> compile(File folder) throws IOException {
+        File[] files = folder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.contains(MARKER) && name.endsWith(".csv");
+            }
+        });
+        if (files == null) {
+            throw new IOException("\"" + folder + "\" is no directory");
+        }
+        Arrays.sort(files);
+        List<File> compiled = new ArrayList<File>(files.length);
+        for (File file : files) {
+            compiled.add(compile(file, new File(folder, BinaryHierarchy.getCompiledFile(file).getName())));
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles a hierarchy file.
+     *
+     * @param csv    The hierarchy file.
+     * @param target The compiled file.
+     * @return The compiled file.
+     * @throws IOException if a file can not be read or written.
+     */
+    public static File compile(File csv, File target) throws IOException {
+        List<String[]> lines = new HierarchyReader(';').read(csv);
+        String name = csv.getName();
+        HierarchyBuilder.validate(lines, name.substring(name.indexOf(MARKER) + MARKER.length(), name.length() - 4));
+        BinaryHierarchy.write(lines, target);
+        return target;
+    }
+
+    /**
+     * Compiles the hierarchy files of the folders given as arguments.
+     *
+     * @param args The folders.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java " + HierarchyCompiler.class.getName() + " <folder> [<folder> ...]");
+            return;
+        }
+        try {
+            for (String arg : args) {
+                for (File file : compile(new File(arg))) {
+                    System.out.println(file.getPath() + " (" + file.length() + " bytes)");
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+        }
+    }
+}
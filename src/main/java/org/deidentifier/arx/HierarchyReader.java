@@ -0,0 +1,338 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads hierarchy files through memory-mapped buffers. Each line is split at
+ * the separator directly on the mapped bytes, and equal cells are interned
+ * before they are decoded, so every distinct label is decoded and stored
+ * only once. Upper levels of large hierarchies consist of few labels which
+ * repeat thousands of times. Every region is unmapped as soon as it is
+ * parsed, so the file is not locked after reading.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class HierarchyReader {
+
+    /**
+     * Maximum size of a mapped region.
+     */
+    protected static final int WINDOW = 1 << 26;
+
+    /**
+     * Size of the mapped regions of this reader.
+     */
+    protected final int window;
+
+    /**
+     * Character set of the hierarchy files.
+     */
+    protected final Charset charset;
+
+    /**
+     * Separator of the cells.
+     */
+    protected final byte separator;
+
+    /**
+     * Interned labels, open addressing by hash of the bytes.
+     */
+    protected byte[][] keys = new byte[1024][];
+
+    protected String[] values = new String[1024];
+
+    protected int size = 0;
+
+    /**
+     * Buffer for the bytes of the current cell.
+     */
+    protected byte[] cell = new byte[256];
+
+    /**
+     * Constructor of the reader, using the platform character set.
+     *
+     * @param separator Separator of the cells.
+     */
+    public HierarchyReader(char separator) {
+        this(separator, Charset.defaultCharset());
+    }
+
+    /**
+     * Constructor of the reader.
+     *
+     * @param separator Separator of the cells, must be an ASCII character.
+     * @param charset   Character set of the files.
+     */
+    public HierarchyReader(char separator, Charset charset) {
+        this(separator, charset, WINDOW);
+    }
+
+    /**
+     * Constructor of the reader with a custom size of the mapped regions.
+     *
+     * @param separator Separator of the cells, must be an ASCII character.
+     * @param charset   Character set of the files.
+     * @param window    Maximum size of a mapped region, limits the length of a line.
+     */
+    protected HierarchyReader(char separator, Charset charset, int window) {
+        if (separator > 127) {
+            throw new IllegalArgumentException("The separator must be an ASCII character");
+        }
+        if (window < 1) {
+            throw new IllegalArgumentException("The size of a mapped region must be positive");
+        }
+        this.separator = (byte) separator;
+        this.charset = charset;
+        this.window = window;
+    }
+
+    /**
+     * Reads all lines of a hierarchy file. Empty lines are skipped.
+     *
+     * @param file The hierarchy file.
+     * @return The lines split into cells.
+     * @throws IOException if it was not possible to read the file.
+     */
+    public List<String[]> read(File file) throws IOException {
+        List<String[]> lines = new ArrayList<String[]>();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            long position = 0;
+            List<String> line = new ArrayList<String>();
+            while (position < length) {
+                int size = (int) Math.min(window, length - position);
+                boolean last = position + size == length;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                int consumed;
+                try {
+                    consumed = parse(buffer, size, last, line, lines, position == 0);
+                } finally {
+                    // all cells have been copied into interned labels
+                    unmap(buffer);
+                }
+                if (consumed == 0) {
+                    throw new IOException("A line in " + file.getAbsolutePath() + " exceeds " + window + " bytes");
+                }
+                position += consumed;
+            }
+        } finally {
+            raf.close();
+        }
+        return lines;
+    }
+
+    /**
+     * Releases a mapped region immediately instead of when it is garbage
+     * collected. Until then, the file can not be deleted or replaced on
+     * Windows. The buffer must not be accessed afterwards. If the JVM does
+     * not allow to release it, the region is left to the garbage collector.
+     *
+     * @param buffer The mapped region.
+     */
+    protected static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                // Java 9 and later
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                // Java 8
+                Method cleaner = buffer.getClass().getMethod("cleaner");
+                cleaner.setAccessible(true);
+                Object clean = cleaner.invoke(buffer);
+                if (clean != null) {
+                    clean.getClass().getMethod("clean").invoke(clean);
+                }
+            }
+        } catch (Exception e) {
+            // left to the garbage collector
+        }
+    }
+
+    /**
+     * Parses the complete lines of a mapped region.
+     *
+     * @param buffer The mapped region.
+     * @param limit  Size of the region.
+     * @param last   Whether the region ends at the end of the file.
+     * @param line   Reusable list for the cells of a line.
+     * @param lines  List which receives the lines.
+     * @param first  Whether the region starts at the beginning of the file.
+     * @return Amount of bytes consumed, up to the end of the last complete line.
+     */
+    protected int parse(MappedByteBuffer buffer, int limit, boolean last,
+                        List<String> line, List<String[]> lines, boolean first) {
+        int start = 0;
+        if (first && limit >= 3 && (buffer.get(0) & 0xff) == 0xef
+                && (buffer.get(1) & 0xff) == 0xbb && (buffer.get(2) & 0xff) == 0xbf) {
+            // skip byte order mark
+            start = 3;
+        }
+        int consumed = 0;
+        int length = 0;
+        line.clear();
+        for (int i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == separator) {
+                line.add(intern(length));
+                length = 0;
+            } else if (b == '\n') {
+                endLine(line, length, lines);
+                length = 0;
+                consumed = i + 1;
+            } else if (b != '\r') {
+                append(b, length++);
+            }
+        }
+        if (last) {
+            endLine(line, length, lines);
+            consumed = limit;
+        }
+        return consumed;
+    }
+
+    /**
+     * Finishes a line. Lines without content are skipped.
+     *
+     * @param line   Cells of the line.
+     * @param length Length of the last cell.
+     * @param lines  List which receives the line.
+     */
+    protected void endLine(List<String> line, int length, List<String[]> lines) {
+        if (!line.isEmpty() || length > 0) {
+            line.add(intern(length));
+            lines.add(line.toArray(new String[line.size()]));
+        }
+        line.clear();
+    }
+
+    /**
+     * Appends a byte to the current cell.
+     *
+     * @param b     The byte.
+     * @param index Position in the cell.
+     */
+    protected void append(byte b, int index) {
+        if (index == cell.length) {
+            byte[] larger = new byte[cell.length * 2];
+            System.arraycopy(cell, 0, larger, 0, cell.length);
+            cell = larger;
+        }
+        cell[index] = b;
+    }
+
+    /**
+     * Returns the label of the current cell, decoding it only if it has not
+     * been seen before.
+     *
+     * @param length Length of the current cell.
+     * @return The interned label.
+     */
+    protected String intern(int length) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ cell[i]) * 0x01000193;
+        }
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (equals(keys[slot], length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        byte[] key = new byte[length];
+        System.arraycopy(cell, 0, key, 0, length);
+        String value = new String(key, charset);
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return value;
+    }
+
+    /**
+     * Compares an interned key with the current cell.
+     *
+     * @param key    The interned key.
+     * @param length Length of the current cell.
+     * @return Returns true if both contain the same bytes.
+     */
+    protected boolean equals(byte[] key, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != cell[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the intern table.
+     */
+    protected void rehash() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key != null) {
+                int hash = 0x811c9dc5;
+                for (byte b : key) {
+                    hash = (hash ^ b) * 0x01000193;
+                }
+                int slot = hash & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.nio.IntBuffer;
+
+/**
+ * Information loss of transformations, evaluated on the equivalence classes
+ * which {@link TransformationChecker} computes for the check anyway. The
+ * frequencies of the values of every quasi-identifier are counted once, and
+ * the entropy loss of every column on every level is derived from them
+ * once, so the loss of a node is a sum of cached column terms. Only the
+ * suppressed rows of a node are visited, as they lose all information.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class InformationLoss {
+
+    /**
+     * The metrics, lower values are better.
+     */
+    public enum Metric {
+        HEIGHT,              // sum of the levels
+        PRECISION,           // average relative level of the cells, 1 for suppressed cells
+        DISCERNIBILITY,      // sum of the squared class sizes, rows for each suppressed row
+        NON_UNIFORM_ENTROPY, // bits lost by generalizing the values, all bits for suppressed cells
+        AECS                 // average class size, the suppressed rows forming one class
+    }
+
+    protected final Metric metric;
+
+    protected final int rows;
+
+    protected final int[] heights;
+
+    protected final IntBuffer[] qiColumns;
+
+    /**
+     * Entropy loss of a row by quasi-identifier, level and input code.
+     */
+    protected final double[][][] rowEntropy;
+
+    /**
+     * Entropy loss of all rows by quasi-identifier and level.
+     */
+    protected final double[][] columnEntropy;
+
+    /**
+     * Constructor of the metric. The entropy tables are computed once from
+     * the encoded data of the checker.
+     *
+     * @param metric  The metric.
+     * @param checker The checker whose data is evaluated.
+     */
+    public InformationLoss(Metric metric, TransformationChecker checker) {
+        this.metric = metric;
+        this.rows = checker.rows;
+        this.heights = checker.getHeights();
+        this.qiColumns = checker.qiColumns;
+        int qis = heights.length;
+        this.rowEntropy = new double[qis][][];
+        this.columnEntropy = new double[qis][];
+        if (metric != Metric.NON_UNIFORM_ENTROPY) {
+            return;
+        }
+        for (int q = 0; q < qis; q++) {
+            int[][] mappings = checker.mappings[q];
+            double[] counts = new double[mappings[0].length];
+            for (int r = 0; r < rows; r++) {
+                counts[qiColumns[q].get(r)]++;
+            }
+            rowEntropy[q] = new double[heights[q]][counts.length];
+            columnEntropy[q] = new double[heights[q]];
+            for (int level = 0; level < heights[q]; level++) {
+                double[] generalized = new double[checker.domains[q][level]];
+                for (int code = 0; code < counts.length; code++) {
+                    if (mappings[level][code] >= 0) {
+                        generalized[mappings[level][code]] += counts[code];
+                    }
+                }
+                for (int code = 0; code < counts.length; code++) {
+                    if (counts[code] > 0) {
+                        double loss = -Math.log(counts[code] / generalized[mappings[level][code]]) / Math.log(2);
+                        rowEntropy[q][level][code] = loss;
+                        columnEntropy[q][level] += counts[code] * loss;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates a transformation.
+     *
+     * @param levels     Level of generalization for every quasi-identifier.
+     * @param evaluation The classes of the transformation.
+     * @return The information loss.
+     */
+    protected double evaluate(int[] levels, TransformationChecker.Evaluation evaluation) {
+        int suppressed = evaluation.suppressed;
+        switch (metric) {
+            case PRECISION:
+                return precision(levels, heights, rows, suppressed);
+            case DISCERNIBILITY: {
+                double loss = (double) suppressed * rows;
+                for (int c = 0; c < evaluation.sizes.length; c++) {
+                    if (!evaluation.failing[c]) {
+                        loss += (double) evaluation.sizes[c] * evaluation.sizes[c];
+                    }
+                }
+                return loss;
+            }
+            case NON_UNIFORM_ENTROPY: {
+                double loss = 0d;
+                for (int q = 0; q < levels.length; q++) {
+                    loss += columnEntropy[q][levels[q]];
+                }
+                if (suppressed > 0) {
+                    for (int r = 0; r < rows; r++) {
+                        if (evaluation.failing[evaluation.classOf[r]]) {
+                            for (int q = 0; q < levels.length; q++) {
+                                int code = qiColumns[q].get(r);
+                                loss += rowEntropy[q][heights[q] - 1][code] - rowEntropy[q][levels[q]][code];
+                            }
+                        }
+                    }
+                }
+                return loss;
+            }
+            case AECS: {
+                int classes = suppressed > 0 ? 1 : 0;
+                for (boolean failing : evaluation.failing) {
+                    if (!failing) {
+                        classes++;
+                    }
+                }
+                return classes == 0 ? 0d : (double) rows / classes;
+            }
+            default:
+                double height = 0d;
+                for (int level : levels) {
+                    height += level;
+                }
+                return height;
+        }
+    }
+
+    /**
+     * Computes the precision loss of a transformation: the average relative
+     * level of the cells of the quasi-identifiers, suppressed rows losing
+     * all information.
+     *
+     * @param levels     Level of generalization for every quasi-identifier.
+     * @param heights    Amount of levels of every quasi-identifier.
+     * @param rows       Amount of rows.
+     * @param suppressed Amount of suppressed rows.
+     * @return The loss between 0 and 1.
+     */
+    public static double precision(int[] levels, int[] heights, int rows, int suppressed) {
+        double generalization = 0d;
+        for (int q = 0; q < levels.length; q++) {
+            generalization += heights[q] > 1 ? levels[q] / (double) (heights[q] - 1) : 0d;
+        }
+        double perRow = levels.length == 0 ? 0d : generalization / levels.length;
+        return rows == 0 ? 0d : ((rows - suppressed) * perRow + suppressed) / rows;
+    }
+
+    /**
+     * @return The metric.
+     */
+    public Metric getMetric() {
+        return metric;
+    }
+}
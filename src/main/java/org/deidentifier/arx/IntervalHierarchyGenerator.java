@@ -0,0 +1,179 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.util.Arrays;
+
+/**
+ * Generates multi-level interval hierarchies for numeric attributes.
+ * The values are sorted once, the finest interval level is computed from
+ * the sorted values and every coarser level merges two neighbouring
+ * intervals of the level below. A hierarchy of depth {@code d} has the
+ * original values on level 0, {@code d - 2} interval levels and
+ * {@code *} on the highest level, so a depth of 2 yields the flat
+ * {@code value -> *} hierarchy.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class IntervalHierarchyGenerator {
+
+    /**
+     * Methods to determine the bounds of the intervals.
+     */
+    public enum Method {
+        EQUAL_WIDTH, // intervals cover equal ranges of values
+        QUANTILE     // intervals cover equal amounts of rows
+    }
+
+    /**
+     * Minimum depth of a hierarchy.
+     */
+    public static final int MIN_DEPTH = 2;
+
+    /**
+     * Maximum depth of a hierarchy.
+     */
+    public static final int MAX_DEPTH = 16;
+
+    protected final int depth;
+
+    protected final Method method;
+
+    /**
+     * Constructor of the generator.
+     *
+     * @param depth  Amount of levels including original values and {@code *}.
+     * @param method Method to determine the bounds of the intervals.
+     */
+    public IntervalHierarchyGenerator(int depth, Method method) {
+        if (depth < MIN_DEPTH || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("The depth of a hierarchy must be between "
+                    + MIN_DEPTH + " and " + MAX_DEPTH + ", but was " + depth);
+        }
+        this.depth = depth;
+        this.method = method;
+    }
+
+    /**
+     * Generates a hierarchy for the given values. The last row generalizes
+     * missing values.
+     *
+     * @param values Array with values, will be sorted in place.
+     * @param length Amount of values to consider.
+     * @return The hierarchy as array of rows.
+     */
+    public String[][] generate(int[] values, int length) {
+        Arrays.sort(values, 0, length);
+
+        // distinct values and their amounts
+        int[] distinct = new int[length];
+        int[] counts = new int[length];
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || distinct[size - 1] != values[i]) {
+                distinct[size] = values[i];
+                size++;
+            }
+            counts[size - 1]++;
+        }
+        return generate(distinct, counts, size);
+    }
+
+    /**
+     * Generates a hierarchy for distinct values and their amounts, e.g.
+     * counted while streaming data which does not fit into the heap. The
+     * last row generalizes missing values.
+     *
+     * @param distinct The distinct values in ascending order.
+     * @param counts   Amount of rows of every distinct value.
+     * @param size     Amount of distinct values to consider.
+     * @return The hierarchy as array of rows.
+     */
+    public String[][] generate(int[] distinct, int[] counts, int size) {
+        // amount of smaller values of every distinct value
+        long[] before = new long[size];
+        long length = 0;
+        for (int i = 0; i < size; i++) {
+            before[i] = length;
+            length += counts[i];
+        }
+
+        // interval of every distinct value on the finest level
+        int bins = 1 << (depth - 2);
+        int[] bin = new int[size];
+        if (size > 0) {
+            long min = distinct[0];
+            double width = (distinct[size - 1] - min + 1) / (double) bins;
+            for (int i = 0; i < size; i++) {
+                int b;
+                if (method == Method.QUANTILE) {
+                    b = (int) (before[i] * bins / length);
+                } else {
+                    b = (int) ((distinct[i] - min) / width);
+                }
+                bin[i] = Math.min(b, bins - 1);
+            }
+        }
+
+        String[][] hierarchy = new String[size + 1][depth];
+        String top = "*";
+        for (int level = 1; level < depth - 1; level++) {
+            int shift = level - 1;
+            int first = 0;
+            while (first < size) {
+                int group = bin[first] >> shift;
+                int last = first;
+                while (last + 1 < size && (bin[last + 1] >> shift) == group) {
+                    last++;
+                }
+                String label = distinct[first] + "-" + distinct[last];
+                for (int i = first; i <= last; i++) {
+                    hierarchy[i][level] = label;
+                }
+                first = last + 1;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            hierarchy[i][0] = String.valueOf(distinct[i]);
+            hierarchy[i][depth - 1] = top;
+        }
+
+        String[] missing = hierarchy[size];
+        for (int level = 0; level < depth - 1; level++) {
+            missing[level] = ColumnarData.MISSING;
+        }
+        missing[depth - 1] = top;
+        return hierarchy;
+    }
+
+    /**
+     * @return Amount of levels including original values and {@code *}.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Method to determine the bounds of the intervals.
+     */
+    public Method getMethod() {
+        return method;
+    }
+}
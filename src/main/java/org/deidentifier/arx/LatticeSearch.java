@@ -0,0 +1,723 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Searches the generalization lattice for the anonymous transformation
+ * with the lowest sum of levels, which is the optimum of the height metric.
+ * If the criteria are monotonic, i.e. every successor of an anonymous node
+ * is anonymous, the search is a binary search over the heights of the
+ * lattice like the Flash algorithm of ARX: a level is probed for an
+ * anonymous node, and the search continues below it if one is found and
+ * above it otherwise. Nodes are tagged predictively, every predecessor of a
+ * node which is not anonymous is skipped without checking it. Without
+ * suppression all criteria are monotonic, with suppression only
+ * k-anonymity and distinct l-diversity; otherwise the levels are searched
+ * one after another from the bottom.
+ * <p>
+ * The nodes of a level are enumerated lazily in lexicographic order and
+ * checked concurrently by a fixed amount of threads, each taking the next
+ * unchecked node of the level. Once an anonymous node has been found, nodes
+ * behind it are skipped. All nodes in front of it are always checked, so
+ * the result is the lexicographically smallest node of the lowest anonymous
+ * level for any amount of threads and workers. ARX returns a node of the
+ * same height, but on ties it chooses the first node evaluated by its own
+ * traversal, which may be another one.
+ * <p>
+ * With a time budget the search works as anytime algorithm. It first
+ * descends greedily from the top of the lattice to a minimal anonymous node,
+ * which becomes the best node found so far, and then searches below the
+ * height of that node. If the budget expires, the best node found so far is
+ * returned and {@link #isOptimal()} returns false.
+ * <p>
+ * If the checker evaluates another metric than the height (see
+ * {@link TransformationChecker#withMetric}), the search visits all levels
+ * and returns the anonymous node with the lowest loss, see
+ * {@link #searchMinimal}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class LatticeSearch {
+
+    protected final TransformationChecker checker;
+
+    protected final int threads;
+
+    /**
+     * Amount of levels of every quasi-identifier.
+     */
+    protected final int[] heights;
+
+    /**
+     * Amount of checked nodes.
+     */
+    protected final AtomicInteger checked = new AtomicInteger();
+
+    /**
+     * Time budget in milliseconds, 0 for no limit.
+     */
+    protected long maxTime = 0;
+
+    /**
+     * Time in milliseconds at which the budget expires.
+     */
+    protected volatile long deadline = Long.MAX_VALUE;
+
+    /**
+     * Whether the result of the last search is proven to be optimal.
+     */
+    protected volatile boolean optimal = true;
+
+    /**
+     * Whether all nodes in front of the result of the last checked level
+     * have been checked.
+     */
+    protected volatile boolean complete = true;
+
+    /**
+     * Nodes which are not anonymous and have no checked successor which is
+     * not anonymous. Their predecessors are not anonymous either, if the
+     * criteria are monotonic.
+     */
+    protected final List<int[]> failed = new ArrayList<int[]>();
+
+    /**
+     * Amount of nodes per thread which the metric search enumerates and
+     * checks at once.
+     */
+    protected static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Constructor of the search.
+     *
+     * @param checker The checker of the transformations.
+     * @param threads Amount of threads checking nodes concurrently.
+     * @throws IllegalArgumentException if the lattice has more than {@link Long#MAX_VALUE} nodes.
+     */
+    public LatticeSearch(TransformationChecker checker, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The amount of threads must be at least 1");
+        }
+        this.checker = checker;
+        this.threads = threads;
+        this.heights = checker.getHeights();
+        long size = 1;
+        for (int height : heights) {
+            if (size > Long.MAX_VALUE / height) {
+                throw new IllegalArgumentException("The lattice of " + heights.length
+                        + " quasi-identifiers has more than " + Long.MAX_VALUE + " nodes");
+            }
+            size *= height;
+        }
+    }
+
+    /**
+     * Searches the optimal transformation. If the time budget expires, the
+     * best transformation found so far is returned.
+     *
+     * @return The result of the optimal (or best found) transformation or null if no transformation is anonymous.
+     * @throws InterruptedException if the search has been interrupted.
+     */
+    public TransformationChecker.Result search() throws InterruptedException {
+        int maxHeight = 0;
+        for (int height : heights) {
+            maxHeight += height - 1;
+        }
+        deadline = maxTime > 0 ? System.currentTimeMillis() + maxTime : Long.MAX_VALUE;
+        optimal = true;
+        failed.clear();
+        TransformationChecker.Result best = null;
+        if (maxTime > 0) {
+            best = descend();
+            if (best != null && !isMetricSearch()) {
+                maxHeight = height(best.getLevels());
+            }
+        }
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            if (isMetricSearch()) {
+                return searchMinimal(maxHeight, best, executor);
+            }
+            if (isMonotonic()) {
+                return searchBinary(maxHeight, best, executor);
+            }
+            for (int height = 0; height <= maxHeight; height++) {
+                TransformationChecker.Result result = checkLevel(height, executor, false);
+                if (!complete) {
+                    // the budget expired before all nodes in front of the result were checked
+                    optimal = false;
+                    return result != null ? result : best;
+                }
+                if (result != null) {
+                    return result;
+                }
+            }
+            return best;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Searches the lowest anonymous level by binary search over the heights
+     * of the lattice. Every level above an anonymous level contains an
+     * anonymous successor, so the levels with an anonymous node form a
+     * suffix of all levels.
+     *
+     * @param maxHeight The highest level.
+     * @param best      The anonymous node found by the descent or null.
+     * @param executor  The executor or null to check in the calling thread.
+     * @return The result of the lexicographically smallest node of the lowest anonymous level or null.
+     * @throws InterruptedException if the search has been interrupted.
+     */
+    protected TransformationChecker.Result searchBinary(int maxHeight, TransformationChecker.Result best,
+                                                        ExecutorService executor) throws InterruptedException {
+        // whether best is the first anonymous node of its level
+        boolean first = false;
+        if (best == null) {
+            if (maxTime > 0) {
+                // the descent found the top not to be anonymous
+                return null;
+            }
+            best = check(top());
+            if (!best.isAnonymous()) {
+                return null;
+            }
+            first = true;
+        }
+        int low = 0;
+        int high = height(best.getLevels());
+        while (low < high || !first) {
+            int height = low < high ? (low + high) >>> 1 : high;
+            TransformationChecker.Result result = checkLevel(height, executor, true);
+            if (!complete) {
+                optimal = false;
+                return result != null ? result : best;
+            }
+            if (result != null) {
+                best = result;
+                high = height;
+                first = true;
+            } else if (height == high) {
+                // a subclass answered the descent inconsistently
+                optimal = false;
+                return best;
+            } else {
+                low = height + 1;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Returns true if every successor of an anonymous node is anonymous.
+     */
+    protected boolean isMonotonic() {
+        PrivacyCriteria criteria = checker.getCriteria();
+        if (criteria.getMaxOutliers() <= 0) {
+            return true;
+        }
+        // rows in classes which fulfill these criteria stay in such classes when classes are merged
+        return criteria.getT() <= 0
+                && (criteria.getL() <= 0 || criteria.getLVariant() == PrivacyCriteria.LVariant.DISTINCT);
+    }
+
+    /**
+     * Checks the nodes of one level of the lattice in lexicographic order
+     * until the first anonymous node.
+     *
+     * @param height   The sum of levels of the nodes.
+     * @param executor The executor or null to check in the calling thread.
+     * @param tagging  Whether to skip predecessors of nodes which are not
+     *                 anonymous and to remember the nodes which are not
+     *                 anonymous, see {@link #failed}.
+     * @return The result of the first anonymous node or null.
+     * @throws InterruptedException if the search has been interrupted.
+     */
+    protected TransformationChecker.Result checkLevel(int height, ExecutorService executor, final boolean tagging)
+            throws InterruptedException {
+        final Nodes nodes = new Nodes(height);
+        final List<int[]> tags = tagging ? new ArrayList<int[]>(failed) : null;
+        final AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong skipped = new AtomicLong(Long.MAX_VALUE);
+        final AtomicReference<TransformationChecker.Result> found = new AtomicReference<TransformationChecker.Result>();
+        final List<int[]> levelFailed = Collections.synchronizedList(new ArrayList<int[]>());
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                int[][] next = new int[1][];
+                while (true) {
+                    long i;
+                    synchronized (nodes) {
+                        i = nodes.index;
+                        if (i >= first.get() || nodes.next(next) == 0) {
+                            return;
+                        }
+                    }
+                    int[] node = next[0];
+                    if (tagging && isTaggedFailed(node, tags)) {
+                        continue;
+                    }
+                    if (isExpired()) {
+                        // no other thread takes a node behind this one
+                        minimize(skipped, i);
+                        return;
+                    }
+                    TransformationChecker.Result result = check(node);
+                    if (result.isAnonymous()) {
+                        synchronized (found) {
+                            if (i < first.get()) {
+                                first.set(i);
+                                found.set(result);
+                            }
+                        }
+                    } else if (tagging) {
+                        levelFailed.add(node);
+                    }
+                }
+            }
+        };
+
+        if (executor == null) {
+            task.run();
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+            for (int t = 0; t < threads; t++) {
+                tasks.add(Executors.callable(task, (Void) null));
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause()
+                            : new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        complete = skipped.get() == Long.MAX_VALUE || skipped.get() >= first.get();
+        if (tagging) {
+            for (int[] node : levelFailed) {
+                tagFailed(node);
+            }
+        }
+        return found.get();
+    }
+
+    /**
+     * Lowers an atomic value to the given value if it is smaller.
+     */
+    private static void minimize(AtomicLong value, long candidate) {
+        long current = value.get();
+        while (candidate < current && !value.compareAndSet(current, candidate)) {
+            current = value.get();
+        }
+    }
+
+    /**
+     * Determines whether a node is a predecessor of a node which is not
+     * anonymous, i.e. it is not higher on any quasi-identifier.
+     */
+    private static boolean isTaggedFailed(int[] node, List<int[]> tags) {
+        for (int[] tag : tags) {
+            if (isPredecessor(node, tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers a node which is not anonymous and forgets the nodes which
+     * are predecessors of it.
+     */
+    private void tagFailed(int[] node) {
+        for (Iterator<int[]> iterator = failed.iterator(); iterator.hasNext(); ) {
+            if (isPredecessor(iterator.next(), node)) {
+                iterator.remove();
+            }
+        }
+        failed.add(node);
+    }
+
+    /**
+     * @return Returns true if no level of the node is higher than the level of the other node.
+     */
+    private static boolean isPredecessor(int[] node, int[] other) {
+        for (int q = 0; q < node.length; q++) {
+            if (node[q] > other[q]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns true if the checker evaluates another metric than the height.
+     */
+    protected boolean isMetricSearch() {
+        InformationLoss loss = checker.getInformationLoss();
+        return loss != null && loss.getMetric() != InformationLoss.Metric.HEIGHT;
+    }
+
+    /**
+     * Searches the anonymous node with the lowest loss. The levels are
+     * traversed from the bottom. Without suppression all metrics are
+     * monotonic, so the optimum is a minimal anonymous node, which has no
+     * anonymous predecessor: nodes with an anonymous predecessor are
+     * anonymous as well and are tagged without checking them. With
+     * suppression a successor may suppress fewer rows and lose less
+     * information, so every node is checked. On equal loss the lower, then
+     * the lexicographically smaller node wins.
+     *
+     * @param maxHeight The highest level.
+     * @param best      The best node found so far or null.
+     * @param executor  The executor or null to check in the calling thread.
+     * @return The result of the best node or null if no node is anonymous.
+     * @throws InterruptedException if the search has been interrupted.
+     */
+    protected TransformationChecker.Result searchMinimal(int maxHeight, TransformationChecker.Result best,
+                                                         ExecutorService executor) throws InterruptedException {
+        boolean minimal = checker.getCriteria().getMaxOutliers() <= 0;
+        Set<Long> anonymous = new HashSet<Long>();
+        int[][] chunk = new int[CHUNK_SIZE * threads][];
+        for (int height = 0; height <= maxHeight; height++) {
+            Nodes nodes = new Nodes(height);
+            for (int length = nodes.next(chunk); length > 0; length = nodes.next(chunk)) {
+                List<int[]> candidates = new ArrayList<int[]>(length);
+                for (int c = 0; c < length; c++) {
+                    if (minimal && hasAnonymousPredecessor(chunk[c], anonymous)) {
+                        anonymous.add(key(chunk[c]));
+                    } else {
+                        candidates.add(chunk[c]);
+                    }
+                }
+                for (TransformationChecker.Result result : checkAll(candidates, executor)) {
+                    if (result == null) {
+                        optimal = false;
+                        return best;
+                    }
+                    if (result.isAnonymous()) {
+                        anonymous.add(key(result.getLevels()));
+                        if (Double.isNaN(result.getLoss())) {
+                            // answered by a subclass without evaluating the classes
+                            checked.incrementAndGet();
+                            result = checker.check(result.getLevels());
+                        }
+                        if (best == null || result.getLoss() < best.getLoss()) {
+                            best = result;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks all given nodes.
+     *
+     * @param nodes    The nodes.
+     * @param executor The executor or null to check in the calling thread.
+     * @return The results, null for nodes skipped because the budget expired.
+     * @throws InterruptedException if the search has been interrupted.
+     */
+    protected TransformationChecker.Result[] checkAll(final List<int[]> nodes, ExecutorService executor)
+            throws InterruptedException {
+        final TransformationChecker.Result[] results = new TransformationChecker.Result[nodes.size()];
+        final AtomicInteger next = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = next.getAndIncrement(); i < results.length && !isExpired(); i = next.getAndIncrement()) {
+                    results[i] = check(nodes.get(i));
+                }
+            }
+        };
+        if (executor == null) {
+            task.run();
+            return results;
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+        for (int t = 0; t < threads; t++) {
+            tasks.add(Executors.callable(task, (Void) null));
+        }
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Determines whether a direct predecessor of a node is anonymous.
+     */
+    private boolean hasAnonymousPredecessor(int[] node, Set<Long> anonymous) {
+        for (int q = 0; q < node.length; q++) {
+            if (node[q] > 0) {
+                node[q]--;
+                boolean found = anonymous.contains(key(node));
+                node[q]++;
+                if (found) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a node as mixed radix number of its levels, which is unique
+     * because the constructor rejects lattices with more nodes than a long
+     * can number.
+     *
+     * @param node Level of generalization for every quasi-identifier.
+     * @return The key of the node.
+     */
+    protected long key(int[] node) {
+        long key = 0;
+        for (int q = 0; q < node.length; q++) {
+            key = key * heights[q] + node[q];
+        }
+        return key;
+    }
+
+    /**
+     * Checks a node. Subclasses may answer from earlier results. This
+     * method is called concurrently by the threads of the search.
+     *
+     * @param node Level of generalization for every quasi-identifier.
+     * @return The result of the check.
+     */
+    protected TransformationChecker.Result check(int[] node) {
+        checked.incrementAndGet();
+        return checker.check(node);
+    }
+
+    /**
+     * Descends greedily from the top of the lattice. The quasi-identifiers
+     * are lowered in turns, so the levels stay balanced: the next anonymous
+     * predecessor becomes the current node until no predecessor is
+     * anonymous or the budget expires.
+     *
+     * @return The result of the lowest anonymous node found or null if the top is not anonymous.
+     */
+    protected TransformationChecker.Result descend() {
+        int[] node = top();
+        TransformationChecker.Result current = check(node);
+        if (!current.isAnonymous()) {
+            return null;
+        }
+        // amount of quasi-identifiers tried in a row without descending
+        int failed = 0;
+        for (int q = 0; failed < node.length && !isExpired(); q = (q + 1) % node.length) {
+            failed++;
+            if (node[q] > 0) {
+                node[q]--;
+                TransformationChecker.Result result = check(node);
+                if (result.isAnonymous()) {
+                    current = result;
+                    failed = 0;
+                } else {
+                    node[q]++;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return Returns true if the time budget has expired.
+     */
+    protected boolean isExpired() {
+        return System.currentTimeMillis() > deadline;
+    }
+
+    private static int height(int[] levels) {
+        int height = 0;
+        for (int level : levels) {
+            height += level;
+        }
+        return height;
+    }
+
+    /**
+     * @return The node with the highest level of every quasi-identifier.
+     */
+    protected int[] top() {
+        int[] node = new int[heights.length];
+        for (int q = 0; q < heights.length; q++) {
+            node[q] = heights[q] - 1;
+        }
+        return node;
+    }
+
+    /**
+     * Lazy enumeration of the nodes with a given sum of levels in
+     * lexicographic order, so a level never has to be held in memory.
+     * Instances are not thread-safe.
+     */
+    protected class Nodes {
+
+        /**
+         * The current node, null before the first and after the last node.
+         */
+        private int[] node;
+
+        private final int height;
+
+        /**
+         * Index of the next node.
+         */
+        protected long index = 0;
+
+        private boolean done = false;
+
+        protected Nodes(int height) {
+            this.height = height;
+        }
+
+        /**
+         * Fills an array with the next nodes.
+         *
+         * @param chunk The array which receives copies of the nodes.
+         * @return Amount of nodes written, 0 after the last node.
+         */
+        protected int next(int[][] chunk) {
+            int length = 0;
+            while (length < chunk.length && advance()) {
+                chunk[length++] = node.clone();
+            }
+            index += length;
+            return length;
+        }
+
+        /**
+         * Moves to the next node.
+         *
+         * @return Returns false after the last node.
+         */
+        private boolean advance() {
+            if (done) {
+                return false;
+            }
+            if (node == null) {
+                node = new int[heights.length];
+                done = !fill(0, height);
+                return !done;
+            }
+            // raise the rightmost level which can be raised, so the levels behind it can be lowered
+            int rest = node[heights.length - 1];
+            for (int q = heights.length - 2; q >= 0; q--) {
+                if (node[q] < heights[q] - 1 && rest > 0 && fill(q + 1, rest - 1)) {
+                    node[q]++;
+                    return true;
+                }
+                rest += node[q];
+            }
+            done = true;
+            return false;
+        }
+
+        /**
+         * Assigns the lexicographically smallest levels from the given
+         * quasi-identifier on, which sum up to the remaining height.
+         *
+         * @return Returns false if the remaining height can not be reached.
+         */
+        private boolean fill(int from, int remaining) {
+            int capacity = 0;
+            for (int q = from; q < heights.length; q++) {
+                capacity += heights[q] - 1;
+            }
+            if (remaining < 0 || remaining > capacity) {
+                return false;
+            }
+            for (int q = from; q < heights.length; q++) {
+                capacity -= heights[q] - 1;
+                node[q] = Math.max(0, remaining - capacity);
+                remaining -= node[q];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return Amount of nodes checked so far.
+     */
+    public int getChecked() {
+        return checked.get();
+    }
+
+    /**
+     * Sets the time budget of the search.
+     *
+     * @param maxTime Time budget in milliseconds, 0 for no limit.
+     */
+    public void setMaxTime(long maxTime) {
+        if (maxTime < 0) {
+            throw new IllegalArgumentException("The time budget must not be negative");
+        }
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * @return Time budget in milliseconds, 0 for no limit.
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * @return Returns true if the result of the last search is proven to be optimal.
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * @return Amount of threads checking nodes concurrently.
+     */
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Worker processes of a {@link DistributedSearch} on the local machine.
+ * Every process is a JVM with the class path of the current one which runs
+ * a {@link SearchWorker} on a free port of the loopback address and exits
+ * after its first authenticated coordinator. The processes receive the
+ * shared token on their standard input, so other users of the machine can
+ * neither read it from the process list nor take over a worker by
+ * connecting to its port first.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class LocalWorkers {
+
+    protected final List<Process> processes = new ArrayList<Process>();
+
+    protected final List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+
+    /**
+     * Starts worker processes and waits until all of them listen.
+     *
+     * @param count Amount of processes.
+     * @param heap  Maximum heap of every process in megabytes, 0 for the default of the JVM.
+     * @param token The shared token, see {@link SearchWorker#generateToken()}.
+     * @return The processes.
+     * @throws IOException if a process can not be started or does not report its port.
+     */
+    public static LocalWorkers start(int count, int heap, String token) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("The amount of workers must be at least 1");
+        }
+        LocalWorkers workers = new LocalWorkers();
+        try {
+            for (int i = 0; i < count; i++) {
+                workers.startProcess(heap, token);
+            }
+        } catch (IOException e) {
+            workers.close();
+            throw e;
+        }
+        return workers;
+    }
+
+    /**
+     * Starts one process and reads its port.
+     */
+    protected void startProcess(int heap, String token) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        if (heap > 0) {
+            command.add("-Xmx" + heap + "m");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SearchWorker.class.getName());
+        command.add("-port");
+        command.add("0");
+        command.add("-bind");
+        command.add("127.0.0.1");
+        command.add("-once");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        processes.add(process);
+        Writer input = new OutputStreamWriter(process.getOutputStream(), "UTF-8");
+        input.write(token);
+        input.write('\n');
+        input.close();
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line = reader.readLine();
+        if (line == null || !line.startsWith(SearchWorker.LISTENING)) {
+            throw new IOException("The worker process did not start: " + line);
+        }
+        addresses.add(new InetSocketAddress("127.0.0.1",
+                Integer.parseInt(line.substring(SearchWorker.LISTENING.length()).trim())));
+
+        // drains the output, so the process never blocks on a full pipe
+        Thread drain = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (reader.readLine() != null) {
+                        // discarded
+                    }
+                } catch (IOException e) {
+                    // the process has ended
+                }
+            }
+        }, "SearchWorker output");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    /**
+     * @return The addresses of the processes.
+     */
+    public List<InetSocketAddress> getAddresses() {
+        return Collections.unmodifiableList(addresses);
+    }
+
+    /**
+     * Stops all processes which have not exited yet.
+     */
+    public void close() {
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+/**
+ * Open addressing hash map from long keys to consecutive int identifiers,
+ * used to number equivalence classes without boxing.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class LongIntHashMap {
+
+    protected long[] keys;
+
+    protected int[] values;
+
+    protected boolean[] used;
+
+    protected int size = 0;
+
+    /**
+     * Constructor of the map.
+     *
+     * @param expected Expected amount of keys.
+     */
+    public LongIntHashMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2 && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    /**
+     * Returns the identifier of a key. Unknown keys get the next free identifier.
+     *
+     * @param key The key.
+     * @return The identifier of the key.
+     */
+    public int index(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = size++;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the identifier of a key.
+     *
+     * @param key The key.
+     * @return The identifier of the key or -1 if it is unknown.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Amount of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the capacity of the map.
+     */
+    protected void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key.
+     *
+     * @param key The key.
+     * @return The hash of the key.
+     */
+    protected static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.deidentifier.arx.criteria.DistinctLDiversity;
+import org.deidentifier.arx.criteria.EntropyLDiversity;
+import org.deidentifier.arx.criteria.EqualDistanceTCloseness;
+import org.deidentifier.arx.criteria.KAnonymity;
+
+/**
+ * The privacy criteria of an anonymization and the allowed amount of
+ * suppressed rows. A disabled criterion has the value 0.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class PrivacyCriteria implements Serializable {
+
+    private static final long serialVersionUID = -4511236542396331722L;
+
+    /**
+     * Tolerance for the rounding of the entropy, e.g. the entropy of three
+     * equally frequent values is slightly below log(3).
+     */
+    public static final double ENTROPY_TOLERANCE = 1e-9;
+
+    /**
+     * Variants of l-diversity.
+     */
+    public enum LVariant {
+        DISTINCT, // distinct l-diversity
+        ENTROPY   // entropy l-diversity
+    }
+
+    protected final int k;
+
+    protected final int l;
+
+    protected final LVariant lVariant;
+
+    protected final double t;
+
+    protected final String[] sensitive;
+
+    protected final double maxOutliers;
+
+    /**
+     * Constructor of the criteria.
+     *
+     * @param k           Parameter k for k-anonymity, 0 if disabled.
+     * @param l           Parameter l for l-diversity, 0 if disabled.
+     * @param lVariant    Variant of l-diversity.
+     * @param t           Parameter t for equal distance t-closeness, 0 if disabled.
+     * @param sensitive   The sensitive attributes.
+     * @param maxOutliers Maximum relative amount of suppressed rows.
+     */
+    public PrivacyCriteria(int k, int l, LVariant lVariant, double t, String[] sensitive, double maxOutliers) {
+        this.k = k;
+        this.l = l;
+        this.lVariant = lVariant;
+        this.t = t;
+        this.sensitive = sensitive;
+        this.maxOutliers = maxOutliers;
+    }
+
+    /**
+     * Adds the criteria to an ARX configuration.
+     *
+     * @param config The configuration.
+     */
+    public void configure(ARXConfiguration config) {
+        config.setMaxOutliers(maxOutliers);
+        if (k > 0) {
+            config.addCriterion(new KAnonymity(k));
+        }
+        if (l > 0) {
+            for (String attr : sensitive) {
+                if (lVariant == LVariant.ENTROPY) {
+                    config.addCriterion(new EntropyLDiversity(attr, l));
+                } else {
+                    config.addCriterion(new DistinctLDiversity(attr, l));
+                }
+            }
+        }
+        if (t > 0) {
+            for (String attr : sensitive) {
+                config.addCriterion(new EqualDistanceTCloseness(attr, t));
+            }
+        }
+    }
+
+    /**
+     * @return Parameter k for k-anonymity, 0 if disabled.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return Parameter l for l-diversity, 0 if disabled.
+     */
+    public int getL() {
+        return l;
+    }
+
+    /**
+     * @return Variant of l-diversity.
+     */
+    public LVariant getLVariant() {
+        return lVariant;
+    }
+
+    /**
+     * @return Parameter t for t-closeness, 0 if disabled.
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * @return The sensitive attributes.
+     */
+    public String[] getSensitive() {
+        return sensitive;
+    }
+
+    /**
+     * @return Maximum relative amount of suppressed rows.
+     */
+    public double getMaxOutliers() {
+        return maxOutliers;
+    }
+
+    /**
+     * Checks the entropy of the sensitive values of a class against entropy
+     * l-diversity, which requires an entropy of at least log(l).
+     *
+     * @param entropy The entropy of the class, with the natural logarithm.
+     * @return Returns true if the entropy fulfills l.
+     */
+    public boolean isEntropyDiverse(double entropy) {
+        return entropy >= Math.log(l) - ENTROPY_TOLERANCE;
+    }
+
+    /**
+     * @return Returns true if a criterion on sensitive attributes is enabled.
+     */
+    public boolean hasSensitiveCriteria() {
+        return l > 0 || t > 0;
+    }
+
+    /**
+     * Determines whether these criteria are at least as strict as other
+     * criteria on the same sensitive attributes. Every transformation which
+     * fulfills these criteria then fulfills the other criteria, and every
+     * transformation which violates the other criteria violates these.
+     *
+     * @param other The other criteria.
+     * @return Returns true if these criteria are at least as strict.
+     */
+    public boolean isAtLeastAsStrictAs(PrivacyCriteria other) {
+        if (hasSensitiveCriteria() && other.hasSensitiveCriteria() && !Arrays.equals(sensitive, other.sensitive)) {
+            return false;
+        }
+        if (l > 0 && other.l > 0 && lVariant != other.lVariant) {
+            return false;
+        }
+        // a disabled t allows any distance
+        boolean stricterT = other.t <= 0 || (t > 0 && t <= other.t);
+        return k >= other.k && l >= other.l && stricterT && maxOutliers <= other.maxOutliers;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PrivacyCriteria{");
+        builder.append("k: ").append(k);
+        builder.append(", l: ").append(l);
+        if (l > 0) {
+            builder.append(" (").append(lVariant.name().toLowerCase()).append(")");
+        }
+        builder.append(", t: ").append(t);
+        builder.append(", sensitive: ").append(Arrays.toString(sensitive));
+        builder.append(", maxOutliers: ").append(maxOutliers).append("}");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Process-wide cache for the outputs of the Flash filter. An output is
+ * stored under a key which hashes the content of the input instances, the
+ * configuration of the filter and the checksums of the hierarchy files (see
+ * {@link #key(String, String, Map)}), so a repeated run on identical data
+ * with identical options returns the stored output instead of searching.
+ * The suppressed rows of the output are stored with it. The entries in
+ * memory are bounded by their estimated memory and the least recently used
+ * ones are evicted first. Optionally, every output is also written to a
+ * folder as serialized file, where it survives the JVM. The file keeps the
+ * exact values, unlike ARFF, which rounds numbers. Files in the folder are
+ * never evicted. All methods are thread-safe.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ResultCache {
+
+    /**
+     * Default capacity in bytes, can be overridden by the system property
+     * {@code arx.result.cache}.
+     */
+    public static final long DEFAULT_CAPACITY = 256L * 1024L * 1024L;
+
+    /**
+     * Extension of the files of the cache folder.
+     */
+    public static final String EXTENSION = ".ser";
+
+    /**
+     * Minimum amount of rows hashed by one thread.
+     */
+    protected static final int CHUNK_SIZE = 4096;
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final ResultCache INSTANCE = new ResultCache(
+            Long.getLong("arx.result.cache", DEFAULT_CAPACITY));
+
+    /**
+     * Cached outputs in access order.
+     */
+    protected final LinkedHashMap<String, Result> entries = new LinkedHashMap<String, Result>(16, 0.75f, true);
+
+    /**
+     * Estimated memory of every cached output.
+     */
+    protected final Map<String, Long> weights = new HashMap<String, Long>();
+
+    /**
+     * Maximum estimated memory of all cached outputs in bytes.
+     */
+    protected long capacity;
+
+    /**
+     * Estimated memory of all cached outputs in bytes.
+     */
+    protected long weight = 0;
+
+    /**
+     * Constructor of the cache.
+     *
+     * @param capacity Maximum estimated memory in bytes.
+     */
+    public ResultCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The process-wide cache instance.
+     */
+    public static ResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Looks up an output, first in memory and then in the folder. An output
+     * read from the folder is kept in memory afterwards.
+     *
+     * @param key    The key of the output.
+     * @param folder The cache folder or null to look up the memory only.
+     * @return A copy of the cached output or null if it is not cached.
+     * @throws IOException if the file of the output can not be read.
+     */
+    public Result get(String key, File folder) throws IOException {
+        Result result;
+        synchronized (this) {
+            result = entries.get(key);
+        }
+        if (result == null && folder != null) {
+            File file = new File(folder, key + EXTENSION);
+            if (!file.isFile()) {
+                return null;
+            }
+            result = read(file);
+            synchronized (this) {
+                add(key, result);
+            }
+        }
+        return result == null ? null : result.copy();
+    }
+
+    /**
+     * Adds an output to the cache. Outputs larger than the capacity are only
+     * written to the folder.
+     *
+     * @param key        The key of the output.
+     * @param output     The output.
+     * @param suppressed Array indicating for every row of the output whether it is suppressed.
+     * @param folder     The cache folder or null to cache the output in memory only.
+     * @throws IOException if the file of the output can not be written.
+     */
+    public void put(String key, Instances output, boolean[] suppressed, File folder) throws IOException {
+        if (suppressed == null || suppressed.length != output.numInstances()) {
+            throw new IllegalArgumentException("The suppressed rows must match the rows of the output");
+        }
+        Result copy = new Result(output, suppressed).copy();
+        synchronized (this) {
+            add(key, copy);
+        }
+        if (folder != null) {
+            if (!folder.isDirectory() && !folder.mkdirs()) {
+                throw new IOException("The cache folder " + folder + " can not be created");
+            }
+            write(copy, new File(folder, key + EXTENSION));
+        }
+    }
+
+    /**
+     * Adds an output to the memory and evicts entries if necessary.
+     */
+    protected void add(String key, Result result) {
+        Long previous = weights.remove(key);
+        if (previous != null) {
+            entries.remove(key);
+            weight -= previous;
+        }
+        long size = weigh(result.output) + result.suppressed.length;
+        if (size > capacity) {
+            return;
+        }
+        entries.put(key, result);
+        weights.put(key, size);
+        weight += size;
+        evict();
+    }
+
+    /**
+     * Removes all entries from memory. The cache folder is not touched.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weights.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return Amount of outputs cached in memory.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated memory of all cached outputs in bytes.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Maximum estimated memory in bytes.
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the maximum estimated memory and evicts entries if necessary.
+     *
+     * @param capacity Maximum estimated memory in bytes.
+     */
+    public synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Removes least recently used entries until the capacity is respected.
+     */
+    protected void evict() {
+        Iterator<Map.Entry<String, Result>> iterator = entries.entrySet().iterator();
+        while (weight > capacity && iterator.hasNext()) {
+            String key = iterator.next().getKey();
+            iterator.remove();
+            weight -= weights.remove(key);
+        }
+    }
+
+    /**
+     * Estimates the memory of an output from its stored values. Labels of
+     * nominal and string attributes are shared by all rows and ignored.
+     *
+     * @param output The output.
+     * @return Estimated memory in bytes.
+     */
+    protected static long weigh(Instances output) {
+        long size = 64 + 4L * output.numInstances();
+        for (int i = 0; i < output.numInstances(); i++) {
+            size += 48 + 12L * output.instance(i).numValues();
+        }
+        return size;
+    }
+
+    /**
+     * Reads an output from the cache folder.
+     */
+    protected static Result read(File file) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            Instances output = (Instances) in.readObject();
+            boolean[] suppressed = (boolean[]) in.readObject();
+            if (suppressed.length != output.numInstances()) {
+                throw new IOException("The cache file " + file + " is corrupt");
+            }
+            return new Result(output, suppressed);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The cache file " + file + " can not be read", e);
+        } catch (ClassCastException e) {
+            throw new IOException("The cache file " + file + " is corrupt", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes an output to the cache folder. The output is written to a
+     * temporary file first, so concurrent readers never see a partial file.
+     */
+    protected static void write(Result result, File file) throws IOException {
+        File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeObject(result.output);
+            out.writeObject(result.suppressed);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+            tmp.delete();
+            throw new IOException("The cache file " + file + " can not be written");
+        }
+    }
+
+    /**
+     * Computes the key of an output.
+     *
+     * @param fingerprint   Fingerprint of the input, see {@link #fingerprint(Instances, int)}.
+     * @param configuration Description of the configuration of the filter.
+     * @param checksums     Checksum of the hierarchy file of every quasi-identifier
+     *                      which has one, see {@link #checksum(File)}.
+     * @return The key as hex string, which is also the name of the file in the folder.
+     */
+    public static String key(String fingerprint, String configuration, Map<String, Long> checksums) {
+        MessageDigest digest = digest();
+        update(digest, fingerprint);
+        update(digest, configuration);
+        for (Map.Entry<String, Long> entry : checksums.entrySet()) {
+            update(digest, entry.getKey());
+            update(digest, Long.toHexString(entry.getValue()));
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Computes a CRC-32 checksum of the content of a file.
+     *
+     * @param file The file.
+     * @return The checksum.
+     * @throws IOException if the file can not be read.
+     */
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        InputStream in = new FileInputStream(file);
+        try {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Computes a SHA-1 fingerprint of the header, the stored values and the
+     * weights of instances. The rows are split into chunks which are hashed
+     * concurrently, the hashes of the chunks are then combined in order.
+     *
+     * @param instances The instances.
+     * @param threads   Maximum amount of threads.
+     * @return The fingerprint as hex string.
+     * @throws InterruptedException if hashing has been interrupted.
+     */
+    public static String fingerprint(final Instances instances, int threads) throws InterruptedException {
+        final int rows = instances.numInstances();
+        threads = Math.max(1, Math.min(threads, (rows + CHUNK_SIZE - 1) / CHUNK_SIZE));
+        int chunk = Math.max(1, (rows + threads - 1) / threads);
+
+        List<byte[]> hashes = new ArrayList<byte[]>(threads);
+        if (threads == 1) {
+            hashes.add(hash(instances, 0, rows));
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Callable<byte[]>> tasks = new ArrayList<Callable<byte[]>>(threads);
+                for (int start = 0; start < rows; start += chunk) {
+                    final int from = start;
+                    final int to = Math.min(rows, start + chunk);
+                    tasks.add(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() {
+                            return hash(instances, from, to);
+                        }
+                    });
+                }
+                for (Future<byte[]> future : executor.invokeAll(tasks)) {
+                    hashes.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException
+                        ? (RuntimeException) e.getCause()
+                        : new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        MessageDigest digest = digest();
+        update(digest, new Instances(instances, 0).toString());
+        update(digest, String.valueOf(rows));
+        for (byte[] hash : hashes) {
+            digest.update(hash);
+        }
+        return hex(digest.digest());
+    }
+
+    /**
+     * Hashes the rows of a chunk. Values are collected in a buffer, so the
+     * digest is updated in large blocks.
+     */
+    protected static byte[] hash(Instances instances, int from, int to) {
+        MessageDigest digest = digest();
+        ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+        for (int r = from; r < to; r++) {
+            Instance instance = instances.instance(r);
+            flush(digest, buffer, 16);
+            buffer.putInt(instance.numValues()).putDouble(instance.weight());
+            for (int i = 0; i < instance.numValues(); i++) {
+                int index = instance.index(i);
+                Attribute attribute = instances.attribute(index);
+                if ((attribute.isString() || attribute.isRelationValued()) && !instance.isMissingSparse(i)) {
+                    // the value is an index into a pool of the attribute, so the content is hashed
+                    byte[] bytes = instance.toString(index).getBytes(UTF8);
+                    flush(digest, buffer, 8);
+                    buffer.putInt(index).putInt(bytes.length);
+                    flush(digest, buffer, bytes.length);
+                    if (bytes.length > buffer.remaining()) {
+                        digest.update(bytes);
+                    } else {
+                        buffer.put(bytes);
+                    }
+                } else {
+                    flush(digest, buffer, 12);
+                    buffer.putInt(index).putLong(Double.doubleToLongBits(instance.valueSparse(i)));
+                }
+            }
+        }
+        flush(digest, buffer, buffer.capacity());
+        return digest.digest();
+    }
+
+    /**
+     * Passes the buffer to the digest unless the given amount of bytes still fits.
+     */
+    private static void flush(MessageDigest digest, ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() < bytes) {
+            digest.update(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds a string and a separator to a digest.
+     */
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(UTF8));
+        digest.update((byte) 0);
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A cached output with its suppressed rows.
+     */
+    public static class Result {
+
+        protected final Instances output;
+
+        protected final boolean[] suppressed;
+
+        protected Result(Instances output, boolean[] suppressed) {
+            this.output = output;
+            this.suppressed = suppressed;
+        }
+
+        /**
+         * @return A copy, so the cached result is never changed by its users.
+         */
+        protected Result copy() {
+            return new Result(new Instances(output), suppressed.clone());
+        }
+
+        /**
+         * @return The output.
+         */
+        public Instances getOutput() {
+            return output;
+        }
+
+        /**
+         * @return Array indicating for every row of the output whether it is suppressed.
+         */
+        public boolean[] getSuppressed() {
+            return suppressed;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+/**
+ * Memory parameters of the ARX search: the amount of snapshots kept in the
+ * history and their maximum size relative to the data set and to the
+ * snapshot they are derived from.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SearchMemorySettings {
+
+    public static final int DEFAULT_HISTORY_SIZE = 200;
+    public static final double DEFAULT_SNAPSHOT_SIZE_DATASET = 0.2d;
+    public static final double DEFAULT_SNAPSHOT_SIZE_SNAPSHOT = 0.2d;
+
+    /**
+     * Share of the free heap which may be used by the history.
+     */
+    protected static final double HISTORY_SHARE = 0.25d;
+
+    /**
+     * Smallest relative snapshot size chosen by {@link #tune}.
+     */
+    protected static final double MIN_SNAPSHOT_SIZE = 0.01d;
+
+    /**
+     * Largest relative snapshot size chosen by {@link #tune}.
+     */
+    protected static final double MAX_SNAPSHOT_SIZE = 0.5d;
+
+    /**
+     * Data sets with less rows get the largest snapshots.
+     */
+    protected static final int SMALL_DATASET = 10000;
+
+    protected final int historySize;
+
+    protected final double snapshotSizeDataset;
+
+    protected final double snapshotSizeSnapshot;
+
+    /**
+     * Constructor of the settings.
+     *
+     * @param historySize          Maximum amount of snapshots in the history.
+     * @param snapshotSizeDataset  Maximum snapshot size relative to the data set.
+     * @param snapshotSizeSnapshot Maximum snapshot size relative to the previous snapshot.
+     */
+    public SearchMemorySettings(int historySize, double snapshotSizeDataset, double snapshotSizeSnapshot) {
+        this.historySize = historySize;
+        this.snapshotSizeDataset = snapshotSizeDataset;
+        this.snapshotSizeSnapshot = snapshotSizeSnapshot;
+    }
+
+    /**
+     * Chooses the settings from the size of the problem and the heap of the
+     * current JVM.
+     *
+     * @param converter An initialized ARFF to ARX converter.
+     * @return The chosen settings.
+     */
+    public static SearchMemorySettings tune(ARFF2ARX converter) {
+        Runtime runtime = Runtime.getRuntime();
+        return tune(converter.getNumRows(),
+                converter.getColumns() != null ? converter.getColumns().getNumColumns() : converter.getHeader().length,
+                converter.getSensitive().length,
+                converter.getLatticeSize(),
+                runtime.maxMemory(),
+                runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    /**
+     * Chooses the settings from the size of the problem and the heap.
+     * The history never holds more snapshots than the lattice has nodes.
+     * Small data sets get large snapshots. The product of history size,
+     * snapshot size and rows is limited to a share of the free heap,
+     * reducing the snapshot size first and the history size second.
+     *
+     * @param rows        Amount of rows.
+     * @param columns     Amount of columns.
+     * @param sensitive   Amount of sensitive attributes.
+     * @param latticeSize Amount of nodes of the generalization lattice.
+     * @param maxMemory   Maximum heap in bytes.
+     * @param usedMemory  Used heap in bytes.
+     * @return The chosen settings.
+     */
+    public static SearchMemorySettings tune(int rows, int columns, int sensitive, long latticeSize,
+                                            long maxMemory, long usedMemory) {
+        int historySize = (int) Math.max(1, Math.min(DEFAULT_HISTORY_SIZE, latticeSize));
+        double snapshotSize = rows < SMALL_DATASET ? MAX_SNAPSHOT_SIZE : DEFAULT_SNAPSHOT_SIZE_DATASET;
+
+        // encoded input, output and buffer of ARX
+        long dataMemory = 3L * 4L * rows * columns;
+        long budget = (long) ((maxMemory - usedMemory - dataMemory) * HISTORY_SHARE);
+        // representative, count and one distribution per sensitive attribute
+        long bytesPerClass = 4L * (2 + 2 * sensitive);
+        double entries = Math.max(0, budget) / (double) bytesPerClass;
+
+        if (rows > 0 && historySize * snapshotSize * rows > entries) {
+            snapshotSize = Math.max(MIN_SNAPSHOT_SIZE, entries / ((double) historySize * rows));
+            if (historySize * snapshotSize * rows > entries) {
+                historySize = (int) Math.max(1, entries / (snapshotSize * rows));
+            }
+        }
+        return new SearchMemorySettings(historySize, snapshotSize, DEFAULT_SNAPSHOT_SIZE_SNAPSHOT);
+    }
+
+    /**
+     * Applies the settings to an anonymizer.
+     *
+     * @param anonymizer The anonymizer.
+     */
+    public void apply(ARXAnonymizer anonymizer) {
+        anonymizer.setHistorySize(historySize);
+        anonymizer.setMaximumSnapshotSizeDataset(snapshotSizeDataset);
+        anonymizer.setMaximumSnapshotSizeSnapshot(snapshotSizeSnapshot);
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public double getSnapshotSizeDataset() {
+        return snapshotSizeDataset;
+    }
+
+    public double getSnapshotSizeSnapshot() {
+        return snapshotSizeSnapshot;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchMemorySettings{historySize: " + historySize
+                + ", snapshotSizeDataset: " + snapshotSizeDataset
+                + ", snapshotSizeSnapshot: " + snapshotSizeSnapshot + "}";
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Worker process of a {@link DistributedSearch}. The worker listens on a
+ * port and serves one coordinator after another. A coordinator first proves
+ * that it knows the shared token of the worker, then sends the encoded data
+ * of a {@link TransformationChecker}, which the worker holds read-only, and
+ * then the nodes of the lattice one at a time. For every node the worker
+ * replies whether it is anonymous, the amount of suppressed rows and the
+ * information loss.
+ * <p>
+ * Start a worker with:
+ * <pre>
+ * java org.deidentifier.arx.SearchWorker [-port &lt;p&gt;] [-bind &lt;address&gt;] [-token-file &lt;file&gt;] [-once]
+ * </pre>
+ * With port 0 a free port is chosen. Without {@code -bind} the worker
+ * listens on the loopback address only. Without {@code -token-file} the
+ * token is read from the first line of the standard input, which
+ * {@link LocalWorkers} uses, so the token never appears on a command line.
+ * The port is printed as first line (see {@link #LISTENING}). With
+ * {@code -once} the worker exits after its first authenticated
+ * coordinator.
+ * <p>
+ * The handshake authenticates both sides by HMAC-SHA256 over fresh nonces,
+ * so the token itself is never sent, and a connection which fails it is
+ * closed without reading any data. The data and the results are not
+ * encrypted, though: workers on other machines must only be reached over a
+ * trusted network or a TLS tunnel (e.g. stunnel or ssh port forwarding).
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SearchWorker {
+
+    /**
+     * Version of the protocol, sent by both sides first.
+     */
+    public static final int PROTOCOL_VERSION = 2;
+
+    /**
+     * Prefix of the line which reports the port.
+     */
+    public static final String LISTENING = "SearchWorker listening on port ";
+
+    /**
+     * Reply to a node which has been checked or to an accepted handshake.
+     */
+    protected static final byte OK = 0;
+
+    /**
+     * Reply to a node whose check failed or to a rejected handshake,
+     * followed by the message.
+     */
+    protected static final byte FAILED = 1;
+
+    /**
+     * Length of a node which ends the session.
+     */
+    protected static final int END = -1;
+
+    /**
+     * Length of the nonces of the handshake in bytes.
+     */
+    protected static final int NONCE_LENGTH = 32;
+
+    /**
+     * Time a peer may take for the handshake in milliseconds.
+     */
+    protected static final int HANDSHAKE_TIMEOUT = 10000;
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    protected static final SecureRandom RANDOM = new SecureRandom();
+
+    protected final ServerSocket server;
+
+    /**
+     * The shared token of the coordinators.
+     */
+    protected final byte[] token;
+
+    /**
+     * Constructor of the worker.
+     *
+     * @param port    The port, 0 to choose a free port.
+     * @param address The address to bind to, null for the loopback address.
+     * @param token   The shared token, which every coordinator must know.
+     * @throws IOException if the port can not be bound.
+     * @throws IllegalArgumentException if the token is empty.
+     */
+    public SearchWorker(int port, InetAddress address, byte[] token) throws IOException {
+        if (token == null || token.length == 0) {
+            throw new IllegalArgumentException("The worker requires a token");
+        }
+        this.token = token.clone();
+        this.server = new ServerSocket(port, 50, address == null ? InetAddress.getLoopbackAddress() : address);
+    }
+
+    /**
+     * @return The port the worker listens on.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Serves coordinators until the worker is closed. Connections which
+     * fail the handshake are closed and do not count as a coordinator.
+     *
+     * @param once Whether to return after the first authenticated coordinator.
+     * @throws IOException if no connection can be accepted.
+     */
+    public void run(boolean once) throws IOException {
+        while (true) {
+            Socket socket = server.accept();
+            boolean served = false;
+            try {
+                served = serve(socket, token);
+            } catch (IOException e) {
+                // the coordinator has gone, wait for the next one
+                System.err.println(e.getMessage());
+            } finally {
+                socket.close();
+            }
+            if (served && once) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serves the session of one coordinator.
+     *
+     * @param socket The connection to the coordinator.
+     * @param token  The shared token.
+     * @return Returns false if the coordinator failed the handshake, true after its session.
+     * @throws IOException if the connection fails or the protocol is violated.
+     */
+    public static boolean serve(Socket socket, byte[] token) throws IOException {
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (!accept(in, out, token, socket)) {
+            return false;
+        }
+
+        TransformationChecker checker = TransformationChecker.read(in);
+        out.writeInt(checker.getNumRows());
+        out.flush();
+
+        int[] node = new int[checker.getQi().length];
+        for (int length = in.readInt(); length != END; length = in.readInt()) {
+            if (length != node.length) {
+                throw new IOException("A node must have " + node.length + " levels, but has " + length);
+            }
+            for (int q = 0; q < length; q++) {
+                node[q] = in.readInt();
+            }
+            TransformationChecker.Result result;
+            try {
+                result = checker.check(node);
+            } catch (RuntimeException e) {
+                out.writeByte(FAILED);
+                out.writeUTF(String.valueOf(e));
+                out.flush();
+                continue;
+            }
+            out.writeByte(OK);
+            out.writeBoolean(result.isAnonymous());
+            out.writeInt(result.getSuppressed());
+            out.writeDouble(result.getLoss());
+            out.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Worker side of the handshake. The worker sends its version and a
+     * nonce, the coordinator replies its version, its nonce and the MAC of
+     * both nonces, and the worker answers with the MAC of the nonces in
+     * reverse order, so that the coordinator knows the worker as well.
+     *
+     * @return Returns true if the coordinator knows the token.
+     */
+    protected static boolean accept(DataInputStream in, DataOutputStream out, byte[] token, Socket socket)
+            throws IOException {
+        byte[] nonce = nonce();
+        out.writeInt(PROTOCOL_VERSION);
+        out.write(nonce);
+        out.flush();
+
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+        byte[] peerNonce = new byte[NONCE_LENGTH];
+        byte[] peerMac;
+        try {
+            int version = in.readInt();
+            if (version != PROTOCOL_VERSION) {
+                reject(out, "Unsupported protocol version " + version);
+                return false;
+            }
+            in.readFully(peerNonce);
+            peerMac = new byte[mac(token, "coordinator", nonce, peerNonce).length];
+            in.readFully(peerMac);
+        } catch (SocketTimeoutException e) {
+            return false;
+        }
+        socket.setSoTimeout(0);
+        if (!MessageDigest.isEqual(peerMac, mac(token, "coordinator", nonce, peerNonce))) {
+            reject(out, "Authentication failed");
+            return false;
+        }
+        out.writeByte(OK);
+        out.write(mac(token, "worker", peerNonce, nonce));
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Coordinator side of the handshake, see {@link #accept}.
+     *
+     * @throws IOException if the worker does not know the token or the protocol is violated.
+     */
+    protected static void authenticate(DataInputStream in, DataOutputStream out, byte[] token) throws IOException {
+        int version = in.readInt();
+        if (version != PROTOCOL_VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        byte[] peerNonce = new byte[NONCE_LENGTH];
+        in.readFully(peerNonce);
+        byte[] nonce = nonce();
+        out.writeInt(PROTOCOL_VERSION);
+        out.write(nonce);
+        out.write(mac(token, "coordinator", peerNonce, nonce));
+        out.flush();
+        if (in.readByte() != OK) {
+            throw new IOException(in.readUTF());
+        }
+        byte[] expected = mac(token, "worker", nonce, peerNonce);
+        byte[] peerMac = new byte[expected.length];
+        in.readFully(peerMac);
+        if (!MessageDigest.isEqual(peerMac, expected)) {
+            throw new IOException("The worker does not know the token");
+        }
+    }
+
+    private static void reject(DataOutputStream out, String message) throws IOException {
+        out.writeByte(FAILED);
+        out.writeUTF(message);
+        out.flush();
+    }
+
+    private static byte[] nonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * Computes the HMAC-SHA256 of a label and two nonces.
+     */
+    protected static byte[] mac(byte[] token, String label, byte[] first, byte[] second) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(token, "HmacSHA256"));
+            mac.update(label.getBytes(UTF8));
+            mac.update(first);
+            return mac.doFinal(second);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    /**
+     * Generates a random token for workers which are started by the
+     * coordinator itself.
+     *
+     * @return The token as hexadecimal string.
+     */
+    public static String generateToken() {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : nonce()) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads a token from a file. Leading and trailing white space is ignored.
+     *
+     * @param file The file.
+     * @return The token.
+     * @throws IOException if the file can not be read or contains no token.
+     */
+    public static byte[] readToken(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return readToken(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a token from the first line of a stream.
+     */
+    protected static byte[] readToken(InputStream in) throws IOException {
+        String line = new BufferedReader(new InputStreamReader(in, UTF8)).readLine();
+        if (line == null || line.trim().isEmpty()) {
+            throw new IOException("No token given");
+        }
+        return line.trim().getBytes(UTF8);
+    }
+
+    /**
+     * Stops listening.
+     *
+     * @throws IOException if the socket can not be closed.
+     */
+    public void close() throws IOException {
+        server.close();
+    }
+
+    public static void main(String[] args) {
+        int port = 0;
+        String bind = null;
+        String tokenFile = null;
+        boolean once = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("-port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("-bind".equals(args[i]) && i + 1 < args.length) {
+                bind = args[++i];
+            } else if ("-token-file".equals(args[i]) && i + 1 < args.length) {
+                tokenFile = args[++i];
+            } else if ("-once".equals(args[i])) {
+                once = true;
+            } else {
+                System.err.println("Usage: java " + SearchWorker.class.getName()
+                        + " [-port <p>] [-bind <address>] [-token-file <file>] [-once]");
+                System.exit(2);
+            }
+        }
+        try {
+            byte[] token = tokenFile == null ? readToken(System.in) : readToken(new File(tokenFile));
+            SearchWorker worker = new SearchWorker(port, bind == null ? null : InetAddress.getByName(bind), token);
+            System.out.println(LISTENING + worker.getPort());
+            System.out.flush();
+            try {
+                worker.run(once);
+            } finally {
+                worker.close();
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
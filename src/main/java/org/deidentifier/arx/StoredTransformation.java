@@ -0,0 +1,294 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A transformation found by a search, stored in a small properties file
+ * together with a hash of every hierarchy and the privacy criteria it was
+ * found for. A later run on similar data can load it, verify it and skip
+ * the search, as long as hierarchies and criteria are unchanged. The hash
+ * of a hierarchy which is read from a file covers its cells. The hash of a
+ * hierarchy which is generated from the data covers only the settings of
+ * its generator, because the generated intervals change with the data.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class StoredTransformation {
+
+    protected static final String HIERARCHY = "hierarchy.";
+
+    protected static final String CRITERIA = "criteria";
+
+    protected static final String LEVEL = "level.";
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Level of generalization for every quasi-identifier.
+     */
+    protected final Map<String, Integer> levels;
+
+    /**
+     * Hash of the hierarchy of every quasi-identifier.
+     */
+    protected final Map<String, String> hierarchies;
+
+    /**
+     * Description of the privacy criteria.
+     */
+    protected final String criteria;
+
+    /**
+     * Constructor of the transformation.
+     *
+     * @param levels      Level of generalization for every quasi-identifier.
+     * @param hierarchies Hash of the hierarchy of every quasi-identifier, see {@link #hash(String[][], String)}.
+     * @param criteria    Description of the privacy criteria.
+     */
+    public StoredTransformation(Map<String, Integer> levels, Map<String, String> hierarchies, String criteria) {
+        this.levels = Collections.unmodifiableMap(new LinkedHashMap<String, Integer>(levels));
+        this.hierarchies = Collections.unmodifiableMap(new LinkedHashMap<String, String>(hierarchies));
+        this.criteria = criteria;
+    }
+
+    /**
+     * Creates a transformation for the hierarchies and criteria of a search.
+     *
+     * @param levels      Level of generalization for every quasi-identifier.
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param generators  Generator settings of the hierarchies which are generated from the data,
+     *                    see {@link ARFF2ARX#getGenerators()}.
+     * @param criteria    The privacy criteria.
+     * @return The transformation.
+     */
+    public static StoredTransformation create(Map<String, Integer> levels, Map<String, String[][]> hierarchies,
+                                              Map<String, String> generators, PrivacyCriteria criteria) {
+        return new StoredTransformation(levels, hash(hierarchies, generators), criteria.toString());
+    }
+
+    /**
+     * Loads a transformation.
+     *
+     * @param file The file.
+     * @return The transformation.
+     * @throws IOException if the file can not be read or is no transformation.
+     */
+    public static StoredTransformation load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        String criteria = properties.getProperty(CRITERIA);
+        if (criteria == null) {
+            throw new IOException("The file " + file + " does not contain a transformation");
+        }
+        Map<String, Integer> levels = new LinkedHashMap<String, Integer>();
+        Map<String, String> hierarchies = new LinkedHashMap<String, String>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(LEVEL)) {
+                try {
+                    levels.put(key.substring(LEVEL.length()), Integer.parseInt(properties.getProperty(key).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid level of " + key + " in " + file, e);
+                }
+            } else if (key.startsWith(HIERARCHY)) {
+                hierarchies.put(key.substring(HIERARCHY.length()), properties.getProperty(key).trim());
+            }
+        }
+        return new StoredTransformation(levels, hierarchies, criteria);
+    }
+
+    /**
+     * Saves the transformation.
+     *
+     * @param file The file.
+     * @throws IOException if the file can not be written.
+     */
+    public void save(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(CRITERIA, criteria);
+        for (Map.Entry<String, String> entry : hierarchies.entrySet()) {
+            properties.setProperty(HIERARCHY + entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Integer> entry : levels.entrySet()) {
+            properties.setProperty(LEVEL + entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Optimal transformation of the Flash filter");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Computes the hash of every hierarchy.
+     *
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param generators  Generator settings of the hierarchies which are generated from the data.
+     * @return Hash of the hierarchy of every quasi-identifier.
+     */
+    public static Map<String, String> hash(Map<String, String[][]> hierarchies, Map<String, String> generators) {
+        Map<String, String> hashes = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String[][]> entry : hierarchies.entrySet()) {
+            hashes.put(entry.getKey(), hash(entry.getValue(), generators.get(entry.getKey())));
+        }
+        return hashes;
+    }
+
+    /**
+     * Computes a SHA-1 hash over the settings of the generator of a
+     * hierarchy, or over its cells if it has not been generated.
+     *
+     * @param hierarchy The hierarchy as array of rows.
+     * @param generator Settings of the generator or null.
+     * @return The hash as hex string.
+     */
+    public static String hash(String[][] hierarchy, String generator) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (generator != null) {
+            update(digest, "generated");
+            update(digest, generator);
+        } else {
+            for (String[] row : hierarchy) {
+                for (String cell : row) {
+                    update(digest, cell);
+                }
+                digest.update((byte) '\n');
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Adds a string and a separator to a digest.
+     */
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(UTF8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Determines why the transformation can not be used for the given
+     * hierarchies and criteria.
+     *
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param generators  Generator settings of the hierarchies which are generated from the data.
+     * @param criteria    The privacy criteria.
+     * @return The reason or null if hierarchies and criteria are unchanged.
+     */
+    public String getMismatch(Map<String, String[][]> hierarchies, Map<String, String> generators,
+                              PrivacyCriteria criteria) {
+        if (!this.criteria.equals(criteria.toString())) {
+            return "the criteria have changed from " + this.criteria + " to " + criteria;
+        }
+        if (!this.levels.keySet().equals(hierarchies.keySet())) {
+            return "the quasi-identifiers have changed from " + this.levels.keySet() + " to " + hierarchies.keySet();
+        }
+        for (Map.Entry<String, String[][]> entry : hierarchies.entrySet()) {
+            String name = entry.getKey();
+            String saved = this.hierarchies.get(name);
+            if (saved == null) {
+                return "no hash of the hierarchy of " + name + " has been saved";
+            }
+            if (!saved.equals(hash(entry.getValue(), generators.get(name)))) {
+                return generators.containsKey(name)
+                        ? "the settings of the generated hierarchy of " + name + " have changed"
+                        : "the hierarchy of " + name + " has changed";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether the transformation has been found for the given
+     * hierarchies and criteria.
+     *
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param generators  Generator settings of the hierarchies which are generated from the data.
+     * @param criteria    The privacy criteria.
+     * @return Returns true if hierarchies and criteria are unchanged.
+     */
+    public boolean matches(Map<String, String[][]> hierarchies, Map<String, String> generators,
+                           PrivacyCriteria criteria) {
+        return getMismatch(hierarchies, generators, criteria) == null;
+    }
+
+    /**
+     * Returns the levels in the order of the given quasi-identifiers.
+     *
+     * @param qi The quasi-identifiers.
+     * @return Level of every quasi-identifier.
+     */
+    public int[] getLevels(String[] qi) {
+        int[] result = new int[qi.length];
+        for (int q = 0; q < qi.length; q++) {
+            result[q] = levels.get(qi[q]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Level of generalization for every quasi-identifier.
+     */
+    public Map<String, Integer> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return Hash of the hierarchy of every quasi-identifier.
+     */
+    public Map<String, String> getHierarchies() {
+        return hierarchies;
+    }
+
+    /**
+     * @return Description of the privacy criteria.
+     */
+    public String getCriteria() {
+        return criteria;
+    }
+}
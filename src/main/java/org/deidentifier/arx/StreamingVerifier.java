@@ -0,0 +1,321 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Verifies transformations on instances which are read one by one, so the
+ * data set never has to be held in memory. Every instance is encoded once
+ * into the generalized identifiers of all levels of its quasi-identifiers
+ * and the codes of its sensitive values. A {@link Tally} per transformation
+ * counts the equivalence classes of the encoded rows.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class StreamingVerifier {
+
+    protected final String[] qi;
+
+    protected final PrivacyCriteria criteria;
+
+    protected final int[] qiIndices;
+
+    protected final int[] saIndices;
+
+    /**
+     * Generalized identifier on every level of every label, per quasi-identifier.
+     */
+    protected final Map<String, int[]>[] identifiers;
+
+    /**
+     * Amount of generalized identifiers, per quasi-identifier and level.
+     */
+    protected final int[][] domains;
+
+    /**
+     * Code of every label of sensitive attributes which are not nominal.
+     */
+    protected final Map<String, Integer>[] saCodes;
+
+    /**
+     * Constructor of the verifier.
+     *
+     * @param structure   The header of the instances.
+     * @param qi          The quasi-identifiers.
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param criteria    The privacy criteria.
+     */
+    @SuppressWarnings("unchecked")
+    public StreamingVerifier(Instances structure, String[] qi, Map<String, String[][]> hierarchies,
+                             PrivacyCriteria criteria) {
+        this.qi = qi;
+        this.criteria = criteria;
+        this.qiIndices = new int[qi.length];
+        this.identifiers = (Map<String, int[]>[]) new Map<?, ?>[qi.length];
+        this.domains = new int[qi.length][];
+        for (int q = 0; q < qi.length; q++) {
+            qiIndices[q] = structure.attribute(qi[q]).index();
+            encodeHierarchy(q, hierarchies.get(qi[q]));
+        }
+        String[] sensitive = criteria.hasSensitiveCriteria() ? criteria.getSensitive() : new String[0];
+        this.saIndices = new int[sensitive.length];
+        this.saCodes = (Map<String, Integer>[]) new Map<?, ?>[sensitive.length];
+        for (int s = 0; s < sensitive.length; s++) {
+            saIndices[s] = structure.attribute(sensitive[s]).index();
+            saCodes[s] = new HashMap<String, Integer>();
+        }
+    }
+
+    /**
+     * Numbers the generalizations of every level of a hierarchy.
+     *
+     * @param q         Index of the quasi-identifier.
+     * @param hierarchy Hierarchy of the quasi-identifier.
+     */
+    protected void encodeHierarchy(int q, String[][] hierarchy) {
+        int height = hierarchy.length == 0 ? 1 : hierarchy[0].length;
+        identifiers[q] = new HashMap<String, int[]>(hierarchy.length * 2);
+        domains[q] = new int[height];
+        for (int level = 0; level < height; level++) {
+            Map<String, Integer> ids = new HashMap<String, Integer>();
+            for (String[] row : hierarchy) {
+                int[] rowIds = identifiers[q].get(row[0]);
+                if (rowIds == null) {
+                    rowIds = new int[height];
+                    identifiers[q].put(row[0], rowIds);
+                }
+                Integer id = ids.get(row[level]);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(row[level], id);
+                }
+                rowIds[level] = id;
+            }
+            domains[q][level] = Math.max(1, ids.size());
+        }
+    }
+
+    /**
+     * Encodes an instance.
+     *
+     * @param instance The instance.
+     * @param ids      Array which receives the identifiers of every level, per quasi-identifier.
+     * @param values   Array which receives the code of every sensitive value.
+     * @return Returns false if a value is not contained in its hierarchy.
+     */
+    public boolean encode(Instance instance, int[][] ids, int[] values) {
+        boolean known = true;
+        for (int q = 0; q < qiIndices.length; q++) {
+            ids[q] = identifiers[q].get(GeneralizationScheme.label(instance, qiIndices[q]));
+            known &= ids[q] != null;
+        }
+        for (int s = 0; s < saIndices.length; s++) {
+            Attribute attribute = instance.attribute(saIndices[s]);
+            if (attribute.isNominal()) {
+                values[s] = instance.isMissing(saIndices[s]) ? attribute.numValues() : (int) instance.value(saIndices[s]);
+            } else {
+                String label = GeneralizationScheme.label(instance, saIndices[s]);
+                Integer code = saCodes[s].get(label);
+                if (code == null) {
+                    code = saCodes[s].size();
+                    saCodes[s].put(label, code);
+                }
+                values[s] = code;
+            }
+        }
+        return known;
+    }
+
+    /**
+     * Creates the arrays for {@link #encode}.
+     *
+     * @return Array for the identifiers of the quasi-identifiers.
+     */
+    public int[][] createIdentifiers() {
+        return new int[qi.length][];
+    }
+
+    /**
+     * Creates the arrays for {@link #encode}.
+     *
+     * @return Array for the codes of the sensitive values.
+     */
+    public int[] createValues() {
+        return new int[saIndices.length];
+    }
+
+    /**
+     * Creates the tally of a transformation.
+     *
+     * @param levels Level of generalization for every quasi-identifier.
+     * @return The tally.
+     */
+    public Tally createTally(int[] levels) {
+        return new Tally(levels.clone());
+    }
+
+    /**
+     * @return Amount of levels of every quasi-identifier.
+     */
+    public int[] getHeights() {
+        int[] heights = new int[qi.length];
+        for (int q = 0; q < qi.length; q++) {
+            heights[q] = domains[q].length;
+        }
+        return heights;
+    }
+
+    /**
+     * Counts the equivalence classes of one transformation. If the product
+     * of the generalized domains fits into a long, classes are keyed by
+     * their mixed radix tuple, otherwise every prefix of the tuple is
+     * numbered.
+     */
+    public class Tally {
+
+        protected final int[] levels;
+
+        protected final EquivalenceClassCounter counter;
+
+        /**
+         * Identifiers of the prefixes of the tuples, null if the tuple fits into a long.
+         */
+        protected final LongIntHashMap[] prefixes;
+
+        protected boolean[] failing;
+
+        protected Tally(int[] levels) {
+            this.levels = levels;
+            this.counter = new EquivalenceClassCounter(saIndices.length);
+            long product = 1;
+            boolean fits = true;
+            for (int q = 0; q < levels.length && fits; q++) {
+                int domain = domains[q][levels[q]];
+                fits = product <= Long.MAX_VALUE / domain;
+                product *= domain;
+            }
+            if (fits) {
+                this.prefixes = null;
+            } else {
+                this.prefixes = new LongIntHashMap[levels.length];
+                for (int q = 0; q < levels.length; q++) {
+                    prefixes[q] = new LongIntHashMap(1024);
+                }
+            }
+        }
+
+        /**
+         * Computes the key of the class of an encoded row.
+         *
+         * @param ids    The identifiers of the quasi-identifiers.
+         * @param insert Whether unknown prefixes are numbered.
+         * @return The key or -1 if a prefix is unknown.
+         */
+        protected long key(int[][] ids, boolean insert) {
+            long key = 0;
+            for (int q = 0; q < levels.length; q++) {
+                key = key * domains[q][levels[q]] + ids[q][levels[q]];
+                if (prefixes != null) {
+                    key = insert ? prefixes[q].index(key) : prefixes[q].get(key);
+                    if (key < 0) {
+                        return -1;
+                    }
+                }
+            }
+            return key;
+        }
+
+        /**
+         * Adds an encoded row.
+         *
+         * @param ids    The identifiers of the quasi-identifiers.
+         * @param values The codes of the sensitive values.
+         * @param known  Whether all values are contained in their hierarchies.
+         */
+        public void add(int[][] ids, int[] values, boolean known) {
+            if (known) {
+                counter.add(key(ids, true), values);
+            } else {
+                counter.addSuppressed(values);
+            }
+            failing = null;
+        }
+
+        /**
+         * @return Returns true if the transformation fulfills the criteria on the added rows.
+         */
+        public boolean isAnonymous() {
+            return getSuppressed() <= (int) Math.floor(criteria.getMaxOutliers() * counter.getNumRows());
+        }
+
+        /**
+         * @return Amount of suppressed rows.
+         */
+        public int getSuppressed() {
+            return counter.getSuppressed(getFailing());
+        }
+
+        /**
+         * Determines whether an encoded row is suppressed.
+         *
+         * @param ids   The identifiers of the quasi-identifiers.
+         * @param known Whether all values are contained in their hierarchies.
+         * @return Returns true if the row is suppressed.
+         */
+        public boolean isSuppressed(int[][] ids, boolean known) {
+            if (!known) {
+                return true;
+            }
+            long key = key(ids, false);
+            int c = key < 0 ? -1 : counter.getClass(key);
+            return c < 0 || getFailing()[c];
+        }
+
+        /**
+         * @return Array indicating for every class whether it is suppressed.
+         */
+        protected boolean[] getFailing() {
+            if (failing == null) {
+                failing = counter.evaluate(criteria);
+            }
+            return failing;
+        }
+
+        /**
+         * @return Level of generalization for every quasi-identifier.
+         */
+        public int[] getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return The counter of the classes.
+         */
+        public EquivalenceClassCounter getCounter() {
+            return counter;
+        }
+    }
+}
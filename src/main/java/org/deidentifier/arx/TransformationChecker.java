@@ -0,0 +1,757 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.deidentifier.arx;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Checks transformations of encoded data against privacy criteria. A
+ * transformation assigns a level of generalization to every
+ * quasi-identifier. The rows are grouped into equivalence classes by their
+ * generalized codes, classes which violate a criterion are suppressed and
+ * the transformation is anonymous if the suppressed rows do not exceed the
+ * allowed amount of outliers. The codes are read from the buffers of the
+ * encoded data, on or off the heap. Instances of this class are immutable
+ * after construction and may be used by several threads.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class TransformationChecker {
+
+    protected final String[] qi;
+
+    protected final int rows;
+
+    /**
+     * Input codes of every quasi-identifier.
+     */
+    protected final IntBuffer[] qiColumns;
+
+    /**
+     * Generalized identifier of every input code, per quasi-identifier and level.
+     */
+    protected final int[][][] mappings;
+
+    /**
+     * Amount of generalized identifiers, per quasi-identifier and level.
+     */
+    protected final int[][] domains;
+
+    /**
+     * Names of the encoded sensitive attributes.
+     */
+    protected final String[] sensitive;
+
+    /**
+     * Codes of every sensitive attribute.
+     */
+    protected final IntBuffer[] saColumns;
+
+    /**
+     * Size of the dictionary of every sensitive attribute.
+     */
+    protected final int[] saDomains;
+
+    /**
+     * Relative frequency of every value of every sensitive attribute.
+     */
+    protected final double[][] saDistributions;
+
+    protected final PrivacyCriteria criteria;
+
+    /**
+     * Metric evaluated for anonymous transformations or null.
+     */
+    protected InformationLoss loss;
+
+    /**
+     * Constructor of the checker.
+     *
+     * @param data        The encoded data.
+     * @param qi          The quasi-identifiers.
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param criteria    The privacy criteria.
+     * @throws IllegalArgumentException if a value of the data is not contained in its hierarchy.
+     */
+    public TransformationChecker(ColumnarData data, String[] qi, Map<String, String[][]> hierarchies,
+                                 PrivacyCriteria criteria) {
+        this(data, qi, hierarchies, criteria,
+                criteria.hasSensitiveCriteria() ? criteria.getSensitive() : new String[0]);
+    }
+
+    /**
+     * Constructor of a checker which encodes the given sensitive attributes,
+     * so that checkers for other criteria on them can be derived by
+     * {@link #withCriteria(PrivacyCriteria)}.
+     *
+     * @param data        The encoded data.
+     * @param qi          The quasi-identifiers.
+     * @param hierarchies Hierarchy of every quasi-identifier.
+     * @param criteria    The privacy criteria.
+     * @param sensitive   The sensitive attributes to encode.
+     * @throws IllegalArgumentException if a value of the data is not contained in its hierarchy.
+     */
+    public TransformationChecker(ColumnarData data, String[] qi, Map<String, String[][]> hierarchies,
+                                 PrivacyCriteria criteria, String[] sensitive) {
+        this.qi = qi;
+        this.rows = data.getNumRows();
+        this.criteria = criteria;
+        this.qiColumns = new IntBuffer[qi.length];
+        this.mappings = new int[qi.length][][];
+        this.domains = new int[qi.length][];
+        for (int q = 0; q < qi.length; q++) {
+            int index = data.getColumnIndexOf(qi[q]);
+            qiColumns[q] = data.getColumnBuffer(index);
+            encodeHierarchy(q, data.getDictionary(index), hierarchies.get(qi[q]));
+        }
+
+        this.sensitive = sensitive;
+        this.saColumns = new IntBuffer[sensitive.length];
+        this.saDomains = new int[sensitive.length];
+        this.saDistributions = new double[sensitive.length][];
+        for (int s = 0; s < sensitive.length; s++) {
+            int index = data.getColumnIndexOf(sensitive[s]);
+            saColumns[s] = data.getColumnBuffer(index);
+            saDomains[s] = data.getDictionary(index).length;
+            saDistributions[s] = new double[saDomains[s]];
+            for (int r = 0; r < rows; r++) {
+                saDistributions[s][saColumns[s].get(r)]++;
+            }
+            for (int v = 0; v < saDomains[s]; v++) {
+                saDistributions[s][v] /= rows;
+            }
+        }
+    }
+
+    /**
+     * Constructor of a checker which shares the encoded data of another
+     * checker.
+     *
+     * @param other    The other checker.
+     * @param criteria The privacy criteria.
+     */
+    protected TransformationChecker(TransformationChecker other, PrivacyCriteria criteria) {
+        this.qi = other.qi;
+        this.rows = other.rows;
+        this.criteria = criteria;
+        this.qiColumns = other.qiColumns;
+        this.mappings = other.mappings;
+        this.domains = other.domains;
+        if (criteria.hasSensitiveCriteria()) {
+            if (!Arrays.equals(other.sensitive, criteria.getSensitive())) {
+                throw new IllegalArgumentException("The sensitive attributes "
+                        + Arrays.toString(criteria.getSensitive()) + " are not encoded");
+            }
+            this.sensitive = other.sensitive;
+            this.saColumns = other.saColumns;
+            this.saDomains = other.saDomains;
+            this.saDistributions = other.saDistributions;
+        } else {
+            this.sensitive = new String[0];
+            this.saColumns = new IntBuffer[0];
+            this.saDomains = new int[0];
+            this.saDistributions = new double[0][];
+        }
+        this.loss = other.loss;
+    }
+
+    /**
+     * Constructor of a checker from its encoded data, see {@link #read(DataInput)}.
+     */
+    protected TransformationChecker(String[] qi, int rows, IntBuffer[] qiColumns, int[][][] mappings, int[][] domains,
+                                    String[] sensitive, IntBuffer[] saColumns, int[] saDomains,
+                                    double[][] saDistributions, PrivacyCriteria criteria) {
+        this.qi = qi;
+        this.rows = rows;
+        this.qiColumns = qiColumns;
+        this.mappings = mappings;
+        this.domains = domains;
+        this.sensitive = sensitive;
+        this.saColumns = saColumns;
+        this.saDomains = saDomains;
+        this.saDistributions = saDistributions;
+        this.criteria = criteria;
+    }
+
+    /**
+     * Writes the encoded data, the encoded hierarchies, the criteria and the
+     * metric of the checker, so that another process can check
+     * transformations on a copy, see {@link #read(DataInput)}. Every array
+     * is written as its length followed by its elements.
+     *
+     * @param out The stream.
+     * @throws IOException if the stream can not be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        writeStrings(out, qi);
+        out.writeInt(rows);
+        for (IntBuffer column : qiColumns) {
+            writeInts(out, toArray(column));
+        }
+        for (int q = 0; q < qi.length; q++) {
+            writeInts(out, domains[q]);
+            for (int[] mapping : mappings[q]) {
+                writeInts(out, mapping);
+            }
+        }
+        writeStrings(out, sensitive);
+        for (int s = 0; s < sensitive.length; s++) {
+            writeInts(out, toArray(saColumns[s]));
+            out.writeInt(saDomains[s]);
+            for (double frequency : saDistributions[s]) {
+                out.writeDouble(frequency);
+            }
+        }
+        out.writeInt(criteria.getK());
+        out.writeInt(criteria.getL());
+        out.writeInt(criteria.getLVariant() == null ? -1 : criteria.getLVariant().ordinal());
+        out.writeDouble(criteria.getT());
+        writeStrings(out, criteria.getSensitive());
+        out.writeDouble(criteria.getMaxOutliers());
+        out.writeInt(loss == null ? -1 : loss.getMetric().ordinal());
+    }
+
+    /**
+     * Reads a checker written by {@link #write(DataOutput)}. The lengths
+     * and codes are validated, so that a corrupt stream is rejected instead
+     * of failing later during the checks. The codes are held on the heap and
+     * the tables of the metric are computed again from them.
+     *
+     * @param in The stream.
+     * @return The checker.
+     * @throws IOException if the stream can not be read or contains no valid checker.
+     */
+    public static TransformationChecker read(DataInput in) throws IOException {
+        String[] qi = readStrings(in);
+        int rows = in.readInt();
+        if (rows < 0) {
+            throw new IOException("Invalid amount of rows " + rows);
+        }
+        int[][] qiCodes = new int[qi.length][];
+        IntBuffer[] qiColumns = new IntBuffer[qi.length];
+        for (int q = 0; q < qi.length; q++) {
+            qiCodes[q] = readInts(in, rows);
+            qiColumns[q] = IntBuffer.wrap(qiCodes[q]);
+        }
+        int[][][] mappings = new int[qi.length][][];
+        int[][] domains = new int[qi.length][];
+        for (int q = 0; q < qi.length; q++) {
+            domains[q] = readInts(in, -1);
+            mappings[q] = new int[domains[q].length][];
+            for (int level = 0; level < domains[q].length; level++) {
+                mappings[q][level] = readInts(in, level == 0 ? -1 : mappings[q][0].length);
+                // codes which do not occur in the data may be missing in the hierarchy
+                validate(mappings[q][level], -1, domains[q][level], "hierarchy of " + qi[q]);
+            }
+            if (mappings[q].length == 0) {
+                throw new IOException("The hierarchy of " + qi[q] + " has no levels");
+            }
+            validate(qiCodes[q], 0, mappings[q][0].length, "column " + qi[q]);
+            for (int code : qiCodes[q]) {
+                if (mappings[q][0][code] == -1) {
+                    throw new IOException("The code " + code + " of " + qi[q] + " is not contained in its hierarchy");
+                }
+            }
+        }
+        String[] sensitive = readStrings(in);
+        IntBuffer[] saColumns = new IntBuffer[sensitive.length];
+        int[] saDomains = new int[sensitive.length];
+        double[][] saDistributions = new double[sensitive.length][];
+        for (int s = 0; s < sensitive.length; s++) {
+            int[] codes = readInts(in, rows);
+            saColumns[s] = IntBuffer.wrap(codes);
+            saDomains[s] = in.readInt();
+            if (saDomains[s] < 0) {
+                throw new IOException("Invalid domain " + saDomains[s] + " of " + sensitive[s]);
+            }
+            validate(codes, 0, saDomains[s], "column " + sensitive[s]);
+            saDistributions[s] = new double[saDomains[s]];
+            for (int v = 0; v < saDomains[s]; v++) {
+                saDistributions[s][v] = in.readDouble();
+            }
+        }
+        int k = in.readInt();
+        int l = in.readInt();
+        PrivacyCriteria.LVariant lVariant = enumValue(PrivacyCriteria.LVariant.values(), in.readInt());
+        double t = in.readDouble();
+        String[] criteriaSensitive = readStrings(in);
+        double maxOutliers = in.readDouble();
+        PrivacyCriteria criteria = new PrivacyCriteria(k, l, lVariant, t, criteriaSensitive, maxOutliers);
+        if (criteria.hasSensitiveCriteria() && !Arrays.equals(sensitive, criteriaSensitive)) {
+            throw new IOException("The sensitive attributes " + Arrays.toString(criteriaSensitive)
+                    + " are not encoded");
+        }
+        TransformationChecker checker = new TransformationChecker(qi, rows, qiColumns, mappings, domains,
+                sensitive, saColumns, saDomains, saDistributions, criteria);
+        InformationLoss.Metric metric = enumValue(InformationLoss.Metric.values(), in.readInt());
+        return metric == null ? checker : checker.withMetric(metric);
+    }
+
+    private static void writeInts(DataOutput out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads an array of ints.
+     *
+     * @param length The expected length, -1 for any length.
+     */
+    private static int[] readInts(DataInput in, int length) throws IOException {
+        int actual = in.readInt();
+        if (actual < 0 || (length >= 0 && actual != length)) {
+            throw new IOException("Invalid length " + actual + " of an array");
+        }
+        int[] values = new int[actual];
+        for (int i = 0; i < actual; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    private static void writeStrings(DataOutput out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String[] readStrings(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid length " + length + " of an array");
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    /**
+     * Checks that every code lies in [min, domain).
+     */
+    private static void validate(int[] codes, int min, int domain, String name) throws IOException {
+        for (int code : codes) {
+            if (code < min || code >= domain) {
+                throw new IOException("Invalid code " + code + " in the " + name);
+            }
+        }
+    }
+
+    /**
+     * @return The constant with the given ordinal, null for -1.
+     */
+    private static <E extends Enum<E>> E enumValue(E[] values, int ordinal) throws IOException {
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid constant " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Copies the codes of a column.
+     */
+    private int[] toArray(IntBuffer column) {
+        int[] codes = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            codes[r] = column.get(r);
+        }
+        return codes;
+    }
+
+    /**
+     * Derives a checker for other criteria on the same encoded data, without
+     * encoding the data or the hierarchies again.
+     *
+     * @param criteria The privacy criteria.
+     * @return The checker.
+     * @throws IllegalArgumentException if the sensitive attributes of the criteria are not encoded.
+     */
+    public TransformationChecker withCriteria(PrivacyCriteria criteria) {
+        return new TransformationChecker(this, criteria);
+    }
+
+    /**
+     * Derives a checker which evaluates the information loss of anonymous
+     * transformations (see {@link Result#getLoss()}), without encoding the
+     * data or the hierarchies again.
+     *
+     * @param metric The metric.
+     * @return The checker.
+     */
+    public TransformationChecker withMetric(InformationLoss.Metric metric) {
+        TransformationChecker checker = new TransformationChecker(this, criteria);
+        checker.loss = new InformationLoss(metric, this);
+        return checker;
+    }
+
+    /**
+     * @return The metric evaluated for anonymous transformations or null.
+     */
+    public InformationLoss getInformationLoss() {
+        return loss;
+    }
+
+    /**
+     * Maps every input code of a quasi-identifier to the identifiers of its
+     * generalizations on every level.
+     *
+     * @param q          Index of the quasi-identifier.
+     * @param dictionary Dictionary of the column.
+     * @param hierarchy  Hierarchy of the column.
+     */
+    protected void encodeHierarchy(int q, String[] dictionary, String[][] hierarchy) {
+        int height = hierarchy.length == 0 ? 1 : hierarchy[0].length;
+        Map<String, String[]> rowOf = new HashMap<String, String[]>(hierarchy.length * 2);
+        for (String[] row : hierarchy) {
+            rowOf.put(row[0], row);
+        }
+        mappings[q] = new int[height][dictionary.length];
+        domains[q] = new int[height];
+        for (int level = 0; level < height; level++) {
+            Map<String, Integer> ids = new HashMap<String, Integer>();
+            for (int code = 0; code < dictionary.length; code++) {
+                String[] row = rowOf.get(dictionary[code]);
+                if (row == null) {
+                    mappings[q][level][code] = -1;
+                    continue;
+                }
+                Integer id = ids.get(row[level]);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(row[level], id);
+                }
+                mappings[q][level][code] = id;
+            }
+            domains[q][level] = Math.max(1, ids.size());
+        }
+        for (int r = 0; r < rows; r++) {
+            int code = qiColumns[q].get(r);
+            if (mappings[q][0][code] == -1) {
+                throw new IllegalArgumentException("The value \"" + dictionary[code] + "\" of attribute \""
+                        + qi[q] + "\" is not contained in its hierarchy");
+            }
+        }
+    }
+
+    /**
+     * Checks a transformation.
+     *
+     * @param levels Level of generalization for every quasi-identifier.
+     * @return The result of the check.
+     */
+    public Result check(int[] levels) {
+        Evaluation evaluation = evaluate(levels);
+        double value = loss != null && evaluation.anonymous ? loss.evaluate(levels, evaluation) : Double.NaN;
+        return new Result(levels.clone(), evaluation.anonymous, evaluation.suppressed, evaluation.sizes, value);
+    }
+
+    /**
+     * Determines the rows which are suppressed by a transformation.
+     *
+     * @param levels Level of generalization for every quasi-identifier.
+     * @return Array indicating for every row whether it is suppressed.
+     */
+    public boolean[] getSuppressedRows(int[] levels) {
+        Evaluation evaluation = evaluate(levels);
+        boolean[] suppressed = new boolean[rows];
+        for (int r = 0; r < rows; r++) {
+            suppressed[r] = evaluation.failing[evaluation.classOf[r]];
+        }
+        return suppressed;
+    }
+
+    /**
+     * Groups the rows into equivalence classes and checks every class.
+     *
+     * @param levels Level of generalization for every quasi-identifier.
+     * @return The evaluation.
+     */
+    protected Evaluation evaluate(int[] levels) {
+        int[] classOf = new int[rows];
+        int classes = classify(levels, classOf);
+        int[] sizes = new int[classes];
+        for (int r = 0; r < rows; r++) {
+            sizes[classOf[r]]++;
+        }
+
+        boolean[] failing = new boolean[classes];
+        if (criteria.getK() > 0) {
+            for (int c = 0; c < classes; c++) {
+                failing[c] = sizes[c] < criteria.getK();
+            }
+        }
+        if (saColumns.length > 0) {
+            checkSensitive(classOf, sizes, failing);
+        }
+
+        int suppressed = 0;
+        for (int c = 0; c < classes; c++) {
+            if (failing[c]) {
+                suppressed += sizes[c];
+            }
+        }
+        boolean anonymous = suppressed <= (int) Math.floor(criteria.getMaxOutliers() * rows);
+        return new Evaluation(classOf, sizes, failing, suppressed, anonymous);
+    }
+
+    /**
+     * Assigns an equivalence class to every row. If the product of the
+     * generalized domains fits into a long, every row is keyed by its mixed
+     * radix tuple in one pass. Otherwise the classes are refined one
+     * quasi-identifier after another.
+     *
+     * @param levels  Level of generalization for every quasi-identifier.
+     * @param classOf Array which receives the class of every row.
+     * @return Amount of classes.
+     */
+    protected int classify(int[] levels, int[] classOf) {
+        long product = 1;
+        boolean fits = true;
+        for (int q = 0; q < qi.length && fits; q++) {
+            int domain = domains[q][levels[q]];
+            if (product > Long.MAX_VALUE / domain) {
+                fits = false;
+            } else {
+                product *= domain;
+            }
+        }
+
+        if (fits) {
+            LongIntHashMap map = new LongIntHashMap(1024);
+            for (int r = 0; r < rows; r++) {
+                long key = 0;
+                for (int q = 0; q < qi.length; q++) {
+                    key = key * domains[q][levels[q]] + mappings[q][levels[q]][qiColumns[q].get(r)];
+                }
+                classOf[r] = map.index(key);
+            }
+            return map.size();
+        }
+
+        int classes = 1;
+        for (int q = 0; q < qi.length; q++) {
+            int domain = domains[q][levels[q]];
+            int[] mapping = mappings[q][levels[q]];
+            IntBuffer column = qiColumns[q];
+            LongIntHashMap map = new LongIntHashMap(1024);
+            for (int r = 0; r < rows; r++) {
+                classOf[r] = map.index((long) classOf[r] * domain + mapping[column.get(r)]);
+            }
+            classes = map.size();
+        }
+        return classes;
+    }
+
+    /**
+     * Checks l-diversity and t-closeness of every class for every sensitive
+     * attribute and marks violating classes as failing.
+     *
+     * @param classOf Class of every row.
+     * @param sizes   Size of every class.
+     * @param failing Array which receives the failing classes.
+     */
+    protected void checkSensitive(int[] classOf, int[] sizes, boolean[] failing) {
+        int classes = sizes.length;
+        // rows ordered by class
+        int[] start = new int[classes + 1];
+        for (int c = 0; c < classes; c++) {
+            start[c + 1] = start[c] + sizes[c];
+        }
+        int[] position = start.clone();
+        int[] order = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            order[position[classOf[r]]++] = r;
+        }
+
+        int l = criteria.getL();
+        double t = criteria.getT();
+        boolean entropy = criteria.getLVariant() == PrivacyCriteria.LVariant.ENTROPY;
+        for (int s = 0; s < saColumns.length; s++) {
+            IntBuffer column = saColumns[s];
+            double[] distribution = saDistributions[s];
+            int[] histogram = new int[saDomains[s]];
+            int[] touched = new int[saDomains[s]];
+            for (int c = 0; c < classes; c++) {
+                if (failing[c]) {
+                    continue;
+                }
+                int distinct = 0;
+                for (int i = start[c]; i < start[c + 1]; i++) {
+                    int value = column.get(order[i]);
+                    if (histogram[value]++ == 0) {
+                        touched[distinct++] = value;
+                    }
+                }
+                double size = sizes[c];
+                double entropyValue = 0d;
+                double distance = 0d;
+                double covered = 0d;
+                for (int i = 0; i < distinct; i++) {
+                    int value = touched[i];
+                    double p = histogram[value] / size;
+                    entropyValue -= p * Math.log(p);
+                    distance += Math.abs(p - distribution[value]);
+                    covered += distribution[value];
+                    histogram[value] = 0;
+                }
+                distance = (distance + (1d - covered)) / 2d;
+
+                if (l > 0) {
+                    failing[c] = entropy ? !criteria.isEntropyDiverse(entropyValue) : distinct < l;
+                }
+                if (t > 0 && !failing[c]) {
+                    failing[c] = distance > t;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The quasi-identifiers.
+     */
+    public String[] getQi() {
+        return qi;
+    }
+
+    /**
+     * @return Amount of levels of every quasi-identifier.
+     */
+    public int[] getHeights() {
+        int[] heights = new int[qi.length];
+        for (int q = 0; q < qi.length; q++) {
+            heights[q] = mappings[q].length;
+        }
+        return heights;
+    }
+
+    /**
+     * @return Amount of rows.
+     */
+    public int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * @return The privacy criteria.
+     */
+    public PrivacyCriteria getCriteria() {
+        return criteria;
+    }
+
+    /**
+     * Internal state of a check.
+     */
+    protected static class Evaluation {
+
+        final int[] classOf;
+        final int[] sizes;
+        final boolean[] failing;
+        final int suppressed;
+        final boolean anonymous;
+
+        Evaluation(int[] classOf, int[] sizes, boolean[] failing, int suppressed, boolean anonymous) {
+            this.classOf = classOf;
+            this.sizes = sizes;
+            this.failing = failing;
+            this.suppressed = suppressed;
+            this.anonymous = anonymous;
+        }
+    }
+
+    /**
+     * Result of checking a transformation.
+     */
+    public static class Result implements Serializable {
+
+        private static final long serialVersionUID = 5517069346186281512L;
+
+        protected final int[] levels;
+
+        protected final boolean anonymous;
+
+        protected final int suppressed;
+
+        protected final int[] classSizes;
+
+        protected final double loss;
+
+        public Result(int[] levels, boolean anonymous, int suppressed, int[] classSizes) {
+            this(levels, anonymous, suppressed, classSizes, Double.NaN);
+        }
+
+        public Result(int[] levels, boolean anonymous, int suppressed, int[] classSizes, double loss) {
+            this.levels = levels;
+            this.anonymous = anonymous;
+            this.suppressed = suppressed;
+            this.classSizes = classSizes;
+            this.loss = loss;
+        }
+
+        /**
+         * @return Level of generalization for every quasi-identifier.
+         */
+        public int[] getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return Returns true if the transformation fulfills the criteria.
+         */
+        public boolean isAnonymous() {
+            return anonymous;
+        }
+
+        /**
+         * @return Amount of suppressed rows.
+         */
+        public int getSuppressed() {
+            return suppressed;
+        }
+
+        /**
+         * @return Size of every equivalence class, including suppressed ones.
+         */
+        public int[] getClassSizes() {
+            return classSizes;
+        }
+
+        /**
+         * @return Information loss of an anonymous transformation under the
+         * metric of the checker, NaN if it has not been evaluated.
+         */
+        public double getLoss() {
+            return loss;
+        }
+    }
+}
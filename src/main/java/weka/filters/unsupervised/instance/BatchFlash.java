@@ -0,0 +1,432 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package weka.filters.unsupervised.instance;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+import org.deidentifier.arx.AnonymizationMetrics;
+import org.deidentifier.arx.HierarchyCache;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ArffSaver;
+
+/**
+ * Anonymizes many ARFF files in one JVM. The files are processed by a
+ * bounded pool of workers, each with its own {@link Flash} filter. The
+ * hierarchies are shared by all jobs through the process-wide
+ * {@link HierarchyCache}. The heap used by concurrent jobs is limited by a
+ * budget: every job reserves an estimate of its heap, proportional to the
+ * size of its file, before it starts. The files are read incrementally
+ * (see {@link Flash#anonymize(ArffLoader)}). Larger files are started first. A
+ * summary report lists the outcome and the metrics of every file.
+ * <pre>
+ * java weka.filters.unsupervised.instance.BatchFlash -i "extracts/*.arff" -d out -jobs 4 -heap-limit 6000 -K 5 -H hierarchies
+ * </pre>
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class BatchFlash {
+
+    /**
+     * Estimated bytes of heap per byte of an ARFF file while it is anonymized.
+     */
+    public static final int DEFAULT_MEMORY_FACTOR = 8;
+
+    protected static final long MB = 1024L * 1024L;
+
+    /**
+     * Options of the filter of every job.
+     */
+    protected final String[] options;
+
+    protected int jobs = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Heap budget of all concurrent jobs in megabytes.
+     */
+    protected int heapLimit = (int) (Runtime.getRuntime().maxMemory() * 3 / 4 / MB);
+
+    protected int memoryFactor = DEFAULT_MEMORY_FACTOR;
+
+    /**
+     * Constructor of the batch runner.
+     *
+     * @param options Options of the {@link Flash} filter of every job.
+     * @throws Exception if the options are invalid.
+     */
+    public BatchFlash(String[] options) throws Exception {
+        this.options = options.clone();
+        // validate once instead of failing in every job
+        createFilter();
+    }
+
+    /**
+     * Anonymizes files.
+     *
+     * @param files  The ARFF files.
+     * @param output The folder the anonymized files are written to.
+     * @return The outcome of every file, in the order of the files.
+     * @throws InterruptedException if the batch has been interrupted.
+     */
+    public List<Job> run(List<File> files, final File output) throws InterruptedException {
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create the output folder \"" + output + "\"");
+        }
+        final int budget = Math.max(1, heapLimit);
+        final Semaphore memory = new Semaphore(budget, true);
+
+        List<Job> result = new ArrayList<Job>(files.size());
+        for (File file : files) {
+            if (new File(output, file.getName()).getAbsoluteFile().equals(file.getAbsoluteFile())) {
+                throw new IllegalArgumentException("The output folder must not contain the input file \"" + file + "\"");
+            }
+            result.add(new Job(file));
+        }
+        List<Job> order = new ArrayList<Job>(result);
+        Collections.sort(order, new Comparator<Job>() {
+            @Override
+            public int compare(Job a, Job b) {
+                return Long.valueOf(b.getInput().length()).compareTo(a.getInput().length());
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, files.size())));
+        try {
+            List<Future<Job>> futures = new ArrayList<Future<Job>>(order.size());
+            for (final Job job : order) {
+                futures.add(executor.submit(new Callable<Job>() {
+                    @Override
+                    public Job call() throws InterruptedException {
+                        int permits = (int) Math.min(budget,
+                                Math.max(1, job.getInput().length() * memoryFactor / MB));
+                        memory.acquire(permits);
+                        try {
+                            process(job, output);
+                        } catch (Exception e) {
+                            job.error = e;
+                        } catch (OutOfMemoryError e) {
+                            job.error = e;
+                        } finally {
+                            memory.release(permits);
+                        }
+                        return job;
+                    }
+                }));
+            }
+            for (Future<Job> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Anonymizes one file.
+     */
+    protected void process(Job job, File output) throws Exception {
+        long start = System.currentTimeMillis();
+        Flash flash = createFilter();
+        ArffLoader loader = new ArffLoader();
+        loader.setSource(job.getInput());
+        Instances result = flash.anonymize(loader);
+        job.rows = result.numInstances();
+
+        ArffSaver saver = new ArffSaver();
+        saver.setInstances(result);
+        job.output = new File(output, job.getInput().getName());
+        saver.setFile(job.output);
+        saver.writeBatch();
+        job.metrics = flash.getMetrics();
+        job.optimal = flash.isOptimal();
+        job.time = System.currentTimeMillis() - start;
+    }
+
+    /**
+     * @return A filter configured with the options of the batch.
+     * @throws Exception if the options are invalid.
+     */
+    protected Flash createFilter() throws Exception {
+        Flash flash = new Flash();
+        flash.setOptions(options.clone());
+        return flash;
+    }
+
+    /**
+     * Writes the summary report as CSV file.
+     *
+     * @param jobs   The outcome of every file.
+     * @param report The report file.
+     * @throws IOException if the report can not be written.
+     */
+    public static void writeReport(List<Job> jobs, File report) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(report));
+        try {
+            writer.println("file,status,rows,timeMs,searchMs,suppressedRows,nodesChecked,optimal,peakHeapBytes,error");
+            for (Job job : jobs) {
+                AnonymizationMetrics metrics = job.getMetrics();
+                writer.println(quote(job.getInput().getPath()) + ","
+                        + (job.isSuccessful() ? "ok" : "failed") + ","
+                        + job.getRows() + ","
+                        + job.getTime() + ","
+                        + (metrics == null ? "" : String.valueOf(metrics.getSearchTime())) + ","
+                        + (metrics == null ? "" : String.valueOf(metrics.getSuppressedRows())) + ","
+                        + (metrics == null ? "" : String.valueOf(metrics.getNodesChecked())) + ","
+                        + job.isOptimal() + ","
+                        + (metrics == null ? "" : String.valueOf(metrics.getPeakHeap())) + ","
+                        + (job.getError() == null ? "" : quote(String.valueOf(job.getError().getMessage()))));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Lists the input files of a folder (all ARFF files) or of a glob
+     * pattern in the file name, e.g. {@code extracts/adult_*.arff}.
+     *
+     * @param input The folder or pattern.
+     * @return The files sorted by name.
+     */
+    public static List<File> listFiles(String input) {
+        File file = new File(input);
+        File folder;
+        final Pattern pattern;
+        if (file.isDirectory()) {
+            folder = file;
+            pattern = Pattern.compile(".*\\.arff", Pattern.CASE_INSENSITIVE);
+        } else {
+            folder = file.getParentFile() == null ? new File(".") : file.getParentFile();
+            StringBuilder regex = new StringBuilder();
+            for (char c : file.getName().toCharArray()) {
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            pattern = Pattern.compile(regex.toString());
+        }
+        File[] files = folder.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return pattern.matcher(name).matches() && new File(dir, name).isFile();
+            }
+        });
+        if (files == null) {
+            return new ArrayList<File>();
+        }
+        Arrays.sort(files);
+        return new ArrayList<File>(Arrays.asList(files));
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Sets the amount of files which are anonymized concurrently.
+     *
+     * @param jobs Amount of workers.
+     */
+    public void setJobs(int jobs) {
+        if (jobs < 1) {
+            throw new IllegalArgumentException("The amount of jobs must be at least 1");
+        }
+        this.jobs = jobs;
+    }
+
+    public int getHeapLimit() {
+        return heapLimit;
+    }
+
+    /**
+     * Sets the heap budget of all concurrent jobs. A file whose estimate
+     * exceeds the budget runs alone.
+     *
+     * @param heapLimit Budget in megabytes.
+     */
+    public void setHeapLimit(int heapLimit) {
+        this.heapLimit = heapLimit;
+    }
+
+    public int getMemoryFactor() {
+        return memoryFactor;
+    }
+
+    /**
+     * Sets the estimated bytes of heap per byte of an ARFF file.
+     *
+     * @param memoryFactor The factor.
+     */
+    public void setMemoryFactor(int memoryFactor) {
+        this.memoryFactor = memoryFactor;
+    }
+
+    /**
+     * Outcome of one file.
+     */
+    public static class Job {
+
+        protected final File input;
+
+        protected File output;
+
+        protected int rows;
+
+        protected long time;
+
+        protected boolean optimal;
+
+        protected AnonymizationMetrics metrics;
+
+        protected Throwable error;
+
+        protected Job(File input) {
+            this.input = input;
+        }
+
+        public File getInput() {
+            return input;
+        }
+
+        /**
+         * @return The anonymized file or null if the job failed.
+         */
+        public File getOutput() {
+            return error == null ? output : null;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return Time to read, anonymize and write the file in milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return Returns true if the transformation is proven to be optimal.
+         */
+        public boolean isOptimal() {
+            return optimal;
+        }
+
+        /**
+         * @return The metrics of the anonymization or null.
+         */
+        public AnonymizationMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * @return The error of a failed job or null.
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+    }
+
+    /**
+     * Anonymizes many files from the command line. Besides the options of
+     * {@link Flash} it accepts -i (folder or glob pattern), -d (output
+     * folder), -jobs, -heap-limit (megabytes), -memory-factor and -report
+     * (default summary.csv in the output folder).
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        try {
+            String input = Utils.getOption('i', args);
+            String output = Utils.getOption('d', args);
+            if (input.length() == 0 || output.length() == 0) {
+                throw new IllegalArgumentException("Please specify input files (-i) and output folder (-d)");
+            }
+            String jobs = Utils.getOption("jobs", args);
+            String heapLimit = Utils.getOption("heap-limit", args);
+            String memoryFactor = Utils.getOption("memory-factor", args);
+            String report = Utils.getOption("report", args);
+
+            BatchFlash batch = new BatchFlash(args);
+            if (jobs.length() != 0) {
+                batch.setJobs(Integer.parseInt(jobs));
+            }
+            if (heapLimit.length() != 0) {
+                batch.setHeapLimit(Integer.parseInt(heapLimit));
+            }
+            if (memoryFactor.length() != 0) {
+                batch.setMemoryFactor(Integer.parseInt(memoryFactor));
+            }
+            List<File> files = listFiles(input);
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("No files match \"" + input + "\"");
+            }
+
+            long start = System.currentTimeMillis();
+            List<Job> result = batch.run(files, new File(output));
+            File reportFile = report.length() == 0 ? new File(output, "summary.csv") : new File(report);
+            writeReport(result, reportFile);
+
+            int failed = 0;
+            for (Job job : result) {
+                if (!job.isSuccessful()) {
+                    failed++;
+                    System.err.println(job.getInput() + ": " + job.getError());
+                }
+            }
+            System.out.println("Anonymized " + (result.size() - failed) + " of " + result.size() + " files in "
+                    + (System.currentTimeMillis() - start) + " ms, report: " + reportFile);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+        }
+    }
+}
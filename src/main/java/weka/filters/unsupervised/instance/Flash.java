@@ -18,6 +18,8 @@
 package weka.filters.unsupervised.instance;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.*;
 
 import org.deidentifier.arx.*;
@@ -26,6 +28,9 @@ import org.deidentifier.arx.criteria.*;
 import org.deidentifier.arx.metric.Metric;
 import org.deidentifier.arx.ARFF2ARX;
 import weka.core.*;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.logging.Logger;
 import weka.filters.SimpleBatchFilter;
 import weka.filters.UnsupervisedFilter;
 import weka.gui.GUIChooser;
@@ -54,8 +59,34 @@ public class Flash extends SimpleBatchFilter implements UnsupervisedFilter {
     protected double _maxOutliers = 0.0d;
     protected EnumSet<Criterion> _criteria = EnumSet.of(Criterion.kAnonymity);
     protected File _hierarchyFolder = new File(System.getProperty("user.dir"));
+    protected int _hierarchyDepth = IntervalHierarchyGenerator.MIN_DEPTH;
+    protected int _hierarchyMethod = 0;
+    protected int _historySize = historySize;
+    protected double _snapshotSizeDataset = snapshotSizeDataset;
+    protected double _snapshotSizeSnapshot = snapshotSizeSnapshot;
+    protected boolean _autoTuneMemory = false;
+    protected boolean _applyOnly = false;
+    protected File _trainingFile = new File(System.getProperty("user.dir"));
+    protected File _saveTransformation = new File(System.getProperty("user.dir"));
+    protected File _loadTransformation = new File(System.getProperty("user.dir"));
+    protected int _threads = 0;
+    protected int _storage = 0;
+    protected int _metric = 0;
+    protected int _maxTime = 0;
+    protected int _workers = 0;
+    protected String _workerAddresses = "";
+    protected int _workerHeap = 0;
+    protected File _workerTokenFile = new File(System.getProperty("user.dir"));
+    protected int _resultCache = 0;
+    protected File _resultCacheFolder = new File(System.getProperty("java.io.tmpdir"), "arx-result-cache");
+    protected transient boolean m_Optimal = true;
+    protected transient String m_TransformationMismatch;
+    protected transient boolean[] m_Suppressed;
+    protected GeneralizationScheme m_Scheme;
+    protected transient long m_ReportedUnseen;
+    protected transient AnonymizationMetrics m_Metrics;
     protected ARXConfiguration config;
-    protected static final Metric DEFAULT_METRIC = Metric.createHeightMetric();
+    protected static final Metric<?> DEFAULT_METRIC = Metric.createHeightMetric();
 
     /**
      * Enumeration of anonymity criterion.
@@ -74,10 +105,48 @@ public class Flash extends SimpleBatchFilter implements UnsupervisedFilter {
             new Tag(1, "Entropy L-Diversity")
     };
 
+    /**
+     * Array with tags for the interval methods of generated hierarchies.
+     */
+    public static final Tag[] HIERARCHY_METHODS = {
+            new Tag(0, "Equal width intervals"),
+            new Tag(1, "Quantile intervals")
+    };
+
+    /**
+     * Array with tags for the storage of the encoded data.
+     */
+    public static final Tag[] STORAGE_TYPES = {
+            new Tag(0, "Heap"),
+            new Tag(1, "Direct buffers"),
+            new Tag(2, "Memory-mapped files")
+    };
+
+    /**
+     * Array with tags for the information loss metrics, in the order of
+     * {@link InformationLoss.Metric}.
+     */
+    public static final Tag[] METRICS = {
+            new Tag(0, "Height"),
+            new Tag(1, "Precision"),
+            new Tag(2, "Discernibility"),
+            new Tag(3, "Non-uniform entropy"),
+            new Tag(4, "Average equivalence class size")
+    };
+
+    /**
+     * Array with tags for the caching of the anonymized output.
+     */
+    public static final Tag[] RESULT_CACHE_TYPES = {
+            new Tag(0, "Off"),
+            new Tag(1, "Memory"),
+            new Tag(2, "Memory and folder")
+    };
+
     /* <Constants> */
-    protected static final int historySize = 200;
-    protected static final double snapshotSizeDataset = 0.2d;
-    protected static final double snapshotSizeSnapshot = 0.2d;
+    protected static final int historySize = SearchMemorySettings.DEFAULT_HISTORY_SIZE;
+    protected static final double snapshotSizeDataset = SearchMemorySettings.DEFAULT_SNAPSHOT_SIZE_DATASET;
+    protected static final double snapshotSizeSnapshot = SearchMemorySettings.DEFAULT_SNAPSHOT_SIZE_SNAPSHOT;
 
     protected static final int KL_MAX_VALUE = 100;
     protected static final int KL_MIN_VALUE = 2;
@@ -100,6 +169,26 @@ public class Flash extends SimpleBatchFilter implements UnsupervisedFilter {
         final static String enableLDiversity = "Enable l-Diversity";
         final static String enableTCloseness = "Enable t-Closeness";
         final static String maxOutliers = "Maximum relative amount of dropped data rows";
+        final static String hierarchyDepth = "Amount of levels of hierarchies generated for numeric attributes without hierarchy file (2 = value or *).";
+        final static String hierarchyMethod = "Method to determine the intervals of generated hierarchies.";
+        final static String historySize = "Maximum amount of snapshots kept in the history of the search";
+        final static String snapshotSizeDataset = "Maximum size of a snapshot relative to the data set";
+        final static String snapshotSizeSnapshot = "Maximum size of a snapshot relative to the previous snapshot";
+        final static String autoTuneMemory = "Choose history and snapshot sizes from row count, lattice size and heap";
+        final static String applyOnly = "Search the optimal transformation once (first batch or training file) and generalize all later instances with it";
+        final static String trainingFile = "Data set on which the transformation is learned in apply-only mode (ignored if it is not a file).";
+        final static String threads = "Amount of threads of the parallel lattice search (0 = sequential ARX search).";
+        final static String maxTime = "Time budget of the search in seconds (0 = unlimited). The best transformation found within the budget is applied.";
+        final static String workers = "Amount of local worker processes which check the nodes of the lattice search (0 = no worker processes).";
+        final static String workerAddresses = "Addresses (host:port, separated by ',') of running worker processes which check the nodes of the lattice search.";
+        final static String workerHeap = "Maximum heap of every local worker process in megabytes (0 = default of the JVM).";
+        final static String workerTokenFile = "File with the shared token of the running worker processes (required for worker addresses). The data is sent unencrypted, so remote workers need a trusted network or a TLS tunnel.";
+        final static String storage = "Storage of the encoded data read by the parallel lattice search (off-heap storage reduces the heap pressure).";
+        final static String metric = "Information loss which is minimized by the search (the ARX search uses the implementation of ARX).";
+        final static String resultCache = "Returns the stored output when the same data is filtered again with the same options and hierarchy files.";
+        final static String resultCacheFolder = "Folder in which the outputs are stored if the result cache uses a folder.";
+        final static String saveTransformation = "File to which the optimal transformation is saved (ignored if it is a directory).";
+        final static String loadTransformation = "File of a saved transformation which is verified and applied instead of searching (ignored if it is not a file).";
     }
 
     /**
@@ -414,259 +503,1559 @@ public class Flash extends SimpleBatchFilter implements UnsupervisedFilter {
         this._maxOutliers = maxOutliers;
     }
 
-    public static void main(String[] args) {
-        //GUIChooser.main(args);
-        runFilter(new Flash(), args);
+    /**
+     * Returns the tip text for the depth of generated hierarchies.
+     *
+     * @return String with corresponding tip text
+     */
+    public String hierarchyDepthTipText() {
+        return TipText.hierarchyDepth;
     }
 
-    @Override
-    public Enumeration<Option> listOptions() {
-        Vector<Option> newVector = new Vector<Option>();
-        Enumeration<Option> options = super.listOptions();
-
-        while (options.hasMoreElements()) {
-            newVector.addElement(options.nextElement());
-        }
-
-        newVector.addElement(new Option("\tSpecify hierarchy folder", "H", 1, "-H <h>"));
-        newVector.addElement(new Option("\tSpecify quasi-identifying attributes", "Q", 1, "-Q <q>"));
-        newVector.addElement(new Option("\tSpecify sensitive attributes", "S", 1, "-S <s>"));
-        newVector.addElement(new Option("\tSpecify k-Anonymity (default 2)", "K", 1, "-K <k>"));
-        newVector.addElement(new Option("\tSpecify l-diversity (default 2)", "L", 1, "-L <l>"));
-        newVector.addElement(new Option("\tSpecify l-diversity variant [ Distinct=0 | Entropy=1 ]", "V", 1, "-V <v>"));
-        newVector.addElement(new Option("\tSpecify t-Closeness (default " + T_MIN_VALUE + ")", "T", 1, "-T <t>"));
-        newVector.addElement(new Option("\tSpecify max outliers (default 0.0)", "O", 1, "-O <o>"));
-        return newVector.elements();
+    /**
+     * Gets the depth of hierarchies generated for numeric attributes.
+     *
+     * @return Amount of levels
+     */
+    public int getHierarchyDepth() {
+        return this._hierarchyDepth;
     }
 
-    @Override
-    public void setOptions(String[] options) throws Exception {
-        super.setOptions(options);
-
-        // hierarchy folder
-        String tmpStr = Utils.getOption('H', options);
-        if (tmpStr.length() != 0) {
-            this._hierarchyFolder = new File(tmpStr);
-        }
+    /**
+     * Sets the depth of hierarchies generated for numeric attributes.
+     *
+     * @param value Amount of levels
+     */
+    public void setHierarchyDepth(int value) {
+        this._hierarchyDepth = value;
+    }
 
-        // quasi-identifying attributes
-        tmpStr = Utils.getOption('Q', options);
-        if (tmpStr.length() != 0) {
-            this.setDataQuasiIdentifier(tmpStr);
-        }
+    /**
+     * Returns the tip text for the interval method of generated hierarchies.
+     *
+     * @return String with corresponding tip text
+     */
+    public String hierarchyMethodTipText() {
+        return TipText.hierarchyMethod;
+    }
 
-        // sensitive attributes
-        tmpStr = Utils.getOption('S', options);
-        if (tmpStr.length() != 0) {
-            this.setDataSensitiveAttributes(tmpStr);
-        }
+    /**
+     * Gets the interval method of generated hierarchies.
+     *
+     * @return Interval method
+     */
+    public SelectedTag getHierarchyMethod() {
+        return new SelectedTag(this._hierarchyMethod, HIERARCHY_METHODS);
+    }
 
-        // k-anonymity
-        tmpStr = Utils.getOption('K', options);
-        this.setEnableKAnonymity(tmpStr.length() != 0);
-        if (this.getEnableKAnonymity()) {
-            this.setValueK((Integer.parseInt(tmpStr)));
-        }
-        // l-diversity
-        tmpStr = Utils.getOption('L', options);
-        this.setEnableLDiversity(tmpStr.length() != 0);
-        if (this.getEnableLDiversity()) {
-            this.setValueL((Integer.parseInt(tmpStr)));
-            // l-diversity variant
-            tmpStr = Utils.getOption('V', options);
-            if (tmpStr.length() != 0) {
-                int variantIndex = Integer.parseInt(tmpStr);
-                if (variantIndex >= 0 && variantIndex < L_DIVERSITY_VARIANTS.length) {
-                    this._lVariant = L_DIVERSITY_VARIANTS[variantIndex].getID();
-                }
-            }
-        }
-        // t-closeness
-        tmpStr = Utils.getOption('T', options);
-        this.setEnableTCloseness(tmpStr.length() != 0);
-        if (this.getEnableKAnonymity()) {
-            if (!tmpStr.isEmpty()) {
-                this.setValueT((Float.parseFloat(tmpStr)));
-            }
-        }
-        // max outliers
-        tmpStr = Utils.getOption("O", options);
-        if (tmpStr.length() != 0) {
-            this.setMaxOutliers((Float.parseFloat(tmpStr)));
+    /**
+     * Sets the interval method of generated hierarchies.
+     *
+     * @param value Interval method
+     */
+    public void setHierarchyMethod(SelectedTag value) {
+        if (value.getTags() == HIERARCHY_METHODS) {
+            this._hierarchyMethod = value.getSelectedTag().getID();
         }
     }
 
-    @Override
-    public String[] getOptions() {
-        List<String> options = new LinkedList<String>(Arrays.asList(super.getOptions()));
-
-        if (this.getEnableKAnonymity() && this.getValueK() > 0) {
-            options.add("[K=" + this.getValueK() + "]");
-        }
-        if (this.getEnableLDiversity()) {
-            options.add("[L=" + this.getValueL() + "]");
-            options.add("[Variant=" + L_DIVERSITY_VARIANTS[this.getVariant().getSelectedTag().getID()].getReadable() + "]");
-        }
-        if (this.getEnableTCloseness()) {
-            options.add("[T=" + this.getValueT() + "]");
-        }
+    /**
+     * Returns the tip text for the history size.
+     *
+     * @return String with corresponding tip text
+     */
+    public String historySizeTipText() {
+        return TipText.historySize;
+    }
 
-        if (this.getMaxOutliers() > 0) {
-            options.add("[MaxOutliers=" + this.getMaxOutliers() + "]");
-        }
+    /**
+     * Gets the maximum amount of snapshots in the history.
+     *
+     * @return History size
+     */
+    public int getHistorySize() {
+        return this._historySize;
+    }
 
-        return options.toArray(new String[0]);
+    /**
+     * Sets the maximum amount of snapshots in the history.
+     *
+     * @param value History size
+     */
+    public void setHistorySize(int value) {
+        this._historySize = value;
     }
 
-    public Capabilities getCapabilities() {
-        Capabilities result = super.getCapabilities();
-        result.enableAllAttributes();
-        result.enableAllClasses();
-        result.enable(Capabilities.Capability.NO_CLASS); // filter doesn't need class to be set
-        return result;
+    /**
+     * Returns the tip text for the snapshot size relative to the data set.
+     *
+     * @return String with corresponding tip text
+     */
+    public String snapshotSizeDatasetTipText() {
+        return TipText.snapshotSizeDataset;
     }
 
     /**
-     * Returns the revision string.
+     * Gets the maximum snapshot size relative to the data set.
      *
-     * @return The revision string.
+     * @return Relative snapshot size
      */
-    public String getRevision() {
-        return RevisionUtils.extract("$Revision: 1.0.1 $");
+    public double getSnapshotSizeDataset() {
+        return this._snapshotSizeDataset;
     }
 
     /**
-     * Determine the Output format.
+     * Sets the maximum snapshot size relative to the data set.
      *
-     * @param inputFormat The input format.
-     * @return The output format.
+     * @param value Relative snapshot size
      */
-    protected Instances determineOutputFormat(Instances inputFormat) throws Exception {
-        return new Instances(inputFormat, 0);
+    public void setSnapshotSizeDataset(double value) {
+        this._snapshotSizeDataset = value;
     }
 
     /**
-     * Process the given instance to apply anonymization algorithm.
+     * Returns the tip text for the snapshot size relative to the previous snapshot.
      *
-     * @param instances The instance on which k-Anonymity, l-diversity or t-closeness should be applied.
-     * @return An anonymized instance.
-     * @throws IllegalArgumentException, if incorrect parameters are provided
+     * @return String with corresponding tip text
      */
-    public Instances process(Instances instances) throws Exception {
-        if (instances.numInstances() <= 1) {
-            return instances;
-        }
-        final Instances output = new Instances(instances);
+    public String snapshotSizeSnapshotTipText() {
+        return TipText.snapshotSizeSnapshot;
+    }
 
-        this._quasiIdentifiers.setUpper(output.numAttributes() - 1);
-        this._sensitiveAttributes.setUpper(output.numAttributes() - 1);
+    /**
+     * Gets the maximum snapshot size relative to the previous snapshot.
+     *
+     * @return Relative snapshot size
+     */
+    public double getSnapshotSizeSnapshot() {
+        return this._snapshotSizeSnapshot;
+    }
 
-        List<String> saColumns = new LinkedList<String>();
-        List<String> qiColumns = new LinkedList<String>();
+    /**
+     * Sets the maximum snapshot size relative to the previous snapshot.
+     *
+     * @param value Relative snapshot size
+     */
+    public void setSnapshotSizeSnapshot(double value) {
+        this._snapshotSizeSnapshot = value;
+    }
 
-        for (int index : this._sensitiveAttributes.getSelection()) {
-            saColumns.add(output.attribute(index).name());
-        }
+    /**
+     * Returns the tip text for the automatic memory settings.
+     *
+     * @return String with corresponding tip text
+     */
+    public String autoTuneMemoryTipText() {
+        return TipText.autoTuneMemory;
+    }
 
-        for (int index : this._quasiIdentifiers.getSelection()) {
-            if (saColumns.indexOf(output.attribute(index).name()) == -1) {
-                qiColumns.add(output.attribute(index).name());
-            }
-        }
+    /**
+     * Get activation of the automatic memory settings.
+     *
+     * @return Boolean indicate
+     */
+    public boolean getAutoTuneMemory() {
+        return this._autoTuneMemory;
+    }
 
-        this.checkParameters();
+    /**
+     * Enables or disables the automatic memory settings, which override
+     * history size and snapshot sizes.
+     *
+     * @param value Boolean value
+     */
+    public void setAutoTuneMemory(boolean value) {
+        this._autoTuneMemory = value;
+    }
 
-        ARFF2ARX converter = new ARFF2ARX(instances).setQi(qiColumns.toArray(new String[qiColumns.size()]));
-        config = ARXConfiguration.create();
-        config.setMaxOutliers(_maxOutliers);
-        config.setMetric(DEFAULT_METRIC);
+    /**
+     * Returns the tip text for the apply-only mode.
+     *
+     * @return String with corresponding tip text
+     */
+    public String applyOnlyTipText() {
+        return TipText.applyOnly;
+    }
 
-        // checking which anonymity criterion to apply
-        if (this.getEnableKAnonymity()) {
-            // add criteria - k-anonymity
-            config.addCriterion(new KAnonymity(this.getValueK()));
-        }
-        if (this.getEnableLDiversity() || this.getEnableTCloseness()) {
-            converter.setSensitive(saColumns.toArray(new String[saColumns.size()]));
-            // add criteria - l-diversity
-            if (this.getEnableLDiversity()) {
-                for (String attr : saColumns) {
-                    switch (this.getVariant().getSelectedTag().getID()) {
-                        case 0: // Distinct L-Diversity
-                            config.addCriterion(new DistinctLDiversity(attr, this.getValueL()));
-                            break;
-                        case 1: // Entropy L-Diversity
-                            config.addCriterion(new EntropyLDiversity(attr, this.getValueL()));
-                            break;
-                    }
-                }
-            }
+    /**
+     * Get activation of the apply-only mode.
+     *
+     * @return Boolean indicate
+     */
+    public boolean getApplyOnly() {
+        return this._applyOnly;
+    }
 
-            if (this.getEnableTCloseness()) {
-                // add criteria - t-closeness for each sensitive attribute
-                for (String attr : saColumns) {
-                    config.addCriterion(new EqualDistanceTCloseness(attr, this.getValueT()));
-                }
-            }
-        }
+    /**
+     * Enables or disables the apply-only mode. In this mode the optimal
+     * transformation is searched once and all later instances are
+     * generalized one by one with the learned levels. With a training file
+     * the transformation is learned when the input format is set, so also
+     * the instances of the first batch are output immediately. Otherwise
+     * the first batch is buffered to learn it. Only {@link StreamingFlash},
+     * which requires a training file, is declared as streamable filter.
+     *
+     * @param value Boolean value
+     */
+    public void setApplyOnly(boolean value) {
+        this._applyOnly = value;
+    }
 
-        converter.init(_hierarchyFolder, instances.relationName());
+    /**
+     * Returns the tip text for the training file.
+     *
+     * @return String with corresponding tip text
+     */
+    public String trainingFileTipText() {
+        return TipText.trainingFile;
+    }
 
-        final ARXAnonymizer anonymizer = new ARXAnonymizer();
-        anonymizer.setSuppressionString("*");
-        anonymizer.setMaximumSnapshotSizeDataset(snapshotSizeDataset);
-        anonymizer.setMaximumSnapshotSizeSnapshot(snapshotSizeSnapshot);
-        anonymizer.setHistorySize(historySize);
-        anonymizer.setRemoveOutliers(true);
+    /**
+     * Gets the training file of the apply-only mode.
+     *
+     * @return Returns a file object
+     */
+    public File getTrainingFile() {
+        return this._trainingFile;
+    }
 
-        ARXResult result;
-        if (this.getDebug()) {
-            long start = System.currentTimeMillis();
-            result = anonymizer.anonymize(converter.getData(), config);
-            long duration = System.currentTimeMillis() - start;
-            System.out.println(this.getClass().toString() + duration);
-        } else {
-            result = anonymizer.anonymize(converter.getData(), config);
-        }
+    /**
+     * Sets the training file of the apply-only mode.
+     *
+     * @param value File object
+     */
+    public void setTrainingFile(File value) {
+        this._trainingFile = value;
+    }
 
-        // create output instance
-        DataHandle handle = result.getOutput();
-        String[] quasiIdentifiers = converter.getQi();
-        for (String qi : quasiIdentifiers) {
-            // check if attributes was generalized
-            if (result.getGlobalOptimum().getGeneralization(qi) > 0) {
-                int index = output.attribute(qi).index();
-                // collect nominal values
-                Set<String> attrSet = new HashSet<String>();
-                for (int r = 0; r < handle.getNumRows(); r++) {
-                    String value = handle.getValue(r, index);
-                    if (!attrSet.contains(value)) {
-                        attrSet.add(value);
-                    }
-                }
-                // replace original attribute
-                List<String> nominalValues = new LinkedList<String>(attrSet);
-                Collections.sort(nominalValues);
-                output.replaceAttributeAt(new Attribute(qi, nominalValues), index);
-
-                // insert value
-                for (int r = 0; r < handle.getNumRows(); r++) {
-                    String value = handle.getValue(r, index);
-                    output.get(r).setValue(index, value);
-                }
-            }
-        }
+    /**
+     * Returns the tip text for the amount of threads.
+     *
+     * @return String with corresponding tip text
+     */
+    public String threadsTipText() {
+        return TipText.threads;
+    }
 
-        // set the final output format
-        this.setOutputFormat(new Instances(output, 0));
+    /**
+     * Gets the amount of threads of the parallel lattice search.
+     *
+     * @return Amount of threads, 0 if the ARX search is used
+     */
+    public int getThreads() {
+        return this._threads;
+    }
 
-        return output;
+    /**
+     * Sets the amount of threads of the parallel lattice search. With at
+     * least one thread the lattice is searched on the encoded data by
+     * {@link LatticeSearch}, which finds the same optimum for any amount of
+     * threads. Its optimum has the same height as the one of the ARX search,
+     * but of several optimal nodes the two searches may choose different
+     * ones.
+     *
+     * @param value Amount of threads, 0 to use the ARX search
+     */
+    public void setThreads(int value) {
+        this._threads = value;
     }
 
     /**
-     * Checks if the given parameters are suitable.
+     * Returns the tip text for the time budget.
+     *
+     * @return String with corresponding tip text
      */
-    protected void checkParameters() {
+    public String maxTimeTipText() {
+        return TipText.maxTime;
+    }
+
+    /**
+     * Gets the time budget of the search.
+     *
+     * @return Time budget in seconds, 0 if unlimited
+     */
+    public int getMaxTime() {
+        return this._maxTime;
+    }
+
+    /**
+     * Sets the time budget of the search. With a budget the lattice is
+     * searched by {@link LatticeSearch} as anytime algorithm, which returns
+     * the best transformation found when the budget expires.
+     *
+     * @param value Time budget in seconds, 0 for no limit
+     */
+    public void setMaxTime(int value) {
+        this._maxTime = value;
+    }
+
+    /**
+     * Determines whether the transformation of the last anonymization is
+     * proven to be optimal. It is not if the time budget expired.
+     *
+     * @return Returns false if the search stopped at its time budget
+     */
+    public boolean isOptimal() {
+        return this.m_Optimal;
+    }
+
+    /**
+     * Returns the rows which have been suppressed by the last anonymization,
+     * in the order of its output.
+     *
+     * @return Array indicating for every row whether it is suppressed, null if unknown
+     */
+    public boolean[] getSuppressedRows() {
+        return this.m_Suppressed;
+    }
+
+    /**
+     * Returns why the saved transformation has not been used by the last
+     * anonymization.
+     *
+     * @return The reason or null if it has been used or none is loaded
+     */
+    public String getTransformationMismatch() {
+        return this.m_TransformationMismatch;
+    }
+
+    /**
+     * Returns the tip text for the amount of local worker processes.
+     *
+     * @return String with corresponding tip text
+     */
+    public String workersTipText() {
+        return TipText.workers;
+    }
+
+    /**
+     * Gets the amount of local worker processes.
+     *
+     * @return Amount of processes, 0 if no processes are started
+     */
+    public int getWorkers() {
+        return this._workers;
+    }
+
+    /**
+     * Sets the amount of local worker processes. With at least one worker
+     * (local or running, see {@link #setWorkerAddresses(String)}), the
+     * lattice is searched by {@link DistributedSearch}, which sends the nodes
+     * to the workers and finds the same optimum as {@link LatticeSearch}.
+     *
+     * @param value Amount of processes, 0 to start no processes
+     */
+    public void setWorkers(int value) {
+        this._workers = value;
+    }
+
+    /**
+     * Returns the tip text for the addresses of running worker processes.
+     *
+     * @return String with corresponding tip text
+     */
+    public String workerAddressesTipText() {
+        return TipText.workerAddresses;
+    }
+
+    /**
+     * Gets the addresses of running worker processes.
+     *
+     * @return Addresses separated by ','
+     */
+    public String getWorkerAddresses() {
+        return this._workerAddresses;
+    }
+
+    /**
+     * Sets the addresses of running worker processes, which are started
+     * by {@link SearchWorker#main(String[])}, e.g. on other machines.
+     *
+     * @param value Addresses (host:port) separated by ','
+     */
+    public void setWorkerAddresses(String value) {
+        this._workerAddresses = value == null ? "" : value.trim();
+    }
+
+    /**
+     * Returns the tip text for the heap of local worker processes.
+     *
+     * @return String with corresponding tip text
+     */
+    public String workerHeapTipText() {
+        return TipText.workerHeap;
+    }
+
+    /**
+     * Gets the maximum heap of every local worker process.
+     *
+     * @return Heap in megabytes, 0 for the default of the JVM
+     */
+    public int getWorkerHeap() {
+        return this._workerHeap;
+    }
+
+    /**
+     * Sets the maximum heap of every local worker process.
+     *
+     * @param value Heap in megabytes, 0 for the default of the JVM
+     */
+    public void setWorkerHeap(int value) {
+        this._workerHeap = value;
+    }
+
+    /**
+     * Returns the tip text for the token file of running worker processes.
+     *
+     * @return String with corresponding tip text
+     */
+    public String workerTokenFileTipText() {
+        return TipText.workerTokenFile;
+    }
+
+    /**
+     * Gets the file with the shared token of running worker processes.
+     *
+     * @return Returns a file object
+     */
+    public File getWorkerTokenFile() {
+        return this._workerTokenFile;
+    }
+
+    /**
+     * Sets the file with the shared token of running worker processes,
+     * which must be the token file of the workers (see
+     * {@link SearchWorker#main(String[])}). Local workers use the same token
+     * if it is set, a random one otherwise.
+     *
+     * @param value File object
+     */
+    public void setWorkerTokenFile(File value) {
+        this._workerTokenFile = value;
+    }
+
+    /**
+     * Returns the tip text for the storage of the encoded data.
+     *
+     * @return String with corresponding tip text
+     */
+    public String storageTipText() {
+        return TipText.storage;
+    }
+
+    /**
+     * Gets the storage of the encoded data.
+     *
+     * @return Storage type
+     */
+    public SelectedTag getStorage() {
+        return new SelectedTag(this._storage, STORAGE_TYPES);
+    }
+
+    /**
+     * Sets the storage of the encoded data. Off the heap, the codes are kept
+     * in direct buffers or memory-mapped temporary files, only the
+     * dictionaries and hierarchies stay on the heap.
+     *
+     * @param value Storage type
+     */
+    public void setStorage(SelectedTag value) {
+        if (value.getTags() == STORAGE_TYPES) {
+            this._storage = value.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Returns the tip text for the information loss metric.
+     *
+     * @return String with corresponding tip text
+     */
+    public String metricTipText() {
+        return TipText.metric;
+    }
+
+    /**
+     * Gets the information loss metric.
+     *
+     * @return Metric
+     */
+    public SelectedTag getMetric() {
+        return new SelectedTag(this._metric, METRICS);
+    }
+
+    /**
+     * Sets the information loss metric. The height selects the lowest
+     * anonymous transformation, the other metrics compare the minimal
+     * anonymous transformations, or all anonymous transformations if rows
+     * may be suppressed. The parallel search evaluates the metric with
+     * {@link InformationLoss}, the ARX search with the metric of ARX.
+     *
+     * @param value Metric
+     */
+    public void setMetric(SelectedTag value) {
+        if (value.getTags() == METRICS) {
+            this._metric = value.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Returns the tip text for the result cache.
+     *
+     * @return String with corresponding tip text
+     */
+    public String resultCacheTipText() {
+        return TipText.resultCache;
+    }
+
+    /**
+     * Gets where anonymized outputs are cached.
+     *
+     * @return Selected tag of the result cache
+     */
+    public SelectedTag getResultCache() {
+        return new SelectedTag(this._resultCache, RESULT_CACHE_TYPES);
+    }
+
+    /**
+     * Sets where anonymized outputs are cached. A cached output is returned
+     * instead of searching if the data, the options and the hierarchy files
+     * are unchanged.
+     *
+     * @param value Selected tag of the result cache
+     */
+    public void setResultCache(SelectedTag value) {
+        if (value.getTags() == RESULT_CACHE_TYPES) {
+            this._resultCache = value.getSelectedTag().getID();
+        }
+    }
+
+    /**
+     * Returns the tip text for the folder of the result cache.
+     *
+     * @return String with corresponding tip text
+     */
+    public String resultCacheFolderTipText() {
+        return TipText.resultCacheFolder;
+    }
+
+    /**
+     * Gets the folder of the result cache.
+     *
+     * @return Returns a file object
+     */
+    public File getResultCacheFolder() {
+        return this._resultCacheFolder;
+    }
+
+    /**
+     * Sets the folder of the result cache, which is created if necessary.
+     *
+     * @param value File object
+     */
+    public void setResultCacheFolder(File value) {
+        this._resultCacheFolder = value;
+    }
+
+    /**
+     * Returns the tip text for the file the transformation is saved to.
+     *
+     * @return String with corresponding tip text
+     */
+    public String saveTransformationTipText() {
+        return TipText.saveTransformation;
+    }
+
+    /**
+     * Gets the file the optimal transformation is saved to.
+     *
+     * @return Returns a file object
+     */
+    public File getSaveTransformation() {
+        return this._saveTransformation;
+    }
+
+    /**
+     * Sets the file the optimal transformation is saved to.
+     *
+     * @param value File object
+     */
+    public void setSaveTransformation(File value) {
+        this._saveTransformation = value;
+    }
+
+    /**
+     * Returns the tip text for the file a transformation is loaded from.
+     *
+     * @return String with corresponding tip text
+     */
+    public String loadTransformationTipText() {
+        return TipText.loadTransformation;
+    }
+
+    /**
+     * Gets the file a saved transformation is loaded from.
+     *
+     * @return Returns a file object
+     */
+    public File getLoadTransformation() {
+        return this._loadTransformation;
+    }
+
+    /**
+     * Sets the file a saved transformation is loaded from. The loaded
+     * transformation replaces the search if it has been saved for the same
+     * hierarchies and criteria and still fulfills the criteria.
+     *
+     * @param value File object
+     */
+    public void setLoadTransformation(File value) {
+        this._loadTransformation = value;
+    }
+
+    /**
+     * Returns the learned transformation of the apply-only mode.
+     *
+     * @return The learned scheme or null if nothing has been learned yet.
+     */
+    public GeneralizationScheme getScheme() {
+        return m_Scheme;
+    }
+
+    /**
+     * Returns the metrics of the last anonymization.
+     *
+     * @return The metrics or null if nothing has been anonymized yet.
+     */
+    public AnonymizationMetrics getMetrics() {
+        return m_Metrics;
+    }
+
+    public static void main(String[] args) {
+        //GUIChooser.main(args);
+        runFilter(new Flash(), args);
+    }
+
+    @Override
+    public Enumeration<Option> listOptions() {
+        Vector<Option> newVector = new Vector<Option>();
+        Enumeration<Option> options = super.listOptions();
+
+        while (options.hasMoreElements()) {
+            newVector.addElement(options.nextElement());
+        }
+
+        newVector.addElement(new Option("\tSpecify hierarchy folder", "H", 1, "-H <h>"));
+        newVector.addElement(new Option("\tSpecify quasi-identifying attributes", "Q", 1, "-Q <q>"));
+        newVector.addElement(new Option("\tSpecify sensitive attributes", "S", 1, "-S <s>"));
+        newVector.addElement(new Option("\tSpecify k-Anonymity (default 2)", "K", 1, "-K <k>"));
+        newVector.addElement(new Option("\tSpecify l-diversity (default 2)", "L", 1, "-L <l>"));
+        newVector.addElement(new Option("\tSpecify l-diversity variant [ Distinct=0 | Entropy=1 ]", "V", 1, "-V <v>"));
+        newVector.addElement(new Option("\tSpecify t-Closeness (default " + T_MIN_VALUE + ")", "T", 1, "-T <t>"));
+        newVector.addElement(new Option("\tSpecify max outliers (default 0.0)", "O", 1, "-O <o>"));
+        newVector.addElement(new Option("\tSpecify depth of generated numeric hierarchies (default "
+                + IntervalHierarchyGenerator.MIN_DEPTH + ")", "hierarchy-depth", 1, "-hierarchy-depth <d>"));
+        newVector.addElement(new Option("\tSpecify interval method of generated numeric hierarchies "
+                + "[ EqualWidth=0 | Quantile=1 ]", "hierarchy-method", 1, "-hierarchy-method <m>"));
+        newVector.addElement(new Option("\tSpecify history size of the search (default " + historySize + ")",
+                "history", 1, "-history <n>"));
+        newVector.addElement(new Option("\tSpecify max snapshot size relative to the data set (default "
+                + snapshotSizeDataset + ")", "snapshot-dataset", 1, "-snapshot-dataset <d>"));
+        newVector.addElement(new Option("\tSpecify max snapshot size relative to the previous snapshot (default "
+                + snapshotSizeSnapshot + ")", "snapshot-snapshot", 1, "-snapshot-snapshot <d>"));
+        newVector.addElement(new Option("\tChoose history and snapshot sizes from row count, lattice size and heap",
+                "auto-memory", 0, "-auto-memory"));
+        newVector.addElement(new Option("\tSearch once and generalize all later instances with the learned levels",
+                "apply-only", 0, "-apply-only"));
+        newVector.addElement(new Option("\tSpecify data set to learn the transformation from in apply-only mode",
+                "train", 1, "-train <file>"));
+        newVector.addElement(new Option("\tSpecify amount of threads of the parallel lattice search "
+                + "(default 0 = sequential ARX search)", "threads", 1, "-threads <n>"));
+        newVector.addElement(new Option("\tSpecify time budget of the search in seconds "
+                + "(default 0 = unlimited)", "maxTime", 1, "-maxTime <s>"));
+        newVector.addElement(new Option("\tSpecify amount of local worker processes of the lattice search "
+                + "(default 0)", "workers", 1, "-workers <n>"));
+        newVector.addElement(new Option("\tSpecify addresses of running worker processes of the lattice search",
+                "worker-addresses", 1, "-worker-addresses <host:port,...>"));
+        newVector.addElement(new Option("\tSpecify max heap of local worker processes in megabytes "
+                + "(default 0 = JVM default)", "worker-heap", 1, "-worker-heap <mb>"));
+        newVector.addElement(new Option("\tSpecify file with the shared token of running worker processes",
+                "worker-token-file", 1, "-worker-token-file <file>"));
+        newVector.addElement(new Option("\tSpecify storage of the encoded data "
+                + "[ Heap=0 | Direct=1 | Mapped=2 ]", "storage", 1, "-storage <s>"));
+        newVector.addElement(new Option("\tSpecify the information loss metric "
+                + "[ Height=0 | Precision=1 | Discernibility=2 | Entropy=3 | AECS=4 ]", "metric", 1, "-metric <m>"));
+        newVector.addElement(new Option("\tSpecify caching of the anonymized output "
+                + "[ Off=0 | Memory=1 | Folder=2 ]", "result-cache", 1, "-result-cache <c>"));
+        newVector.addElement(new Option("\tSpecify folder of the result cache (default "
+                + _resultCacheFolder + ")", "result-cache-folder", 1, "-result-cache-folder <dir>"));
+        newVector.addElement(new Option("\tSpecify file to save the optimal transformation to",
+                "save-transformation", 1, "-save-transformation <file>"));
+        newVector.addElement(new Option("\tSpecify file of a saved transformation to verify and apply instead of searching",
+                "load-transformation", 1, "-load-transformation <file>"));
+        return newVector.elements();
+    }
+
+    @Override
+    public void setOptions(String[] options) throws Exception {
+        super.setOptions(options);
+
+        // hierarchy folder
+        String tmpStr = Utils.getOption('H', options);
+        if (tmpStr.length() != 0) {
+            this._hierarchyFolder = new File(tmpStr);
+        }
+
+        // quasi-identifying attributes
+        tmpStr = Utils.getOption('Q', options);
+        if (tmpStr.length() != 0) {
+            this.setDataQuasiIdentifier(tmpStr);
+        }
+
+        // sensitive attributes
+        tmpStr = Utils.getOption('S', options);
+        if (tmpStr.length() != 0) {
+            this.setDataSensitiveAttributes(tmpStr);
+        }
+
+        // k-anonymity
+        tmpStr = Utils.getOption('K', options);
+        this.setEnableKAnonymity(tmpStr.length() != 0);
+        if (this.getEnableKAnonymity()) {
+            this.setValueK((Integer.parseInt(tmpStr)));
+        }
+        // l-diversity
+        tmpStr = Utils.getOption('L', options);
+        this.setEnableLDiversity(tmpStr.length() != 0);
+        if (this.getEnableLDiversity()) {
+            this.setValueL((Integer.parseInt(tmpStr)));
+            // l-diversity variant
+            tmpStr = Utils.getOption('V', options);
+            if (tmpStr.length() != 0) {
+                int variantIndex = Integer.parseInt(tmpStr);
+                if (variantIndex >= 0 && variantIndex < L_DIVERSITY_VARIANTS.length) {
+                    this._lVariant = L_DIVERSITY_VARIANTS[variantIndex].getID();
+                }
+            }
+        }
+        // t-closeness
+        tmpStr = Utils.getOption('T', options);
+        this.setEnableTCloseness(tmpStr.length() != 0);
+        if (this.getEnableTCloseness()) {
+            this.setValueT(Double.parseDouble(tmpStr));
+        }
+        // max outliers
+        tmpStr = Utils.getOption("O", options);
+        if (tmpStr.length() != 0) {
+            this.setMaxOutliers(Double.parseDouble(tmpStr));
+        }
+        // generated hierarchies
+        tmpStr = Utils.getOption("hierarchy-depth", options);
+        if (tmpStr.length() != 0) {
+            this.setHierarchyDepth(Integer.parseInt(tmpStr));
+        }
+        tmpStr = Utils.getOption("hierarchy-method", options);
+        if (tmpStr.length() != 0) {
+            int methodIndex = Integer.parseInt(tmpStr);
+            if (methodIndex >= 0 && methodIndex < HIERARCHY_METHODS.length) {
+                this._hierarchyMethod = HIERARCHY_METHODS[methodIndex].getID();
+            }
+        }
+        // memory settings of the search
+        tmpStr = Utils.getOption("history", options);
+        if (tmpStr.length() != 0) {
+            this.setHistorySize(Integer.parseInt(tmpStr));
+        }
+        tmpStr = Utils.getOption("snapshot-dataset", options);
+        if (tmpStr.length() != 0) {
+            this.setSnapshotSizeDataset(Double.parseDouble(tmpStr));
+        }
+        tmpStr = Utils.getOption("snapshot-snapshot", options);
+        if (tmpStr.length() != 0) {
+            this.setSnapshotSizeSnapshot(Double.parseDouble(tmpStr));
+        }
+        this.setAutoTuneMemory(Utils.getFlag("auto-memory", options));
+        // apply-only mode
+        this.setApplyOnly(Utils.getFlag("apply-only", options));
+        tmpStr = Utils.getOption("train", options);
+        if (tmpStr.length() != 0) {
+            this.setTrainingFile(new File(tmpStr));
+        }
+        // parallel search
+        tmpStr = Utils.getOption("threads", options);
+        if (tmpStr.length() != 0) {
+            this.setThreads(Integer.parseInt(tmpStr));
+        }
+        tmpStr = Utils.getOption("maxTime", options);
+        if (tmpStr.length() != 0) {
+            this.setMaxTime(Integer.parseInt(tmpStr));
+        }
+        tmpStr = Utils.getOption("workers", options);
+        if (tmpStr.length() != 0) {
+            this.setWorkers(Integer.parseInt(tmpStr));
+        }
+        this.setWorkerAddresses(Utils.getOption("worker-addresses", options));
+        tmpStr = Utils.getOption("worker-heap", options);
+        if (tmpStr.length() != 0) {
+            this.setWorkerHeap(Integer.parseInt(tmpStr));
+        }
+        tmpStr = Utils.getOption("worker-token-file", options);
+        if (tmpStr.length() != 0) {
+            this.setWorkerTokenFile(new File(tmpStr));
+        }
+        tmpStr = Utils.getOption("storage", options);
+        if (tmpStr.length() != 0) {
+            int storageIndex = Integer.parseInt(tmpStr);
+            if (storageIndex >= 0 && storageIndex < STORAGE_TYPES.length) {
+                this._storage = STORAGE_TYPES[storageIndex].getID();
+            }
+        }
+        tmpStr = Utils.getOption("metric", options);
+        if (tmpStr.length() != 0) {
+            int metricIndex = Integer.parseInt(tmpStr);
+            if (metricIndex >= 0 && metricIndex < METRICS.length) {
+                this._metric = METRICS[metricIndex].getID();
+            }
+        }
+        // result cache
+        tmpStr = Utils.getOption("result-cache", options);
+        if (tmpStr.length() != 0) {
+            int cacheIndex = Integer.parseInt(tmpStr);
+            if (cacheIndex >= 0 && cacheIndex < RESULT_CACHE_TYPES.length) {
+                this._resultCache = RESULT_CACHE_TYPES[cacheIndex].getID();
+            }
+        }
+        tmpStr = Utils.getOption("result-cache-folder", options);
+        if (tmpStr.length() != 0) {
+            this.setResultCacheFolder(new File(tmpStr));
+        }
+        // saved transformations
+        tmpStr = Utils.getOption("save-transformation", options);
+        if (tmpStr.length() != 0) {
+            this.setSaveTransformation(new File(tmpStr));
+        }
+        tmpStr = Utils.getOption("load-transformation", options);
+        if (tmpStr.length() != 0) {
+            this.setLoadTransformation(new File(tmpStr));
+        }
+    }
+
+    /**
+     * Gets the current settings of the filter as command line options,
+     * which {@link #setOptions(String[])} accepts again.
+     *
+     * @return The options.
+     */
+    @Override
+    public String[] getOptions() {
+        List<String> options = new LinkedList<String>(Arrays.asList(super.getOptions()));
+
+        options.add("-H");
+        options.add(this.getDataHierarchyFolder().getPath());
+        options.add("-Q");
+        options.add(this.getDataQuasiIdentifier());
+        if (!this.getDataSensitiveAttributes().isEmpty()) {
+            options.add("-S");
+            options.add(this.getDataSensitiveAttributes());
+        }
+
+        if (this.getEnableKAnonymity()) {
+            options.add("-K");
+            options.add(String.valueOf(this.getValueK()));
+        }
+        if (this.getEnableLDiversity()) {
+            options.add("-L");
+            options.add(String.valueOf(this.getValueL()));
+            options.add("-V");
+            options.add(String.valueOf(this.getVariant().getSelectedTag().getID()));
+        }
+        if (this.getEnableTCloseness()) {
+            options.add("-T");
+            options.add(String.valueOf(this.getValueT()));
+        }
+
+        if (this.getMaxOutliers() > 0) {
+            options.add("-O");
+            options.add(String.valueOf(this.getMaxOutliers()));
+        }
+
+        if (this.getHierarchyDepth() != IntervalHierarchyGenerator.MIN_DEPTH) {
+            options.add("-hierarchy-depth");
+            options.add(String.valueOf(this.getHierarchyDepth()));
+            options.add("-hierarchy-method");
+            options.add(String.valueOf(this._hierarchyMethod));
+        }
+
+        if (this.getAutoTuneMemory()) {
+            options.add("-auto-memory");
+        } else {
+            if (this.getHistorySize() != historySize) {
+                options.add("-history");
+                options.add(String.valueOf(this.getHistorySize()));
+            }
+            if (this.getSnapshotSizeDataset() != snapshotSizeDataset) {
+                options.add("-snapshot-dataset");
+                options.add(String.valueOf(this.getSnapshotSizeDataset()));
+            }
+            if (this.getSnapshotSizeSnapshot() != snapshotSizeSnapshot) {
+                options.add("-snapshot-snapshot");
+                options.add(String.valueOf(this.getSnapshotSizeSnapshot()));
+            }
+        }
+
+        if (this.getApplyOnly()) {
+            options.add("-apply-only");
+        }
+        if (this.getTrainingFile().isFile()) {
+            options.add("-train");
+            options.add(this.getTrainingFile().getPath());
+        }
+
+        if (this.getThreads() > 0) {
+            options.add("-threads");
+            options.add(String.valueOf(this.getThreads()));
+        }
+        if (this.getMaxTime() > 0) {
+            options.add("-maxTime");
+            options.add(String.valueOf(this.getMaxTime()));
+        }
+        if (this.getWorkers() > 0) {
+            options.add("-workers");
+            options.add(String.valueOf(this.getWorkers()));
+        }
+        if (this.getWorkerHeap() > 0) {
+            options.add("-worker-heap");
+            options.add(String.valueOf(this.getWorkerHeap()));
+        }
+        if (!this.getWorkerAddresses().isEmpty()) {
+            options.add("-worker-addresses");
+            options.add(this.getWorkerAddresses());
+        }
+        if (this.getWorkerTokenFile().isFile()) {
+            options.add("-worker-token-file");
+            options.add(this.getWorkerTokenFile().getPath());
+        }
+        if (this._storage != 0) {
+            options.add("-storage");
+            options.add(String.valueOf(this._storage));
+        }
+        if (this._metric != 0) {
+            options.add("-metric");
+            options.add(String.valueOf(this._metric));
+        }
+        if (this._resultCache != 0) {
+            options.add("-result-cache");
+            options.add(String.valueOf(this._resultCache));
+            options.add("-result-cache-folder");
+            options.add(this.getResultCacheFolder().getPath());
+        }
+        if (!this.getSaveTransformation().isDirectory()) {
+            options.add("-save-transformation");
+            options.add(this.getSaveTransformation().getPath());
+        }
+        if (this.getLoadTransformation().isFile()) {
+            options.add("-load-transformation");
+            options.add(this.getLoadTransformation().getPath());
+        }
+
+        return options.toArray(new String[0]);
+    }
+
+    public Capabilities getCapabilities() {
+        Capabilities result = super.getCapabilities();
+        result.enableAllAttributes();
+        result.enableAllClasses();
+        result.enable(Capabilities.Capability.NO_CLASS); // filter doesn't need class to be set
+        return result;
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return The revision string.
+     */
+    public String getRevision() {
+        return RevisionUtils.extract("$Revision: 1.0.1 $");
+    }
+
+    /**
+     * Determine the Output format.
+     *
+     * @param inputFormat The input format.
+     * @return The output format.
+     */
+    protected Instances determineOutputFormat(Instances inputFormat) throws Exception {
+        if (this.hasImmediateOutputFormat()) {
+            this.learn(inputFormat);
+            return m_Scheme.getOutputFormat();
+        }
+        return new Instances(inputFormat, 0);
+    }
+
+    /**
+     * The output format is known when the input format is set if the
+     * transformation is learned from a training file in apply-only mode.
+     *
+     * @return Returns true if the transformation is learned from a training file.
+     */
+    @Override
+    protected boolean hasImmediateOutputFormat() {
+        return this.getApplyOnly() && this.getTrainingFile().isFile();
+    }
+
+    /**
+     * Learns the transformation of the apply-only mode from the training file.
+     *
+     * @param inputFormat The input format, which the training file must match.
+     * @throws IllegalArgumentException if the training file does not match or is too small.
+     */
+    protected void learn(Instances inputFormat) throws Exception {
+        Instances training = DataSource.read(this.getTrainingFile().getAbsolutePath());
+        if (!training.equalHeaders(inputFormat)) {
+            throw new IllegalArgumentException("The training file must have the same attributes as the data");
+        }
+        this.anonymize(training);
+        // the anonymized training data is not output
+        m_Suppressed = null;
+        if (m_Scheme == null) {
+            throw new IllegalArgumentException("The training file must contain at least two instances");
+        }
+    }
+
+    /**
+     * Resets the filter and forgets a learned transformation.
+     */
+    @Override
+    protected void reset() {
+        super.reset();
+        m_Scheme = null;
+        m_ReportedUnseen = 0;
+    }
+
+    /**
+     * Input an instance for filtering. Once a transformation has been
+     * learned in apply-only mode, the instance is generalized immediately.
+     *
+     * @param instance The input instance.
+     * @return True if the filtered instance may now be collected with output().
+     */
+    @Override
+    public boolean input(Instance instance) throws Exception {
+        if (!this.getApplyOnly() || m_Scheme == null) {
+            return super.input(instance);
+        }
+        if (getInputFormat() == null) {
+            throw new IllegalStateException("No input instance format defined");
+        }
+        if (m_NewBatch) {
+            resetQueue();
+            m_NewBatch = false;
+        }
+        push(m_Scheme.apply(instance, false));
+        return true;
+    }
+
+    /**
+     * Signifies that this batch of input to the filter is finished and
+     * warns about values which have been suppressed in apply-only mode
+     * because they are not part of their hierarchy.
+     *
+     * @return True if there are instances pending output.
+     */
+    @Override
+    public boolean batchFinished() throws Exception {
+        boolean pending = super.batchFinished();
+        if (m_Scheme != null && m_Scheme.getUnseen() > m_ReportedUnseen) {
+            Logger.log(Logger.Level.WARNING, (m_Scheme.getUnseen() - m_ReportedUnseen)
+                    + " values are not part of their hierarchy and have been suppressed");
+            m_ReportedUnseen = m_Scheme.getUnseen();
+        }
+        return pending;
+    }
+
+    /**
+     * Process the given instance to apply anonymization algorithm.
+     * In apply-only mode the learned transformation is applied instead,
+     * learning it from the training file or from this batch first.
+     * With a result cache, the output of an earlier run on the same data
+     * with the same options and hierarchy files is returned instead.
+     *
+     * @param instances The instance on which k-Anonymity, l-diversity or t-closeness should be applied.
+     * @return An anonymized instance.
+     * @throws IllegalArgumentException, if incorrect parameters are provided
+     */
+    public Instances process(Instances instances) throws Exception {
+        if (this.getApplyOnly() && m_Scheme == null && this.getTrainingFile().isFile()) {
+            this.learn(instances);
+        }
+        if (this.getApplyOnly() && m_Scheme != null) {
+            Instances output = m_Scheme.apply(instances, null);
+            m_Suppressed = new boolean[output.numInstances()];
+            this.setOutputFormat(new Instances(output, 0));
+            return output;
+        }
+        // a hit skips the search, so a transformation to save bypasses the cache
+        if (this._resultCache == 0 || instances.numInstances() <= 1
+                || !this.getSaveTransformation().isDirectory()) {
+            return this.anonymize(instances);
+        }
+
+        File folder = this._resultCache == 2 ? this.getResultCacheFolder() : null;
+        String key = this.getResultKey(instances);
+        ResultCache.Result result = ResultCache.getInstance().get(key, folder);
+        if (result != null) {
+            if (this.getDebug()) {
+                System.out.println(this.getClass().toString() + " result cache hit " + key);
+            }
+            Instances output = result.getOutput();
+            output.setClassIndex(instances.classIndex());
+            m_Optimal = true;
+            m_Suppressed = result.getSuppressed();
+            this.setOutputFormat(new Instances(output, 0));
+            return output;
+        }
+        Instances output = this.anonymize(instances);
+        if (m_Optimal && m_Suppressed != null) {
+            // a transformation found within a time budget depends on the timing and is not reused
+            ResultCache.getInstance().put(key, output, m_Suppressed, folder);
+        }
+        return output;
+    }
+
+    /**
+     * Searches the optimal transformation of the given instance and applies it.
+     *
+     * @param instances The instance on which k-Anonymity, l-diversity or t-closeness should be applied.
+     * @return An anonymized instance.
+     * @throws IllegalArgumentException, if incorrect parameters are provided
+     */
+    protected Instances anonymize(Instances instances) throws Exception {
+        if (instances.numInstances() <= 1) {
+            m_Suppressed = new boolean[instances.numInstances()];
+            return instances;
+        }
+        return this.anonymize(new ARFF2ARX(instances));
+    }
+
+    /**
+     * Searches the optimal transformation of an ARFF file and applies it.
+     * The file is read incrementally and its rows are encoded straight
+     * into the columns of the search. Weka instances are created only for
+     * the output, so the data set is held about once instead of as input,
+     * copy of the input and strings. The apply-only mode needs the input
+     * instances, so the file is read completely in this mode.
+     *
+     * @param loader The loader of the ARFF file.
+     * @return An anonymized instance.
+     * @throws IllegalArgumentException, if incorrect parameters are provided
+     */
+    public Instances anonymize(ArffLoader loader) throws Exception {
+        if (this.getApplyOnly()) {
+            return this.process(loader.getDataSet());
+        }
+        return this.anonymize(new ARFF2ARX(loader));
+    }
+
+    /**
+     * Searches the optimal transformation of the data of a converter and applies it.
+     *
+     * @param converter The converter of the instances, not initialized yet.
+     * @return An anonymized instance.
+     * @throws IllegalArgumentException, if incorrect parameters are provided
+     */
+    protected Instances anonymize(ARFF2ARX converter) throws Exception {
+        Instances instances = converter.getInstances();
+        AnonymizationMetrics metrics = new AnonymizationMetrics(instances.relationName(), instances.numInstances());
+        try {
+            return this.anonymize(converter, metrics);
+        } finally {
+            // stops sampling the heap if the anonymization failed
+            metrics.finish();
+        }
+    }
+
+    /**
+     * Searches the optimal transformation of the data of a converter and
+     * applies it, recording the metrics of the anonymization.
+     *
+     * @param converter The converter of the instances, not initialized yet.
+     * @param metrics   The metrics, which sample the heap since their construction.
+     * @return An anonymized instance.
+     * @throws IllegalArgumentException, if incorrect parameters are provided
+     */
+    protected Instances anonymize(ARFF2ARX converter, AnonymizationMetrics metrics) throws Exception {
+        Instances instances = converter.getInstances();
+        List<String> saColumns = this.getSensitiveColumns(instances);
+        List<String> qiColumns = this.getQiColumns(instances, saColumns);
+
+        this.checkParameters();
+
+        converter.setQi(qiColumns.toArray(new String[qiColumns.size()]))
+                .setColumnar(true).setStorage(ColumnarData.Storage.values()[this._storage]);
+        PrivacyCriteria criteria = this.createCriteria(saColumns);
+        if (criteria.hasSensitiveCriteria()) {
+            converter.setSensitive(criteria.getSensitive());
+        }
+        converter.init(this.createHierarchyBuilder(instances));
+        metrics.setRows(converter.getNumRows());
+        metrics.setHierarchyLoadTime(converter.getHierarchyTime());
+        metrics.setConversionTime(converter.getConversionTime());
+        if (converter.getNumRows() <= 1) {
+            // like a batch of instances, a single row is not anonymized
+            Instances output = new ARX2ARFF(converter).convert(new HashMap<String, Integer>(),
+                    new boolean[converter.getNumRows()]);
+            this.setOutputFormat(new Instances(output, 0));
+            return output;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String, Integer> levels = null;
+        boolean[] outliers = null;
+        StoredTransformation stored = this.loadTransformation(converter, criteria);
+        if (stored != null) {
+            TransformationChecker checker = new TransformationChecker(converter.getColumns(), converter.getQi(),
+                    converter.getHierarchies(), criteria);
+            int[] storedLevels = stored.getLevels(converter.getQi());
+            metrics.setNodesChecked(1);
+            if (checker.check(storedLevels).isAnonymous()) {
+                levels = stored.getLevels();
+                outliers = checker.getSuppressedRows(storedLevels);
+            } else {
+                this.rejectTransformation("it violates the criteria on this data");
+            }
+        }
+
+        boolean searched = levels == null;
+        m_Optimal = true;
+        // the ARX search has no time budget, so a budget always uses our search
+        if (levels == null && (this.getThreads() > 0 || this.getMaxTime() > 0 || this.isDistributed())) {
+            TransformationChecker checker = this.withMetric(new TransformationChecker(converter.getColumns(),
+                    converter.getQi(), converter.getHierarchies(), criteria));
+            LocalWorkers local = null;
+            LatticeSearch search;
+            TransformationChecker.Result optimum;
+            try {
+                if (this.isDistributed()) {
+                    List<InetSocketAddress> addresses = this.parseWorkerAddresses();
+                    String token = this.getWorkerTokenFile().isFile()
+                            ? new String(SearchWorker.readToken(this.getWorkerTokenFile()), "UTF-8")
+                            : SearchWorker.generateToken();
+                    if (this.getWorkers() > 0) {
+                        local = LocalWorkers.start(this.getWorkers(), this.getWorkerHeap(), token);
+                        addresses.addAll(local.getAddresses());
+                    }
+                    search = new DistributedSearch(checker, addresses, token.getBytes("UTF-8"));
+                } else {
+                    search = new LatticeSearch(checker, Math.max(1, this.getThreads()));
+                }
+                search.setMaxTime(this.getMaxTime() * 1000L);
+                try {
+                    optimum = search.search();
+                } finally {
+                    if (search instanceof DistributedSearch) {
+                        ((DistributedSearch) search).close();
+                    }
+                }
+            } finally {
+                if (local != null) {
+                    local.close();
+                }
+            }
+            metrics.setNodesChecked(metrics.getNodesChecked() + search.getChecked());
+            m_Optimal = search.isOptimal();
+            metrics.setOptimal(m_Optimal);
+            if (optimum == null) {
+                throw new IllegalArgumentException(m_Optimal
+                        ? "No transformation fulfills the privacy criteria"
+                        : "No transformation fulfilling the privacy criteria was found within the time budget");
+            }
+            levels = new HashMap<String, Integer>();
+            for (int q = 0; q < converter.getQi().length; q++) {
+                levels.put(converter.getQi()[q], optimum.getLevels()[q]);
+            }
+            outliers = checker.getSuppressedRows(optimum.getLevels());
+        }
+
+        if (levels == null) {
+            config = ARXConfiguration.create();
+            config.setMetric(this.createMetric());
+            criteria.configure(config);
+
+            final ARXAnonymizer anonymizer = new ARXAnonymizer();
+            anonymizer.setSuppressionString("*");
+            anonymizer.setRemoveOutliers(true);
+            SearchMemorySettings memorySettings = this.getAutoTuneMemory()
+                    ? SearchMemorySettings.tune(converter)
+                    : new SearchMemorySettings(_historySize, _snapshotSizeDataset, _snapshotSizeSnapshot);
+            memorySettings.apply(anonymizer);
+            if (this.getDebug()) {
+                System.out.println(this.getClass().toString() + " " + memorySettings);
+            }
+
+            ARXResult result = anonymizer.anonymize(converter.getData(), config);
+            metrics.countNodes(result.getLattice());
+
+            levels = new HashMap<String, Integer>();
+            for (String qi : converter.getQi()) {
+                levels.put(qi, result.getGlobalOptimum().getGeneralization(qi));
+            }
+            outliers = ARX2ARFF.getOutliers(result.getOutput());
+        }
+
+        if (searched && m_Optimal && !this.getSaveTransformation().isDirectory()) {
+            StoredTransformation.create(levels, converter.getHierarchies(), converter.getGenerators(), criteria)
+                    .save(this.getSaveTransformation());
+        }
+
+        metrics.setSearchTime(System.currentTimeMillis() - start);
+        metrics.setSuppressedRows(outliers);
+        m_Suppressed = outliers;
+
+        // create output instance
+        start = System.currentTimeMillis();
+        final Instances output;
+        if (this.getApplyOnly()) {
+            m_Scheme = GeneralizationScheme.create(instances, converter.getHierarchies(), levels);
+            output = m_Scheme.apply(instances, outliers);
+        } else {
+            output = new ARX2ARFF(converter).convert(levels, outliers);
+        }
+        metrics.setOutputTime(System.currentTimeMillis() - start);
+        this.publishMetrics(metrics);
+        if (!m_Optimal) {
+            // reported in the relation name, which the Explorer shows for the filtered data
+            output.setRelationName(output.relationName() + "-not-proven-optimal");
+            Logger.log(Logger.Level.WARNING, "The time budget of " + this.getMaxTime()
+                    + "s expired, the transformation is not proven to be optimal");
+        }
+
+        // set the final output format
+        this.setOutputFormat(new Instances(output, 0));
+
+        return output;
+    }
+
+    /**
+     * Publishes the metrics of an anonymization as MBean and log line. The
+     * MBean always shows the last anonymization of the JVM.
+     *
+     * @param metrics The metrics.
+     */
+    protected void publishMetrics(AnonymizationMetrics metrics) {
+        metrics.finish();
+        m_Metrics = metrics;
+        try {
+            metrics.publish();
+        } catch (IllegalStateException e) {
+            Logger.log(Logger.Level.WARNING, e);
+        }
+        Logger.log(Logger.Level.INFO, metrics.getLogLine());
+        if (this.getDebug()) {
+            System.out.println(this.getClass().toString() + " " + metrics.getLogLine());
+        }
+    }
+
+    /**
+     * Computes the key of the result cache from the content of the
+     * instances, the options, the selected attributes and the checksums of
+     * the hierarchy files of the quasi-identifiers.
+     *
+     * @param instances The instances to anonymize.
+     * @return The key.
+     * @throws IOException if a hierarchy file can not be read.
+     * @throws InterruptedException if hashing the instances has been interrupted.
+     */
+    protected String getResultKey(Instances instances) throws IOException, InterruptedException {
+        List<String> saColumns = this.getSensitiveColumns(instances);
+        List<String> qiColumns = this.getQiColumns(instances, saColumns);
+        HierarchyBuilder builder = this.createHierarchyBuilder(instances);
+        Map<String, Long> checksums = new LinkedHashMap<String, Long>();
+        for (String qi : qiColumns) {
+            File source = builder.getSource(instances.attribute(qi));
+            if (source != null) {
+                checksums.put(qi, ResultCache.checksum(source));
+            }
+        }
+        if (this.getLoadTransformation().isFile()) {
+            checksums.put(this.getLoadTransformation().getPath(), ResultCache.checksum(this.getLoadTransformation()));
+        }
+        String configuration = Arrays.toString(this.getOptions()) + " QI=" + qiColumns + " SA=" + saColumns;
+        String fingerprint = ResultCache.fingerprint(instances, Runtime.getRuntime().availableProcessors());
+        return ResultCache.key(fingerprint, configuration, checksums);
+    }
+
+    /**
+     * @return Returns true if the lattice is searched by worker processes.
+     */
+    protected boolean isDistributed() {
+        return this.getWorkers() > 0 || !this.getWorkerAddresses().isEmpty();
+    }
+
+    /**
+     * Parses the addresses of running worker processes.
+     *
+     * @return The addresses.
+     * @throws IllegalArgumentException if an address has no valid port.
+     */
+    protected List<InetSocketAddress> parseWorkerAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        for (String address : this.getWorkerAddresses().split(",")) {
+            address = address.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            int colon = address.lastIndexOf(':');
+            try {
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("No host");
+                }
+                addresses.add(new InetSocketAddress(address.substring(0, colon),
+                        Integer.parseInt(address.substring(colon + 1))));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("The worker address \"" + address + "\" must be host:port", e);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Determines the names of the sensitive attributes.
+     *
+     * @param instances The instances or their header.
+     * @return The sensitive attributes.
+     */
+    protected List<String> getSensitiveColumns(Instances instances) {
+        this._sensitiveAttributes.setUpper(instances.numAttributes() - 1);
+        List<String> saColumns = new LinkedList<String>();
+        for (int index : this._sensitiveAttributes.getSelection()) {
+            saColumns.add(instances.attribute(index).name());
+        }
+        return saColumns;
+    }
+
+    /**
+     * Determines the names of the quasi-identifiers, which are the selected
+     * attributes that are not sensitive.
+     *
+     * @param instances The instances or their header.
+     * @param saColumns The sensitive attributes.
+     * @return The quasi-identifiers.
+     */
+    protected List<String> getQiColumns(Instances instances, List<String> saColumns) {
+        this._quasiIdentifiers.setUpper(instances.numAttributes() - 1);
+        List<String> qiColumns = new LinkedList<String>();
+        for (int index : this._quasiIdentifiers.getSelection()) {
+            if (saColumns.indexOf(instances.attribute(index).name()) == -1) {
+                qiColumns.add(instances.attribute(index).name());
+            }
+        }
+        return qiColumns;
+    }
+
+    /**
+     * Creates the privacy criteria from the settings of the filter.
+     *
+     * @param saColumns The sensitive attributes.
+     * @return The privacy criteria.
+     */
+    protected PrivacyCriteria createCriteria(List<String> saColumns) {
+        PrivacyCriteria.LVariant lVariant = this.getVariant().getSelectedTag().getID() == 1
+                ? PrivacyCriteria.LVariant.ENTROPY
+                : PrivacyCriteria.LVariant.DISTINCT;
+        return new PrivacyCriteria(
+                this.getEnableKAnonymity() ? this.getValueK() : 0,
+                this.getEnableLDiversity() ? this.getValueL() : 0,
+                lVariant,
+                this.getEnableTCloseness() ? this.getValueT() : 0,
+                saColumns.toArray(new String[saColumns.size()]),
+                _maxOutliers);
+    }
+
+    /**
+     * Loads the saved transformation if one is configured and it has been
+     * saved for the same hierarchies and criteria.
+     *
+     * @param converter An initialized ARFF to ARX converter.
+     * @param criteria  The privacy criteria.
+     * @return The transformation or null.
+     * @throws IOException if the file can not be read.
+     */
+    protected StoredTransformation loadTransformation(ARFF2ARX converter, PrivacyCriteria criteria) throws IOException {
+        m_TransformationMismatch = null;
+        if (!this.getLoadTransformation().isFile()) {
+            return null;
+        }
+        StoredTransformation stored = StoredTransformation.load(this.getLoadTransformation());
+        String mismatch = stored.getMismatch(converter.getHierarchies(), converter.getGenerators(), criteria);
+        if (mismatch != null) {
+            this.rejectTransformation(mismatch);
+            return null;
+        }
+        return stored;
+    }
+
+    /**
+     * Records and reports why the saved transformation is not used, the
+     * search runs instead.
+     *
+     * @param reason Why the transformation is not used.
+     */
+    protected void rejectTransformation(String reason) {
+        m_TransformationMismatch = reason;
+        Logger.log(Logger.Level.WARNING, this.getClass().getSimpleName() + ": the saved transformation "
+                + this.getLoadTransformation() + " is not used, because " + reason + ". Searching instead.");
+    }
+
+    /**
+     * Creates the builder which retrieves the hierarchies of the quasi-identifiers.
+     *
+     * @param instances The instances to anonymize.
+     * @return The configured hierarchy builder.
+     */
+    protected HierarchyBuilder createHierarchyBuilder(Instances instances) {
+        String relation = instances.relationName() == null ? "" : instances.relationName().trim();
+        HierarchyBuilder builder = new HierarchyBuilder(_hierarchyFolder, relation);
+        builder.setIntervalDepth(this.getHierarchyDepth());
+        builder.setIntervalMethod(this._hierarchyMethod == 1
+                ? IntervalHierarchyGenerator.Method.QUANTILE
+                : IntervalHierarchyGenerator.Method.EQUAL_WIDTH);
+        return builder;
+    }
+
+    /**
+     * Creates the information loss metric of the ARX search.
+     *
+     * @return The selected metric.
+     */
+    protected Metric<?> createMetric() {
+        switch (this._metric) {
+            case 1:
+                return Metric.createPrecisionMetric();
+            case 2:
+                return Metric.createDMMetric();
+            case 3:
+                return Metric.createEntropyMetric();
+            case 4:
+                return Metric.createAECSMetric();
+            default:
+                return DEFAULT_METRIC;
+        }
+    }
+
+    /**
+     * Lets a checker of the parallel lattice search evaluate the selected
+     * information loss metric.
+     *
+     * @param checker The checker.
+     * @return The checker, or a copy which evaluates the metric.
+     */
+    protected TransformationChecker withMetric(TransformationChecker checker) {
+        return this._metric == 0 ? checker : checker.withMetric(InformationLoss.Metric.values()[this._metric]);
+    }
+
+    /**
+     * Checks if the given parameters are suitable.
+     */
+    protected void checkParameters() {
         if (this._criteria.isEmpty()) {
             throw new IllegalArgumentException("Please choose at least one privacy criterion");
         }
@@ -685,6 +2074,33 @@ public class Flash extends SimpleBatchFilter implements UnsupervisedFilter {
         if (_maxOutliers < 0 || _maxOutliers >= 1) {
             throw new IllegalArgumentException("maxOutliers must be between 0 and 1");
         }
+        if (_historySize < 1) {
+            throw new IllegalArgumentException("The history size must be at least 1");
+        }
+        if (_snapshotSizeDataset <= 0 || _snapshotSizeDataset > 1
+                || _snapshotSizeSnapshot <= 0 || _snapshotSizeSnapshot > 1) {
+            throw new IllegalArgumentException("Snapshot sizes must be between 0 and 1");
+        }
+        if (_threads < 0) {
+            throw new IllegalArgumentException("The amount of threads must not be negative");
+        }
+        if (_workers < 0) {
+            throw new IllegalArgumentException("The amount of workers must not be negative");
+        }
+        if (_workerHeap < 0) {
+            throw new IllegalArgumentException("The heap of the workers must not be negative");
+        }
+        if (!this.parseWorkerAddresses().isEmpty() && !_workerTokenFile.isFile()) {
+            throw new IllegalArgumentException("Running worker processes require a token file");
+        }
+        if (_maxTime < 0) {
+            throw new IllegalArgumentException("The time budget must not be negative");
+        }
+        if (_hierarchyDepth < IntervalHierarchyGenerator.MIN_DEPTH
+                || _hierarchyDepth > IntervalHierarchyGenerator.MAX_DEPTH) {
+            throw new IllegalArgumentException("The depth of generated hierarchies must be between "
+                    + IntervalHierarchyGenerator.MIN_DEPTH + " and " + IntervalHierarchyGenerator.MAX_DEPTH);
+        }
     }
 
 }
\ No newline at end of file
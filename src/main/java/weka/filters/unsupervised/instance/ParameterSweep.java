@@ -0,0 +1,527 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package weka.filters.unsupervised.instance;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deidentifier.arx.*;
+import weka.core.*;
+import weka.core.converters.ArffSaver;
+import weka.core.converters.CSVSaver;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Searches the optimal transformation for many settings of the privacy
+ * criteria, e.g. k = 2..50, to choose the parameters. The data and the
+ * hierarchies are encoded once and shared by the checkers of all settings.
+ * The outcome of every checked node is kept per setting: a node which is
+ * anonymous under stricter criteria is anonymous under the current ones,
+ * and a node which violates weaker criteria violates the current ones, so
+ * such nodes are not checked again. The result is a table with the
+ * information loss of the optimal transformation of every setting, in the
+ * metric selected by the filter and as precision.
+ * <pre>
+ * java weka.filters.unsupervised.instance.ParameterSweep -i in.arff -o loss.csv -sweep-k 2:50 -K 2 -H hierarchies
+ * </pre>
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ParameterSweep {
+
+    protected final Flash flash;
+
+    /**
+     * Amount of nodes checked on the data in the last sweep.
+     */
+    protected final AtomicInteger evaluated = new AtomicInteger();
+
+    /**
+     * Amount of nodes whose outcome has been inferred in the last sweep.
+     */
+    protected final AtomicInteger inferred = new AtomicInteger();
+
+    /**
+     * Constructor of the sweep.
+     *
+     * @param flash The filter which provides the attributes, hierarchies and the amount of threads.
+     */
+    public ParameterSweep(Flash flash) {
+        this.flash = flash;
+    }
+
+    /**
+     * Sweeps a grid of parameters around the criteria of the filter.
+     *
+     * @param instances The instances.
+     * @param ks        Values of k, null to keep the value of the filter.
+     * @param ls        Values of l, null to keep the value of the filter.
+     * @param ts        Values of t, null to keep the value of the filter.
+     * @return The result of every setting.
+     * @throws Exception if a hierarchy can not be read or the search has been interrupted.
+     */
+    public List<Entry> run(Instances instances, int[] ks, int[] ls, double[] ts) throws Exception {
+        List<String> saColumns = flash.getSensitiveColumns(instances);
+        return run(instances, grid(flash.createCriteria(saColumns), ks, ls, ts));
+    }
+
+    /**
+     * Searches the optimal transformation for every setting.
+     *
+     * @param instances The instances.
+     * @param settings  The criteria of every setting, on the sensitive attributes of the filter.
+     * @return The result of every setting.
+     * @throws Exception if a hierarchy can not be read or the search has been interrupted.
+     */
+    public List<Entry> run(Instances instances, List<PrivacyCriteria> settings) throws Exception {
+        evaluated.set(0);
+        inferred.set(0);
+        List<String> saColumns = flash.getSensitiveColumns(instances);
+        List<String> qiColumns = flash.getQiColumns(instances, saColumns);
+        flash.checkParameters();
+        String[] qi = qiColumns.toArray(new String[qiColumns.size()]);
+        String[] sensitive = new String[0];
+        for (PrivacyCriteria criteria : settings) {
+            if (criteria.hasSensitiveCriteria()) {
+                sensitive = criteria.getSensitive();
+            }
+        }
+
+        ARFF2ARX converter = new ARFF2ARX(instances).setQi(qi).setColumnar(true)
+                .setStorage(ColumnarData.Storage.values()[flash.getStorage().getSelectedTag().getID()]);
+        if (sensitive.length > 0) {
+            converter.setSensitive(sensitive);
+        }
+        converter.init(flash.createHierarchyBuilder(instances));
+        List<Entry> entries = new ArrayList<Entry>(settings.size());
+        if (settings.isEmpty()) {
+            return entries;
+        }
+        // the frequencies of the metric are computed once and shared by all settings
+        TransformationChecker base = flash.withMetric(new TransformationChecker(converter.getColumns(), qi,
+                converter.getHierarchies(), settings.get(0), sensitive));
+
+        List<Outcomes> previous = new ArrayList<Outcomes>();
+        for (PrivacyCriteria criteria : settings) {
+            long start = System.currentTimeMillis();
+            int evaluatedBefore = evaluated.get();
+            int inferredBefore = inferred.get();
+            Outcomes outcomes = new Outcomes(criteria);
+            TransformationChecker checker = base.withCriteria(criteria);
+            SweepSearch search = new SweepSearch(checker, outcomes, previous);
+            TransformationChecker.Result optimum = search.search();
+            if (optimum != null && optimum.getClassSizes() == null) {
+                // the outcome of the optimum was inferred, the loss needs its suppressed rows
+                optimum = checker.check(optimum.getLevels());
+                evaluated.incrementAndGet();
+            }
+            previous.add(outcomes);
+            entries.add(new Entry(criteria, optimum, checker.getHeights(), checker.getNumRows(),
+                    evaluated.get() - evaluatedBefore, inferred.get() - inferredBefore,
+                    System.currentTimeMillis() - start));
+            if (flash.getDebug()) {
+                System.out.println(this.getClass().toString() + " " + entries.get(entries.size() - 1));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Creates the settings of a grid of parameters.
+     *
+     * @param base The criteria which provide the parameters not swept.
+     * @param ks   Values of k, null to keep the value of the base.
+     * @param ls   Values of l, null to keep the value of the base.
+     * @param ts   Values of t, null to keep the value of the base.
+     * @return The settings, k varying slowest.
+     */
+    public static List<PrivacyCriteria> grid(PrivacyCriteria base, int[] ks, int[] ls, double[] ts) {
+        if (ks == null) {
+            ks = new int[]{base.getK()};
+        }
+        if (ls == null) {
+            ls = new int[]{base.getL()};
+        }
+        if (ts == null) {
+            ts = new double[]{base.getT()};
+        }
+        List<PrivacyCriteria> settings = new ArrayList<PrivacyCriteria>(ks.length * ls.length * ts.length);
+        for (int k : ks) {
+            for (int l : ls) {
+                for (double t : ts) {
+                    settings.add(new PrivacyCriteria(k, l, base.getLVariant(), t, base.getSensitive(),
+                            base.getMaxOutliers()));
+                }
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Creates the table of the information loss of every setting.
+     *
+     * @param entries The results of the settings.
+     * @return The table.
+     */
+    public static Instances toTable(List<Entry> entries) {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute("k"));
+        attributes.add(new Attribute("l"));
+        attributes.add(new Attribute("lVariant", Arrays.asList("distinct", "entropy")));
+        attributes.add(new Attribute("t"));
+        attributes.add(new Attribute("maxOutliers"));
+        attributes.add(new Attribute("anonymous", Arrays.asList("true", "false")));
+        attributes.add(new Attribute("levels", (List<String>) null));
+        attributes.add(new Attribute("height"));
+        attributes.add(new Attribute("precision"));
+        attributes.add(new Attribute("suppressed"));
+        attributes.add(new Attribute("loss"));
+        attributes.add(new Attribute("evaluated"));
+        attributes.add(new Attribute("inferred"));
+        attributes.add(new Attribute("timeMs"));
+        Instances table = new Instances("sweep", attributes, entries.size());
+
+        for (Entry entry : entries) {
+            PrivacyCriteria criteria = entry.getCriteria();
+            double[] values = new double[attributes.size()];
+            values[0] = criteria.getK();
+            values[1] = criteria.getL();
+            values[2] = criteria.getLVariant() == PrivacyCriteria.LVariant.ENTROPY ? 1 : 0;
+            values[3] = criteria.getT();
+            values[4] = criteria.getMaxOutliers();
+            values[5] = entry.isAnonymous() ? 0 : 1;
+            if (entry.isAnonymous()) {
+                values[6] = table.attribute(6).addStringValue(Arrays.toString(entry.getLevels()));
+                values[7] = entry.getHeight();
+                values[8] = entry.getPrecision();
+                values[9] = entry.getSuppressed();
+                values[10] = Double.isNaN(entry.getLoss()) ? Utils.missingValue() : entry.getLoss();
+            } else {
+                for (int i = 6; i <= 10; i++) {
+                    values[i] = Utils.missingValue();
+                }
+            }
+            values[11] = entry.getEvaluated();
+            values[12] = entry.getInferred();
+            values[13] = entry.getTime();
+            table.add(new DenseInstance(1d, values));
+        }
+        return table;
+    }
+
+    /**
+     * @return Amount of nodes checked on the data in the last sweep.
+     */
+    public int getEvaluated() {
+        return evaluated.get();
+    }
+
+    /**
+     * @return Amount of nodes whose outcome has been inferred in the last sweep.
+     */
+    public int getInferred() {
+        return inferred.get();
+    }
+
+    /**
+     * Outcome of every checked node of one setting.
+     */
+    protected static class Outcomes {
+
+        protected final PrivacyCriteria criteria;
+
+        protected final Map<Long, Boolean> anonymous = new ConcurrentHashMap<Long, Boolean>();
+
+        protected Outcomes(PrivacyCriteria criteria) {
+            this.criteria = criteria;
+        }
+    }
+
+    /**
+     * Lattice search which infers the outcome of nodes from the outcomes of
+     * earlier settings before checking them on the data.
+     */
+    protected class SweepSearch extends LatticeSearch {
+
+        protected final Outcomes outcomes;
+
+        /**
+         * Outcomes of settings which are at least as strict as the current one.
+         */
+        protected final List<Outcomes> stricter = new ArrayList<Outcomes>();
+
+        /**
+         * Outcomes of settings which are at most as strict as the current one.
+         */
+        protected final List<Outcomes> weaker = new ArrayList<Outcomes>();
+
+        protected SweepSearch(TransformationChecker checker, Outcomes outcomes, List<Outcomes> previous) {
+            super(checker, Math.max(1, flash.getThreads()));
+            this.outcomes = outcomes;
+            for (Outcomes other : previous) {
+                if (other.criteria.isAtLeastAsStrictAs(outcomes.criteria)) {
+                    stricter.add(other);
+                }
+                if (outcomes.criteria.isAtLeastAsStrictAs(other.criteria)) {
+                    weaker.add(other);
+                }
+            }
+        }
+
+        @Override
+        protected TransformationChecker.Result check(int[] node) {
+            long key = key(node);
+            Boolean anonymous = null;
+            for (int i = 0; i < stricter.size() && anonymous == null; i++) {
+                if (Boolean.TRUE.equals(stricter.get(i).anonymous.get(key))) {
+                    anonymous = Boolean.TRUE;
+                }
+            }
+            for (int i = 0; i < weaker.size() && anonymous == null; i++) {
+                if (Boolean.FALSE.equals(weaker.get(i).anonymous.get(key))) {
+                    anonymous = Boolean.FALSE;
+                }
+            }
+            TransformationChecker.Result result;
+            if (anonymous != null) {
+                inferred.incrementAndGet();
+                result = new TransformationChecker.Result(node.clone(), anonymous, -1, null);
+            } else {
+                evaluated.incrementAndGet();
+                result = super.check(node);
+            }
+            outcomes.anonymous.put(key, result.isAnonymous());
+            return result;
+        }
+    }
+
+    /**
+     * Result of one setting.
+     */
+    public static class Entry {
+
+        protected final PrivacyCriteria criteria;
+
+        protected final int[] levels;
+
+        protected final int suppressed;
+
+        protected final int height;
+
+        protected final double precision;
+
+        protected final double loss;
+
+        protected final int evaluated;
+
+        protected final int inferred;
+
+        protected final long time;
+
+        protected Entry(PrivacyCriteria criteria, TransformationChecker.Result optimum, int[] heights, int rows,
+                        int evaluated, int inferred, long time) {
+            this.criteria = criteria;
+            this.evaluated = evaluated;
+            this.inferred = inferred;
+            this.time = time;
+            if (optimum == null) {
+                this.levels = null;
+                this.suppressed = rows;
+                this.height = -1;
+                this.precision = 1d;
+                this.loss = Double.NaN;
+                return;
+            }
+            this.levels = optimum.getLevels();
+            this.suppressed = optimum.getSuppressed();
+            int sum = 0;
+            for (int level : levels) {
+                sum += level;
+            }
+            this.height = sum;
+            this.precision = InformationLoss.precision(levels, heights, rows, suppressed);
+            this.loss = optimum.getLoss();
+        }
+
+        /**
+         * @return The criteria of the setting.
+         */
+        public PrivacyCriteria getCriteria() {
+            return criteria;
+        }
+
+        /**
+         * @return Returns true if a transformation fulfills the criteria.
+         */
+        public boolean isAnonymous() {
+            return levels != null;
+        }
+
+        /**
+         * @return Levels of the optimal transformation or null.
+         */
+        public int[] getLevels() {
+            return levels;
+        }
+
+        /**
+         * @return Amount of suppressed rows of the optimal transformation.
+         */
+        public int getSuppressed() {
+            return suppressed;
+        }
+
+        /**
+         * @return Sum of the levels of the optimal transformation.
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @return Precision loss of the optimal transformation between 0 and 1.
+         */
+        public double getPrecision() {
+            return precision;
+        }
+
+        /**
+         * @return Loss of the optimal transformation in the metric of the filter, NaN for the height.
+         */
+        public double getLoss() {
+            return loss;
+        }
+
+        /**
+         * @return Amount of nodes checked on the data.
+         */
+        public int getEvaluated() {
+            return evaluated;
+        }
+
+        /**
+         * @return Amount of nodes whose outcome has been inferred.
+         */
+        public int getInferred() {
+            return inferred;
+        }
+
+        /**
+         * @return Time of the search in milliseconds.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" + criteria + ", levels: " + Arrays.toString(levels)
+                    + ", precision: " + String.format(Locale.ENGLISH, "%.4f", precision)
+                    + ", suppressed: " + suppressed + ", evaluated: " + evaluated + ", inferred: " + inferred + "}";
+        }
+    }
+
+    /**
+     * Parses a list of values "a,b,c" or a range "from:to[:step]".
+     */
+    protected static double[] parse(String values) {
+        if (values.contains(":")) {
+            String[] parts = values.split(":");
+            // decimal arithmetic, so 0.1:0.3:0.1 ends with 0.3
+            BigDecimal from = new BigDecimal(parts[0].trim());
+            BigDecimal to = new BigDecimal(parts[1].trim());
+            BigDecimal step = parts.length > 2 ? new BigDecimal(parts[2].trim()) : BigDecimal.ONE;
+            if (step.signum() <= 0) {
+                throw new IllegalArgumentException("The step of the range \"" + values + "\" must be positive");
+            }
+            int count = to.compareTo(from) < 0 ? 0 : to.subtract(from).divideToIntegralValue(step).intValue() + 1;
+            double[] result = new double[Math.max(0, count)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = from.add(step.multiply(BigDecimal.valueOf(i))).doubleValue();
+            }
+            return result;
+        }
+        String[] parts = values.split(",");
+        double[] result = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Double.parseDouble(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static int[] toInts(double[] values) {
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (int) Math.round(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a sweep from the command line. Besides the options of
+     * {@link Flash} it accepts -i, -o (.arff or .csv, standard output if
+     * missing) and -sweep-k, -sweep-l, -sweep-t with a list "a,b,c" or a
+     * range "from:to[:step]".
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        try {
+            String input = Utils.getOption('i', args);
+            if (input.length() == 0) {
+                throw new IllegalArgumentException("Please specify the input file (-i)");
+            }
+            String output = Utils.getOption('o', args);
+            String tmpStr = Utils.getOption("sweep-k", args);
+            int[] ks = tmpStr.length() == 0 ? null : toInts(parse(tmpStr));
+            tmpStr = Utils.getOption("sweep-l", args);
+            int[] ls = tmpStr.length() == 0 ? null : toInts(parse(tmpStr));
+            tmpStr = Utils.getOption("sweep-t", args);
+            double[] ts = tmpStr.length() == 0 ? null : parse(tmpStr);
+            Flash flash = new Flash();
+            flash.setOptions(args);
+            flash.setEnableLDiversity(flash.getEnableLDiversity() || ls != null);
+            flash.setEnableTCloseness(flash.getEnableTCloseness() || ts != null);
+
+            ParameterSweep sweep = new ParameterSweep(flash);
+            Instances table = toTable(sweep.run(DataSource.read(input), ks, ls, ts));
+            if (output.length() == 0) {
+                System.out.println(table);
+            } else if (output.toLowerCase().endsWith(".csv")) {
+                CSVSaver saver = new CSVSaver();
+                saver.setInstances(table);
+                saver.setFile(new File(output));
+                saver.writeBatch();
+            } else {
+                ArffSaver saver = new ArffSaver();
+                saver.setInstances(table);
+                saver.setFile(new File(output));
+                saver.writeBatch();
+            }
+            System.err.println("Evaluated nodes: " + sweep.getEvaluated() + ", inferred nodes: " + sweep.getInferred());
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,635 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package weka.filters.unsupervised.instance;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.deidentifier.arx.*;
+import weka.core.*;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Verifies the privacy of anonymized instances, e.g. the output of
+ * {@link Flash}. The rows are split into one chunk per thread and the
+ * threads work in two passes. The first pass collects the distinct values
+ * of the numeric columns and the largest codes of the other columns. The
+ * second pass encodes the rows of its chunk, groups them by their tuple of
+ * quasi-identifiers and counts the classes, and the counts are merged. A
+ * tuple is encoded as a long from the codes of its values. If the product
+ * of the domains does not fit into a long, the tuples are numbered within
+ * every chunk and the numbers are mapped per class while merging. The
+ * report contains the size of every class and, per sensitive attribute,
+ * its distinct values, entropy and distance to the overall distribution.
+ * Rows which are suppressed by the anonymization are counted separately and
+ * do not form a class.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class PrivacyVerifier {
+
+    protected final int threads;
+
+    /**
+     * Constructor of the verifier.
+     *
+     * @param threads Amount of threads.
+     */
+    public PrivacyVerifier(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The amount of threads must be at least 1");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Constructor of the verifier using one thread per available processor.
+     */
+    public PrivacyVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Verifies anonymized instances.
+     *
+     * @param instances  The anonymized instances.
+     * @param qi         Names of the quasi-identifiers.
+     * @param sensitive  Names of the sensitive attributes.
+     * @param suppressed Array indicating for every row whether it has been suppressed by the
+     *                   anonymization, null to detect suppressed rows by their labels,
+     *                   see {@link #isSuppressed(int[], int[])}.
+     * @return The report.
+     * @throws InterruptedException if the verification has been interrupted.
+     */
+    public Report verify(final Instances instances, String[] qi, String[] sensitive, final boolean[] suppressed)
+            throws InterruptedException {
+        final int rows = instances.numInstances();
+        if (suppressed != null && suppressed.length != rows) {
+            throw new IllegalArgumentException("The suppressed rows must have one entry per row, "
+                    + "but have " + suppressed.length + " for " + rows + " rows");
+        }
+        // quasi-identifiers first, then sensitive attributes
+        final Attribute[] columns = new Attribute[qi.length + sensitive.length];
+        for (int q = 0; q < qi.length; q++) {
+            columns[q] = attribute(instances, qi[q]);
+        }
+        for (int s = 0; s < sensitive.length; s++) {
+            columns[qi.length + s] = attribute(instances, sensitive[s]);
+        }
+        final int qis = qi.length;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        EquivalenceClassCounter counter = new EquivalenceClassCounter(sensitive.length);
+        try {
+            int chunk = Math.max(1, (rows + threads - 1) / threads);
+            List<Callable<Scan>> scans = new ArrayList<Callable<Scan>>();
+            for (int start = 0; start < rows; start += chunk) {
+                final int from = start;
+                final int to = Math.min(rows, start + chunk);
+                scans.add(new Callable<Scan>() {
+                    @Override
+                    public Scan call() {
+                        return new Scan(instances, columns, from, to);
+                    }
+                });
+            }
+            List<Scan> parts = new ArrayList<Scan>();
+            for (Future<Scan> future : executor.invokeAll(scans)) {
+                parts.add(future.get());
+            }
+
+            // merge the scans of the chunks
+            final double[][] distinct = new double[columns.length][];
+            final int[] domains = new int[qis];
+            final int[] suppressionCodes = new int[qis];
+            for (int c = 0; c < columns.length; c++) {
+                if (columns[c].isNumeric()) {
+                    distinct[c] = merge(parts, c);
+                }
+                if (c < qis) {
+                    int max = columns[c].isNumeric() ? distinct[c].length : 0;
+                    boolean marks = false;
+                    for (Scan part : parts) {
+                        max = Math.max(max, part.max[c]);
+                        marks |= part.unmarked[c];
+                    }
+                    domains[c] = max + 1;
+                    suppressionCodes[c] = marks ? columns[c].indexOfValue(ARX2ARFF.SUPPRESSED) : -1;
+                }
+            }
+            boolean fits = true;
+            long product = 1;
+            for (int q = 0; q < qis && fits; q++) {
+                fits = product <= Long.MAX_VALUE / domains[q];
+                product *= domains[q];
+            }
+            final boolean mixedRadix = fits;
+
+            List<Callable<Count>> counts = new ArrayList<Callable<Count>>();
+            for (int start = 0; start < rows; start += chunk) {
+                final int from = start;
+                final int to = Math.min(rows, start + chunk);
+                counts.add(new Callable<Count>() {
+                    @Override
+                    public Count call() {
+                        return new Count(instances, columns, qis, distinct, domains, mixedRadix,
+                                suppressed, suppressionCodes, from, to);
+                    }
+                });
+            }
+            LongIntHashMap[] prefixes = new LongIntHashMap[mixedRadix ? 0 : qis];
+            for (int q = 0; q < prefixes.length; q++) {
+                prefixes[q] = new LongIntHashMap(1024);
+            }
+            for (Future<Count> future : executor.invokeAll(counts)) {
+                Count count = future.get();
+                if (mixedRadix) {
+                    counter.merge(count.counter);
+                    continue;
+                }
+                // number the tuples of the chunk like those of the other chunks
+                long[] keys = new long[count.counter.getNumClasses()];
+                for (int c = 0; c < keys.length; c++) {
+                    long key = 0;
+                    for (int q = 0; q < qis; q++) {
+                        key = prefixes[q].index(key * domains[q] + count.tuples[c][q]);
+                    }
+                    keys[c] = key;
+                }
+                counter.merge(count.counter, keys);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report(counter, sensitive);
+    }
+
+    /**
+     * Verifies anonymized instances, detecting suppressed rows by their
+     * labels, see {@link #isSuppressed(int[], int[])}.
+     *
+     * @param instances The anonymized instances.
+     * @param qi        Names of the quasi-identifiers.
+     * @param sensitive Names of the sensitive attributes.
+     * @return The report.
+     * @throws InterruptedException if the verification has been interrupted.
+     */
+    public Report verify(Instances instances, String[] qi, String[] sensitive) throws InterruptedException {
+        return verify(instances, qi, sensitive, null);
+    }
+
+    /**
+     * Verifies the output of a filter, with the rows it suppressed if it
+     * knows them.
+     *
+     * @param instances The anonymized instances.
+     * @param flash     The filter which created the instances.
+     * @return The report.
+     * @throws InterruptedException if the verification has been interrupted.
+     */
+    public Report verify(Instances instances, Flash flash) throws InterruptedException {
+        List<String> saColumns = flash.getSensitiveColumns(instances);
+        List<String> qiColumns = flash.getQiColumns(instances, saColumns);
+        String[] sensitive = flash.getEnableLDiversity() || flash.getEnableTCloseness()
+                ? saColumns.toArray(new String[saColumns.size()]) : new String[0];
+        boolean[] suppressed = flash.getSuppressedRows();
+        if (suppressed != null && suppressed.length != instances.numInstances()) {
+            // the filter has anonymized other instances since
+            suppressed = null;
+        }
+        return verify(instances, qiColumns.toArray(new String[qiColumns.size()]), sensitive, suppressed);
+    }
+
+    /**
+     * Merges the sorted distinct values of a numeric column of all chunks.
+     */
+    private static double[] merge(List<Scan> parts, int column) {
+        int length = 0;
+        for (Scan part : parts) {
+            length += part.distinct[column].length;
+        }
+        double[] values = new double[length];
+        int offset = 0;
+        for (Scan part : parts) {
+            System.arraycopy(part.distinct[column], 0, values, offset, part.distinct[column].length);
+            offset += part.distinct[column].length;
+        }
+        return distinct(values, length);
+    }
+
+    /**
+     * Sorts values and removes duplicates.
+     *
+     * @return The sorted distinct values.
+     */
+    private static double[] distinct(double[] values, int length) {
+        Arrays.sort(values, 0, length);
+        int distinct = 0;
+        for (int i = 0; i < length; i++) {
+            if (distinct == 0 || values[i] != values[distinct - 1]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+
+    /**
+     * Encodes a value. Nominal and string values are encoded by their
+     * index, numeric values by their rank among the distinct values. Missing
+     * values get the code after the largest one.
+     *
+     * @param instance  The instance.
+     * @param attribute The attribute.
+     * @param distinct  Sorted distinct values of a numeric attribute.
+     * @return The code.
+     */
+    protected static int encode(Instance instance, Attribute attribute, double[] distinct) {
+        int index = attribute.index();
+        if (attribute.isNumeric()) {
+            return instance.isMissing(index) ? distinct.length
+                    : Arrays.binarySearch(distinct, instance.value(index));
+        }
+        return instance.isMissing(index) ? attribute.numValues() : (int) instance.value(index);
+    }
+
+    /**
+     * Determines whether a row is suppressed if the anonymization did not
+     * report its suppressed rows: all columns which mark suppressed rows
+     * have the suppression label. A column marks suppressed rows if it is
+     * nominal, contains the suppression label and not every row has it, as
+     * at the highest level. Rows which are generalized to the suppression
+     * label in all of these columns are not distinguished from suppressed
+     * ones, so reporting the suppressed rows is preferred.
+     *
+     * @param codes            Code of every quasi-identifier of the row.
+     * @param suppressionCodes Code of the suppression label per quasi-identifier, -1 if it does not mark rows.
+     * @return Returns true if the row is suppressed.
+     */
+    protected static boolean isSuppressed(int[] codes, int[] suppressionCodes) {
+        boolean marked = false;
+        for (int q = 0; q < codes.length; q++) {
+            if (suppressionCodes[q] >= 0) {
+                if (codes[q] != suppressionCodes[q]) {
+                    return false;
+                }
+                marked = true;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * First pass over a chunk: the sorted distinct values of every numeric
+     * column and the largest code of every other column.
+     */
+    protected static class Scan {
+
+        protected final double[][] distinct;
+
+        protected final int[] max;
+
+        /**
+         * Whether a row of the chunk does not have the suppression label, per column.
+         */
+        protected final boolean[] unmarked;
+
+        protected Scan(Instances instances, Attribute[] columns, int from, int to) {
+            distinct = new double[columns.length][];
+            max = new int[columns.length];
+            unmarked = new boolean[columns.length];
+            double[] values = new double[to - from];
+            for (int c = 0; c < columns.length; c++) {
+                int index = columns[c].index();
+                if (columns[c].isNumeric()) {
+                    int count = 0;
+                    for (int r = from; r < to; r++) {
+                        Instance instance = instances.instance(r);
+                        if (!instance.isMissing(index)) {
+                            values[count++] = instance.value(index);
+                        }
+                    }
+                    distinct[c] = distinct(values, count);
+                    continue;
+                }
+                int label = columns[c].isNominal() ? columns[c].indexOfValue(ARX2ARFF.SUPPRESSED) : -1;
+                for (int r = from; r < to; r++) {
+                    int code = encode(instances.instance(r), columns[c], null);
+                    max[c] = Math.max(max[c], code);
+                    unmarked[c] |= label >= 0 && code != label;
+                }
+            }
+        }
+    }
+
+    /**
+     * Second pass over a chunk: the classes of its rows.
+     */
+    protected static class Count {
+
+        protected final EquivalenceClassCounter counter;
+
+        /**
+         * Codes of the quasi-identifiers of every class, by class identifier,
+         * if the keys are only unique within the chunk.
+         */
+        protected int[][] tuples;
+
+        protected Count(Instances instances, Attribute[] columns, int qis, double[][] distinct, int[] domains,
+                        boolean mixedRadix, boolean[] suppressed, int[] suppressionCodes, int from, int to) {
+            counter = new EquivalenceClassCounter(columns.length - qis);
+            LongIntHashMap[] prefixes = new LongIntHashMap[mixedRadix ? 0 : qis];
+            for (int q = 0; q < prefixes.length; q++) {
+                prefixes[q] = new LongIntHashMap(1024);
+            }
+            tuples = mixedRadix ? null : new int[16][];
+            int[] codes = new int[qis];
+            int[] values = new int[columns.length - qis];
+            for (int r = from; r < to; r++) {
+                Instance instance = instances.instance(r);
+                for (int q = 0; q < qis; q++) {
+                    codes[q] = encode(instance, columns[q], distinct[q]);
+                }
+                for (int s = 0; s < values.length; s++) {
+                    values[s] = encode(instance, columns[qis + s], distinct[qis + s]);
+                }
+                if (suppressed != null ? suppressed[r] : isSuppressed(codes, suppressionCodes)) {
+                    counter.addSuppressed(values);
+                    continue;
+                }
+                long key = 0;
+                for (int q = 0; q < qis; q++) {
+                    key = key * domains[q] + codes[q];
+                    if (!mixedRadix) {
+                        key = prefixes[q].index(key);
+                    }
+                }
+                int classes = counter.getNumClasses();
+                counter.add(key, values);
+                if (!mixedRadix && counter.getNumClasses() > classes) {
+                    if (classes == tuples.length) {
+                        tuples = Arrays.copyOf(tuples, classes * 2);
+                    }
+                    tuples[classes] = codes.clone();
+                }
+            }
+        }
+    }
+
+    private static Attribute attribute(Instances instances, String name) {
+        Attribute attribute = instances.attribute(name);
+        if (attribute == null) {
+            throw new IllegalArgumentException("The attribute \"" + name + "\" does not exist");
+        }
+        return attribute;
+    }
+
+    /**
+     * Result of a verification.
+     */
+    public static class Report {
+
+        protected final String[] sensitive;
+
+        protected final int rows;
+
+        protected final int suppressed;
+
+        protected final int[] sizes;
+
+        protected final int[][] distinct;
+
+        protected final double[][] entropy;
+
+        protected final double[][] distance;
+
+        protected Report(EquivalenceClassCounter counter, String[] sensitive) {
+            this.sensitive = sensitive;
+            this.rows = counter.getNumRows();
+            this.suppressed = counter.getNumSuppressed();
+            this.sizes = counter.getSizes();
+            this.distinct = new int[sensitive.length][];
+            this.entropy = new double[sensitive.length][];
+            this.distance = new double[sensitive.length][];
+            for (int s = 0; s < sensitive.length; s++) {
+                distinct[s] = counter.getDistinct(s);
+                entropy[s] = counter.getEntropy(s);
+                distance[s] = counter.getDistance(s);
+            }
+        }
+
+        /**
+         * @return Amount of rows.
+         */
+        public int getNumRows() {
+            return rows;
+        }
+
+        /**
+         * @return Amount of suppressed rows.
+         */
+        public int getSuppressed() {
+            return suppressed;
+        }
+
+        /**
+         * @return Amount of classes.
+         */
+        public int getNumClasses() {
+            return sizes.length;
+        }
+
+        /**
+         * @return Size of every class, i.e. its k.
+         */
+        public int[] getClassSizes() {
+            return sizes;
+        }
+
+        /**
+         * @param s Index of the sensitive attribute.
+         * @return Distinct l of every class.
+         */
+        public int[] getDistinctL(int s) {
+            return distinct[s];
+        }
+
+        /**
+         * @param s Index of the sensitive attribute.
+         * @return Entropy l of every class, i.e. the exponential of its entropy.
+         */
+        public double[] getEntropyL(int s) {
+            double[] result = new double[entropy[s].length];
+            for (int c = 0; c < result.length; c++) {
+                result[c] = Math.exp(entropy[s][c]);
+            }
+            return result;
+        }
+
+        /**
+         * @param s Index of the sensitive attribute.
+         * @return Equal distance t of every class.
+         */
+        public double[] getT(int s) {
+            return distance[s];
+        }
+
+        /**
+         * @return The smallest class size.
+         */
+        public int getK() {
+            int k = sizes.length == 0 ? 0 : Integer.MAX_VALUE;
+            for (int size : sizes) {
+                k = Math.min(k, size);
+            }
+            return k;
+        }
+
+        /**
+         * @return The smallest distinct l over all classes and sensitive attributes.
+         */
+        public int getDistinctL() {
+            int l = sizes.length == 0 ? 0 : Integer.MAX_VALUE;
+            for (int[] values : distinct) {
+                for (int value : values) {
+                    l = Math.min(l, value);
+                }
+            }
+            return l;
+        }
+
+        /**
+         * @return The smallest entropy l over all classes and sensitive attributes.
+         */
+        public double getEntropyL() {
+            double l = sizes.length == 0 ? 0 : Double.MAX_VALUE;
+            for (double[] values : entropy) {
+                for (double value : values) {
+                    l = Math.min(l, Math.exp(value));
+                }
+            }
+            return l;
+        }
+
+        /**
+         * @return The smallest entropy over all classes and sensitive attributes.
+         */
+        protected double getMinEntropy() {
+            // without classes, like getEntropyL()
+            double min = sizes.length == 0 ? Double.NEGATIVE_INFINITY : Double.MAX_VALUE;
+            for (double[] values : entropy) {
+                for (double value : values) {
+                    min = Math.min(min, value);
+                }
+            }
+            return min;
+        }
+
+        /**
+         * @return The largest t over all classes and sensitive attributes.
+         */
+        public double getT() {
+            double t = 0;
+            for (double[] values : distance) {
+                for (double value : values) {
+                    t = Math.max(t, value);
+                }
+            }
+            return t;
+        }
+
+        /**
+         * Checks whether the instances fulfill privacy criteria. Rows with
+         * suppressed quasi-identifiers are ignored.
+         *
+         * @param criteria The privacy criteria, with the sensitive attributes of the report.
+         * @return Returns true if every class fulfills the criteria.
+         */
+        public boolean fulfills(PrivacyCriteria criteria) {
+            if (criteria.getK() > 0 && getK() < criteria.getK()) {
+                return false;
+            }
+            if (criteria.getL() > 0 && sensitive.length > 0) {
+                boolean entropyVariant = criteria.getLVariant() == PrivacyCriteria.LVariant.ENTROPY;
+                if (entropyVariant ? !criteria.isEntropyDiverse(getMinEntropy()) : getDistinctL() < criteria.getL()) {
+                    return false;
+                }
+            }
+            return criteria.getT() <= 0 || sensitive.length == 0 || getT() <= criteria.getT();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Report{rows: ").append(rows);
+            builder.append(", suppressed: ").append(suppressed);
+            builder.append(", classes: ").append(sizes.length);
+            builder.append(", k: ").append(getK());
+            if (sensitive.length > 0) {
+                builder.append(", distinct l: ").append(getDistinctL());
+                builder.append(", entropy l: ").append(String.format(Locale.ENGLISH, "%.4f", getEntropyL()));
+                builder.append(", t: ").append(String.format(Locale.ENGLISH, "%.4f", getT()));
+            }
+            return builder.append("}").toString();
+        }
+    }
+
+    /**
+     * Verifies an anonymized file from the command line. The options
+     * {@code -Q} and {@code -S} of the Flash filter select the
+     * quasi-identifiers and the sensitive attributes, which are always
+     * reported. Suppressed rows are detected by their labels. Exits with
+     * status 1 if the file can not be verified.
+     * <pre>
+     * java weka.filters.unsupervised.instance.PrivacyVerifier -i out.arff -Q age,zip -S disease [-threads 8]
+     * </pre>
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        try {
+            String input = Utils.getOption('i', args);
+            if (input.length() == 0) {
+                throw new IllegalArgumentException("Please specify the input file (-i)");
+            }
+            String threads = Utils.getOption("threads", args);
+            Flash flash = new Flash();
+            flash.setOptions(args);
+
+            Instances instances = DataSource.read(input);
+            List<String> saColumns = flash.getSensitiveColumns(instances);
+            List<String> qiColumns = flash.getQiColumns(instances, saColumns);
+            PrivacyVerifier verifier = threads.length() == 0
+                    ? new PrivacyVerifier() : new PrivacyVerifier(Integer.parseInt(threads));
+            System.out.println(verifier.verify(instances, qiColumns.toArray(new String[qiColumns.size()]),
+                    saColumns.toArray(new String[saColumns.size()])));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
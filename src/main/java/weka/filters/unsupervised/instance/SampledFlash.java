@@ -0,0 +1,538 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package weka.filters.unsupervised.instance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import org.deidentifier.arx.*;
+import weka.core.*;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ArffSaver;
+
+/**
+ * Anonymizes ARFF files which do not fit into the heap. The optimal
+ * transformation is searched on a stratified sample of at most
+ * {@link #getSampleSize()} rows, then the full file is
+ * streamed from disk to verify it with compact equivalence class counters.
+ * If the transformation violates the criteria on the full data, the search
+ * steps up the lattice to the successor with the fewest suppressed rows,
+ * verifying all successors in one pass. A last pass writes the generalized
+ * file. Generated hierarchies of numeric attributes are built from the
+ * distinct values of the full file, which are counted in the first pass,
+ * so values which are missing in the sample are generalized like all
+ * others. The memory is bounded by the sample size, the amount of classes
+ * and the amount of distinct numeric values.
+ * <p>
+ * The privacy settings are the options of {@link Flash}:
+ * <pre>
+ * java weka.filters.unsupervised.instance.SampledFlash -i in.arff -o out.arff -sample-size 50000 -K 5 -H hierarchies
+ * </pre>
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SampledFlash {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 100000;
+
+    protected final Flash flash;
+
+    protected int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    protected long seed = 1;
+
+    /**
+     * Index of the attribute the sample is stratified by, -1 to use the
+     * first sensitive attribute and no stratification without one.
+     */
+    protected int stratify = -1;
+
+    /**
+     * Amount of passes over the input file.
+     */
+    protected int passes = 0;
+
+    /**
+     * Amount of rows of the input file.
+     */
+    protected int rows = 0;
+
+    /**
+     * Constructor of the sampled search.
+     *
+     * @param flash The filter which provides the privacy settings.
+     */
+    public SampledFlash(Flash flash) {
+        this.flash = flash;
+    }
+
+    /**
+     * Anonymizes a file.
+     *
+     * @param input  The ARFF file to anonymize.
+     * @param output The ARFF file to write.
+     * @return The tally of the applied transformation on the full data.
+     * @throws Exception if a file can not be read or written, or no transformation is anonymous.
+     */
+    public StreamingVerifier.Tally run(File input, File output) throws Exception {
+        passes = 0;
+        Instances structure = open(input).getStructure();
+        List<String> saColumns = flash.getSensitiveColumns(structure);
+        List<String> qiColumns = flash.getQiColumns(structure, saColumns);
+        flash.checkParameters();
+        PrivacyCriteria criteria = flash.createCriteria(saColumns);
+        String[] qi = qiColumns.toArray(new String[qiColumns.size()]);
+
+        // search on the sample
+        HierarchyBuilder builder = flash.createHierarchyBuilder(structure);
+        Map<String, ValueCounter> counters = new LinkedHashMap<String, ValueCounter>();
+        for (String name : qi) {
+            if (builder.isGenerated(structure.attribute(name))) {
+                counters.put(name, new ValueCounter(structure.attribute(name).index()));
+            }
+        }
+        Instances sample = sample(input, structure, saColumns, counters.values());
+        ARFF2ARX converter = new ARFF2ARX(sample).setQi(qi).setColumnar(true)
+                .setStorage(ColumnarData.Storage.values()[flash.getStorage().getSelectedTag().getID()]);
+        if (criteria.hasSensitiveCriteria()) {
+            converter.setSensitive(criteria.getSensitive());
+        }
+        converter.init(flash.createHierarchyBuilder(sample));
+        Map<String, String[][]> hierarchies = new LinkedHashMap<String, String[][]>(converter.getHierarchies());
+        IntervalHierarchyGenerator generator = new IntervalHierarchyGenerator(builder.getIntervalDepth(),
+                builder.getIntervalMethod());
+        for (Map.Entry<String, ValueCounter> entry : counters.entrySet()) {
+            hierarchies.put(entry.getKey(), entry.getValue().generate(generator));
+        }
+        counters = null;
+        PrivacyCriteria sampleCriteria = scale(criteria, sample.numInstances(), rows);
+        TransformationChecker checker = new TransformationChecker(converter.getColumns(), qi, hierarchies,
+                sampleCriteria);
+        TransformationChecker.Result candidate = new LatticeSearch(checker, Math.max(1, flash.getThreads())).search();
+        sample = null;
+        converter = null;
+        checker = null;
+
+        StreamingVerifier verifier = new StreamingVerifier(structure, qi, hierarchies, criteria);
+        int[] heights = verifier.getHeights();
+        int[] current = candidate != null ? candidate.getLevels() : top(heights);
+        StreamingVerifier.Tally result = verify(input, verifier, current, heights);
+        if (flash.getDebug()) {
+            System.out.println(this.getClass().toString() + " sample candidate " + Arrays.toString(current)
+                    + ", verified " + Arrays.toString(result.getLevels()) + " in " + passes + " passes");
+        }
+
+        write(input, output, structure, verifier, result, hierarchies, qi);
+        return result;
+    }
+
+    /**
+     * Verifies a transformation on the full data and steps up the lattice
+     * until an anonymous transformation is found.
+     *
+     * @param input    The ARFF file.
+     * @param verifier The verifier.
+     * @param current  The candidate transformation.
+     * @param heights  Amount of levels of every quasi-identifier.
+     * @return The tally of the anonymous transformation.
+     * @throws Exception if the file can not be read or no transformation is anonymous.
+     */
+    protected StreamingVerifier.Tally verify(File input, StreamingVerifier verifier, int[] current, int[] heights)
+            throws Exception {
+        while (true) {
+            List<StreamingVerifier.Tally> tallies = new ArrayList<StreamingVerifier.Tally>();
+            tallies.add(verifier.createTally(current));
+            for (int q = 0; q < current.length; q++) {
+                if (current[q] + 1 < heights[q]) {
+                    int[] successor = current.clone();
+                    successor[q]++;
+                    tallies.add(verifier.createTally(successor));
+                }
+            }
+
+            ArffLoader loader = open(input);
+            Instances structure = loader.getStructure();
+            int[][] ids = verifier.createIdentifiers();
+            int[] values = verifier.createValues();
+            Instance instance;
+            while ((instance = loader.getNextInstance(structure)) != null) {
+                boolean known = verifier.encode(instance, ids, values);
+                for (StreamingVerifier.Tally tally : tallies) {
+                    tally.add(ids, values, known);
+                }
+            }
+
+            if (tallies.get(0).isAnonymous()) {
+                return tallies.get(0);
+            }
+            if (tallies.size() == 1) {
+                throw new IllegalArgumentException("No transformation fulfills the privacy criteria");
+            }
+            StreamingVerifier.Tally best = null;
+            for (StreamingVerifier.Tally tally : tallies.subList(1, tallies.size())) {
+                if (best == null || tally.isAnonymous() && !best.isAnonymous()
+                        || tally.isAnonymous() == best.isAnonymous() && tally.getSuppressed() < best.getSuppressed()) {
+                    best = tally;
+                }
+            }
+            if (best.isAnonymous()) {
+                return best;
+            }
+            current = best.getLevels();
+        }
+    }
+
+    /**
+     * Streams the input file and writes the generalized rows.
+     */
+    protected void write(File input, File output, Instances structure, StreamingVerifier verifier,
+                         StreamingVerifier.Tally tally, Map<String, String[][]> hierarchies, String[] qi)
+            throws IOException {
+        Map<String, Integer> levels = new LinkedHashMap<String, Integer>();
+        for (int q = 0; q < qi.length; q++) {
+            levels.put(qi[q], tally.getLevels()[q]);
+        }
+        GeneralizationScheme scheme = GeneralizationScheme.create(structure, hierarchies, levels);
+        Instances format = scheme.getOutputFormat();
+
+        ArffSaver saver = new ArffSaver();
+        saver.setRetrieval(ArffSaver.INCREMENTAL);
+        saver.setFile(output);
+        saver.setStructure(format);
+
+        ArffLoader loader = open(input);
+        Instances inputStructure = loader.getStructure();
+        int[][] ids = verifier.createIdentifiers();
+        int[] values = verifier.createValues();
+        Instance instance;
+        while ((instance = loader.getNextInstance(inputStructure)) != null) {
+            boolean known = verifier.encode(instance, ids, values);
+            Instance generalized = scheme.apply(instance, tally.isSuppressed(ids, known));
+            for (int i = 0; i < format.numAttributes(); i++) {
+                // the string attributes of the format hold the value of the current row only
+                if (format.attribute(i).isString() && !instance.isMissing(i)) {
+                    format.attribute(i).setStringValue(instance.stringValue(i));
+                    generalized.setValue(i, 0);
+                }
+            }
+            generalized.setDataset(format);
+            saver.writeIncremental(generalized);
+        }
+        saver.writeIncremental(null);
+    }
+
+    /**
+     * Draws a stratified sample. The first pass counts the rows of every
+     * stratum and the values of the counters, the second pass selects the
+     * rows of every stratum with selection sampling, so the sample has a
+     * fixed size per stratum (see {@link #apportion(Collection, int, int)}).
+     *
+     * @param input     The ARFF file.
+     * @param structure The header of the file.
+     * @param saColumns The sensitive attributes.
+     * @param counters  Counters of the values of numeric attributes over the full file.
+     * @return The sample.
+     * @throws IOException if the file can not be read.
+     */
+    protected Instances sample(File input, Instances structure, List<String> saColumns,
+                               Collection<ValueCounter> counters) throws IOException {
+        int attribute = stratify >= 0 ? stratify
+                : saColumns.isEmpty() ? -1 : structure.attribute(saColumns.get(0)).index();
+
+        Map<String, int[]> strata = new HashMap<String, int[]>();
+        ArffLoader loader = open(input);
+        Instances current = loader.getStructure();
+        rows = 0;
+        Instance instance;
+        while ((instance = loader.getNextInstance(current)) != null) {
+            String stratum = stratum(instance, attribute);
+            int[] count = strata.get(stratum);
+            if (count == null) {
+                // rows, quota
+                count = new int[2];
+                strata.put(stratum, count);
+            }
+            count[0]++;
+            rows++;
+            for (ValueCounter counter : counters) {
+                counter.add(instance);
+            }
+        }
+        apportion(strata.values(), rows, sampleSize);
+
+        Random random = new Random(seed);
+        Instances sample = new Instances(structure, Math.min(rows, sampleSize));
+        loader = open(input);
+        current = loader.getStructure();
+        while ((instance = loader.getNextInstance(current)) != null) {
+            int[] count = strata.get(stratum(instance, attribute));
+            if (random.nextInt(count[0]) < count[1]) {
+                count[1]--;
+                sample.add(copy(instance, sample));
+            }
+            count[0]--;
+        }
+        return sample;
+    }
+
+    /**
+     * Sets the quota of every stratum, so that the quotas sum up to the
+     * sample size. Every stratum gets one row if there are not more strata
+     * than rows of the sample, the remaining rows are apportioned by the
+     * sizes of the strata with the largest remainder method.
+     *
+     * @param strata     Amount of rows and the quota to set, per stratum.
+     * @param rows       Amount of rows of all strata.
+     * @param sampleSize Size of the sample.
+     */
+    protected static void apportion(Collection<int[]> strata, int rows, int sampleSize) {
+        if (rows <= sampleSize) {
+            for (int[] count : strata) {
+                count[1] = count[0];
+            }
+            return;
+        }
+        int base = strata.size() <= sampleSize ? 1 : 0;
+        long remaining = sampleSize - (long) base * strata.size();
+        long weights = rows - (long) base * strata.size();
+        List<int[]> order = new ArrayList<int[]>(strata);
+        final Map<int[], Double> remainders = new IdentityHashMap<int[], Double>();
+        for (int[] count : order) {
+            double share = weights == 0 ? 0 : remaining * (double) (count[0] - base) / weights;
+            count[1] = base + (int) share;
+            remainders.put(count, share - (int) share);
+            remaining -= (int) share;
+        }
+        Collections.sort(order, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Double.compare(remainders.get(b), remainders.get(a));
+            }
+        });
+        for (int[] count : order) {
+            if (remaining <= 0) {
+                break;
+            }
+            if (count[1] < count[0]) {
+                count[1]++;
+                remaining--;
+            }
+        }
+    }
+
+    /**
+     * Copies an instance into a data set, including its string values.
+     */
+    protected static Instance copy(Instance instance, Instances target) {
+        double[] values = instance.toDoubleArray();
+        for (int i = 0; i < values.length; i++) {
+            if (target.attribute(i).isString() && !instance.isMissing(i)) {
+                values[i] = target.attribute(i).addStringValue(instance.stringValue(i));
+            }
+        }
+        return new DenseInstance(instance.weight(), values);
+    }
+
+    /**
+     * Determines the stratum of an instance.
+     */
+    protected static String stratum(Instance instance, int attribute) {
+        if (attribute < 0) {
+            return "";
+        }
+        if (instance.isMissing(attribute)) {
+            return ColumnarData.MISSING;
+        }
+        return instance.attribute(attribute).isNumeric()
+                ? String.valueOf(instance.value(attribute))
+                : instance.stringValue(attribute);
+    }
+
+    /**
+     * Scales k to the sample, so a class of the sample stands for a class
+     * of the full data with the same share of rows.
+     *
+     * @param criteria   The criteria of the full data.
+     * @param sampleRows Amount of rows of the sample.
+     * @param rows       Amount of rows of the full data.
+     * @return The criteria of the sample.
+     */
+    protected static PrivacyCriteria scale(PrivacyCriteria criteria, int sampleRows, int rows) {
+        int k = criteria.getK();
+        if (k > 0 && rows > sampleRows) {
+            k = Math.max(1, (int) Math.ceil(k * (double) sampleRows / rows));
+        }
+        return new PrivacyCriteria(k, criteria.getL(), criteria.getLVariant(), criteria.getT(),
+                criteria.getSensitive(), criteria.getMaxOutliers());
+    }
+
+    /**
+     * Counts the distinct values of a numeric attribute, so that its
+     * hierarchy can be generated without holding the rows.
+     */
+    protected static class ValueCounter {
+
+        protected final int index;
+
+        protected final LongIntHashMap ids = new LongIntHashMap(1024);
+
+        protected int[] values = new int[1024];
+
+        protected int[] counts = new int[1024];
+
+        protected ValueCounter(int index) {
+            this.index = index;
+        }
+
+        protected void add(Instance instance) {
+            if (instance.isMissing(index)) {
+                return;
+            }
+            int value = (int) instance.value(index);
+            int id = ids.index(value);
+            if (id == values.length) {
+                values = Arrays.copyOf(values, id * 2);
+                counts = Arrays.copyOf(counts, id * 2);
+            }
+            values[id] = value;
+            counts[id]++;
+        }
+
+        /**
+         * @return The hierarchy of the counted values.
+         */
+        protected String[][] generate(IntervalHierarchyGenerator generator) {
+            int size = ids.size();
+            // sorts by value, the low half keeps the identifier
+            long[] order = new long[size];
+            for (int id = 0; id < size; id++) {
+                order[id] = ((long) values[id] << 32) | id;
+            }
+            Arrays.sort(order);
+            int[] distinct = new int[size];
+            int[] amounts = new int[size];
+            for (int i = 0; i < size; i++) {
+                int id = (int) order[i];
+                distinct[i] = values[id];
+                amounts[i] = counts[id];
+            }
+            return generator.generate(distinct, amounts, size);
+        }
+    }
+
+    /**
+     * @return The node with the highest level of every quasi-identifier.
+     */
+    protected static int[] top(int[] heights) {
+        int[] top = new int[heights.length];
+        for (int q = 0; q < heights.length; q++) {
+            top[q] = heights[q] - 1;
+        }
+        return top;
+    }
+
+    /**
+     * Opens a pass over the file.
+     */
+    protected ArffLoader open(File input) throws IOException {
+        passes++;
+        ArffLoader loader = new ArffLoader();
+        loader.setFile(input);
+        return loader;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getStratify() {
+        return stratify;
+    }
+
+    /**
+     * Sets the attribute the sample is stratified by.
+     *
+     * @param stratify Index of the attribute, -1 for the first sensitive attribute.
+     */
+    public void setStratify(int stratify) {
+        this.stratify = stratify;
+    }
+
+    /**
+     * @return Amount of passes over the input file of the last run.
+     */
+    public int getPasses() {
+        return passes;
+    }
+
+    /**
+     * Runs the sampled search from the command line. Besides the options of
+     * {@link Flash} it accepts -i, -o, -sample-size, -seed and -stratify
+     * (1-based index of an attribute).
+     *
+     * @param args The options.
+     */
+    public static void main(String[] args) {
+        try {
+            String input = Utils.getOption('i', args);
+            String output = Utils.getOption('o', args);
+            if (input.length() == 0 || output.length() == 0) {
+                throw new IllegalArgumentException("Please specify input (-i) and output (-o) file");
+            }
+            Flash flash = new Flash();
+            SampledFlash sampled = new SampledFlash(flash);
+            String tmpStr = Utils.getOption("sample-size", args);
+            if (tmpStr.length() != 0) {
+                sampled.setSampleSize(Integer.parseInt(tmpStr));
+            }
+            tmpStr = Utils.getOption("seed", args);
+            if (tmpStr.length() != 0) {
+                sampled.setSeed(Long.parseLong(tmpStr));
+            }
+            tmpStr = Utils.getOption("stratify", args);
+            if (tmpStr.length() != 0) {
+                sampled.setStratify(Integer.parseInt(tmpStr) - 1);
+            }
+            flash.setOptions(args);
+
+            StreamingVerifier.Tally tally = sampled.run(new File(input), new File(output));
+            System.out.println("Levels: " + Arrays.toString(tally.getLevels())
+                    + ", suppressed rows: " + tally.getSuppressed()
+                    + ", passes: " + sampled.getPasses());
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * ARX: Weka Anonymization Filter
+ * Copyright (C) 2014 Christian Windolf, Simon Koennecke, Andre Breitenfeld
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package weka.filters.unsupervised.instance;
+
+import weka.core.Instances;
+import weka.filters.StreamableFilter;
+
+/**
+ * The Flash filter in apply-only mode as streamable filter. The optimal
+ * transformation is learned from the training file when the input format
+ * is set, so every instance is generalized and output as soon as it is
+ * input, including those of the first batch. A training file is required.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class StreamingFlash extends Flash implements StreamableFilter {
+
+    private static final long serialVersionUID = 4471937260524781953L;
+
+    /**
+     * Constructor of the filter, the apply-only mode is always enabled.
+     */
+    public StreamingFlash() {
+        super();
+        this._applyOnly = true;
+    }
+
+    @Override
+    public String globalInfo() {
+        return "The Flash Algorithm in apply-only mode, generalizing every instance as soon as it is input "
+                + "with the transformation learned from the training file";
+    }
+
+    /**
+     * The apply-only mode is always enabled.
+     *
+     * @return Returns true
+     */
+    @Override
+    public boolean getApplyOnly() {
+        return true;
+    }
+
+    /**
+     * Ignored, the apply-only mode is always enabled.
+     *
+     * @param value Boolean value
+     */
+    @Override
+    public void setApplyOnly(boolean value) {
+        this._applyOnly = true;
+    }
+
+    /**
+     * The output format is always known when the input format is set.
+     *
+     * @return Returns true
+     */
+    @Override
+    protected boolean hasImmediateOutputFormat() {
+        return true;
+    }
+
+    /**
+     * Learns the transformation from the training file.
+     *
+     * @param inputFormat The input format.
+     * @return The output format.
+     * @throws IllegalArgumentException if there is no training file.
+     */
+    @Override
+    protected Instances determineOutputFormat(Instances inputFormat) throws Exception {
+        if (!this.getTrainingFile().isFile()) {
+            throw new IllegalArgumentException("The streaming filter needs a training file (-train), "
+                    + "but " + this.getTrainingFile() + " is no file");
+        }
+        return super.determineOutputFormat(inputFormat);
+    }
+
+    /**
+     * Main method for testing this class.
+     *
+     * @param args should contain arguments to the filter: use -h for help
+     */
+    public static void main(String[] args) {
+        runFilter(new StreamingFlash(), args);
+    }
+}
@@ -0,0 +1,146 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.deidentifier.arx.AttributeType.Hierarchy;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * Compares the hierarchies loaded concurrently to the conversion by
+ * {@link ARFF2ARX#init} with a sequential load.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ARFF2ARXTest extends TestCase {
+
+	private File folder;
+
+	private Instances instances;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "hierarchies." + System.nanoTime());
+		assertTrue(folder.mkdir());
+		instances = ColumnarDataTest.instances(0, 300);
+	}
+
+	protected void tearDown() throws Exception {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private void zip(String content) throws IOException {
+		Writer writer = new FileWriter(new File(folder, "columnar_hierarchy_zip.csv"));
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private HierarchyBuilder builder() {
+		HierarchyBuilder builder = new HierarchyBuilder(folder, instances.relationName());
+		builder.setCache(null);
+		builder.setIntervalDepth(4);
+		return builder;
+	}
+
+	private ARFF2ARX converter(int mode, int threads) throws Exception {
+		ARFF2ARX converter = mode == 2 ? new ARFF2ARX(ColumnarDataTest.loader(instances))
+				: new ARFF2ARX(instances).setColumnar(mode == 1);
+		return converter.setQi(new String[] { "zip", "age" }).setSensitive(new String[] { "disease" })
+				.setHierarchyThreads(threads).init(builder());
+	}
+
+	private static void assertSameColumns(ColumnarData expected, ColumnarData actual) {
+		assertEquals(Arrays.toString(expected.getHeader()), Arrays.toString(actual.getHeader()));
+		assertEquals(expected.getNumRows(), actual.getNumRows());
+		for (int c = 0; c < expected.getNumColumns(); c++) {
+			assertTrue(Arrays.equals(expected.getDictionary(c), actual.getDictionary(c)));
+			assertTrue(Arrays.equals(expected.getColumn(c), actual.getColumn(c)));
+		}
+	}
+
+	public void testConcurrentLoadMatchesSequentialLoad() throws Exception {
+		zip("10115;1011*;101**;*\n10117;1011*;101**;*\n10119;1011*;101**;*\n10178;1017*;101**;*\n");
+		// rows, columnar and read incrementally from a loader
+		for (int mode = 0; mode < 3; mode++) {
+			ARFF2ARX sequential = converter(mode, 0);
+			for (int threads = 1; threads <= 3; threads++) {
+				ARFF2ARX concurrent = converter(mode, threads);
+				Map<String, String[][]> expected = sequential.getHierarchies();
+				Map<String, String[][]> actual = concurrent.getHierarchies();
+				assertEquals(expected.keySet(), actual.keySet());
+				for (String q : expected.keySet()) {
+					assertTrue(mode + " " + q, Arrays.deepEquals(expected.get(q), actual.get(q)));
+				}
+				if (mode > 0) {
+					assertSameColumns(sequential.getColumns(), concurrent.getColumns());
+				} else {
+					assertNull(concurrent.getColumns());
+				}
+			}
+		}
+	}
+
+	public void testBrokenHierarchyFailsInit() throws Exception {
+		zip("10115;1011*;101**;*\n10117;1011*\n10119;1011*;101**;*\n10178;1017*;101**;*\n");
+		final CountDownLatch failed = new CountDownLatch(1);
+		final HierarchyBuilder builder = new HierarchyBuilder(folder, instances.relationName()) {
+			@Override
+			public Hierarchy getHierarchy(Attribute att, Instances instances) throws IOException {
+				try {
+					return super.getHierarchy(att, instances);
+				} catch (RuntimeException e) {
+					failed.countDown();
+					throw e;
+				}
+			}
+		};
+		builder.setCache(null);
+		ARFF2ARX converter = new ARFF2ARX(instances) {
+			@Override
+			protected void convert() throws IOException {
+				// the hierarchy fails while the data is converted
+				try {
+					assertTrue(failed.await(10, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				super.convert();
+			}
+		};
+		converter.setQi(new String[] { "zip", "age" }).setSensitive(new String[] { "disease" }).setColumnar(true)
+				.setHierarchyThreads(2);
+		Set<Thread> before = new HashSet<Thread>(Thread.getAllStackTraces().keySet());
+		try {
+			converter.init(builder);
+			fail("The broken hierarchy must fail the conversion");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("\"zip\""));
+		}
+		assertEquals(0, failed.getCount());
+		assertNotNull(converter.getColumns());
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (!before.contains(thread)) {
+				thread.join(10000);
+				assertFalse(thread.getName() + " has not stopped", thread.isAlive());
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+/**
+ * Compares the output of {@link ARX2ARFF} with the generalizations looked
+ * up cell by cell in the hierarchies.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ARX2ARFFTest extends TestCase {
+
+	private File folder;
+
+	private Instances instances;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "output." + System.nanoTime());
+		assertTrue(folder.mkdir());
+		Writer writer = new FileWriter(new File(folder, "columnar_hierarchy_zip.csv"));
+		try {
+			writer.write("10115;1011*;101**;*\n10117;1011*;101**;*\n10119;1011*;101**;*\n10178;1017*;101**;*\n");
+		} finally {
+			writer.close();
+		}
+		instances = ColumnarDataTest.instances(0, 300);
+	}
+
+	protected void tearDown() throws Exception {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	static ARFF2ARX converter(Instances instances, File folder, boolean columnar) throws IOException {
+		HierarchyBuilder builder = new HierarchyBuilder(folder, instances.relationName());
+		builder.setCache(null);
+		builder.setIntervalDepth(4);
+		return new ARFF2ARX(instances).setQi(new String[] { "zip", "age" }).setSensitive(new String[] { "disease" })
+				.setColumnar(columnar).setHierarchyThreads(0).init(builder);
+	}
+
+	private static boolean[] suppressed(int rows, int every) {
+		boolean[] suppressed = new boolean[rows];
+		for (int r = 0; r < rows; r += every) {
+			suppressed[r] = true;
+		}
+		return suppressed;
+	}
+
+	private static Map<String, Integer> levels(int zip, int age) {
+		Map<String, Integer> levels = new HashMap<String, Integer>();
+		levels.put("zip", zip);
+		levels.put("age", age);
+		return levels;
+	}
+
+	/**
+	 * Generalization of every original label on a level of a hierarchy.
+	 */
+	private static Map<String, String> generalization(String[][] hierarchy, int level) {
+		Map<String, String> generalization = new HashMap<String, String>();
+		for (String[] row : hierarchy) {
+			generalization.put(row[0], row[level]);
+		}
+		return generalization;
+	}
+
+	private static String label(Instance instance, int index) {
+		return instance.isMissing(index) ? ColumnarData.MISSING
+				: instance.attribute(index).isNumeric() ? String.valueOf((int) instance.value(index))
+						: instance.stringValue(index);
+	}
+
+	public void testGeneralizedValues() throws Exception {
+		ARFF2ARX converter = converter(instances, folder, true);
+		boolean[] suppressed = suppressed(instances.numInstances(), 7);
+		Instances output = new ARX2ARFF(converter).convert(levels(1, 2), suppressed);
+		Map<String, String> zip = generalization(converter.getHierarchies().get("zip"), 1);
+		Map<String, String> age = generalization(converter.getHierarchies().get("age"), 2);
+		assertEquals(instances.numInstances(), output.numInstances());
+		for (int r = 0; r < instances.numInstances(); r++) {
+			Instance input = instances.instance(r);
+			Instance row = output.instance(r);
+			assertEquals(suppressed[r] ? ARX2ARFF.SUPPRESSED : zip.get(label(input, 0)), row.stringValue(0));
+			assertEquals(suppressed[r] ? ARX2ARFF.SUPPRESSED : age.get(label(input, 1)), row.stringValue(1));
+			assertEquals(label(input, 2), label(row, 2));
+		}
+	}
+
+	public void testNominalValuesAreSortedAndUsed() throws Exception {
+		ARFF2ARX converter = converter(instances, folder, true);
+		Instances output = new ARX2ARFF(converter).convert(levels(1, 0),
+				new boolean[instances.numInstances()]);
+		Attribute zip = output.attribute("zip");
+		List<String> values = new ArrayList<String>();
+		for (int i = 0; i < zip.numValues(); i++) {
+			values.add(zip.value(i));
+		}
+		// without suppressed rows there is no suppression label
+		assertEquals("[1011*, 1017*, ?]", values.toString());
+		assertTrue(output.attribute("age").isNumeric());
+		for (int r = 0; r < instances.numInstances(); r++) {
+			assertEquals(label(instances.instance(r), 1), label(output.instance(r), 1));
+		}
+	}
+
+	public void testColumnarAndRowsMatch() throws Exception {
+		boolean[] suppressed = suppressed(instances.numInstances(), 5);
+		Instances columnar = new ARX2ARFF(converter(instances, folder, true)).convert(levels(2, 1), suppressed);
+		Instances rows = new ARX2ARFF(converter(instances, folder, false)).convert(levels(2, 1), suppressed);
+		assertEquals(rows.toString(), columnar.toString());
+	}
+
+	/**
+	 * Adds a non-integer numeric attribute and a string attribute, which
+	 * are neither quasi-identifiers nor sensitive.
+	 */
+	private static Instances withUntouched(Instances instances) {
+		Instances extended = new Instances(instances);
+		extended.insertAttributeAt(new Attribute("height"), 3);
+		extended.insertAttributeAt(new Attribute("note", (List<String>) null), 4);
+		for (int r = 0; r < extended.numInstances(); r++) {
+			extended.instance(r).setValue(3, 1.5 + r / 100d);
+			extended.instance(r).setValue(4, "note " + r % 7);
+		}
+		return extended;
+	}
+
+	public void testUntouchedAttributesAreNotEncoded() throws Exception {
+		Instances extended = withUntouched(instances);
+		ARFF2ARX converter = converter(extended, folder, true);
+		assertEquals(3, converter.getColumns().getNumColumns());
+		assertEquals(-1, converter.getColumns().getColumnIndexOf("height"));
+		boolean[] suppressed = suppressed(extended.numInstances(), 4);
+		Instances output = new ARX2ARFF(converter).convert(levels(1, 2), suppressed);
+		for (int r = 0; r < extended.numInstances(); r++) {
+			assertEquals(extended.instance(r).value(3), output.instance(r).value(3), 0);
+			assertEquals(extended.instance(r).stringValue(4), output.instance(r).stringValue(4));
+		}
+		Instances rows = new ARX2ARFF(converter(extended, folder, false)).convert(levels(1, 2), suppressed);
+		assertEquals(rows.toString(), output.toString());
+	}
+
+	public void testWithoutGeneralizationOutputEqualsInput() throws Exception {
+		Instances extended = withUntouched(instances);
+		Instances output = new ARX2ARFF(converter(extended, folder, true)).convert(levels(0, 0),
+				new boolean[extended.numInstances()]);
+		assertEquals(extended.toString(), output.toString());
+	}
+
+	public void testIncrementalAndInstancesMatch() throws Exception {
+		boolean[] suppressed = suppressed(instances.numInstances(), 6);
+		HierarchyBuilder builder = new HierarchyBuilder(folder, instances.relationName());
+		builder.setCache(null);
+		builder.setIntervalDepth(4);
+		ARFF2ARX incremental = new ARFF2ARX(ColumnarDataTest.loader(instances)).setQi(new String[] { "zip", "age" })
+				.setSensitive(new String[] { "disease" }).setHierarchyThreads(0).init(builder);
+		assertTrue(incremental.getColumns().isDecodable());
+		Instances expected = new ARX2ARFF(converter(instances, folder, true)).convert(levels(1, 1), suppressed);
+		assertEquals(expected.toString(), new ARX2ARFF(incremental).convert(levels(1, 1), suppressed).toString());
+	}
+
+	public void testSparseRowsStaySparse() throws Exception {
+		boolean[] suppressed = suppressed(instances.numInstances(), 8);
+		Instances dense = new ARX2ARFF(converter(instances, folder, true)).convert(levels(1, 1), suppressed);
+		Instances sparse = ColumnarDataTest.sparse(instances);
+		Instances output = new ARX2ARFF(converter(sparse, folder, true)).convert(levels(1, 1), suppressed);
+		HierarchyBuilder builder = new HierarchyBuilder(folder, instances.relationName());
+		builder.setCache(null);
+		builder.setIntervalDepth(4);
+		ARFF2ARX incremental = new ARFF2ARX(ColumnarDataTest.loader(sparse)).setQi(new String[] { "zip", "age" })
+				.setSensitive(new String[] { "disease" }).setHierarchyThreads(0).init(builder);
+		Instances read = new ARX2ARFF(incremental).convert(levels(1, 1), suppressed);
+		for (int r = 0; r < instances.numInstances(); r++) {
+			assertTrue(output.instance(r) instanceof SparseInstance);
+			assertTrue(read.instance(r) instanceof SparseInstance);
+			// only the generalized values are added to the stored values
+			assertTrue(output.instance(r).numValues() <= sparse.instance(r).numValues() + 2);
+			assertTrue(Arrays.equals(dense.instance(r).toDoubleArray(), output.instance(r).toDoubleArray()));
+			assertTrue(Arrays.equals(dense.instance(r).toDoubleArray(), read.instance(r).toDoubleArray()));
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.deidentifier.arx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the heap sampling and the MBean of {@link AnonymizationMetrics}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class AnonymizationMetricsTest extends TestCase {
+
+	private static final int ALLOCATION = 64 << 20;
+
+	protected void tearDown() throws Exception {
+		AnonymizationMetrics.unpublish();
+	}
+
+	/**
+	 * Allocates memory for some samples, then releases it.
+	 */
+	private static void allocate() throws InterruptedException {
+		byte[] memory = new byte[ALLOCATION];
+		memory[memory.length - 1] = 1;
+		Thread.sleep(20 * AnonymizationMetrics.SAMPLE_INTERVAL);
+		assertEquals(1, memory[memory.length - 1]);
+	}
+
+	public void testPeakHeapIsSampled() throws Exception {
+		AnonymizationMetrics metrics = new AnonymizationMetrics("peak", 1);
+		allocate();
+		metrics.finish();
+		assertTrue(metrics.getPeakHeap() + " bytes", metrics.getPeakHeap() >= ALLOCATION);
+	}
+
+	public void testConcurrentRunsKeepTheirPeaks() throws Exception {
+		AnonymizationMetrics first = new AnonymizationMetrics("first", 1);
+		allocate();
+		System.gc();
+		// a new run must not reset the peak of the running one
+		AnonymizationMetrics second = new AnonymizationMetrics("second", 1);
+		Thread.sleep(5 * AnonymizationMetrics.SAMPLE_INTERVAL);
+		first.finish();
+		second.finish();
+		assertTrue(first.getPeakHeap() + " bytes", first.getPeakHeap() >= ALLOCATION);
+		long peak = first.getPeakHeap();
+		allocate();
+		assertEquals("A finished run is not sampled any more", peak, first.getPeakHeap());
+	}
+
+	public void testSamplerStops() throws Exception {
+		AnonymizationMetrics metrics = new AnonymizationMetrics("stop", 1);
+		metrics.finish();
+		metrics.finish();
+		for (int i = 0; i < 100 && isSampling(); i++) {
+			Thread.sleep(AnonymizationMetrics.SAMPLE_INTERVAL);
+		}
+		assertFalse(isSampling());
+	}
+
+	private static boolean isSampling() {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("arx-heap-sampler") && thread.isAlive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void testOneMBeanForAllRelations() throws Exception {
+		AnonymizationMetrics first = new AnonymizationMetrics("first", 1);
+		first.finish();
+		first.publish();
+		AnonymizationMetrics second = new AnonymizationMetrics("second", 2);
+		second.finish();
+		second.publish();
+		Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(
+				new ObjectName(AnonymizationMetrics.DOMAIN + ":type=AnonymizationMetrics,*"), null);
+		assertEquals(1, names.size());
+		assertEquals("second", ManagementFactory.getPlatformMBeanServer()
+				.getAttribute(AnonymizationMetrics.getObjectName(), "Relation"));
+		AnonymizationMetrics.unpublish();
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(AnonymizationMetrics.getObjectName()));
+	}
+}
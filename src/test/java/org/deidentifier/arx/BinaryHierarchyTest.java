@@ -0,0 +1,129 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+
+/**
+ * Tests compiling hierarchy files with {@link HierarchyCompiler} and
+ * reading them with {@link BinaryHierarchy}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class BinaryHierarchyTest extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "compiled." + System.nanoTime());
+		assertTrue(folder.mkdir());
+	}
+
+	protected void tearDown() throws Exception {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private File file(String name, String content) throws IOException {
+		File file = new File(folder, name);
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private static String toString(String[][] hierarchy) {
+		StringBuilder builder = new StringBuilder();
+		for (String[] row : hierarchy) {
+			builder.append(Arrays.toString(row));
+		}
+		return builder.toString();
+	}
+
+	public void testCompiledEqualsCsv() throws Exception {
+		File csv = file("test_hierarchy_zip.csv", "10115;1011*;*\n10117;1011*;*\n10178;1017*;*\n\u00c4;\u00c4*;*\n");
+		List<String[]> lines = new HierarchyReader(';').read(csv);
+		File compiled = HierarchyCompiler.compile(csv, BinaryHierarchy.getCompiledFile(csv));
+		assertEquals("test_hierarchy_zip" + BinaryHierarchy.EXTENSION, compiled.getName());
+		String[][] hierarchy = BinaryHierarchy.read(compiled);
+		assertEquals(toString(lines.toArray(new String[0][])), toString(hierarchy));
+		assertSame(hierarchy[0][2], hierarchy[3][2]);
+		assertSame(hierarchy[0][1], hierarchy[1][1]);
+	}
+
+	public void testCorruptFileIsRejected() throws Exception {
+		File csv = file("test_hierarchy_zip.csv", "10115;1011*;*\n10117;1011*;*\n");
+		File compiled = HierarchyCompiler.compile(csv, BinaryHierarchy.getCompiledFile(csv));
+		RandomAccessFile raf = new RandomAccessFile(compiled, "rw");
+		try {
+			raf.seek(30);
+			raf.write(raf.read() ^ 1);
+		} finally {
+			raf.close();
+		}
+		try {
+			BinaryHierarchy.read(compiled);
+			fail("The checksum does not match");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			BinaryHierarchy.read(csv);
+			fail("A CSV file is no compiled hierarchy");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testFolderIsCompiled() throws Exception {
+		file("test_hierarchy_a.csv", "1;*\n2;*\n");
+		file("test_hierarchy_b.csv", "x;x*;*\n");
+		file("notes.csv", "no;hierarchy\n");
+		List<File> compiled = HierarchyCompiler.compile(folder);
+		assertEquals(2, compiled.size());
+		assertEquals("test_hierarchy_a" + BinaryHierarchy.EXTENSION, compiled.get(0).getName());
+		assertEquals("test_hierarchy_b" + BinaryHierarchy.EXTENSION, compiled.get(1).getName());
+		assertFalse(new File(folder, "notes" + BinaryHierarchy.EXTENSION).exists());
+	}
+
+	public void testLinesOfDifferentLength() throws Exception {
+		File csv = file("test_hierarchy_a.csv", "1;1*;*\n2;*\n");
+		try {
+			HierarchyCompiler.compile(csv, BinaryHierarchy.getCompiledFile(csv));
+			fail("All lines of a hierarchy must have the same length");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("\"a\""));
+		}
+	}
+
+	public void testBuilderPrefersUpToDateCompiledFile() throws Exception {
+		File csv = file("test_hierarchy_a.csv", "1;*\n2;*\n");
+		File compiled = HierarchyCompiler.compile(csv, BinaryHierarchy.getCompiledFile(csv));
+		HierarchyBuilder builder = new HierarchyBuilder(folder, "test");
+		builder.setCache(null);
+		Attribute attribute = new Attribute("a");
+		assertTrue(compiled.setLastModified(csv.lastModified() + 2000));
+		assertEquals(compiled, builder.getSource(attribute));
+		// the missing value is appended to both forms
+		assertEquals(3, builder.getHierarchy(attribute, (ColumnarData) null).getHierarchy().length);
+		assertTrue(compiled.setLastModified(csv.lastModified() - 2000));
+		assertEquals(csv, builder.getSource(attribute));
+		assertTrue(csv.delete());
+		assertEquals(compiled, builder.getSource(attribute));
+		assertFalse(builder.isGenerated(attribute));
+	}
+}
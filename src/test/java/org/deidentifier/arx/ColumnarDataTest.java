@@ -0,0 +1,278 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ArffSaver;
+
+/**
+ * Compares the rows of {@link ColumnarData} with the rows converted cell by
+ * cell by {@link ARFF2ARX}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ColumnarDataTest extends TestCase {
+
+	/**
+	 * Creates random instances with a nominal attribute zip, a numeric
+	 * attribute age and a nominal attribute disease, with missing values.
+	 */
+	static Instances instances(long seed, int rows) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("zip", Arrays.asList("10115", "10117", "10119", "10178")));
+		attributes.add(new Attribute("age"));
+		attributes.add(new Attribute("disease", Arrays.asList("flu", "cold", "cancer")));
+		Instances instances = new Instances("columnar", attributes, rows);
+		for (int r = 0; r < rows; r++) {
+			Instance instance = new DenseInstance(1, new double[] { random.nextInt(4), 20 + random.nextInt(40),
+					random.nextInt(3) });
+			if (random.nextInt(10) == 0) {
+				instance.setMissing(random.nextInt(3));
+			}
+			instances.add(instance);
+		}
+		return instances;
+	}
+
+	/**
+	 * Copies the instances into sparse rows.
+	 */
+	static Instances sparse(Instances instances) {
+		Instances sparse = new Instances(instances, instances.numInstances());
+		for (int r = 0; r < instances.numInstances(); r++) {
+			sparse.add(new SparseInstance(instances.instance(r)));
+		}
+		return sparse;
+	}
+
+	/**
+	 * Writes the instances to a temporary ARFF file and opens a loader on it.
+	 */
+	static ArffLoader loader(Instances instances) throws Exception {
+		File file = File.createTempFile("columnar", ".arff");
+		file.deleteOnExit();
+		ArffSaver saver = new ArffSaver();
+		saver.setInstances(instances);
+		saver.setFile(file);
+		saver.writeBatch();
+		ArffLoader loader = new ArffLoader();
+		loader.setSource(file);
+		return loader;
+	}
+
+	private static List<String> rows(Iterator<String[]> iterator) {
+		List<String> rows = new ArrayList<String>();
+		while (iterator.hasNext()) {
+			rows.add(Arrays.toString(iterator.next()));
+		}
+		return rows;
+	}
+
+	private static List<String> rows(Instances instances) {
+		ARFF2ARX converter = new ARFF2ARX(instances);
+		List<String> rows = new ArrayList<String>();
+		rows.add(Arrays.toString(converter.getHeader()));
+		for (int r = 0; r < instances.numInstances(); r++) {
+			rows.add(Arrays.toString(converter.convertRow(instances.instance(r))));
+		}
+		return rows;
+	}
+
+	public void testRowsMatchConvertedRows() {
+		Instances instances = instances(0, 200);
+		ColumnarData data = ColumnarData.create(instances);
+		assertEquals(200, data.getNumRows());
+		assertEquals(3, data.getNumColumns());
+		assertEquals(rows(instances), rows(data.iterator()));
+	}
+
+	public void testDictionaries() {
+		Instances instances = instances(1, 100);
+		instances.instance(0).setValue(1, 25.7);
+		ColumnarData data = ColumnarData.create(instances);
+		// nominal attributes keep the indices of Weka
+		String[] zip = data.getDictionary(0);
+		assertEquals("[10115, 10117, 10119, 10178, " + ColumnarData.MISSING + "]", Arrays.toString(zip));
+		// numeric attributes are encoded by their sorted distinct integer values
+		String[] age = data.getDictionary(1);
+		for (int code = 1; code < age.length - 1; code++) {
+			assertTrue(Integer.parseInt(age[code - 1]) < Integer.parseInt(age[code]));
+		}
+		assertEquals(ColumnarData.MISSING, age[age.length - 1]);
+		assertEquals("25", data.getValue(0, 1));
+		for (int r = 0; r < instances.numInstances(); r++) {
+			int code = data.getColumn(1)[r];
+			if (instances.instance(r).isMissing(1)) {
+				assertEquals(age.length - 1, code);
+			} else {
+				assertEquals(String.valueOf((int) instances.instance(r).value(1)), age[code]);
+			}
+		}
+	}
+
+	public void testCellsShareTheLabels() {
+		ColumnarData data = ColumnarData.create(instances(2, 100));
+		Iterator<String[]> iterator = data.iterator();
+		iterator.next();
+		String[] row = iterator.next();
+		for (int c = 0; c < row.length; c++) {
+			assertSame(data.getDictionary(c)[data.getColumn(c)[0]], row[c]);
+		}
+	}
+
+	public void testSelectedAttributes() {
+		Instances instances = instances(3, 50);
+		ColumnarData data = ColumnarData.create(instances, new String[] { "disease", "zip" });
+		// in the order of the instance
+		assertEquals("[zip, disease]", Arrays.toString(data.getHeader()));
+		assertEquals(-1, data.getColumnIndexOf("age"));
+		assertEquals(1, data.getColumnIndexOf("disease"));
+		for (int r = 0; r < instances.numInstances(); r++) {
+			assertEquals(instances.instance(r).isMissing(2) ? ColumnarData.MISSING
+					: instances.instance(r).stringValue(2), data.getValue(r, 1));
+		}
+	}
+
+	public void testOffHeapStorage() throws Exception {
+		Instances instances = instances(4, 500);
+		ColumnarData heap = ColumnarData.create(instances, ColumnarData.Storage.HEAP);
+		assertFalse(heap.isOffHeap());
+		for (ColumnarData.Storage storage : new ColumnarData.Storage[] { ColumnarData.Storage.DIRECT,
+				ColumnarData.Storage.MAPPED }) {
+			ColumnarData data = ColumnarData.create(instances, storage);
+			assertTrue(storage.toString(), data.isOffHeap());
+			assertEquals(rows(heap.iterator()), rows(data.iterator()));
+			for (int c = 0; c < data.getNumColumns(); c++) {
+				assertTrue(Arrays.equals(heap.getColumn(c), data.getColumn(c)));
+				IntBuffer buffer = data.getColumnBuffer(c);
+				assertTrue(buffer.isDirect());
+				assertEquals(heap.getColumn(c)[499], buffer.get(499));
+			}
+		}
+	}
+
+	public void testOffHeapColumnSize() {
+		long rows = Integer.MAX_VALUE / 4;
+		assertEquals(4L * rows, ColumnarData.size(rows, "zip", ColumnarData.Storage.DIRECT));
+		for (ColumnarData.Storage storage : new ColumnarData.Storage[] { ColumnarData.Storage.DIRECT,
+				ColumnarData.Storage.MAPPED }) {
+			try {
+				// the size would overflow the int of the buffer
+				ColumnarData.size(rows + 1, "zip", storage);
+				fail("A column of more than 2 GB does not fit into one buffer");
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("\"zip\""));
+				assertTrue(e.getMessage(), e.getMessage().contains(storage.toString()));
+			}
+		}
+	}
+
+	public void testMappedFilesAreDeleted() throws Exception {
+		File tmp = new File(System.getProperty("java.io.tmpdir"));
+		FilenameFilter columns = new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("arx-column");
+			}
+		};
+		int before = tmp.list(columns).length;
+		ColumnarData data = ColumnarData.create(instances(6, 100), ColumnarData.Storage.MAPPED);
+		// the mappings stay valid after the files have been unlinked
+		assertEquals(before, tmp.list(columns).length);
+		assertEquals(100, data.getColumn(2).length);
+	}
+
+	public void testColumnBuffersAreIndependent() throws Exception {
+		ColumnarData data = ColumnarData.create(instances(5, 10), ColumnarData.Storage.DIRECT);
+		IntBuffer first = data.getColumnBuffer(0);
+		first.get();
+		first.position(5);
+		assertEquals(0, data.getColumnBuffer(0).position());
+		assertEquals(data.getValue(3, 0), data.getDictionary(0)[data.getColumnBuffer(0).get(3)]);
+	}
+
+	public void testReadMatchesCreate() throws Exception {
+		// more rows than the initial capacity of the columns
+		Instances instances = instances(7, 2500);
+		ColumnarData created = ColumnarData.create(instances);
+		ColumnarData read = ColumnarData.read(loader(instances), ColumnarData.Storage.HEAP);
+		assertEquals(2500, read.getNumRows());
+		assertEquals(rows(created.iterator()), rows(read.iterator()));
+		for (int c = 0; c < read.getNumColumns(); c++) {
+			assertEquals(Arrays.toString(created.getDictionary(c)), Arrays.toString(read.getDictionary(c)));
+			assertTrue(Arrays.equals(created.getColumn(c), read.getColumn(c)));
+		}
+		assertTrue(read.isDecodable());
+		assertFalse(created.isDecodable());
+		assertFalse(read.isSparse());
+	}
+
+	public void testReadDecodesValues() throws Exception {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("zip", Arrays.asList("10115", "10117")));
+		attributes.add(new Attribute("weight"));
+		attributes.add(new Attribute("name", (List<String>) null));
+		Instances instances = new Instances("decoded", attributes, 4);
+		String[] names = { "b", "a", "b", "c" };
+		double[] weights = { 71.5, 80, Double.NaN, 64.25 };
+		for (int r = 0; r < names.length; r++) {
+			double[] values = { r % 2, weights[r], instances.attribute(2).addStringValue(names[r]) };
+			instances.add(new DenseInstance(r == 1 ? 2.5 : 1, values));
+		}
+		instances.instance(3).setMissing(0);
+		ColumnarData data = ColumnarData.read(loader(instances), ColumnarData.Storage.DIRECT);
+		Instances structure = data.getStructure();
+		// string values are numbered in the order of their first occurrence, after the default value of sparse rows
+		String[] dictionary = data.getDictionary(2);
+		assertEquals("[b, a, c, " + ColumnarData.MISSING + "]",
+				Arrays.toString(Arrays.copyOfRange(dictionary, dictionary.length - 4, dictionary.length)));
+		assertEquals("71", data.getValue(0, 1));
+		for (int r = 0; r < names.length; r++) {
+			Instance instance = new DenseInstance(data.getWeight(r), data.getValues(r));
+			instance.setDataset(structure);
+			assertEquals(instances.instance(r).weight(), instance.weight(), 0);
+			assertEquals(instances.instance(r).isMissing(0), instance.isMissing(0));
+			if (!instance.isMissing(0)) {
+				assertEquals(instances.instance(r).stringValue(0), instance.stringValue(0));
+			}
+			assertEquals(instances.instance(r).isMissing(1), instance.isMissing(1));
+			if (!instance.isMissing(1)) {
+				assertEquals(weights[r], instance.value(1), 0);
+			}
+			assertEquals(names[r], instance.stringValue(2));
+		}
+		try {
+			ColumnarData.create(instances).getValues(0);
+			fail("Only data read incrementally can be decoded");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	public void testSparseRowsMatchDenseRows() throws Exception {
+		Instances instances = instances(8, 300);
+		Instances sparse = sparse(instances);
+		assertTrue(sparse.instance(0) instanceof SparseInstance);
+		assertEquals(rows(instances), rows(sparse));
+		assertEquals(rows(ColumnarData.create(instances).iterator()), rows(ColumnarData.create(sparse).iterator()));
+		ColumnarData read = ColumnarData.read(loader(sparse), ColumnarData.Storage.HEAP);
+		assertTrue(read.isSparse());
+		assertEquals(rows(instances), rows(read.iterator()));
+	}
+}
@@ -0,0 +1,30 @@
+package org.deidentifier.arx;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the evaluation of the classes counted by
+ * {@link EquivalenceClassCounter}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class EquivalenceClassCounterTest extends TestCase {
+
+	private static PrivacyCriteria entropyL(int l) {
+		return new PrivacyCriteria(0, l, PrivacyCriteria.LVariant.ENTROPY, 0, new String[] { "s" }, 0);
+	}
+
+	public void testEntropyLDiversityOfUniformClass() {
+		for (int l = 2; l <= 12; l++) {
+			// l equally frequent values, whose entropy is log(l) up to rounding
+			EquivalenceClassCounter counter = new EquivalenceClassCounter(1);
+			for (int r = 0; r < 2 * l; r++) {
+				counter.add(7, new int[] { r % l });
+			}
+			assertFalse("l = " + l, counter.evaluate(entropyL(l))[0]);
+			assertTrue("l = " + l, counter.evaluate(entropyL(l + 1))[0]);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the invalidation and the eviction of {@link HierarchyCache}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class HierarchyCacheTest extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "cache." + System.nanoTime());
+		assertTrue(folder.mkdir());
+	}
+
+	protected void tearDown() throws Exception {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private File file(String name, String content) throws IOException {
+		File file = new File(folder, name);
+		Writer writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private static String[][] hierarchy(int rows) {
+		String[][] hierarchy = new String[rows][];
+		for (int r = 0; r < rows; r++) {
+			hierarchy[r] = new String[] { "v" + r, "*" };
+		}
+		return hierarchy;
+	}
+
+	public void testChangedFileIsMissed() throws Exception {
+		HierarchyCache cache = new HierarchyCache(HierarchyCache.DEFAULT_CAPACITY);
+		File file = file("a.csv", "1;*\n");
+		String[][] hierarchy = hierarchy(1);
+		cache.put(file, hierarchy);
+		assertSame(hierarchy, cache.get(new File(folder, "a.csv")));
+		file("a.csv", "1;*\n2;*\n");
+		assertNull(cache.get(file));
+		// the stale entry is replaced
+		cache.put(file, hierarchy(2));
+		assertEquals(1, cache.size());
+		assertEquals(HierarchyCache.weigh(hierarchy(2)), cache.getWeight());
+	}
+
+	public void testLeastRecentlyUsedIsEvicted() throws Exception {
+		long size = HierarchyCache.weigh(hierarchy(10));
+		HierarchyCache cache = new HierarchyCache(2 * size);
+		File a = file("a.csv", "a");
+		File b = file("b.csv", "b");
+		File c = file("c.csv", "c");
+		cache.put(a, hierarchy(10));
+		cache.put(b, hierarchy(10));
+		assertNotNull(cache.get(a));
+		cache.put(c, hierarchy(10));
+		assertNotNull(cache.get(a));
+		assertNull(cache.get(b));
+		assertNotNull(cache.get(c));
+		assertEquals(2 * size, cache.getWeight());
+		cache.setCapacity(size);
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(c));
+	}
+
+	public void testLargeHierarchyIsNotCached() throws Exception {
+		HierarchyCache cache = new HierarchyCache(HierarchyCache.weigh(hierarchy(10)));
+		File file = file("a.csv", "a");
+		cache.put(file, hierarchy(11));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+		assertNull(cache.get(file));
+	}
+
+	public void testSharedLabelsAreWeighedOnce() {
+		String[][] shared = hierarchy(100);
+		String[][] copied = hierarchy(100);
+		for (String[] row : copied) {
+			row[1] = new String(row[1]);
+		}
+		assertEquals(HierarchyCache.weigh(shared) + 99 * (40 + 2), HierarchyCache.weigh(copied));
+	}
+}
@@ -0,0 +1,126 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the lines read by {@link HierarchyReader} with the lines of the
+ * file split by strings, also for lines across mapped regions.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class HierarchyReaderTest extends TestCase {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("hierarchy", ".csv");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void write(String content) throws IOException {
+		write(content.getBytes(UTF8));
+	}
+
+	private static List<String> join(List<String[]> lines) {
+		List<String> joined = new ArrayList<String>();
+		for (String[] line : lines) {
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < line.length; i++) {
+				builder.append(i == 0 ? "" : "|").append(line[i]);
+			}
+			joined.add(builder.toString());
+		}
+		return joined;
+	}
+
+	public void testLinesAcrossWindows() throws Exception {
+		StringBuilder content = new StringBuilder();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			content.append(i).append(";a").append(i / 10).append(";*\n");
+			expected.add(i + "|a" + (i / 10) + "|*");
+		}
+		write(content.toString());
+		// every window size cuts some lines, the longest line has 9 bytes
+		for (int window = 9; window <= 20; window++) {
+			assertEquals("Window of " + window + " bytes", expected,
+					join(new HierarchyReader(';', UTF8, window).read(file)));
+		}
+		assertEquals(expected, join(new HierarchyReader(';', UTF8).read(file)));
+	}
+
+	public void testLineLongerThanWindow() throws Exception {
+		write("1;short;*\n2;a-much-longer-label;*\n");
+		try {
+			new HierarchyReader(';', UTF8, 16).read(file);
+			fail("The second line does not fit into a window");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testByteOrderMark() throws Exception {
+		byte[] content = "1;\u00e4;*\n2;\u00e4;*".getBytes(UTF8);
+		byte[] bom = new byte[content.length + 3];
+		bom[0] = (byte) 0xef;
+		bom[1] = (byte) 0xbb;
+		bom[2] = (byte) 0xbf;
+		System.arraycopy(content, 0, bom, 3, content.length);
+		write(bom);
+		// the second line starts in the first window
+		List<String[]> lines = new HierarchyReader(';', UTF8, 12).read(file);
+		assertEquals(2, lines.size());
+		assertEquals("1", lines.get(0)[0]);
+		assertEquals("\u00e4", lines.get(1)[1]);
+	}
+
+	public void testCarriageReturns() throws Exception {
+		write("1;low;*\r\n\r\n2;low;*\r\n3;high;*");
+		List<String> expected = new ArrayList<String>();
+		expected.add("1|low|*");
+		expected.add("2|low|*");
+		expected.add("3|high|*");
+		assertEquals(expected, join(new HierarchyReader(';', UTF8).read(file)));
+		assertEquals(expected, join(new HierarchyReader(';', UTF8, 9).read(file)));
+	}
+
+	public void testEqualLabelsAreShared() throws Exception {
+		write("1;a;*\n2;a;*\n3;b;*\n");
+		List<String[]> lines = new HierarchyReader(';', UTF8).read(file);
+		assertSame(lines.get(0)[1], lines.get(1)[1]);
+		assertSame(lines.get(0)[2], lines.get(2)[2]);
+	}
+
+	public void testFileIsReleased() throws Exception {
+		write("1;a;*\n2;a;*\n");
+		new HierarchyReader(';', UTF8, 8).read(file);
+		// fails on Windows as long as a region of the file is mapped
+		File renamed = new File(file.getPath() + ".old");
+		assertTrue(file.renameTo(renamed));
+		assertTrue(renamed.delete());
+	}
+}
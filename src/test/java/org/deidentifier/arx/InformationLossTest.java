@@ -0,0 +1,144 @@
+package org.deidentifier.arx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the metrics of {@link InformationLoss} with the loss computed
+ * row by row from the equivalence classes of a transformation.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class InformationLossTest extends TestCase {
+
+	private static final int K = 4;
+
+	private static final int[] HEIGHTS = { 4, 4 };
+
+	private TransformationChecker checker;
+
+	protected void setUp() throws Exception {
+		checker = LatticeSearchTest.checker(0, 300, new int[] { 8, 8 }, HEIGHTS, LatticeSearchTest.k(K, 0.1));
+	}
+
+	/**
+	 * Key of the equivalence class of every row.
+	 */
+	private String[] classes(int[] levels) {
+		String[] keys = new String[checker.rows];
+		for (int r = 0; r < keys.length; r++) {
+			StringBuilder key = new StringBuilder();
+			for (int q = 0; q < levels.length; q++) {
+				key.append(checker.mappings[q][levels[q]][checker.qiColumns[q].get(r)]).append(',');
+			}
+			keys[r] = key.toString();
+		}
+		return keys;
+	}
+
+	private static Map<String, Integer> sizes(String[] classes) {
+		Map<String, Integer> sizes = new HashMap<String, Integer>();
+		for (String key : classes) {
+			Integer size = sizes.get(key);
+			sizes.put(key, size == null ? 1 : size + 1);
+		}
+		return sizes;
+	}
+
+	/**
+	 * Bits lost by generalizing the value of a row to a level.
+	 */
+	private double entropy(int q, int level, int row) {
+		int code = checker.qiColumns[q].get(row);
+		int generalized = checker.mappings[q][level][code];
+		int same = 0;
+		int group = 0;
+		for (int r = 0; r < checker.rows; r++) {
+			int other = checker.qiColumns[q].get(r);
+			same += other == code ? 1 : 0;
+			group += checker.mappings[q][level][other] == generalized ? 1 : 0;
+		}
+		return -Math.log((double) same / group) / Math.log(2);
+	}
+
+	private double expected(InformationLoss.Metric metric, int[] levels) {
+		String[] classes = classes(levels);
+		Map<String, Integer> sizes = sizes(classes);
+		int rows = checker.rows;
+		int suppressed = 0;
+		int kept = 0;
+		double squares = 0d;
+		for (int size : sizes.values()) {
+			if (size < K) {
+				suppressed += size;
+			} else {
+				kept++;
+				squares += (double) size * size;
+			}
+		}
+		switch (metric) {
+			case HEIGHT:
+				return levels[0] + levels[1];
+			case PRECISION: {
+				double perRow = (levels[0] / 3d + levels[1] / 3d) / 2;
+				return ((rows - suppressed) * perRow + suppressed) / rows;
+			}
+			case DISCERNIBILITY:
+				return squares + (double) suppressed * rows;
+			case AECS:
+				return (double) rows / (kept + (suppressed > 0 ? 1 : 0));
+			default: {
+				double loss = 0d;
+				for (int r = 0; r < rows; r++) {
+					boolean suppressedRow = sizes.get(classes[r]) < K;
+					for (int q = 0; q < levels.length; q++) {
+						loss += entropy(q, suppressedRow ? HEIGHTS[q] - 1 : levels[q], r);
+					}
+				}
+				return loss;
+			}
+		}
+	}
+
+	public void testMetricsMatchManualComputation() {
+		int anonymous = 0;
+		int suppressing = 0;
+		for (InformationLoss.Metric metric : InformationLoss.Metric.values()) {
+			TransformationChecker withMetric = checker.withMetric(metric);
+			for (int a = 0; a < HEIGHTS[0]; a++) {
+				for (int b = 0; b < HEIGHTS[1]; b++) {
+					int[] levels = { a, b };
+					TransformationChecker.Result result = withMetric.check(levels);
+					if (!result.isAnonymous()) {
+						assertTrue(Double.isNaN(result.getLoss()));
+						continue;
+					}
+					anonymous++;
+					suppressing += result.getSuppressed() > 0 ? 1 : 0;
+					double expected = expected(metric, levels);
+					assertEquals(metric + " " + a + "," + b, expected, result.getLoss(),
+							1e-9 * Math.max(1, Math.abs(expected)));
+				}
+			}
+		}
+		// the metrics are compared on several nodes, with and without suppressed rows
+		assertTrue(anonymous > InformationLoss.Metric.values().length * 3);
+		assertTrue(suppressing > 0);
+		assertTrue(suppressing < anonymous);
+	}
+
+	public void testPrecision() {
+		int[] heights = { 5, 3, 1 };
+		assertEquals(0d, InformationLoss.precision(new int[] { 0, 0, 0 }, heights, 10, 0), 0);
+		// a quasi-identifier of height 1 can not be generalized
+		assertEquals((1d + 0.5) / 3, InformationLoss.precision(new int[] { 4, 1, 0 }, heights, 10, 0), 1e-12);
+		assertEquals(1d, InformationLoss.precision(new int[] { 0, 0, 0 }, heights, 10, 10), 0);
+		assertEquals((8 * 0.25 / 3 + 2) / 10, InformationLoss.precision(new int[] { 1, 0, 0 }, heights, 10, 2),
+				1e-12);
+		assertEquals(0d, InformationLoss.precision(new int[] { 1, 1, 0 }, heights, 0, 0), 0);
+	}
+}
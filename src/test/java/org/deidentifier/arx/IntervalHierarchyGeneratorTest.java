@@ -0,0 +1,108 @@
+package org.deidentifier.arx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the levels generated by {@link IntervalHierarchyGenerator}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class IntervalHierarchyGeneratorTest extends TestCase {
+
+	private static String[][] generate(int depth, IntervalHierarchyGenerator.Method method, int... values) {
+		return new IntervalHierarchyGenerator(depth, method).generate(values.clone(), values.length);
+	}
+
+	public void testFlatHierarchy() {
+		String[][] hierarchy = generate(2, IntervalHierarchyGenerator.Method.EQUAL_WIDTH, 3, 1, 3);
+		assertEquals(3, hierarchy.length);
+		assertEquals("[1, *]", Arrays.toString(hierarchy[0]));
+		assertEquals("[3, *]", Arrays.toString(hierarchy[1]));
+		assertEquals("[" + ColumnarData.MISSING + ", *]", Arrays.toString(hierarchy[2]));
+	}
+
+	public void testEqualWidth() {
+		String[][] hierarchy = generate(4, IntervalHierarchyGenerator.Method.EQUAL_WIDTH, 7, 6, 5, 4, 3, 2, 1, 0, 0);
+		assertEquals(9, hierarchy.length);
+		assertEquals("[0, 0-1, 0-3, *]", Arrays.toString(hierarchy[0]));
+		assertEquals("[2, 2-3, 0-3, *]", Arrays.toString(hierarchy[2]));
+		assertEquals("[5, 4-5, 4-7, *]", Arrays.toString(hierarchy[5]));
+		assertEquals("[7, 6-7, 4-7, *]", Arrays.toString(hierarchy[7]));
+		assertEquals("[?, ?, ?, *]", Arrays.toString(hierarchy[8]));
+	}
+
+	public void testQuantilesFollowTheRows() {
+		// half of the rows have the value 0
+		String[][] hierarchy = generate(3, IntervalHierarchyGenerator.Method.QUANTILE,
+				0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6);
+		assertEquals("[0, 0-0, *]", Arrays.toString(hierarchy[0]));
+		assertEquals("[1, 1-6, *]", Arrays.toString(hierarchy[1]));
+		assertEquals("[6, 1-6, *]", Arrays.toString(hierarchy[6]));
+		// equal width puts 0 to 3 into the lower interval
+		hierarchy = generate(3, IntervalHierarchyGenerator.Method.EQUAL_WIDTH, 0, 0, 0, 0, 0, 0, 1, 2, 3, 4, 5, 6);
+		assertEquals("[3, 0-3, *]", Arrays.toString(hierarchy[3]));
+	}
+
+	public void testLevelsAreNested() {
+		Random random = new Random(0);
+		int[] values = new int[500];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (int) (Math.abs(random.nextGaussian()) * 1000);
+		}
+		for (IntervalHierarchyGenerator.Method method : IntervalHierarchyGenerator.Method.values()) {
+			for (int depth = IntervalHierarchyGenerator.MIN_DEPTH; depth <= 8; depth++) {
+				String[][] hierarchy = generate(depth, method, values);
+				for (int level = 0; level < depth - 1; level++) {
+					Map<String, String> parents = new HashMap<String, String>();
+					for (int r = 0; r < hierarchy.length - 1; r++) {
+						String parent = parents.put(hierarchy[r][level], hierarchy[r][level + 1]);
+						assertTrue(method + " " + depth + " " + level + ": " + hierarchy[r][level],
+								parent == null || parent.equals(hierarchy[r][level + 1]));
+						if (level > 0) {
+							String[] bounds = hierarchy[r][level].split("-");
+							int value = Integer.parseInt(hierarchy[r][0]);
+							assertTrue(Integer.parseInt(bounds[0]) <= value && value <= Integer.parseInt(bounds[1]));
+						}
+					}
+				}
+				assertEquals("*", hierarchy[0][depth - 1]);
+			}
+		}
+	}
+
+	public void testCountedValues() {
+		IntervalHierarchyGenerator generator = new IntervalHierarchyGenerator(4,
+				IntervalHierarchyGenerator.Method.QUANTILE);
+		int[] values = { 5, 1, 1, 9, 9, 9, 2, 7 };
+		String[][] expected = generator.generate(values.clone(), values.length);
+		String[][] counted = generator.generate(new int[] { 1, 2, 5, 7, 9 }, new int[] { 2, 1, 1, 1, 3 }, 5);
+		assertEquals(expected.length, counted.length);
+		for (int r = 0; r < expected.length; r++) {
+			assertEquals(Arrays.toString(expected[r]), Arrays.toString(counted[r]));
+		}
+	}
+
+	public void testDepthIsBounded() {
+		try {
+			new IntervalHierarchyGenerator(IntervalHierarchyGenerator.MIN_DEPTH - 1,
+					IntervalHierarchyGenerator.Method.EQUAL_WIDTH);
+			fail("A hierarchy needs the original values and *");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new IntervalHierarchyGenerator(IntervalHierarchyGenerator.MAX_DEPTH + 1,
+					IntervalHierarchyGenerator.Method.QUANTILE);
+			fail("The depth is bounded");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,304 @@
+package org.deidentifier.arx;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the results of {@link LatticeSearch} with an exhaustive search
+ * over all nodes of the lattice.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class LatticeSearchTest extends TestCase {
+
+	/**
+	 * Creates a checker on random data. Level l of a quasi-identifier
+	 * merges 2^l neighbouring codes, the highest level merges all codes.
+	 *
+	 * @param seed     Seed of the data.
+	 * @param rows     Amount of rows.
+	 * @param domains  Amount of values of every quasi-identifier.
+	 * @param heights  Amount of levels of every quasi-identifier.
+	 * @param criteria The privacy criteria, with at most one sensitive attribute.
+	 */
+	static TransformationChecker checker(long seed, int rows, int[] domains, int[] heights,
+			PrivacyCriteria criteria) {
+		Random random = new Random(seed);
+		int qis = domains.length;
+		String[] qi = new String[qis];
+		IntBuffer[] columns = new IntBuffer[qis];
+		int[][][] mappings = new int[qis][][];
+		int[][] levels = new int[qis][];
+		for (int q = 0; q < qis; q++) {
+			qi[q] = "q" + q;
+			int[] codes = new int[rows];
+			for (int r = 0; r < rows; r++) {
+				// skewed, so that some values are rare
+				codes[r] = Math.min(domains[q] - 1, (int) (Math.abs(random.nextGaussian()) * domains[q] / 2));
+			}
+			columns[q] = IntBuffer.wrap(codes);
+			mappings[q] = new int[heights[q]][domains[q]];
+			levels[q] = new int[heights[q]];
+			for (int level = 0; level < heights[q]; level++) {
+				for (int code = 0; code < domains[q]; code++) {
+					mappings[q][level][code] = level == heights[q] - 1 ? 0 : code >> level;
+				}
+				levels[q][level] = level == heights[q] - 1 ? 1 : ((domains[q] - 1) >> level) + 1;
+			}
+		}
+		String[] sensitive = criteria.hasSensitiveCriteria() ? criteria.getSensitive() : new String[0];
+		IntBuffer[] saColumns = new IntBuffer[sensitive.length];
+		int[] saDomains = new int[sensitive.length];
+		double[][] saDistributions = new double[sensitive.length][];
+		for (int s = 0; s < sensitive.length; s++) {
+			saDomains[s] = 4;
+			saDistributions[s] = new double[saDomains[s]];
+			int[] codes = new int[rows];
+			for (int r = 0; r < rows; r++) {
+				codes[r] = random.nextInt(10) < 7 ? 0 : 1 + random.nextInt(saDomains[s] - 1);
+				saDistributions[s][codes[r]] += 1d / rows;
+			}
+			saColumns[s] = IntBuffer.wrap(codes);
+		}
+		return new TransformationChecker(qi, rows, columns, mappings, levels, sensitive, saColumns, saDomains,
+				saDistributions, criteria);
+	}
+
+	static PrivacyCriteria k(int k, double maxOutliers) {
+		return new PrivacyCriteria(k, 0, PrivacyCriteria.LVariant.DISTINCT, 0, new String[0], maxOutliers);
+	}
+
+	/**
+	 * Checks every node. The result is the anonymous node with the lowest
+	 * loss, on equal loss the lower, then the lexicographically smaller one.
+	 */
+	static TransformationChecker.Result exhaustive(TransformationChecker checker, boolean height) {
+		int[] heights = checker.getHeights();
+		int[] node = new int[heights.length];
+		TransformationChecker.Result best = null;
+		while (true) {
+			TransformationChecker.Result result = checker.check(node);
+			if (result.isAnonymous()) {
+				double loss = height ? sum(node) : result.getLoss();
+				double bestLoss = best == null ? 0 : height ? sum(best.getLevels()) : best.getLoss();
+				if (best == null || loss < bestLoss
+						|| loss == bestLoss && (sum(node) < sum(best.getLevels())
+						|| sum(node) == sum(best.getLevels()) && compare(node, best.getLevels()) < 0)) {
+					best = result;
+				}
+			}
+			int q = node.length - 1;
+			while (q >= 0 && node[q] == heights[q] - 1) {
+				node[q--] = 0;
+			}
+			if (q < 0) {
+				return best;
+			}
+			node[q]++;
+		}
+	}
+
+	private static int sum(int[] node) {
+		int sum = 0;
+		for (int level : node) {
+			sum += level;
+		}
+		return sum;
+	}
+
+	private static int compare(int[] a, int[] b) {
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return a[i] - b[i];
+			}
+		}
+		return 0;
+	}
+
+	private void assertSameOptimum(TransformationChecker checker, boolean height, int threads) throws Exception {
+		TransformationChecker.Result expected = exhaustive(checker, height);
+		LatticeSearch search = new LatticeSearch(checker, threads);
+		TransformationChecker.Result actual = search.search();
+		assertTrue(search.isOptimal());
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertNotNull(actual);
+		assertEquals(Arrays.toString(expected.getLevels()), Arrays.toString(actual.getLevels()));
+		if (!height) {
+			assertEquals(expected.getLoss(), actual.getLoss(), 1e-9);
+		}
+	}
+
+	public void testHeightWithoutSuppression() throws Exception {
+		for (long seed = 0; seed < 5; seed++) {
+			TransformationChecker checker = checker(seed, 300, new int[] { 8, 16, 4 }, new int[] { 4, 5, 3 },
+					k(5, 0));
+			assertSameOptimum(checker, true, 1);
+			assertSameOptimum(checker, true, 3);
+		}
+	}
+
+	public void testHeightWithSuppression() throws Exception {
+		for (long seed = 0; seed < 5; seed++) {
+			TransformationChecker checker = checker(seed, 300, new int[] { 8, 16, 4 }, new int[] { 4, 5, 3 },
+					k(5, 0.05));
+			assertSameOptimum(checker, true, 2);
+		}
+	}
+
+	public void testMetricsWithoutSuppression() throws Exception {
+		for (InformationLoss.Metric metric : InformationLoss.Metric.values()) {
+			for (long seed = 0; seed < 3; seed++) {
+				TransformationChecker checker = checker(seed, 300, new int[] { 8, 16, 4 },
+						new int[] { 4, 5, 3 }, k(4, 0)).withMetric(metric);
+				assertSameOptimum(checker, metric == InformationLoss.Metric.HEIGHT, 2);
+			}
+		}
+	}
+
+	public void testMetricsWithSuppression() throws Exception {
+		// on this data successors of minimal anonymous nodes often suppress fewer rows and lose less
+		for (InformationLoss.Metric metric : InformationLoss.Metric.values()) {
+			for (long seed = 0; seed < 3; seed++) {
+				TransformationChecker checker = checker(seed, 300, new int[] { 8, 16, 4 },
+						new int[] { 4, 5, 3 }, k(2, 0.1)).withMetric(metric);
+				assertSameOptimum(checker, metric == InformationLoss.Metric.HEIGHT, 2);
+			}
+		}
+	}
+
+	public void testEntropyLDiversityWithSuppression() throws Exception {
+		PrivacyCriteria criteria = new PrivacyCriteria(2, 2, PrivacyCriteria.LVariant.ENTROPY, 0,
+				new String[] { "s" }, 0.1);
+		for (long seed = 0; seed < 5; seed++) {
+			assertSameOptimum(checker(seed, 300, new int[] { 8, 16, 4 }, new int[] { 4, 5, 3 }, criteria),
+					true, 2);
+		}
+	}
+
+	public void testEntropyLDiversityOfUniformClass() {
+		for (int l = 2; l <= 12; l++) {
+			// one class with l equally frequent sensitive values, whose entropy is log(l) up to rounding
+			int rows = 2 * l;
+			int[] sensitive = new int[rows];
+			double[] distribution = new double[l];
+			for (int r = 0; r < rows; r++) {
+				sensitive[r] = r % l;
+				distribution[r % l] += 1d / rows;
+			}
+			for (int required = l; required <= l + 1; required++) {
+				PrivacyCriteria criteria = new PrivacyCriteria(0, required, PrivacyCriteria.LVariant.ENTROPY, 0,
+						new String[] { "s" }, 0);
+				TransformationChecker checker = new TransformationChecker(new String[] { "q0" }, rows,
+						new IntBuffer[] { IntBuffer.wrap(new int[rows]) }, new int[][][] { { { 0 } } },
+						new int[][] { { 1 } }, new String[] { "s" }, new IntBuffer[] { IntBuffer.wrap(sensitive) },
+						new int[] { l }, new double[][] { distribution }, criteria);
+				assertEquals("l = " + l + ", required " + required, required == l,
+						checker.check(new int[] { 0 }).isAnonymous());
+			}
+		}
+	}
+
+	public void testLevelsAreEnumeratedLazilyInOrder() {
+		TransformationChecker checker = checker(0, 10, new int[] { 4, 8, 2, 4 }, new int[] { 3, 4, 2, 3 }, k(2, 0));
+		LatticeSearch search = new LatticeSearch(checker, 1);
+		int total = 0;
+		for (int height = 0; height <= 2 + 3 + 1 + 2; height++) {
+			LatticeSearch.Nodes nodes = search.new Nodes(height);
+			int[][] chunk = new int[3][];
+			int[] previous = null;
+			for (int length = nodes.next(chunk); length > 0; length = nodes.next(chunk)) {
+				for (int c = 0; c < length; c++) {
+					assertEquals(height, sum(chunk[c]));
+					if (previous != null) {
+						assertTrue(compare(previous, chunk[c]) < 0);
+					}
+					previous = chunk[c];
+					total++;
+				}
+			}
+		}
+		assertEquals(3 * 4 * 2 * 3, total);
+	}
+
+	public void testPruningChecksFewerNodes() throws Exception {
+		for (long seed = 0; seed < 5; seed++) {
+			TransformationChecker checker = checker(seed, 1000, new int[] { 16, 16, 8, 8 },
+					new int[] { 5, 5, 4, 4 }, k(10, 0));
+			LatticeSearch pruned = new LatticeSearch(checker, 2);
+			LatticeSearch levels = new LatticeSearch(checker, 2) {
+				@Override
+				protected boolean isMonotonic() {
+					return false;
+				}
+			};
+			TransformationChecker.Result expected = levels.search();
+			TransformationChecker.Result actual = pruned.search();
+			assertEquals(Arrays.toString(expected.getLevels()), Arrays.toString(actual.getLevels()));
+			assertTrue(pruned.getChecked() + " > " + levels.getChecked(), pruned.getChecked() <= levels.getChecked());
+		}
+	}
+
+	public void testTimeBudgetFindsOptimum() throws Exception {
+		TransformationChecker checker = checker(3, 500, new int[] { 16, 16, 8 }, new int[] { 5, 5, 4 }, k(5, 0));
+		LatticeSearch search = new LatticeSearch(checker, 2);
+		search.setMaxTime(60000);
+		TransformationChecker.Result result = search.search();
+		assertTrue(search.isOptimal());
+		assertEquals(Arrays.toString(exhaustive(checker, true).getLevels()), Arrays.toString(result.getLevels()));
+	}
+
+	public void testExpiredTimeBudget() throws Exception {
+		TransformationChecker checker = checker(3, 500, new int[] { 16, 16, 8 }, new int[] { 5, 5, 4 }, k(5, 0));
+		for (int threads : new int[] { 1, 2 }) {
+			// the budget expires after a few checked nodes
+			LatticeSearch search = new LatticeSearch(checker, threads) {
+				@Override
+				protected boolean isExpired() {
+					return checked.get() >= 4;
+				}
+			};
+			search.setMaxTime(60000);
+			TransformationChecker.Result result = search.search();
+			assertFalse(search.isOptimal());
+			assertTrue(result.isAnonymous());
+			assertTrue(sum(result.getLevels()) >= sum(exhaustive(checker, true).getLevels()));
+		}
+	}
+
+	public void testNegativeTimeBudget() {
+		LatticeSearch search = new LatticeSearch(checker(0, 10, new int[] { 4 }, new int[] { 3 }, k(1, 0)), 1);
+		try {
+			search.setMaxTime(-1);
+			fail("The time budget must not be negative");
+		} catch (IllegalArgumentException e) {
+			assertEquals(0, search.getMaxTime());
+		}
+	}
+
+	public void testLatticeTooLargeForKeys() {
+		int qis = 64;
+		int[] domains = new int[qis];
+		int[] heights = new int[qis];
+		Arrays.fill(domains, 2);
+		Arrays.fill(heights, 2);
+		try {
+			new LatticeSearch(checker(0, 2, domains, heights, k(1, 0)), 1);
+			fail("A lattice of 2^64 nodes can not be numbered by a long");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testNoAnonymousNode() throws Exception {
+		TransformationChecker checker = checker(1, 10, new int[] { 4, 4 }, new int[] { 3, 3 }, k(11, 0));
+		assertSameOptimum(checker, true, 1);
+	}
+}
@@ -0,0 +1,94 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Tests that the {@link ResultCache} returns exactly what it stored, from
+ * the memory and from the cache folder.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ResultCacheTest extends TestCase {
+
+	private File folder;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "cache." + System.nanoTime());
+	}
+
+	protected void tearDown() throws Exception {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	private static Instances output() {
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("income"));
+		attributes.add(new Attribute("disease", Arrays.asList("flu", "cold")));
+		Instances output = new Instances("cache", attributes, 3);
+		output.add(new DenseInstance(1, new double[] { 1.23456789012, 0 }));
+		output.add(new DenseInstance(1, new double[] { 1e-9, 1 }));
+		output.add(new DenseInstance(1, new double[] { Double.NaN, 0 }));
+		return output;
+	}
+
+	private static void assertSame(Instances expected, boolean[] suppressed, ResultCache.Result result) {
+		assertNotNull(result);
+		Instances output = result.getOutput();
+		assertTrue(expected.equalHeaders(output));
+		assertEquals(expected.numInstances(), output.numInstances());
+		for (int r = 0; r < expected.numInstances(); r++) {
+			for (int a = 0; a < expected.numAttributes(); a++) {
+				// exactly, ARFF would round to 6 decimals
+				assertEquals(Double.doubleToLongBits(expected.instance(r).value(a)),
+						Double.doubleToLongBits(output.instance(r).value(a)));
+			}
+		}
+		assertTrue(Arrays.equals(suppressed, result.getSuppressed()));
+	}
+
+	public void testFolderHitIsLossless() throws Exception {
+		Instances output = output();
+		boolean[] suppressed = { false, true, false };
+		new ResultCache(ResultCache.DEFAULT_CAPACITY).put("key", output, suppressed, folder);
+		assertTrue(new File(folder, "key" + ResultCache.EXTENSION).isFile());
+
+		// a new cache has nothing in memory and reads the folder
+		ResultCache cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+		assertSame(output, suppressed, cache.get("key", folder));
+		assertEquals(1, cache.size());
+		assertSame(output, suppressed, cache.get("key", null));
+		assertNull(cache.get("other", folder));
+	}
+
+	public void testHitIsACopy() throws Exception {
+		Instances output = output();
+		boolean[] suppressed = { true, false, false };
+		ResultCache cache = new ResultCache(ResultCache.DEFAULT_CAPACITY);
+		cache.put("key", output, suppressed.clone(), null);
+		ResultCache.Result hit = cache.get("key", null);
+		hit.getOutput().instance(0).setValue(0, 7);
+		hit.getSuppressed()[1] = true;
+		assertSame(output, suppressed, cache.get("key", null));
+		try {
+			cache.put("key", output, new boolean[2], null);
+			fail("Every row of the output needs a suppressed flag");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
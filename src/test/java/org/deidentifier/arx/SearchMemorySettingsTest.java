@@ -0,0 +1,68 @@
+package org.deidentifier.arx;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the settings chosen by {@link SearchMemorySettings#tune}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SearchMemorySettingsTest extends TestCase {
+
+	private static final long GB = 1024L * 1024L * 1024L;
+
+	public void testSmallDataSet() {
+		SearchMemorySettings settings = SearchMemorySettings.tune(1000, 5, 1, 1000, 4 * GB, 0);
+		assertEquals(SearchMemorySettings.DEFAULT_HISTORY_SIZE, settings.getHistorySize());
+		assertEquals(SearchMemorySettings.MAX_SNAPSHOT_SIZE, settings.getSnapshotSizeDataset(), 0);
+		assertEquals(SearchMemorySettings.DEFAULT_SNAPSHOT_SIZE_SNAPSHOT, settings.getSnapshotSizeSnapshot(), 0);
+	}
+
+	public void testHistoryIsBoundedByLattice() {
+		assertEquals(12, SearchMemorySettings.tune(1000, 5, 1, 12, 4 * GB, 0).getHistorySize());
+		assertEquals(1, SearchMemorySettings.tune(1000, 5, 1, 0, 4 * GB, 0).getHistorySize());
+	}
+
+	public void testLargeDataSetWithEnoughHeap() {
+		SearchMemorySettings settings = SearchMemorySettings.tune(100000, 10, 1, 10000, 64 * GB, GB);
+		assertEquals(SearchMemorySettings.DEFAULT_HISTORY_SIZE, settings.getHistorySize());
+		assertEquals(SearchMemorySettings.DEFAULT_SNAPSHOT_SIZE_DATASET, settings.getSnapshotSizeDataset(), 0);
+	}
+
+	public void testSnapshotsShrinkFirst() {
+		int rows = 5000000;
+		SearchMemorySettings settings = SearchMemorySettings.tune(rows, 10, 1, 10000, 2 * GB, GB / 2);
+		assertEquals(SearchMemorySettings.DEFAULT_HISTORY_SIZE, settings.getHistorySize());
+		assertTrue(settings.getSnapshotSizeDataset() < SearchMemorySettings.DEFAULT_SNAPSHOT_SIZE_DATASET);
+		assertTrue(settings.getSnapshotSizeDataset() >= SearchMemorySettings.MIN_SNAPSHOT_SIZE);
+		assertWithinBudget(settings, rows, 10, 1, 2 * GB, GB / 2);
+	}
+
+	public void testHistoryShrinksSecond() {
+		int rows = 5000000;
+		SearchMemorySettings settings = SearchMemorySettings.tune(rows, 20, 2, 10000, GB, GB / 2);
+		assertEquals(SearchMemorySettings.MIN_SNAPSHOT_SIZE, settings.getSnapshotSizeDataset(), 0);
+		assertTrue(settings.getHistorySize() < SearchMemorySettings.DEFAULT_HISTORY_SIZE);
+		assertTrue(settings.getHistorySize() >= 1);
+		assertWithinBudget(settings, rows, 20, 2, GB, GB / 2);
+	}
+
+	public void testExhaustedHeap() {
+		SearchMemorySettings settings = SearchMemorySettings.tune(5000000, 20, 1, 10000, GB, GB);
+		assertEquals(1, settings.getHistorySize());
+		assertEquals(SearchMemorySettings.MIN_SNAPSHOT_SIZE, settings.getSnapshotSizeDataset(), 0);
+	}
+
+	/**
+	 * The snapshots of the history fit into their share of the free heap,
+	 * unless the smallest history of one snapshot does not fit.
+	 */
+	private static void assertWithinBudget(SearchMemorySettings settings, int rows, int columns, int sensitive,
+			long maxMemory, long usedMemory) {
+		long budget = (long) ((maxMemory - usedMemory - 12L * rows * columns) * SearchMemorySettings.HISTORY_SHARE);
+		double history = settings.getHistorySize() * settings.getSnapshotSizeDataset() * rows * 4L * (2 + 2 * sensitive);
+		assertTrue(history + " > " + budget, settings.getHistorySize() == 1 || history <= budget);
+	}
+}
@@ -0,0 +1,200 @@
+package org.deidentifier.arx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the handshake and the protocol of {@link SearchWorker}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SearchWorkerTest extends TestCase {
+
+	private static final byte[] TOKEN = "secret".getBytes();
+
+	private SearchWorker worker;
+
+	private Thread thread;
+
+	private volatile Throwable failure;
+
+	private volatile boolean received;
+
+	protected void setUp() throws Exception {
+		worker = new SearchWorker(0, null, TOKEN);
+		thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					worker.run(true);
+				} catch (Throwable e) {
+					failure = e;
+				}
+			}
+		});
+		thread.start();
+	}
+
+	protected void tearDown() throws Exception {
+		worker.close();
+		thread.join(10000);
+	}
+
+	/**
+	 * A checker of one quasi-identifier with two values, which are
+	 * generalized to one value on level 1.
+	 */
+	static TransformationChecker checker() {
+		return new TransformationChecker(new String[] { "a" }, 4,
+				new IntBuffer[] { IntBuffer.wrap(new int[] { 0, 1, 0, 1 }) },
+				new int[][][] { { { 0, 1 }, { 0, 0 } } }, new int[][] { { 2, 1 } },
+				new String[0], new IntBuffer[0], new int[0], new double[0][],
+				new PrivacyCriteria(3, 0, PrivacyCriteria.LVariant.DISTINCT, 0, new String[0], 0));
+	}
+
+	private List<InetSocketAddress> address() {
+		return Collections.singletonList(new InetSocketAddress("127.0.0.1", worker.getPort()));
+	}
+
+	public void testListensOnLoopbackByDefault() {
+		assertTrue(worker.server.getInetAddress().isLoopbackAddress());
+	}
+
+	public void testRejectsWrongToken() throws Exception {
+		try {
+			new DistributedSearch(checker(), address(), "wrong".getBytes());
+			fail("A coordinator with a wrong token must be rejected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Authentication failed"));
+		}
+		// the rejected connection does not end a worker started with -once
+		assertTrue(thread.isAlive());
+		assertSearch();
+	}
+
+	public void testRejectsGarbageHandshake() throws Exception {
+		Socket socket = new Socket("127.0.0.1", worker.getPort());
+		try {
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			assertEquals(SearchWorker.PROTOCOL_VERSION, in.readInt());
+			in.readFully(new byte[SearchWorker.NONCE_LENGTH]);
+			// the header of a serialized object instead of a handshake
+			OutputStream out = socket.getOutputStream();
+			out.write(new byte[] { (byte) 0xac, (byte) 0xed, 0, 5, 0x73, 0x72 });
+			out.write(new byte[64]);
+			out.flush();
+			assertEquals(SearchWorker.FAILED, in.readByte());
+			assertTrue(in.readUTF().startsWith("Unsupported protocol version"));
+		} finally {
+			socket.close();
+		}
+		assertTrue(thread.isAlive());
+		assertSearch();
+	}
+
+	public void testRejectsImpostorWorker() throws Exception {
+		// accepts every coordinator, but does not know the token
+		final ServerSocket impostor = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		Thread other = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Socket socket = impostor.accept();
+					DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+					DataInputStream in = new DataInputStream(socket.getInputStream());
+					out.writeInt(SearchWorker.PROTOCOL_VERSION);
+					out.write(new byte[SearchWorker.NONCE_LENGTH]);
+					out.flush();
+					in.readInt();
+					in.readFully(new byte[SearchWorker.NONCE_LENGTH + 32]);
+					out.writeByte(SearchWorker.OK);
+					out.write(new byte[32]);
+					out.flush();
+					// a coordinator which accepted would send its data now
+					while (in.read() != -1) {
+						received = true;
+					}
+					socket.close();
+				} catch (IOException e) {
+					// closed by the coordinator
+				}
+			}
+		});
+		other.start();
+		try {
+			new DistributedSearch(checker(), Collections.singletonList(
+					new InetSocketAddress("127.0.0.1", impostor.getLocalPort())), TOKEN);
+			fail("A worker which does not know the token must be rejected");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("does not know the token"));
+		} finally {
+			other.join(10000);
+			impostor.close();
+		}
+		assertFalse("No data may be sent to an unauthenticated worker", received);
+	}
+
+	public void testCheckerRoundTrip() throws Exception {
+		TransformationChecker checker = checker().withMetric(InformationLoss.Metric.NON_UNIFORM_ENTROPY);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		checker.write(new DataOutputStream(bytes));
+		TransformationChecker copy = TransformationChecker.read(
+				new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(Arrays.asList(checker.getQi()), Arrays.asList(copy.getQi()));
+		assertEquals(InformationLoss.Metric.NON_UNIFORM_ENTROPY, copy.getInformationLoss().getMetric());
+		for (int level = 0; level < 2; level++) {
+			TransformationChecker.Result expected = checker.check(new int[] { level });
+			TransformationChecker.Result actual = copy.check(new int[] { level });
+			assertEquals(expected.isAnonymous(), actual.isAnonymous());
+			assertEquals(expected.getSuppressed(), actual.getSuppressed());
+			assertEquals(expected.getLoss(), actual.getLoss(), 1e-9);
+		}
+	}
+
+	public void testRejectsInvalidCodes() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		checker().write(new DataOutputStream(bytes));
+		byte[] data = bytes.toByteArray();
+		// qi count, name "a", rows, column length, first code
+		int firstCode = 4 + 2 + 1 + 4 + 4;
+		data[firstCode + 3] = 7;
+		try {
+			TransformationChecker.read(new DataInputStream(new ByteArrayInputStream(data)));
+			fail("A code outside of the hierarchy must be rejected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertSearch();
+	}
+
+	/**
+	 * Searches on the worker with the right token.
+	 */
+	private void assertSearch() throws Exception {
+		TransformationChecker checker = checker();
+		DistributedSearch search = new DistributedSearch(checker, address(), TOKEN);
+		try {
+			TransformationChecker.Result result = search.search();
+			assertTrue(Arrays.equals(new LatticeSearch(checker, 1).search().getLevels(), result.getLevels()));
+		} finally {
+			search.close();
+		}
+		thread.join(10000);
+		assertFalse("A worker started with -once ends after its coordinator", thread.isAlive());
+		assertNull(failure);
+	}
+}
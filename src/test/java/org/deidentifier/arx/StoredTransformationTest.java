@@ -0,0 +1,113 @@
+package org.deidentifier.arx;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests saving, loading and matching of a {@link StoredTransformation}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class StoredTransformationTest extends TestCase {
+
+	private static final String GENERATOR = "intervals{depth: 3, method: EQUAL_WIDTH}";
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		file = File.createTempFile("transformation", ".properties");
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static PrivacyCriteria k(int k) {
+		return new PrivacyCriteria(k, 0, PrivacyCriteria.LVariant.DISTINCT, 0, new String[0], 0);
+	}
+
+	private static Map<String, String[][]> hierarchies(String... ages) {
+		Map<String, String[][]> hierarchies = new HashMap<String, String[][]>();
+		hierarchies.put("zip", new String[][] { { "14168", "1416*", "*" }, { "14167", "1416*", "*" },
+				{ "?", "?", "*" } });
+		String[][] age = new String[ages.length][];
+		for (int i = 0; i < ages.length; i++) {
+			age[i] = new String[] { ages[i], "*" };
+		}
+		hierarchies.put("age", age);
+		return hierarchies;
+	}
+
+	private static Map<String, Integer> levels() {
+		Map<String, Integer> levels = new LinkedHashMap<String, Integer>();
+		levels.put("zip", 1);
+		levels.put("age", 0);
+		return levels;
+	}
+
+	public void testRoundTrip() throws Exception {
+		Map<String, String> generators = Collections.singletonMap("age", GENERATOR);
+		StoredTransformation stored = StoredTransformation.create(levels(), hierarchies("20", "30"), generators, k(2));
+		stored.save(file);
+		StoredTransformation loaded = StoredTransformation.load(file);
+		assertEquals(stored.getLevels(), loaded.getLevels());
+		assertEquals(stored.getHierarchies(), loaded.getHierarchies());
+		assertEquals(stored.getCriteria(), loaded.getCriteria());
+		assertEquals(1, loaded.getLevels(new String[] { "age", "zip" })[1]);
+		assertTrue(loaded.matches(hierarchies("20", "30"), generators, k(2)));
+	}
+
+	public void testGeneratedHierarchyMatchesOtherData() throws Exception {
+		Map<String, String> generators = Collections.singletonMap("age", GENERATOR);
+		StoredTransformation.create(levels(), hierarchies("20", "30"), generators, k(2)).save(file);
+		StoredTransformation loaded = StoredTransformation.load(file);
+		assertNull(loaded.getMismatch(hierarchies("21", "35", "40"), generators, k(2)));
+		String mismatch = loaded.getMismatch(hierarchies("20", "30"),
+				Collections.singletonMap("age", "intervals{depth: 4, method: EQUAL_WIDTH}"), k(2));
+		assertTrue(mismatch, mismatch.contains("settings of the generated hierarchy of age"));
+	}
+
+	public void testMismatchReasons() throws Exception {
+		Map<String, String> none = Collections.emptyMap();
+		StoredTransformation stored = StoredTransformation.create(levels(), hierarchies("20", "30"), none, k(2));
+		String criteria = stored.getMismatch(hierarchies("20", "30"), none, k(3));
+		assertTrue(criteria, criteria.contains("criteria"));
+		String hierarchy = stored.getMismatch(hierarchies("20", "31"), none, k(2));
+		assertTrue(hierarchy, hierarchy.contains("hierarchy of age"));
+		Map<String, String[][]> fewer = hierarchies("20", "30");
+		fewer.remove("age");
+		String qi = stored.getMismatch(fewer, none, k(2));
+		assertTrue(qi, qi.contains("quasi-identifiers"));
+		assertFalse(stored.matches(hierarchies("20", "31"), none, k(2)));
+	}
+
+	public void testLoadRejectsInvalidFiles() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write("level.age=0\n".getBytes("UTF-8"));
+		out.close();
+		try {
+			StoredTransformation.load(file);
+			fail("A file without criteria is no transformation");
+		} catch (IOException e) {
+			// expected
+		}
+		out = new FileOutputStream(file);
+		out.write("criteria=k\nlevel.age=high\n".getBytes("UTF-8"));
+		out.close();
+		try {
+			StoredTransformation.load(file);
+			fail("A level must be a number");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package weka.filters.unsupervised.instance;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Tests anonymizing several files with {@link BatchFlash}.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class BatchFlashTest extends TestCase {
+
+	private static final String[] OPTIONS = { "-S", "2", "-K", "2", "-O", "0", "-threads", "1" };
+
+	private File input;
+
+	private File output;
+
+	protected void setUp() throws Exception {
+		long time = System.nanoTime();
+		input = new File(System.getProperty("java.io.tmpdir"), "batch." + time);
+		output = new File(System.getProperty("java.io.tmpdir"), "batch-out." + time);
+		assertTrue(input.mkdir());
+	}
+
+	protected void tearDown() throws Exception {
+		for (File folder : new File[] { input, output }) {
+			File[] files = folder.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+			folder.delete();
+		}
+	}
+
+	private File file(String name, int rows) throws Exception {
+		File file = new File(input, name);
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		writer.println("@relation " + name);
+		writer.println("@attribute age numeric");
+		writer.println("@attribute disease {flu,cold}");
+		writer.println("@data");
+		for (int r = 0; r < rows; r++) {
+			writer.println((20 + r % 30) + "," + (r % 3 == 0 ? "flu" : "cold"));
+		}
+		writer.close();
+		return file;
+	}
+
+	private static Instances anonymize(File file) throws Exception {
+		Flash flash = new Flash();
+		flash.setOptions(OPTIONS.clone());
+		ArffLoader loader = new ArffLoader();
+		loader.setSource(file);
+		return flash.anonymize(loader);
+	}
+
+	public void testFilesAreAnonymized() throws Exception {
+		List<File> files = new ArrayList<File>();
+		files.add(file("a.arff", 40));
+		files.add(file("b.arff", 300));
+		files.add(file("c.arff", 3));
+		BatchFlash batch = new BatchFlash(OPTIONS);
+		batch.setJobs(2);
+		List<BatchFlash.Job> jobs = batch.run(files, output);
+		assertEquals(3, jobs.size());
+		for (int i = 0; i < files.size(); i++) {
+			BatchFlash.Job job = jobs.get(i);
+			// in the order of the files, not in the order of processing
+			assertSame(files.get(i), job.getInput());
+			assertTrue(String.valueOf(job.getError()), job.isSuccessful());
+			assertEquals(new File(output, files.get(i).getName()), job.getOutput());
+			Instances expected = anonymize(files.get(i));
+			assertEquals(expected.numInstances(), job.getRows());
+			assertEquals(expected.toString(), DataSource.read(job.getOutput().getAbsolutePath()).toString());
+		}
+	}
+
+	public void testFailedFileDoesNotStopTheBatch() throws Exception {
+		File broken = new File(input, "broken.arff");
+		PrintWriter writer = new PrintWriter(broken, "UTF-8");
+		writer.println("no arff");
+		writer.close();
+		File file = file("valid.arff", 20);
+		List<BatchFlash.Job> jobs = new BatchFlash(OPTIONS).run(Arrays.asList(broken, file), output);
+		assertFalse(jobs.get(0).isSuccessful());
+		assertNotNull(jobs.get(0).getError());
+		assertTrue(jobs.get(1).isSuccessful());
+
+		File report = new File(output, "report.csv");
+		BatchFlash.writeReport(jobs, report);
+		BufferedReader reader = new BufferedReader(new FileReader(report));
+		try {
+			assertTrue(reader.readLine().startsWith("file,status,rows"));
+			assertTrue(reader.readLine().startsWith("\"" + broken.getPath() + "\",failed,"));
+			assertTrue(reader.readLine().startsWith("\"" + file.getPath() + "\",ok,20,"));
+			assertNull(reader.readLine());
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testListFiles() throws Exception {
+		file("adult_1.arff", 1);
+		file("adult_2.ARFF", 1);
+		file("census.arff", 1);
+		new File(input, "notes.txt").createNewFile();
+		List<File> all = BatchFlash.listFiles(input.getPath());
+		assertEquals(3, all.size());
+		assertEquals("adult_1.arff", all.get(0).getName());
+		List<File> adult = BatchFlash.listFiles(new File(input, "adult_?.arff").getPath());
+		assertEquals(1, adult.size());
+		// a pattern is not restricted to ARFF files
+		assertEquals(4, BatchFlash.listFiles(new File(input, "*").getPath()).size());
+		assertTrue(BatchFlash.listFiles(new File(input, "missing/*.arff").getPath()).isEmpty());
+	}
+
+	public void testInvalidSettings() throws Exception {
+		try {
+			new BatchFlash(new String[] { "-K", "two" });
+			fail("The options are validated by the constructor");
+		} catch (Exception e) {
+			// expected
+		}
+		BatchFlash batch = new BatchFlash(OPTIONS);
+		try {
+			batch.setJobs(0);
+			fail("At least one job is needed");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		File file = file("a.arff", 10);
+		try {
+			batch.run(Arrays.asList(file), input);
+			fail("The output would overwrite the input");
+		} catch (IllegalArgumentException e) {
+			assertTrue(file.length() > 0);
+		}
+	}
+}
@@ -18,9 +18,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.deidentifier.arx.ResultCache;
+import org.deidentifier.arx.StoredTransformation;
+
 import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.converters.ArffLoader;
 import weka.filters.AbstractFilterTest;
 import weka.filters.Filter;
 import weka.test.Regression;
@@ -139,6 +144,229 @@ public class FlashTest extends AbstractFilterTest {
 	}
 	
 	
+	public void testPrivacyVerifier() throws Exception {
+		Instances result = useFilter();
+		PrivacyVerifier.Report report = new PrivacyVerifier(2).verify(result, (Flash) m_Filter);
+		assertEquals(m_Instances.numInstances(), report.getNumRows());
+		assertTrue("The verifier found a class with less than 2 rows", report.getK() >= 2);
+		assertTrue("The verifier found a class with less than 2 sensitive values", report.getDistinctL() >= 2);
+	}
+	
+	
+	/**
+	 * Check that the options of a configured filter are accepted again
+	 */
+	public void testOptionsRoundTrip() throws Exception {
+		Flash flash = (Flash) getFilter();
+		flash.setValueK(5);
+		flash.setValueT(0.4);
+		flash.setEnableTCloseness(true);
+		flash.setMaxOutliers(0.1);
+		flash.setHierarchyDepth(4);
+		flash.setHierarchyMethod(new SelectedTag(1, Flash.HIERARCHY_METHODS));
+		flash.setHistorySize(50);
+		flash.setThreads(3);
+		flash.setMaxTime(10);
+		flash.setStorage(new SelectedTag(2, Flash.STORAGE_TYPES));
+		flash.setMetric(new SelectedTag(3, Flash.METRICS));
+		String[] options = flash.getOptions();
+		Flash parsed = new Flash();
+		parsed.setOptions(options.clone());
+		assertEquals(Arrays.toString(options), Arrays.toString(parsed.getOptions()));
+		assertEquals(5, parsed.getValueK());
+		assertTrue(parsed.getEnableLDiversity());
+		assertEquals(4, parsed.getHierarchyDepth());
+		assertEquals(50, parsed.getHistorySize());
+		assertEquals(10, parsed.getMaxTime());
+
+		// t-closeness without k-anonymity
+		flash.setEnableKAnonymity(false);
+		flash.setValueT(0.3);
+		options = flash.getOptions();
+		parsed = new Flash();
+		parsed.setOptions(options.clone());
+		assertEquals(Arrays.toString(options), Arrays.toString(parsed.getOptions()));
+		assertFalse(parsed.getEnableKAnonymity());
+		assertTrue(parsed.getEnableTCloseness());
+		assertEquals(0.3, parsed.getValueT(), 0);
+	}
+	
+	
+	/**
+	 * Check that reading the file incrementally yields the same output
+	 */
+	public void testIncrementalLoader() throws Exception {
+		Instances result = useFilter();
+		ArffLoader loader = new ArffLoader();
+		loader.setSource(ClassLoader.getSystemResourceAsStream("FlashTest.arff"));
+		Instances incremental = ((Flash) getFilter()).anonymize(loader);
+		assertEquals(result.numInstances(), incremental.numInstances());
+		for (int i = 0; i < result.numInstances(); i++) {
+			assertEquals(result.instance(i).toString(), incremental.instance(i).toString());
+		}
+	}
+	
+	
+	/**
+	 * Check that a repeated run returns the cached output
+	 */
+	public void testResultCache() throws Exception {
+		ResultCache.getInstance().clear();
+		Flash flash = (Flash) getFilter();
+		flash.setResultCache(new SelectedTag(1, Flash.RESULT_CACHE_TYPES));
+		flash.setInputFormat(m_Instances);
+		Instances first = Filter.useFilter(m_Instances, flash);
+		boolean[] suppressed = flash.getSuppressedRows().clone();
+		assertEquals(1, ResultCache.getInstance().size());
+		flash.setInputFormat(m_Instances);
+		Instances second = Filter.useFilter(m_Instances, flash);
+		assertEquals(1, ResultCache.getInstance().size());
+		// the suppressed rows are cached with the output
+		assertTrue(Arrays.equals(suppressed, flash.getSuppressedRows()));
+		assertEquals(first.numInstances(), second.numInstances());
+		for (int i = 0; i < first.numInstances(); i++) {
+			assertEquals(first.instance(i).toString(), second.instance(i).toString());
+		}
+		ResultCache.getInstance().clear();
+	}
+	
+	
+	/**
+	 * Check that local worker processes find the same transformation as the parallel search
+	 */
+	public void testWorkers() throws Exception {
+		Flash local = (Flash) getFilter();
+		local.setThreads(2);
+		local.setInputFormat(m_Instances);
+		Instances expected = Filter.useFilter(m_Instances, local);
+		Flash distributed = (Flash) getFilter();
+		distributed.setWorkers(2);
+		distributed.setInputFormat(m_Instances);
+		Instances result = Filter.useFilter(m_Instances, distributed);
+		assertEquals(expected.numInstances(), result.numInstances());
+		for (int i = 0; i < expected.numInstances(); i++) {
+			assertEquals(expected.instance(i).toString(), result.instance(i).toString());
+		}
+	}
+	
+	
+	/**
+	 * Check that the parallel search finds a transformation of the same height
+	 * as the ARX search. Without l-diversity many nodes of the optimal height
+	 * are anonymous, and the two searches may pick different ones of them.
+	 */
+	public void testThreadsMatchArxHeight() throws Exception {
+		for (int k = 2; k <= 4; k++) {
+			int[] heights = new int[2];
+			for (int threads = 0; threads <= 2; threads += 2) {
+				Flash flash = (Flash) getFilter();
+				flash.setEnableLDiversity(false);
+				flash.setEnableKAnonymity(true);
+				flash.setValueK(k);
+				flash.setApplyOnly(true);
+				flash.setThreads(threads);
+				flash.setInputFormat(m_Instances);
+				Filter.useFilter(m_Instances, flash);
+				for (int level : flash.getScheme().getLevels().values()) {
+					heights[threads / 2] += level;
+				}
+			}
+			assertEquals("k = " + k, heights[0], heights[1]);
+		}
+	}
+	
+	
+	/**
+	 * Runs the parallel search on the given data, saving or loading a transformation
+	 */
+	private Flash runTransformation(Instances instances, File save, File load, int k) throws Exception {
+		Flash flash = (Flash) getFilter();
+		flash.setEnableLDiversity(false);
+		flash.setEnableKAnonymity(true);
+		flash.setValueK(k);
+		flash.setThreads(1);
+		if (save != null) {
+			flash.setSaveTransformation(save);
+		}
+		if (load != null) {
+			flash.setLoadTransformation(load);
+		}
+		flash.setInputFormat(instances);
+		Instances result = Filter.useFilter(instances, flash);
+		assertTrue(checkKAnonymity(result, k, 0, 1, 2, 3, 4));
+		return flash;
+	}
+	
+	/**
+	 * The rows of the test data, each twice
+	 */
+	private Instances duplicated() {
+		Instances instances = new Instances(m_Instances);
+		for (int i = 0; i < m_Instances.numInstances(); i++) {
+			instances.add((Instance) m_Instances.instance(i).copy());
+		}
+		return instances;
+	}
+	
+	/**
+	 * Check that a saved transformation is loaded instead of searching, also
+	 * if a generated hierarchy differs on the new data
+	 */
+	public void testSavedTransformationIsReused() throws Exception {
+		new File(hierarchyFolder, "test_hierarchy_children.csv").delete();
+		File file = File.createTempFile("transformation", ".properties");
+		try {
+			Flash first = runTransformation(m_Instances, file, null, 2);
+			Instances shifted = new Instances(m_Instances);
+			for (int i = 0; i < shifted.numInstances(); i++) {
+				shifted.instance(i).setValue(2, shifted.instance(i).value(2) + 10);
+			}
+			Flash second = runTransformation(shifted, null, file, 2);
+			assertNull(second.getTransformationMismatch(), second.getTransformationMismatch());
+			assertEquals(1, second.getMetrics().getNodesChecked());
+			assertEquals(first.getMetrics().getSuppressedRows(), second.getMetrics().getSuppressedRows());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Check that a transformation saved for other criteria is not used
+	 */
+	public void testSavedTransformationMismatch() throws Exception {
+		File file = File.createTempFile("transformation", ".properties");
+		try {
+			runTransformation(m_Instances, file, null, 2);
+			Flash second = runTransformation(m_Instances, null, file, 3);
+			assertNotNull(second.getTransformationMismatch());
+			assertTrue(second.getTransformationMismatch(), second.getTransformationMismatch().contains("criteria"));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Check that the search runs if the saved transformation violates the
+	 * criteria on the new data
+	 */
+	public void testSavedTransformationFailsVerification() throws Exception {
+		File file = File.createTempFile("transformation", ".properties");
+		try {
+			// every row occurs twice, so no generalization is needed
+			runTransformation(duplicated(), file, null, 2);
+			for (int level : StoredTransformation.load(file).getLevels().values()) {
+				assertEquals(0, level);
+			}
+			Flash second = runTransformation(m_Instances, null, file, 2);
+			assertNotNull(second.getTransformationMismatch());
+			assertTrue(second.getTransformationMismatch(), second.getTransformationMismatch().contains("violates"));
+			assertTrue(second.getMetrics().getNodesChecked() > 1);
+		} finally {
+			file.delete();
+		}
+	}
+	
+	
 	private boolean checkKAnonymity(Instances instances, int k, int ...identifiers ){
 		Map<String, List<String>> map = identifieres2Sensitive(instances, identifiers);
 		
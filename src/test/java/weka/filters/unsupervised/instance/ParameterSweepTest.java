@@ -0,0 +1,114 @@
+package weka.filters.unsupervised.instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.deidentifier.arx.PrivacyCriteria;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Compares the settings of a {@link ParameterSweep} with searches of every
+ * setting on its own.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class ParameterSweepTest extends TestCase {
+
+	private Instances instances;
+
+	private Flash flash;
+
+	protected void setUp() throws Exception {
+		Random random = new Random(0);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(new Attribute("age"));
+		attributes.add(new Attribute("zip"));
+		attributes.add(new Attribute("disease", Arrays.asList("flu", "cold", "cancer")));
+		instances = new Instances("sweep", attributes, 400);
+		for (int r = 0; r < 400; r++) {
+			instances.add(new DenseInstance(1, new double[] { 20 + random.nextInt(40), 10000 + random.nextInt(100),
+					random.nextInt(3) }));
+		}
+		flash = new Flash();
+		flash.setDataSensitiveAttributes("3");
+		flash.setEnableKAnonymity(true);
+		flash.setValueK(2);
+		flash.setEnableLDiversity(true);
+		flash.setValueL(2);
+		flash.setMaxOutliers(0.02);
+		flash.setThreads(1);
+	}
+
+	public void testSweepMatchesSingleSettings() throws Exception {
+		ParameterSweep sweep = new ParameterSweep(flash);
+		List<ParameterSweep.Entry> entries = sweep.run(instances, new int[] { 2, 5, 10, 20 }, new int[] { 1, 2 },
+				null);
+		assertEquals(8, entries.size());
+		int evaluated = 0;
+		for (ParameterSweep.Entry entry : entries) {
+			ParameterSweep.Entry single = new ParameterSweep(flash)
+					.run(instances, Collections.singletonList(entry.getCriteria())).get(0);
+			assertEquals(0, single.getInferred());
+			assertEquals(entry.getCriteria().toString(), Arrays.toString(single.getLevels()),
+					Arrays.toString(entry.getLevels()));
+			assertEquals(single.getSuppressed(), entry.getSuppressed());
+			assertEquals(single.getPrecision(), entry.getPrecision(), 1e-9);
+			evaluated += single.getEvaluated();
+		}
+		// the outcomes of earlier settings spare checks on the data
+		assertTrue(sweep.getInferred() > 0);
+		assertTrue(sweep.getEvaluated() < evaluated);
+	}
+
+	public void testGrid() {
+		PrivacyCriteria base = new PrivacyCriteria(2, 2, PrivacyCriteria.LVariant.DISTINCT, 0.5,
+				new String[] { "disease" }, 0.1);
+		List<PrivacyCriteria> settings = ParameterSweep.grid(base, new int[] { 3, 4 }, null, new double[] { 0.2, 0.3 });
+		assertEquals(4, settings.size());
+		assertEquals(3, settings.get(1).getK());
+		assertEquals(0.3, settings.get(1).getT(), 0);
+		assertEquals(4, settings.get(2).getK());
+		for (PrivacyCriteria criteria : settings) {
+			assertEquals(2, criteria.getL());
+			assertEquals(0.1, criteria.getMaxOutliers(), 0);
+			assertEquals("[disease]", Arrays.toString(criteria.getSensitive()));
+		}
+	}
+
+	public void testParse() {
+		assertEquals("[2.0, 6.0, 10.0]", Arrays.toString(ParameterSweep.parse("2:10:4")));
+		assertEquals("[0.1, 0.2, 0.3]", Arrays.toString(ParameterSweep.parse("0.1:0.3:0.1")));
+		assertEquals("[5.0, 1.5]", Arrays.toString(ParameterSweep.parse("5, 1.5")));
+		assertEquals(0, ParameterSweep.parse("3:2").length);
+		assertEquals(0, ParameterSweep.parse("3:2.5").length);
+		try {
+			ParameterSweep.parse("1:5:0");
+			fail("The step of a range must be positive");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testTable() throws Exception {
+		// no transformation has 500 rows in an equivalence class
+		List<ParameterSweep.Entry> entries = new ParameterSweep(flash).run(instances, new int[] { 2, 500 }, null,
+				null);
+		Instances table = ParameterSweep.toTable(entries);
+		assertEquals(2, table.numInstances());
+		assertEquals("true", table.instance(0).stringValue(table.attribute("anonymous")));
+		assertEquals(Arrays.toString(entries.get(0).getLevels()),
+				table.instance(0).stringValue(table.attribute("levels")));
+		assertEquals("false", table.instance(1).stringValue(table.attribute("anonymous")));
+		assertTrue(table.instance(1).isMissing(table.attribute("precision")));
+		assertEquals(400, entries.get(1).getSuppressed());
+	}
+}
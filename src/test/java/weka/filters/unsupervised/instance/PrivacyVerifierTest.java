@@ -0,0 +1,203 @@
+package weka.filters.unsupervised.instance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Compares the reports of {@link PrivacyVerifier} on several threads with
+ * classes counted by tuples of values.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class PrivacyVerifierTest extends TestCase {
+
+	/**
+	 * Creates random instances with nominal and numeric quasi-identifiers
+	 * q0, q1, ... and a nominal sensitive attribute s. The nominal values
+	 * contain the suppression label.
+	 */
+	private static Instances instances(long seed, int rows, int nominal, int numeric, int values) {
+		Random random = new Random(seed);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		List<String> labels = new ArrayList<String>();
+		for (int v = 0; v < values; v++) {
+			labels.add("v" + v);
+		}
+		labels.add("*");
+		for (int q = 0; q < nominal; q++) {
+			attributes.add(new Attribute("q" + q, labels));
+		}
+		for (int q = 0; q < numeric; q++) {
+			attributes.add(new Attribute("q" + (nominal + q)));
+		}
+		attributes.add(new Attribute("s", Arrays.asList("a", "b", "c")));
+		Instances instances = new Instances("verifier", attributes, rows);
+		for (int r = 0; r < rows; r++) {
+			double[] row = new double[attributes.size()];
+			for (int q = 0; q < nominal; q++) {
+				row[q] = random.nextInt(values);
+			}
+			for (int q = 0; q < numeric; q++) {
+				row[nominal + q] = random.nextInt(values) * 1.5;
+			}
+			row[row.length - 1] = random.nextInt(3);
+			Instance instance = new DenseInstance(1, row);
+			if (random.nextInt(20) == 0) {
+				instance.setMissing(random.nextInt(nominal + numeric));
+			}
+			instances.add(instance);
+		}
+		return instances;
+	}
+
+	private static String[] qi(Instances instances) {
+		String[] qi = new String[instances.numAttributes() - 1];
+		for (int q = 0; q < qi.length; q++) {
+			qi[q] = instances.attribute(q).name();
+		}
+		return qi;
+	}
+
+	/**
+	 * Size and distinct sensitive values of every class, sorted.
+	 */
+	private static List<String> expected(Instances instances, boolean[] suppressed) {
+		Map<String, Integer> sizes = new HashMap<String, Integer>();
+		Map<String, Set<Double>> values = new HashMap<String, Set<Double>>();
+		int s = instances.numAttributes() - 1;
+		for (int r = 0; r < instances.numInstances(); r++) {
+			if (suppressed != null && suppressed[r]) {
+				continue;
+			}
+			double[] row = instances.instance(r).toDoubleArray();
+			String tuple = Arrays.toString(Arrays.copyOf(row, s));
+			sizes.put(tuple, sizes.containsKey(tuple) ? sizes.get(tuple) + 1 : 1);
+			if (!values.containsKey(tuple)) {
+				values.put(tuple, new HashSet<Double>());
+			}
+			values.get(tuple).add(row[s]);
+		}
+		List<String> classes = new ArrayList<String>();
+		for (String tuple : sizes.keySet()) {
+			classes.add(sizes.get(tuple) + "/" + values.get(tuple).size());
+		}
+		Collections.sort(classes);
+		return classes;
+	}
+
+	private static List<String> actual(PrivacyVerifier.Report report) {
+		List<String> classes = new ArrayList<String>();
+		for (int c = 0; c < report.getNumClasses(); c++) {
+			classes.add(report.getClassSizes()[c] + "/" + report.getDistinctL(0)[c]);
+		}
+		Collections.sort(classes);
+		return classes;
+	}
+
+	private void assertReport(Instances instances, boolean[] suppressed, int threads) throws Exception {
+		PrivacyVerifier.Report report = new PrivacyVerifier(threads).verify(instances, qi(instances),
+				new String[] { "s" }, suppressed);
+		assertEquals(instances.numInstances(), report.getNumRows());
+		assertEquals(expected(instances, suppressed), actual(report));
+	}
+
+	public void testChunksMatchTuples() throws Exception {
+		Instances instances = instances(1, 1000, 2, 2, 4);
+		for (int threads = 1; threads <= 5; threads++) {
+			assertReport(instances, null, threads);
+		}
+	}
+
+	public void testTuplesBeyondLongKeys() throws Exception {
+		// 100 codes for each of 12 quasi-identifiers do not fit into a long
+		Instances instances = instances(2, 500, 6, 6, 100);
+		for (int threads = 1; threads <= 4; threads++) {
+			assertReport(instances, null, threads);
+		}
+		// few classes, so that classes are merged over chunks
+		instances = instances(3, 500, 10, 10, 2);
+		assertReport(instances, null, 3);
+	}
+
+	public void testExplicitSuppression() throws Exception {
+		Instances instances = instances(4, 300, 2, 1, 3);
+		boolean[] suppressed = new boolean[instances.numInstances()];
+		int count = 0;
+		for (int r = 0; r < suppressed.length; r += 7) {
+			suppressed[r] = true;
+			count++;
+		}
+		assertReport(instances, suppressed, 3);
+		assertEquals(count, new PrivacyVerifier(2).verify(instances, qi(instances), new String[] { "s" },
+				suppressed).getSuppressed());
+	}
+
+	public void testClosenessIncludesSuppressedRows() throws Exception {
+		Instances instances = instances(6, 600, 2, 0, 3);
+		int s = instances.numAttributes() - 1;
+		boolean[] suppressed = new boolean[instances.numInstances()];
+		// suppressing mostly one sensitive value changes the distribution of the remaining rows
+		for (int r = 0; r < suppressed.length; r++) {
+			suppressed[r] = instances.instance(r).value(s) == 0 && r % 3 != 0;
+		}
+		double[] global = new double[3];
+		Map<String, double[]> histograms = new HashMap<String, double[]>();
+		for (int r = 0; r < instances.numInstances(); r++) {
+			double[] row = instances.instance(r).toDoubleArray();
+			global[(int) row[s]] += 1d / instances.numInstances();
+			if (!suppressed[r]) {
+				String tuple = Arrays.toString(Arrays.copyOf(row, s));
+				if (!histograms.containsKey(tuple)) {
+					histograms.put(tuple, new double[3]);
+				}
+				histograms.get(tuple)[(int) row[s]]++;
+			}
+		}
+		double expected = 0;
+		for (double[] histogram : histograms.values()) {
+			double size = histogram[0] + histogram[1] + histogram[2];
+			double distance = 0;
+			for (int v = 0; v < 3; v++) {
+				distance += Math.abs(histogram[v] / size - global[v]);
+			}
+			expected = Math.max(expected, distance / 2);
+		}
+		for (int threads = 1; threads <= 3; threads++) {
+			PrivacyVerifier.Report report = new PrivacyVerifier(threads).verify(instances, qi(instances),
+					new String[] { "s" }, suppressed);
+			assertEquals(expected, report.getT(), 1e-9);
+		}
+	}
+
+	public void testSuppressionLabelInOneColumn() throws Exception {
+		Instances instances = instances(5, 100, 2, 0, 3);
+		// only the second row has the suppression label in both columns
+		instances.instance(0).setValue(0, "*");
+		instances.instance(1).setValue(0, "*");
+		instances.instance(1).setValue(1, "*");
+		PrivacyVerifier.Report report = new PrivacyVerifier(2).verify(instances, qi(instances),
+				new String[] { "s" });
+		assertEquals(1, report.getSuppressed());
+		try {
+			new PrivacyVerifier(2).verify(instances, qi(instances), new String[] { "s" }, new boolean[3]);
+			fail("The suppressed rows must match the rows");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
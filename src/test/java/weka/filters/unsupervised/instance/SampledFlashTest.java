@@ -0,0 +1,100 @@
+package weka.filters.unsupervised.instance;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deidentifier.arx.StreamingVerifier;
+
+import junit.framework.TestCase;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Tests SampledFlash on a file which is larger than its sample.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class SampledFlashTest extends TestCase {
+
+	private File input;
+
+	private File output;
+
+	protected void setUp() throws Exception {
+		input = File.createTempFile("sampled", ".arff");
+		output = File.createTempFile("sampled-out", ".arff");
+		// 200 ages with 10 rows each, most of them are missing in a sample of 100 rows
+		PrintWriter writer = new PrintWriter(input, "UTF-8");
+		writer.println("@relation sampled");
+		writer.println("@attribute age numeric");
+		writer.println("@attribute disease {flu,cold}");
+		writer.println("@data");
+		for (int r = 0; r < 2000; r++) {
+			writer.println((r % 200) + "," + (r % 3 == 0 ? "flu" : "cold"));
+		}
+		writer.close();
+	}
+
+	protected void tearDown() throws Exception {
+		input.delete();
+		output.delete();
+	}
+
+	public void testNumericHierarchyCoversFullData() throws Exception {
+		Flash flash = new Flash();
+		flash.setDataSensitiveAttributes("2");
+		flash.setEnableKAnonymity(true);
+		flash.setValueK(2);
+		flash.setMaxOutliers(0);
+		flash.setThreads(1);
+		SampledFlash sampled = new SampledFlash(flash);
+		sampled.setSampleSize(100);
+
+		StreamingVerifier.Tally tally = sampled.run(input, output);
+		// every age has 10 rows, so the original values are 2-anonymous
+		assertEquals(0, tally.getLevels()[0]);
+		assertEquals(0, tally.getSuppressed());
+		Instances result = DataSource.read(output.getAbsolutePath());
+		assertEquals(2000, result.numInstances());
+		assertEquals(199.0, result.instance(199).value(0), 0);
+	}
+
+	public void testSampleSizeIsCapped() {
+		List<int[]> strata = new ArrayList<int[]>();
+		for (int s = 0; s < 500; s++) {
+			strata.add(new int[] { 4, 0 });
+		}
+		strata.add(new int[] { 1000, 0 });
+		SampledFlash.apportion(strata, 3000, 100);
+		int total = 0;
+		for (int[] count : strata) {
+			assertTrue(count[1] <= count[0]);
+			total += count[1];
+		}
+		assertEquals(100, total);
+	}
+
+	public void testEveryStratumIsRepresented() {
+		List<int[]> strata = new ArrayList<int[]>();
+		strata.add(new int[] { 990, 0 });
+		strata.add(new int[] { 5, 0 });
+		strata.add(new int[] { 5, 0 });
+		SampledFlash.apportion(strata, 1000, 10);
+		assertEquals(8, strata.get(0)[1]);
+		assertEquals(1, strata.get(1)[1]);
+		assertEquals(1, strata.get(2)[1]);
+	}
+
+	public void testSmallFileIsSampledCompletely() {
+		List<int[]> strata = new ArrayList<int[]>();
+		strata.add(new int[] { 3, 0 });
+		strata.add(new int[] { 7, 0 });
+		SampledFlash.apportion(strata, 10, 100);
+		assertEquals(3, strata.get(0)[1]);
+		assertEquals(7, strata.get(1)[1]);
+	}
+}
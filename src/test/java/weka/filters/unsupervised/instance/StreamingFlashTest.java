@@ -0,0 +1,122 @@
+package weka.filters.unsupervised.instance;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.filters.Filter;
+import weka.filters.StreamableFilter;
+
+/**
+ * Tests the apply-only mode of Flash with a training file.
+ *
+ * @author Andre Breitenfeld
+ * @author Simon Koennecke
+ * @author Christian Windolf
+ */
+public class StreamingFlashTest extends TestCase {
+
+	private File folder;
+
+	private File training;
+
+	private Instances data;
+
+	protected void setUp() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "streaming." + System.nanoTime());
+		assertTrue(folder.mkdir());
+		training = new File(folder, "training.arff");
+		// every age is unique, so ages have to be generalized to intervals
+		PrintWriter writer = new PrintWriter(training, "UTF-8");
+		writer.println("@relation streaming");
+		writer.println("@attribute age numeric");
+		writer.println("@attribute disease {flu,cold}");
+		writer.println("@data");
+		for (int r = 0; r < 100; r++) {
+			writer.println((2 * r) + "," + (r % 3 == 0 ? "flu" : "cold"));
+		}
+		writer.close();
+		data = DataSource.read(training.getAbsolutePath());
+	}
+
+	protected void tearDown() throws Exception {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private <T extends Flash> T configure(T flash) {
+		flash.setDataHierarchyFolder(folder);
+		flash.setDataQuasiIdentifier("1");
+		flash.setDataSensitiveAttributes("2");
+		flash.setEnableKAnonymity(true);
+		flash.setValueK(2);
+		flash.setThreads(1);
+		flash.setHierarchyDepth(4);
+		flash.setTrainingFile(training);
+		return flash;
+	}
+
+	private Instance instance(double age) {
+		Instance instance = new DenseInstance(1, new double[] { age, 0 });
+		instance.setDataset(data);
+		return instance;
+	}
+
+	public void testOnlyStreamingFlashIsStreamable() {
+		assertFalse(new Flash() instanceof StreamableFilter);
+		assertTrue(new StreamingFlash() instanceof StreamableFilter);
+		assertTrue(new StreamingFlash().getApplyOnly());
+	}
+
+	public void testFirstBatchIsStreamed() throws Exception {
+		Flash batch = configure(new Flash());
+		batch.setApplyOnly(true);
+		batch.setInputFormat(data);
+		Instances expected = Filter.useFilter(data, batch);
+
+		StreamingFlash streaming = configure(new StreamingFlash());
+		assertTrue("The output format is known from the training file", streaming.setInputFormat(data));
+		for (int r = 0; r < data.numInstances(); r++) {
+			assertTrue(streaming.input(data.instance(r)));
+			Instance output = streaming.output();
+			assertNotNull("Instance " + r + " is output immediately", output);
+			assertEquals(expected.instance(r).toString(), output.toString());
+		}
+		assertFalse(streaming.batchFinished());
+		assertTrue(streaming.getScheme().getLevels().get("age") > 0);
+	}
+
+	public void testUnseenNumericValues() throws Exception {
+		StreamingFlash streaming = configure(new StreamingFlash());
+		streaming.setInputFormat(data);
+		streaming.input(instance(50));
+		String known = streaming.output().stringValue(0);
+		assertFalse(known, "*".equals(known));
+		// between two ages of the same interval
+		streaming.input(instance(51));
+		assertEquals(known, streaming.output().stringValue(0));
+		assertEquals(0, streaming.getScheme().getUnseen());
+		// outside of all intervals
+		streaming.input(instance(1000));
+		assertEquals("*", streaming.output().stringValue(0));
+		assertEquals(1, streaming.getScheme().getUnseen());
+		streaming.batchFinished();
+	}
+
+	public void testTrainingFileIsRequired() throws Exception {
+		StreamingFlash streaming = configure(new StreamingFlash());
+		streaming.setTrainingFile(folder);
+		try {
+			streaming.setInputFormat(data);
+			fail("The streaming filter can not learn without a training file");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}